@@ -0,0 +1,93 @@
+package stakemate.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.PriceTicks;
+import stakemate.entity.Side;
+
+/**
+ * Deterministic synthetic order flow for the benchmarks.
+ * <p>
+ * Prices scatter around the mid (0.50) with a normal distribution whose standard
+ * deviation is {@code dispersionTicks}, clamped to the valid tick range. Resting
+ * books are built strictly on their own side of the mid; incoming limit orders
+ * may land on either side, so about half of them cross. A share of incoming
+ * orders ({@code marketRatio}) are market orders.
+ */
+public final class OrderFlow {
+
+    public static final String MARKET_ID = "bench-market";
+
+    private static final long MID_TICKS = PriceTicks.ONE / 2;
+    private static final int USERS = 64;
+    private static final int MAX_QTY = 10;
+
+    private final Random random;
+    private final int dispersionTicks;
+    private final double marketRatio;
+
+    /**
+     * @param seed            seed for the flow; equal seeds give equal flows.
+     * @param dispersionTicks standard deviation of prices around the mid, in ticks.
+     * @param marketRatio     share of incoming orders that are market orders, 0-1.
+     */
+    public OrderFlow(final long seed, final int dispersionTicks, final double marketRatio) {
+        this.random = new Random(seed);
+        this.dispersionTicks = dispersionTicks;
+        this.marketRatio = marketRatio;
+    }
+
+    /**
+     * {@code count} resting orders for one side, none of which crosses the mid.
+     *
+     * @param withMarketOrders whether to mix in resting market orders (DB-backed
+     *                         books only; the in-memory engine never rests them).
+     */
+    public List<BookOrder> restingSide(final Side side, final int count, final boolean withMarketOrders) {
+        final List<BookOrder> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long offset = 1 + Math.abs(Math.round(random.nextGaussian() * dispersionTicks));
+            final long ticks;
+            if (side == Side.BUY) {
+                ticks = Math.max(1, MID_TICKS - offset);
+            }
+            else {
+                ticks = Math.min(PriceTicks.ONE - 1, MID_TICKS + offset);
+            }
+            final boolean market = withMarketOrders && random.nextDouble() < marketRatio;
+            orders.add(new BookOrder(user(), MARKET_ID, side, ticks, market, qty()));
+        }
+        return orders;
+    }
+
+    /**
+     * Bids and asks of {@code countPerSide} orders each, bids first.
+     */
+    public List<BookOrder> restingBook(final int countPerSide) {
+        final List<BookOrder> orders = restingSide(Side.BUY, countPerSide, false);
+        orders.addAll(restingSide(Side.SELL, countPerSide, false));
+        return orders;
+    }
+
+    /**
+     * The next incoming order.
+     */
+    public BookOrder next() {
+        final Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        final boolean market = random.nextDouble() < marketRatio;
+        final long offset = Math.round(random.nextGaussian() * dispersionTicks);
+        final long ticks = Math.max(1, Math.min(PriceTicks.ONE - 1, MID_TICKS + offset));
+        return new BookOrder(user(), MARKET_ID, side, ticks, market, qty());
+    }
+
+    private String user() {
+        return "user" + random.nextInt(USERS);
+    }
+
+    private double qty() {
+        return 1 + random.nextInt(MAX_QTY);
+    }
+}
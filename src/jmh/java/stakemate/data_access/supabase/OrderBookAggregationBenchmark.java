@@ -0,0 +1,59 @@
+package stakemate.data_access.supabase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import stakemate.benchmark.OrderFlow;
+import stakemate.engine.BookOrder;
+import stakemate.entity.Side;
+
+/**
+ * Aggregation of raw open orders into price levels, as the polling gateway does
+ * for every DB snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class OrderBookAggregationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int depth;
+
+    @Param({"2", "10", "30"})
+    public int dispersion;
+
+    @Param({"0", "10", "30"})
+    public int marketPct;
+
+    private List<BookOrder> bids;
+    private List<BookOrder> asks;
+
+    @Setup
+    public void setUp() {
+        final OrderFlow flow = new OrderFlow(42L, dispersion, marketPct / 100.0);
+        bids = flow.restingSide(Side.BUY, depth, true);
+        asks = flow.restingSide(Side.SELL, depth, true);
+    }
+
+    @Benchmark
+    public void aggregateOrders(final Blackhole blackhole) {
+        blackhole.consume(PostgresOrderBookGateway.aggregateOrders(bids, Side.BUY));
+        blackhole.consume(PostgresOrderBookGateway.aggregateOrders(asks, Side.SELL));
+    }
+}
@@ -0,0 +1,102 @@
+package stakemate.engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stakemate.benchmark.OrderFlow;
+import stakemate.entity.OrderBook;
+
+/**
+ * In-memory matching and book snapshots under synthetic flow.
+ * <p>
+ * Each iteration starts from a fresh book of {@code depth} resting orders per
+ * side. Resting remainders are cancelled oldest-first once the book holds twice
+ * that many, so the book stays near its configured depth for the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class MatchingEngineBenchmark {
+
+    private static final int TOP_LEVELS = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int depth;
+
+    @Param({"2", "10", "30"})
+    public int dispersion;
+
+    @Param({"0", "10", "30"})
+    public int marketPct;
+
+    private OrderFlow flow;
+    private MatchingEngine engine;
+    // ids of orders that rested, oldest first
+    private final Deque<String> resting = new ArrayDeque<>();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        flow = new OrderFlow(42L, dispersion, marketPct / 100.0);
+        engine = new MatchingEngine();
+        resting.clear();
+        for (final BookOrder order : flow.restingBook(depth)) {
+            engine.placeOrder(order);
+            resting.addLast(order.getId());
+        }
+    }
+
+    @Benchmark
+    public List<Trade> placeOrder() {
+        return place();
+    }
+
+    @Benchmark
+    public OrderBook placeOrderThenSnapshot() {
+        place();
+        return engine.snapshotOrderBook(OrderFlow.MARKET_ID);
+    }
+
+    @Benchmark
+    public OrderBook placeOrderThenTopOfBook() {
+        place();
+        return engine.snapshotOrderBook(OrderFlow.MARKET_ID, TOP_LEVELS);
+    }
+
+    /**
+     * A snapshot of a book that has not changed since the last one.
+     */
+    @Benchmark
+    public OrderBook cachedSnapshot() {
+        return engine.snapshotOrderBook(OrderFlow.MARKET_ID);
+    }
+
+    private List<Trade> place() {
+        final BookOrder order = flow.next();
+        final List<Trade> trades = engine.placeOrder(order);
+        if (!order.isFilled() && !order.isMarket()) {
+            resting.addLast(order.getId());
+            if (resting.size() > 2 * depth) {
+                engine.cancelOrder(resting.pollFirst());
+            }
+        }
+        return trades;
+    }
+}
@@ -0,0 +1,72 @@
+package stakemate.view;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stakemate.benchmark.OrderFlow;
+import stakemate.engine.BookOrder;
+import stakemate.engine.MatchingEngine;
+import stakemate.entity.OrderBook;
+
+/**
+ * Pushing order book snapshots into the Swing table model, both when the levels
+ * changed and when the same book arrives again. No table is attached, so this
+ * measures the model's own work, not painting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class OrderBookTableModelBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int depth;
+
+    @Param({"2", "10", "30"})
+    public int dispersion;
+
+    private final OrderBookTableModel model = new OrderBookTableModel();
+    private OrderBook first;
+    private OrderBook second;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        first = book(1L);
+        second = book(2L);
+    }
+
+    private OrderBook book(final long seed) {
+        final MatchingEngine engine = new MatchingEngine();
+        for (final BookOrder order : new OrderFlow(seed, dispersion, 0.0).restingBook(depth)) {
+            engine.placeOrder(order);
+        }
+        return engine.snapshotOrderBook(OrderFlow.MARKET_ID);
+    }
+
+    @Benchmark
+    public OrderBookTableModel setChangedOrderBook() {
+        flip = !flip;
+        model.setOrderBook(flip ? first : second);
+        return model;
+    }
+
+    @Benchmark
+    public OrderBookTableModel setUnchangedOrderBook() {
+        model.setOrderBook(first);
+        return model;
+    }
+}
@@ -0,0 +1,104 @@
+package stakemate.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import stakemate.engine.EngineJournal;
+import stakemate.engine.EngineSnapshot;
+import stakemate.engine.EngineSnapshotter;
+import stakemate.engine.MatchingEngine;
+import stakemate.engine.MatchingEngineRegistry;
+import stakemate.service.DbAccountService;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+
+/**
+ * Order placement for STAKEMATE_JOURNAL=true: the books live only in journaled
+ * in-memory engines and are rebuilt from the newest snapshot and the journal
+ * after it. Balances stay in the database; each trade is charged to both sides
+ * as it is made, and the reservations of the orders recovered from the journal
+ * are restored before the first new order is placed.
+ */
+final class JournaledTradingSystem implements AutoCloseable {
+
+    private final EngineJournal journal;
+    private final MatchingEngineRegistry engines;
+    private final EngineSnapshotter snapshotter;
+    private final PlaceOrderUseCase placeOrderUseCase;
+
+    private JournaledTradingSystem(final EngineJournal journal, final MatchingEngineRegistry engines,
+                                   final EngineSnapshotter snapshotter, final PlaceOrderUseCase placeOrderUseCase) {
+        this.journal = journal;
+        this.engines = engines;
+        this.snapshotter = snapshotter;
+        this.placeOrderUseCase = placeOrderUseCase;
+    }
+
+    /**
+     * Recovers the books kept in {@code dataDir}: the journal is
+     * {@code engine.journal}, snapshots are kept in {@code snapshots/}.
+     *
+     * @param dataDir       the data directory; created if missing.
+     * @param shardCount    the number of engine shards.
+     * @param accounts      checks, reserves and charges balances.
+     * @param snapshotsKept how many snapshots to keep.
+     * @return the recovered system; snapshots are not taken until {@link #startSnapshots}.
+     * @throws IOException if the journal or snapshot cannot be read.
+     */
+    static JournaledTradingSystem open(final Path dataDir, final int shardCount,
+                                       final DbAccountService accounts, final int snapshotsKept)
+        throws IOException {
+        final Path snapshotDir = dataDir.resolve("snapshots");
+        Files.createDirectories(dataDir);
+        final EngineSnapshot latest = EngineSnapshot.latest(snapshotDir);
+        final EngineJournal journal = EngineJournal.open(dataDir.resolve("engine.journal"), true,
+                latest == null ? 0 : latest.getJournalStart());
+        final MatchingEngineRegistry engines = new MatchingEngineRegistry(shardCount,
+                () -> MatchingEngine.journaled(journal, accounts::applyTrade));
+        try {
+            engines.recover(journal, latest);
+        }
+        catch (final IOException | RuntimeException ex) {
+            engines.close();
+            journal.close();
+            throw ex;
+        }
+        final PlaceOrderUseCase placeOrderUseCase = new PlaceOrderUseCase(engines, accounts);
+        placeOrderUseCase.restoreReservations();
+        return new JournaledTradingSystem(journal, engines,
+                new EngineSnapshotter(engines, journal, snapshotDir, snapshotsKept), placeOrderUseCase);
+    }
+
+    /**
+     * Starts taking a snapshot every {@code periodSeconds}.
+     *
+     * @param periodSeconds seconds between snapshots.
+     */
+    void startSnapshots(final long periodSeconds) {
+        snapshotter.start(periodSeconds);
+    }
+
+    EngineJournal getJournal() {
+        return journal;
+    }
+
+    MatchingEngineRegistry getEngines() {
+        return engines;
+    }
+
+    PlaceOrderUseCase getPlaceOrderUseCase() {
+        return placeOrderUseCase;
+    }
+
+    /**
+     * Stops snapshots and the engines, then closes the journal.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.close();
+        engines.close();
+        journal.close();
+    }
+}
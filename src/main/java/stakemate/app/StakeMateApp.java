@@ -10,20 +10,27 @@ import javax.swing.SwingUtilities;
 
 import stakemate.data_access.api.OddsApiGatewayImpl;
 import stakemate.data_access.api.OddsApiResponseAdapter;
+import stakemate.data_access.in_memory.EngineOrderBookGateway;
 import stakemate.data_access.in_memory.InMemoryAccountRepository;
 import stakemate.data_access.in_memory.InMemoryBetRepository;
 import stakemate.data_access.in_memory.InMemoryMarketRepository;
 import stakemate.data_access.in_memory.InMemoryMatchRepository;
 import stakemate.data_access.in_memory.InMemorySettlementRecordRepository;
+import stakemate.data_access.supabase.PostgresNotifyOrderBookGateway;
 import stakemate.data_access.supabase.PostgresOrderBookGateway;
 import stakemate.data_access.supabase.PostgresOrderRepository;
 import stakemate.data_access.supabase.PostgresPositionRepository;
+import stakemate.data_access.supabase.PostgresTradeRepository;
+import stakemate.data_access.supabase.PostgresUnitOfWork;
 import stakemate.data_access.supabase.SupabaseAccountRepository;
 import stakemate.data_access.supabase.SupabaseBetRepository;
 import stakemate.data_access.supabase.SupabaseClientFactory;
 import stakemate.data_access.supabase.SupabaseCommentRepository;
 import stakemate.data_access.supabase.SupabaseGameRepository;
 import stakemate.data_access.supabase.SupabaseUserDataAccess;
+import stakemate.data_access.supabase.WriteBehindOrderRepository;
+import stakemate.data_access.supabase.WriteBehindPositionRepository;
+import stakemate.data_access.supabase.WriteBehindQueue;
 import stakemate.entity.Game;
 import stakemate.interface_adapter.controllers.SettleMarketController;
 import stakemate.interface_adapter.view_comments.PostCommentController;
@@ -45,7 +52,10 @@ import stakemate.interface_adapter.view_profile.ViewProfilePresenter;
 import stakemate.interface_adapter.view_signup.SignupController;
 import stakemate.interface_adapter.view_signup.SignupViewModel;
 import stakemate.interface_adapter.view_signup.SwingSignupPresenter;
+import stakemate.service.scheduling.Scheduler;
+import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
 import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+import stakemate.use_case.PlaceOrderUseCase.PositionRepository;
 import stakemate.use_case.comments.post.PostCommentInteractor;
 import stakemate.use_case.comments.view.ViewCommentsInteractor;
 import stakemate.use_case.fetch_games.FetchGamesInteractor;
@@ -55,6 +65,7 @@ import stakemate.use_case.login.LoginInteractor;
 import stakemate.use_case.settle_market.SettleMarketInteractor;
 import stakemate.use_case.signup.SignupInteractor;
 import stakemate.use_case.view_live.LiveMatchesInteractor;
+import stakemate.use_case.view_market.OrderBookGateway;
 import stakemate.use_case.view_market.ViewMarketInteractor;
 import stakemate.use_case.view_market.facade.MarketDataFacade;
 import stakemate.use_case.view_profile.ViewProfileInteractor;
@@ -85,9 +96,18 @@ public final class StakeMateApp {
     private static InMemoryBetRepository betRepo;
 
     private static PlaceOrderUseCase placeOrderUseCase;
+    // one live book feed shared by the markets view and every trading window
+    private static OrderBookGateway orderBookGateway;
 
     // We need access to the OrderRepo globally or created earlier for the facade
-    private static PostgresOrderRepository sharedOrderRepo;
+    private static OrderRepository sharedOrderRepo;
+    // in journaled mode the engines hold the only copy of the books
+    private static stakemate.engine.MatchingEngineRegistry journaledEngines;
+
+    private static final long WRITE_BEHIND_FLUSH_MS = 50;
+    private static final int WRITE_BEHIND_MAX_BATCH = 500;
+    private static final long DEFAULT_SNAPSHOT_SECONDS = 60;
+    private static final int SNAPSHOTS_KEPT = 2;
 
     private StakeMateApp() {
         // Private constructor to prevent instantiation
@@ -116,31 +136,209 @@ public final class StakeMateApp {
      * matching engine.
      */
     public static void initTradingSystem() {
-        // For orders & positions (same DS we already use)
-        final javax.sql.DataSource ds = stakemate.use_case.PlaceOrderUseCase.DataSourceFactory.create();
-
-        // Real DB repositories
-        sharedOrderRepo = new PostgresOrderRepository(ds);
-        final var positionRepo = new PostgresPositionRepository(ds);
+        // For orders & positions: the same pool every Supabase repository borrows from
+        final javax.sql.DataSource ds = SupabaseClientFactory.shared().getDataSource();
 
         // DbAccountService uses Supabase profiles table
-        final var accountService = new stakemate.service.DbAccountService(new SupabaseClientFactory());
+        final var accountService = new stakemate.service.DbAccountService(SupabaseClientFactory.shared());
+
+        configureIdNode();
+        configureMetrics();
 
-        // MatchingEngine
-        final var engine = new stakemate.engine.MatchingEngine(sharedOrderRepo, positionRepo, accountService);
+        final String spoolDir = getEnvVar("STAKEMATE_SPOOL_DIR");
+        final java.nio.file.Path dataDir =
+                java.nio.file.Paths.get(spoolDir == null || spoolDir.isBlank() ? ".stakemate" : spoolDir);
+
+        if (Boolean.parseBoolean(getEnvVar("STAKEMATE_JOURNAL"))) {
+            initJournaledTradingSystem(dataDir, accountService);
+            return;
+        }
+
+        final PositionRepository positionRepo;
+        final java.util.function.Supplier<stakemate.engine.MatchingEngine> engineFactory;
+        if (Boolean.parseBoolean(getEnvVar("STAKEMATE_WRITE_BEHIND"))) {
+            // Books live in memory; orders/positions are spooled and written in batches
+            try {
+                WriteBehindQueue.createTable(ds);
+            }
+            catch (final java.sql.SQLException ex) {
+                System.err.println("Warning: could not create write-behind progress table: " + ex.getMessage());
+            }
+            final var queue = new WriteBehindQueue(ds, dataDir,
+                    WRITE_BEHIND_FLUSH_MS, WRITE_BEHIND_MAX_BATCH);
+            sharedOrderRepo = new WriteBehindOrderRepository(new PostgresOrderRepository(ds), queue);
+            positionRepo = new WriteBehindPositionRepository(queue);
+            engineFactory = () -> stakemate.engine.MatchingEngine.memoryResident(
+                    sharedOrderRepo, positionRepo, accountService);
+        }
+        else {
+            // Real DB repositories
+            sharedOrderRepo = new PostgresOrderRepository(ds);
+            positionRepo = new PostgresPositionRepository(ds);
+            // each matching pass is written in one transaction on one connection
+            engineFactory = () -> new stakemate.engine.MatchingEngine(sharedOrderRepo,
+                    () -> new PostgresUnitOfWork(ds, accountService));
+        }
+
+        // One MatchingEngine + writer thread per market shard. Every trade is copied
+        // to the trades table, which keeps the trades that age out of the in-memory tapes.
+        final var engines = new stakemate.engine.MatchingEngineRegistry(getEngineShardCount(), engineFactory);
+
+        try {
+            PostgresTradeRepository.createTable(ds);
+        }
+        catch (final java.sql.SQLException ex) {
+            System.err.println("Warning: could not create trades table: " + ex.getMessage());
+        }
+        final var tradeRepo = new PostgresTradeRepository(ds, WRITE_BEHIND_FLUSH_MS, WRITE_BEHIND_MAX_BATCH);
 
         // Create use-case
         placeOrderUseCase = new PlaceOrderUseCase(
-                engine,
+                engines,
                 accountService,
                 sharedOrderRepo,
-                positionRepo);
+                positionRepo,
+                tradeRepo);
+    }
+
+    /**
+     * STAKEMATE_JOURNAL=true: the books live only in memory and every change to them
+     * is journaled to {@code engine.journal} in the data directory, with a snapshot in
+     * {@code snapshots/} every STAKEMATE_SNAPSHOT_SECONDS (default 60). Startup
+     * rebuilds the books from the newest snapshot and the journal after it, and
+     * reserves again what the recovered orders need. Orders and trades are not
+     * written to the database; balances are checked against it and trades are
+     * charged to it.
+     */
+    private static void initJournaledTradingSystem(final java.nio.file.Path dataDir,
+                                                   final stakemate.service.DbAccountService accountService) {
+        final long recoveryStart = System.nanoTime();
+        final JournaledTradingSystem trading;
+        try {
+            trading = JournaledTradingSystem.open(dataDir, getEngineShardCount(), accountService, SNAPSHOTS_KEPT);
+        }
+        catch (final IOException ex) {
+            throw new java.io.UncheckedIOException("Could not recover the order books from " + dataDir, ex);
+        }
+        System.out.println("Order books recovered from " + trading.getJournal().getFile() + " in "
+                + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart) + " ms");
+        trading.startSnapshots(getSnapshotSeconds());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                trading.close();
+            }
+            catch (final IOException ex) {
+                System.err.println("Warning: could not close engine journal: " + ex.getMessage());
+            }
+        }, "engine-journal-close"));
+        journaledEngines = trading.getEngines();
+        placeOrderUseCase = trading.getPlaceOrderUseCase();
+    }
+
+    private static long getSnapshotSeconds() {
+        final String configured = getEnvVar("STAKEMATE_SNAPSHOT_SECONDS");
+        long seconds = DEFAULT_SNAPSHOT_SECONDS;
+        if (configured != null && !configured.isBlank()) {
+            try {
+                seconds = Long.parseLong(configured.trim());
+            }
+            catch (final NumberFormatException ex) {
+                System.err.println("Warning: invalid STAKEMATE_SNAPSHOT_SECONDS, using " + seconds);
+            }
+        }
+        return Math.max(1, seconds);
+    }
+
+    /**
+     * Push-based (LISTEN/NOTIFY) order book updates when STAKEMATE_ORDERBOOK_PUSH=true
+     * and the database is reached through a session, otherwise the polling gateway.
+     * Journaled engines are read directly.
+     */
+    private static OrderBookGateway createOrderBookGateway() {
+        if (journaledEngines != null) {
+            return new EngineOrderBookGateway(journaledEngines);
+        }
+        if (!Boolean.parseBoolean(getEnvVar("STAKEMATE_ORDERBOOK_PUSH"))) {
+            return new PostgresOrderBookGateway(sharedOrderRepo);
+        }
+        if (SupabaseClientFactory.shared().getStatementCacheMode()
+                == SupabaseClientFactory.StatementCacheMode.TRANSACTION) {
+            // the transaction pooler hands each transaction to any backend, so a LISTEN would not stick
+            System.err.println("Warning: STAKEMATE_ORDERBOOK_PUSH needs the session pooler, polling instead");
+            return new PostgresOrderBookGateway(sharedOrderRepo);
+        }
+        try {
+            PostgresNotifyOrderBookGateway.installTrigger(SupabaseClientFactory.shared());
+        }
+        catch (final java.sql.SQLException ex) {
+            System.err.println("Warning: could not install orders notify trigger: " + ex.getMessage());
+        }
+        return new PostgresNotifyOrderBookGateway(sharedOrderRepo, SupabaseClientFactory.shared());
+    }
+
+    /**
+     * Order and trade ids carry a node prefix; processes sharing one database must
+     * each set a distinct STAKEMATE_NODE_ID (0-1023).
+     */
+    private static void configureIdNode() {
+        final String configured = getEnvVar("STAKEMATE_NODE_ID");
+        if (configured == null || configured.isBlank()) {
+            return;
+        }
+        try {
+            stakemate.engine.IdGenerator.useNode(Integer.parseInt(configured.trim()));
+        }
+        catch (final IllegalArgumentException ex) {
+            System.err.println("Warning: invalid STAKEMATE_NODE_ID, using node 0");
+        }
+    }
+
+    /**
+     * Place-order phase latencies and the background jobs' statistics are always
+     * visible over JMX; setting STAKEMATE_METRICS_LOG_SECONDS also prints a
+     * latency summary at that interval.
+     */
+    private static void configureMetrics() {
+        Scheduler.shared().registerMBean();
+        final var metrics = stakemate.engine.metrics.PlaceOrderMetrics.shared();
+        metrics.registerMBean();
+        final String configured = getEnvVar("STAKEMATE_METRICS_LOG_SECONDS");
+        if (configured == null || configured.isBlank()) {
+            return;
+        }
+        try {
+            final long seconds = Long.parseLong(configured.trim());
+            if (seconds > 0) {
+                metrics.startLogging(seconds);
+            }
+        }
+        catch (final NumberFormatException ex) {
+            System.err.println("Warning: invalid STAKEMATE_METRICS_LOG_SECONDS, not logging metrics");
+        }
+    }
+
+    private static int getEngineShardCount() {
+        final String configured = getEnvVar("STAKEMATE_ENGINE_SHARDS");
+        int shards = Runtime.getRuntime().availableProcessors();
+        if (configured != null && !configured.isBlank()) {
+            try {
+                shards = Integer.parseInt(configured.trim());
+            }
+            catch (final NumberFormatException ex) {
+                System.err.println("Warning: invalid STAKEMATE_ENGINE_SHARDS, using " + shards);
+            }
+        }
+        return Math.max(1, shards);
     }
 
     public static PlaceOrderUseCase getPlaceOrderUseCase() {
         return placeOrderUseCase;
     }
 
+    public static OrderBookGateway getOrderBookGateway() {
+        return orderBookGateway;
+    }
+
     /**
      * The main entry point of the application.
      *
@@ -159,7 +357,7 @@ public final class StakeMateApp {
         // Initialize our real order-book trading system FIRST to set up sharedOrderRepo
         initTradingSystem();
 
-        final SupabaseClientFactory gamesSupabaseFactory = new SupabaseClientFactory();
+        final SupabaseClientFactory gamesSupabaseFactory = SupabaseClientFactory.shared();
         gameRepo = new SupabaseGameRepository(gamesSupabaseFactory);
         final FetchGamesInteractor fetchGamesInteractor = createFetchGamesInteractor(gameRepo);
 
@@ -167,7 +365,8 @@ public final class StakeMateApp {
                 fetchGamesInteractor);
 
         // Use the REAL Database Gateway for Order Book data
-        final PostgresOrderBookGateway dbOrderBookGateway = new PostgresOrderBookGateway(sharedOrderRepo);
+        final OrderBookGateway dbOrderBookGateway = createOrderBookGateway();
+        orderBookGateway = dbOrderBookGateway;
 
         // Wired to Postgres
         final MarketDataFacade marketFacade = new MarketDataFacade(
@@ -175,7 +374,7 @@ public final class StakeMateApp {
                 new InMemoryMarketRepository(gameRepo),
                 dbOrderBookGateway);
 
-        final SupabaseClientFactory dbFactory = new SupabaseClientFactory();
+        final SupabaseClientFactory dbFactory = SupabaseClientFactory.shared();
 
         // Use the Supabase repositories so Settle can see the DB bets
         final stakemate.use_case.settle_market.BetRepository realBetRepo = new SupabaseBetRepository(dbFactory);
@@ -197,7 +396,7 @@ public final class StakeMateApp {
 
         setupLiveMatchesView(marketsFrame, fetchGamesInteractor, gameRepo);
 
-        final SupabaseClientFactory supabaseFactory = new SupabaseClientFactory();
+        final SupabaseClientFactory supabaseFactory = SupabaseClientFactory.shared();
         userRepo = new SupabaseUserDataAccess(supabaseFactory);
 
         setupProfileUseCase(marketsFrame, userRepo);
@@ -0,0 +1,56 @@
+package stakemate.app.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * Raw latency samples in nanoseconds, for exact percentiles at the end of a run.
+ * <p>
+ * Not thread-safe: each load generator worker keeps its own recorder and the
+ * recorders are merged once the workers are done.
+ */
+final class LatencyRecorder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] samples = new long[INITIAL_CAPACITY];
+    private int count;
+    private boolean sorted = true;
+
+    void record(final long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    void addAll(final LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @param percentile 0-100.
+     * @return the smallest sample at or above that share of all samples, or 0 if empty.
+     */
+    long percentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return samples[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    long max() {
+        return percentile(100.0);
+    }
+}
@@ -0,0 +1,354 @@
+package stakemate.app.loadgen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+
+import stakemate.data_access.supabase.PostgresOrderRepository;
+import stakemate.data_access.supabase.PostgresPositionRepository;
+import stakemate.data_access.supabase.PostgresTradeRepository;
+import stakemate.data_access.supabase.PostgresUnitOfWork;
+import stakemate.data_access.supabase.SupabaseClientFactory;
+import stakemate.engine.EngineJournal;
+import stakemate.engine.EngineSnapshot;
+import stakemate.engine.EngineSnapshotter;
+import stakemate.engine.MatchingEngine;
+import stakemate.engine.MatchingEngineRegistry;
+import stakemate.engine.metrics.PlaceOrderMetrics;
+import stakemate.service.DbAccountService;
+import stakemate.service.InMemoryAccountService;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderResponse;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+
+/**
+ * Headless load generator: drives a synthetic (or recorded) order stream through
+ * {@link PlaceOrderUseCase} and reports end-to-end latency percentiles and fills/sec.
+ * <p>
+ * Usage: {@code LoadGenerator [--option=value ...]}
+ * <ul>
+ *   <li>{@code --target=memory|postgres} in-memory engine (default), or DB-backed
+ *       matching against a local Postgres ({@code --pg-host}, {@code --pg-port},
+ *       {@code --pg-db}, {@code --pg-user}, {@code --pg-password}; defaults
+ *       localhost:5432/postgres, postgres/postgres)</li>
+ *   <li>{@code --orders}, {@code --traders}, {@code --markets} stream size</li>
+ *   <li>{@code --rate} mean orders/sec with random (Poisson) arrivals; 0 sends flat out</li>
+ *   <li>{@code --market-ratio} share of market orders, {@code --dispersion} limit
+ *       price spread in ticks</li>
+ *   <li>{@code --seed} makes the generated stream reproducible</li>
+ *   <li>{@code --record=file} saves the stream, {@code --replay=file} sends a saved
+ *       stream (with its original pacing) instead of generating one</li>
+ *   <li>{@code --threads} concurrent submitters, {@code --shards} engine shards</li>
+ *   <li>{@code --journal=file} (memory target) journals the engines to {@code file},
+ *       recovering what it already holds first; {@code --fsync=false} skips forcing
+ *       it to disk</li>
+ *   <li>{@code --snapshots=dir} (with {@code --journal}) starts from the newest
+ *       snapshot in {@code dir} plus the journal after it, snapshots every
+ *       {@code --snapshot-seconds} (default 10) while running and once at the end</li>
+ * </ul>
+ * The per-phase breakdown of {@link PlaceOrderMetrics} is printed after the report.
+ * <p>
+ * A paced order's latency is measured from the time it was due, not the time it
+ * was sent, so a stalled system is charged for the orders queued behind it.
+ * The stream is deterministic; the interleaving across several submitter threads
+ * is not, so use {@code --threads=1} for an exactly repeatable run.
+ */
+public final class LoadGenerator {
+
+    private static final double STARTING_BALANCE = 1e9;
+    private static final long START_DELAY_NANOS = 10_000_000L;
+    private static final double NANOS_PER_MICRO = 1_000.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final PlaceOrderUseCase useCase;
+    private final int threads;
+
+    public LoadGenerator(final PlaceOrderUseCase useCase, final int threads) {
+        this.useCase = useCase;
+        this.threads = threads;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = parse(args);
+        final OrderStream stream;
+        final String replay = options.get("replay");
+        if (replay != null) {
+            stream = OrderStream.read(Paths.get(replay));
+        }
+        else {
+            stream = OrderStream.generate(
+                    Long.parseLong(options.getOrDefault("seed", "1")),
+                    Integer.parseInt(options.getOrDefault("orders", "100000")),
+                    Integer.parseInt(options.getOrDefault("traders", "50")),
+                    Integer.parseInt(options.getOrDefault("markets", "10")),
+                    Double.parseDouble(options.getOrDefault("rate", "0")),
+                    Double.parseDouble(options.getOrDefault("market-ratio", "0.1")),
+                    Integer.parseInt(options.getOrDefault("dispersion", "5")));
+        }
+        final String record = options.get("record");
+        if (record != null) {
+            stream.write(Paths.get(record));
+        }
+
+        final int shards = Integer.parseInt(options.getOrDefault("shards",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        final String target = options.getOrDefault("target", "memory");
+
+        final Report report;
+        if ("memory".equals(target)) {
+            final InMemoryAccountService accounts = new InMemoryAccountService();
+            for (final String trader : stream.traders()) {
+                accounts.deposit(trader, STARTING_BALANCE);
+            }
+            final String journalFile = options.get("journal");
+            if (journalFile == null) {
+                try (MatchingEngineRegistry engines = new MatchingEngineRegistry(shards, MatchingEngine::new)) {
+                    report = new LoadGenerator(new PlaceOrderUseCase(engines, accounts), threads).run(stream);
+                }
+            }
+            else {
+                final boolean fsync = Boolean.parseBoolean(options.getOrDefault("fsync", "true"));
+                final String snapshotDir = options.get("snapshots");
+                final long recoveryStart = System.nanoTime();
+                final EngineSnapshot latest = snapshotDir == null ? null : EngineSnapshot.latest(Paths.get(snapshotDir));
+                try (EngineJournal journal = EngineJournal.open(Paths.get(journalFile), fsync,
+                        latest == null ? 0 : latest.getJournalStart());
+                        MatchingEngineRegistry engines = new MatchingEngineRegistry(shards,
+                                () -> MatchingEngine.journaled(journal))) {
+                    engines.recover(journal, latest);
+                    System.out.printf("journal recovered in %.1f ms (%s)%n",
+                            (System.nanoTime() - recoveryStart) / NANOS_PER_MICRO / 1_000.0,
+                            latest == null ? "full replay" : "snapshot of " + latest.getOrderCount() + " orders");
+                    if (snapshotDir == null) {
+                        report = new LoadGenerator(new PlaceOrderUseCase(engines, accounts), threads).run(stream);
+                    }
+                    else {
+                        try (EngineSnapshotter snapshotter = new EngineSnapshotter(engines, journal,
+                                Paths.get(snapshotDir), 2)) {
+                            snapshotter.start(Long.parseLong(options.getOrDefault("snapshot-seconds", "10")));
+                            report = new LoadGenerator(new PlaceOrderUseCase(engines, accounts), threads).run(stream);
+                            snapshotter.snapshotNow();
+                        }
+                    }
+                }
+            }
+        }
+        else if ("postgres".equals(target)) {
+            report = runPostgres(options, stream, shards, threads);
+        }
+        else {
+            throw new IllegalArgumentException("Unknown target: " + target);
+        }
+        System.out.println("target: " + target + ", shards: " + shards + ", threads: " + threads
+                + (replay != null ? ", replay: " + replay : ""));
+        System.out.println(report);
+        System.out.print(PlaceOrderMetrics.shared().summary());
+    }
+
+    private static Report runPostgres(final Map<String, String> options, final OrderStream stream,
+                                      final int shards, final int threads)
+            throws SQLException, InterruptedException {
+        final SupabaseClientFactory factory = new SupabaseClientFactory(
+                options.getOrDefault("pg-host", "localhost"),
+                options.getOrDefault("pg-port", "5432"),
+                options.getOrDefault("pg-db", "postgres"),
+                options.getOrDefault("pg-user", "postgres"),
+                options.getOrDefault("pg-password", "postgres"));
+        try {
+            final DataSource ds = factory.getDataSource();
+            seedTraders(ds, stream);
+            PostgresTradeRepository.createTable(ds);
+            final DbAccountService accounts = new DbAccountService(factory);
+            final PostgresOrderRepository orders = new PostgresOrderRepository(ds);
+            try (MatchingEngineRegistry engines = new MatchingEngineRegistry(shards,
+                    () -> new MatchingEngine(orders, () -> new PostgresUnitOfWork(ds, accounts)));
+                    PostgresTradeRepository trades = new PostgresTradeRepository(ds, 50, 500)) {
+                return new LoadGenerator(new PlaceOrderUseCase(engines, accounts, orders,
+                        new PostgresPositionRepository(ds), trades), threads).run(stream);
+            }
+        }
+        finally {
+            factory.close();
+        }
+    }
+
+    /**
+     * Gives every trader of the stream a profile with a large balance.
+     */
+    private static void seedTraders(final DataSource ds, final OrderStream stream) throws SQLException {
+        final String sql = "INSERT INTO public.profiles (id, username, password, balance) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (id) DO UPDATE SET balance = EXCLUDED.balance";
+        try (Connection conn = ds.getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (final String trader : stream.traders()) {
+                ps.setObject(1, UUID.fromString(trader));
+                ps.setString(2, "loadgen-" + trader);
+                ps.setString(3, "loadgen");
+                ps.setDouble(4, STARTING_BALANCE);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static Map<String, String> parse(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Sends the stream and waits for every order to complete. Order i goes to
+     * submitter {@code i % threads}, so each submitter sends its share in stream order.
+     */
+    public Report run(final OrderStream stream) throws InterruptedException {
+        final List<OrderStream.Entry> entries = stream.entries();
+        final boolean paced = stream.isPaced();
+        final long start = System.nanoTime() + START_DELAY_NANOS;
+        final List<Worker> workers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            final Worker worker = new Worker(entries, w, threads, paced, start);
+            worker.thread.start();
+            workers.add(worker);
+        }
+
+        final Report report = new Report();
+        long end = start;
+        for (final Worker worker : workers) {
+            worker.thread.join();
+            report.merge(worker);
+            end = Math.max(end, worker.finishedAt);
+        }
+        report.elapsedNanos = end - start;
+        return report;
+    }
+
+    private final class Worker implements Runnable {
+        private final List<OrderStream.Entry> entries;
+        private final int first;
+        private final int step;
+        private final boolean paced;
+        private final long start;
+        private final Thread thread;
+
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private int accepted;
+        private int rejected;
+        private int errors;
+        private long fills;
+        private long finishedAt;
+
+        Worker(final List<OrderStream.Entry> entries, final int first, final int step, final boolean paced,
+               final long start) {
+            this.entries = entries;
+            this.first = first;
+            this.step = step;
+            this.paced = paced;
+            this.start = start;
+            this.thread = new Thread(this, "loadgen-" + first);
+        }
+
+        @Override
+        public void run() {
+            waitUntil(start);
+            for (int i = first; i < entries.size(); i += step) {
+                final OrderStream.Entry entry = entries.get(i);
+                long due = System.nanoTime();
+                if (paced) {
+                    due = start + entry.getOffsetNanos();
+                    waitUntil(due);
+                }
+                try {
+                    final PlaceOrderResponse response = useCase.place(entry.getRequest());
+                    if (response.ok) {
+                        accepted++;
+                        fills += response.fills;
+                    }
+                    else {
+                        rejected++;
+                    }
+                }
+                catch (final RuntimeException ex) {
+                    errors++;
+                }
+                latencies.record(System.nanoTime() - due);
+            }
+            finishedAt = System.nanoTime();
+        }
+
+        private void waitUntil(final long deadline) {
+            long remaining = deadline - System.nanoTime();
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Totals of one run.
+     */
+    public static final class Report {
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private int accepted;
+        private int rejected;
+        private int errors;
+        private long fills;
+        private long elapsedNanos;
+
+        private void merge(final Worker worker) {
+            latencies.addAll(worker.latencies);
+            accepted += worker.accepted;
+            rejected += worker.rejected;
+            errors += worker.errors;
+            fills += worker.fills;
+        }
+
+        public int getOrders() {
+            return latencies.count();
+        }
+
+        public long getFills() {
+            return fills;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / NANOS_PER_SECOND;
+        }
+
+        /**
+         * @param percentile 0-100.
+         */
+        public double latencyMicros(final double percentile) {
+            return latencies.percentile(percentile) / NANOS_PER_MICRO;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(getElapsedSeconds(), 1e-9);
+            return String.format("orders: %d (accepted %d, rejected %d, errors %d) in %.3f s = %.0f orders/s%n"
+                            + "fills: %d = %.0f fills/s%n"
+                            + "latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                    getOrders(), accepted, rejected, errors, seconds, getOrders() / seconds,
+                    fills, fills / seconds,
+                    latencyMicros(50), latencyMicros(90), latencyMicros(99), latencyMicros(99.9),
+                    latencies.max() / NANOS_PER_MICRO);
+        }
+    }
+}
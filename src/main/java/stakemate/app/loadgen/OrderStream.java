@@ -0,0 +1,172 @@
+package stakemate.app.loadgen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import stakemate.entity.PriceTicks;
+import stakemate.entity.Side;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderRequest;
+
+/**
+ * A timed stream of order requests: generated from a seed, or read back from a
+ * file it was recorded to.
+ * <p>
+ * Each entry carries its send time as an offset from the start of the run, so a
+ * replay reproduces both the orders and their pacing. The file is CSV, one order
+ * per line: {@code offset_nanos,user_id,market_id,side,price,quantity}, with an
+ * empty price for market orders.
+ */
+public final class OrderStream {
+
+    private static final String HEADER = "offset_nanos,user_id,market_id,side,price,quantity";
+    private static final long MID_TICKS = PriceTicks.ONE / 2;
+    private static final int MAX_QTY = 10;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final List<Entry> entries;
+
+    private OrderStream(final List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * One order and when to send it.
+     */
+    public static final class Entry {
+        private final long offsetNanos;
+        private final PlaceOrderRequest request;
+
+        Entry(final long offsetNanos, final PlaceOrderRequest request) {
+            this.offsetNanos = offsetNanos;
+            this.request = request;
+        }
+
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public PlaceOrderRequest getRequest() {
+            return request;
+        }
+    }
+
+    /**
+     * Generates {@code orders} orders. Traders and markets are picked uniformly;
+     * limit prices scatter normally around 0.50 with a standard deviation of
+     * {@code dispersionTicks}, so roughly half of them cross.
+     *
+     * @param ratePerSecond mean arrival rate with exponential gaps between orders,
+     *                      or 0 to send every order as soon as possible.
+     * @param marketRatio   share of market orders, 0-1.
+     */
+    public static OrderStream generate(final long seed, final int orders, final int traders, final int markets,
+                                       final double ratePerSecond, final double marketRatio,
+                                       final int dispersionTicks) {
+        final Random random = new Random(seed);
+        final List<Entry> entries = new ArrayList<>(orders);
+        double offset = 0;
+        for (int i = 0; i < orders; i++) {
+            if (ratePerSecond > 0) {
+                offset += -Math.log(1.0 - random.nextDouble()) / ratePerSecond * NANOS_PER_SECOND;
+            }
+            final Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            final Double price;
+            if (random.nextDouble() < marketRatio) {
+                price = null;
+            }
+            else {
+                final long ticks = MID_TICKS + Math.round(random.nextGaussian() * dispersionTicks);
+                price = PriceTicks.toPrice(Math.max(1, Math.min(PriceTicks.ONE - 1, ticks)));
+            }
+            final PlaceOrderRequest request = new PlaceOrderRequest(traderId(random.nextInt(traders)),
+                    marketId(random.nextInt(markets)), side, price, 1 + random.nextInt(MAX_QTY));
+            entries.add(new Entry((long) offset, request));
+        }
+        return new OrderStream(entries);
+    }
+
+    /**
+     * Trader ids are name-based UUIDs, so they are stable across runs and valid
+     * profile ids for the Postgres target.
+     */
+    static String traderId(final int index) {
+        return UUID.nameUUIDFromBytes(("loadgen-trader-" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    static String marketId(final int index) {
+        return "loadgen-market-" + index;
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Every trader that places an order in this stream, in order of first appearance.
+     */
+    public Set<String> traders() {
+        final Set<String> result = new LinkedHashSet<>();
+        for (final Entry entry : entries) {
+            result.add(entry.request.userId);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the stream carries send times; an unpaced stream is sent flat out.
+     */
+    public boolean isPaced() {
+        return !entries.isEmpty() && entries.get(entries.size() - 1).offsetNanos > 0;
+    }
+
+    public void write(final Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (final Entry entry : entries) {
+                final PlaceOrderRequest r = entry.request;
+                writer.write(entry.offsetNanos + "," + r.userId + "," + r.marketId + "," + r.side.name() + ","
+                        + (r.price == null ? "" : r.price.toString()) + "," + r.quantity);
+                writer.newLine();
+            }
+        }
+    }
+
+    public static OrderStream read(final Path file) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException("Not an order stream: " + file);
+            }
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                final String[] f = line.split(",", -1);
+                if (f.length != 6) {
+                    throw new IOException("Malformed order stream line: " + line);
+                }
+                try {
+                    final Double price = f[4].isEmpty() ? null : Double.valueOf(f[4]);
+                    entries.add(new Entry(Long.parseLong(f[0]),
+                            new PlaceOrderRequest(f[1], f[2], Side.valueOf(f[3]), price, Double.parseDouble(f[5]))));
+                }
+                catch (final IllegalArgumentException ex) {
+                    throw new IOException("Malformed order stream line: " + line, ex);
+                }
+            }
+        }
+        return new OrderStream(entries);
+    }
+}
@@ -0,0 +1,86 @@
+package stakemate.data_access.in_memory;
+
+import stakemate.engine.MatchingEngineRegistry;
+import stakemate.entity.OrderBook;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
+import stakemate.use_case.view_market.OpenOrdersSubscriber;
+import stakemate.use_case.view_market.OrderBookFeed;
+import stakemate.use_case.view_market.OrderBookGateway;
+import stakemate.use_case.view_market.OrderBookSubscriber;
+
+/**
+ * Serves the books of in-memory matching engines, which are the only copy of
+ * the open orders when nothing is written to the database. Watched markets are
+ * read from their shard at a fixed interval; subscribers are sent only the
+ * levels that changed, and each user their own resting orders when those change.
+ */
+public class EngineOrderBookGateway implements OrderBookGateway, AutoCloseable {
+
+    private static final long POLLING_INTERVAL_MS = 250;
+
+    private final MatchingEngineRegistry engines;
+    private final OrderBookFeed feed = new OrderBookFeed();
+    private final ScheduledJob polling;
+
+    public EngineOrderBookGateway(final MatchingEngineRegistry engines) {
+        this(engines, Scheduler.shared());
+    }
+
+    /**
+     * Creates a gateway that reads the books on the given scheduler.
+     *
+     * @param engines   the engines that own the books.
+     * @param scheduler runs the polling job.
+     */
+    public EngineOrderBookGateway(final MatchingEngineRegistry engines, final Scheduler scheduler) {
+        this.engines = engines;
+        this.polling = scheduler.schedule("engine-order-book-poll", 0, POLLING_INTERVAL_MS, this::publishAll);
+    }
+
+    /**
+     * Stops polling, waiting for a poll in progress.
+     */
+    @Override
+    public void close() {
+        polling.cancelAndAwait();
+    }
+
+    @Override
+    public OrderBook getSnapshot(final String marketId) {
+        OrderBook result = feed.latestIfWatched(marketId);
+        if (result == null) {
+            result = engines.snapshotOrderBook(marketId);
+        }
+        return result;
+    }
+
+    @Override
+    public void subscribe(final String marketId, final OrderBookSubscriber subscriber) {
+        feed.subscribe(marketId, subscriber, engines.snapshotOrderBook(marketId));
+    }
+
+    @Override
+    public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
+        feed.unsubscribe(marketId, subscriber);
+    }
+
+    @Override
+    public void subscribeOpenOrders(final String marketId, final String userId,
+                                    final OpenOrdersSubscriber subscriber) {
+        feed.subscribeOpenOrders(marketId, userId, subscriber, engines.openOrders(marketId));
+    }
+
+    @Override
+    public void unsubscribeOpenOrders(final String marketId, final String userId,
+                                      final OpenOrdersSubscriber subscriber) {
+        feed.unsubscribeOpenOrders(marketId, userId, subscriber);
+    }
+
+    private void publishAll() {
+        for (final String marketId : feed.markets()) {
+            feed.publish(engines.snapshotOrderBook(marketId));
+            feed.publishOpenOrders(marketId, engines.openOrders(marketId));
+        }
+    }
+}
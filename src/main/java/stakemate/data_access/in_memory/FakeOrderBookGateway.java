@@ -5,18 +5,19 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
 import stakemate.entity.OrderBook;
 import stakemate.entity.OrderBookEntry;
 import stakemate.entity.Side;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
+import stakemate.use_case.view_market.OrderBookFeed;
 import stakemate.use_case.view_market.OrderBookGateway;
 import stakemate.use_case.view_market.OrderBookSubscriber;
 import stakemate.use_case.view_market.RepositoryException;
 
-public class FakeOrderBookGateway implements OrderBookGateway {
+public class FakeOrderBookGateway implements OrderBookGateway, AutoCloseable {
 
     private static final long TIMER_PERIOD_MS = 2000L;
     private static final double SIMULATED_ERROR_RATE = 0.05;
@@ -29,17 +30,25 @@ public class FakeOrderBookGateway implements OrderBookGateway {
     private static final int QTY_VARIANCE = 20;
 
     private final Map<String, OrderBook> orderBooks = new ConcurrentHashMap<>();
-    private final Map<String, List<OrderBookSubscriber>> subscribers = new ConcurrentHashMap<>();
-    private final Timer timer = new Timer("OrderBookTimer", true);
+    private final OrderBookFeed feed = new OrderBookFeed();
     private final Random random = new Random();
+    private final ScheduledJob updates;
 
     public FakeOrderBookGateway() {
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                updateAllOrderBooks();
-            }
-        }, TIMER_PERIOD_MS, TIMER_PERIOD_MS);
+        this(Scheduler.shared());
+    }
+
+    public FakeOrderBookGateway(final Scheduler scheduler) {
+        updates = scheduler.schedule("fake-order-book-updates", TIMER_PERIOD_MS, TIMER_PERIOD_MS,
+            this::updateAllOrderBooks);
+    }
+
+    /**
+     * Stops the simulated updates.
+     */
+    @Override
+    public void close() {
+        updates.cancelAndAwait();
     }
 
     @Override
@@ -52,15 +61,13 @@ public class FakeOrderBookGateway implements OrderBookGateway {
 
     @Override
     public void subscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        subscribers.computeIfAbsent(marketId, key -> new ArrayList<>()).add(subscriber);
+        feed.subscribe(marketId, subscriber,
+            orderBooks.computeIfAbsent(marketId, this::createRandomOrderBookPossiblyEmpty));
     }
 
     @Override
     public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        final List<OrderBookSubscriber> list = subscribers.get(marketId);
-        if (list != null) {
-            list.remove(subscriber);
-        }
+        feed.unsubscribe(marketId, subscriber);
     }
 
     private OrderBook createRandomOrderBookPossiblyEmpty(final String marketId) {
@@ -93,11 +100,8 @@ public class FakeOrderBookGateway implements OrderBookGateway {
     private void updateAllOrderBooks() {
         for (final String marketId : new ArrayList<>(orderBooks.keySet())) {
             if (random.nextDouble() < SIMULATED_ERROR_RATE) {
-                final List<OrderBookSubscriber> subs = subscribers.get(marketId);
-                if (subs != null) {
-                    for (final OrderBookSubscriber s : subs) {
-                        s.onConnectionError("Reconnecting...");
-                    }
+                for (final OrderBookSubscriber s : feed.subscribers(marketId)) {
+                    s.onConnectionError("Reconnecting...");
                 }
                 continue;
             }
@@ -105,13 +109,10 @@ public class FakeOrderBookGateway implements OrderBookGateway {
             final OrderBook updated = createPopulatedOrderBook(marketId);
             orderBooks.put(marketId, updated);
 
-            final List<OrderBookSubscriber> subs = subscribers.get(marketId);
-            if (subs != null) {
-                for (final OrderBookSubscriber s : subs) {
-                    s.onOrderBookUpdated(updated);
-                    if (random.nextDouble() < RECONNECT_RATE) {
-                        s.onConnectionRestored();
-                    }
+            feed.publish(updated);
+            for (final OrderBookSubscriber s : feed.subscribers(marketId)) {
+                if (random.nextDouble() < RECONNECT_RATE) {
+                    s.onConnectionRestored();
                 }
             }
         }
@@ -0,0 +1,128 @@
+package stakemate.data_access.supabase;
+
+import java.time.Instant;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.Side;
+
+/**
+ * One queued write to the orders, positions or profiles table.
+ * <p>
+ * Values are copied out of the (mutable) {@link BookOrder} when the write is
+ * created, and each write encodes to a single tab-separated line so it can be
+ * spooled to disk.
+ */
+final class PendingWrite {
+
+    enum Kind {
+        INSERT_ORDER,
+        SET_REMAINING,
+        REDUCE_REMAINING,
+        INSERT_POSITION,
+        ADJUST_BALANCE
+    }
+
+    private static final String SEP = "\t";
+
+    private final Kind kind;
+    private final String[] fields;
+
+    private PendingWrite(Kind kind, String... fields) {
+        this.kind = kind;
+        this.fields = fields;
+    }
+
+    static PendingWrite insertOrder(BookOrder order) {
+        return new PendingWrite(Kind.INSERT_ORDER,
+                order.getId(),
+                order.getUserId(),
+                order.getMarketId(),
+                order.getSide().name(),
+                Long.toString(order.getPriceTicks()),
+                Boolean.toString(order.isMarket()),
+                Double.toString(order.getOriginalQty()),
+                Double.toString(order.getRemainingQty()),
+                order.getTimestamp().toString());
+    }
+
+    static PendingWrite setRemaining(String orderId, double remainingQty) {
+        return new PendingWrite(Kind.SET_REMAINING, orderId, Double.toString(remainingQty));
+    }
+
+    static PendingWrite reduceRemaining(String orderId, double executedQty) {
+        return new PendingWrite(Kind.REDUCE_REMAINING, orderId, Double.toString(executedQty));
+    }
+
+    static PendingWrite insertPosition(BookOrder order, double executedAmount, double executedPrice) {
+        return new PendingWrite(Kind.INSERT_POSITION,
+                order.getUserId(),
+                order.getMarketId(),
+                order.getSide().name(),
+                Double.toString(executedAmount),
+                Double.toString(executedPrice));
+    }
+
+    static PendingWrite adjustBalance(String userId, double delta) {
+        return new PendingWrite(Kind.ADJUST_BALANCE, userId, Double.toString(delta));
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    String getOrderId() {
+        return fields[0];
+    }
+
+    /**
+     * Remaining quantity for SET_REMAINING, executed quantity for REDUCE_REMAINING,
+     * balance delta for ADJUST_BALANCE.
+     */
+    double getQty() {
+        return Double.parseDouble(fields[1]);
+    }
+
+    BookOrder toOrder() {
+        return new BookOrder(fields[0], fields[1], fields[2],
+                Side.valueOf(fields[3]),
+                Long.parseLong(fields[4]),
+                Boolean.parseBoolean(fields[5]),
+                Double.parseDouble(fields[6]),
+                Double.parseDouble(fields[7]),
+                Instant.parse(fields[8]));
+    }
+
+    /**
+     * User id for INSERT_POSITION and ADJUST_BALANCE.
+     */
+    String getUserId() {
+        return fields[0];
+    }
+
+    String getMarketId() {
+        return fields[1];
+    }
+
+    String getSide() {
+        return fields[2];
+    }
+
+    double getExecutedAmount() {
+        return Double.parseDouble(fields[3]);
+    }
+
+    double getExecutedPrice() {
+        return Double.parseDouble(fields[4]);
+    }
+
+    String encode() {
+        return kind.name() + SEP + String.join(SEP, fields);
+    }
+
+    static PendingWrite decode(String line) {
+        String[] parts = line.split(SEP, -1);
+        String[] fields = new String[parts.length - 1];
+        System.arraycopy(parts, 1, fields, 0, fields.length);
+        return new PendingWrite(Kind.valueOf(parts[0]), fields);
+    }
+}
@@ -0,0 +1,250 @@
+package stakemate.data_access.supabase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.OrderBook;
+import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
+import stakemate.use_case.view_market.OpenOrdersSubscriber;
+import stakemate.use_case.view_market.OrderBookFeed;
+import stakemate.use_case.view_market.OrderBookGateway;
+import stakemate.use_case.view_market.OrderBookSubscriber;
+import stakemate.use_case.view_market.RepositoryException;
+
+/**
+ * [Observer Pattern]
+ * Push-based OrderBookGateway: a trigger on {@code orders} fires
+ * {@code pg_notify('orders_changed', market_id)} and this gateway LISTENs on one
+ * dedicated connection, re-reading only the markets named in the notifications.
+ * An idle book costs no queries at all, and a change reaches subscribers as the
+ * levels it touched rather than as a whole book.
+ * <p>
+ * Postgres folds identical notifications raised in one transaction, so a matching
+ * pass that touches many rows of one market wakes subscribers once. LISTEN needs
+ * a session: use the session pooler (port 5432) or a direct connection, not the
+ * transaction pooler. The listening connection is opened outside the connection
+ * pool, so it does not take one of the pool's connections for good.
+ */
+public class PostgresNotifyOrderBookGateway implements OrderBookGateway, AutoCloseable {
+
+    public static final String CHANNEL = "orders_changed";
+
+    private static final int WAIT_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final long LISTEN_TIMEOUT_MS = 10_000;
+
+    private static final String TRIGGER_FUNCTION_DDL =
+        "CREATE OR REPLACE FUNCTION notify_orders_changed() RETURNS trigger AS $$ "
+            + "BEGIN "
+            + "PERFORM pg_notify('" + CHANNEL + "', COALESCE(NEW.market_id, OLD.market_id)); "
+            + "RETURN NULL; "
+            + "END; $$ LANGUAGE plpgsql";
+    private static final String DROP_TRIGGER_DDL = "DROP TRIGGER IF EXISTS orders_changed_notify ON orders";
+    private static final String TRIGGER_DDL =
+        "CREATE TRIGGER orders_changed_notify "
+            + "AFTER INSERT OR UPDATE OR DELETE ON orders "
+            + "FOR EACH ROW EXECUTE FUNCTION notify_orders_changed()";
+
+    private final OrderRepository orderRepository;
+    private final Connector connector;
+    private final long reconnectDelayMs;
+    private final OrderBookFeed feed = new OrderBookFeed();
+    // counted down once the first connection attempt has either LISTENed or failed
+    private final CountDownLatch firstAttempt = new CountDownLatch(1);
+    private final Thread listener;
+    private volatile boolean running = true;
+
+    /**
+     * Opens the connection the listener uses.
+     */
+    @FunctionalInterface
+    interface Connector {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Starts listening and returns once LISTEN is in place, so no change made after
+     * a subscribe goes unannounced.
+     *
+     * @param orderRepository where open orders are read from.
+     * @param factory         opens the listener's own connection.
+     * @throws IllegalArgumentException if {@code factory} goes through the
+     *     transaction pooler, which cannot hold a LISTEN.
+     */
+    public PostgresNotifyOrderBookGateway(final OrderRepository orderRepository,
+                                          final SupabaseClientFactory factory) {
+        this(orderRepository, requireSession(factory)::createDedicatedConnection, RECONNECT_DELAY_MS,
+            LISTEN_TIMEOUT_MS);
+    }
+
+    PostgresNotifyOrderBookGateway(final OrderRepository orderRepository, final Connector connector,
+                                   final long reconnectDelayMs, final long listenTimeoutMs) {
+        this.orderRepository = orderRepository;
+        this.connector = connector;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.listener = new Thread(this::listenLoop, "orders-notify-listener");
+        this.listener.setDaemon(true);
+        this.listener.start();
+        try {
+            if (!firstAttempt.await(listenTimeoutMs, TimeUnit.MILLISECONDS)) {
+                System.err.println("Warning: order book listener is not connected yet");
+            }
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SupabaseClientFactory requireSession(final SupabaseClientFactory factory) {
+        if (factory.getStatementCacheMode() == SupabaseClientFactory.StatementCacheMode.TRANSACTION) {
+            throw new IllegalArgumentException("LISTEN needs a session connection, not the transaction pooler");
+        }
+        return factory;
+    }
+
+    /**
+     * Creates (or replaces) the trigger that publishes order changes on {@link #CHANNEL}.
+     *
+     * @param factory connection source with DDL privileges on {@code orders}.
+     * @throws SQLException if the DDL fails.
+     */
+    public static void installTrigger(final SupabaseClientFactory factory) throws SQLException {
+        try (Connection conn = factory.createConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(TRIGGER_FUNCTION_DDL);
+            stmt.execute(DROP_TRIGGER_DDL);
+            stmt.execute(TRIGGER_DDL);
+        }
+    }
+
+    @Override
+    public OrderBook getSnapshot(final String marketId) throws RepositoryException {
+        // a watched book is re-read on every change, so the published copy is current
+        OrderBook result = feed.latestIfWatched(marketId);
+        if (result == null) {
+            result = PostgresOrderBookGateway.snapshotOf(orderRepository, marketId);
+        }
+        return result;
+    }
+
+    @Override
+    public void subscribe(final String marketId, final OrderBookSubscriber subscriber) {
+        // Send immediate initial data; later updates arrive only on change
+        try {
+            feed.subscribe(marketId, subscriber, PostgresOrderBookGateway.snapshotOf(orderRepository, marketId));
+        }
+        catch (final RepositoryException ex) {
+            subscriber.onConnectionError("Could not fetch initial data");
+        }
+    }
+
+    @Override
+    public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
+        feed.unsubscribe(marketId, subscriber);
+    }
+
+    @Override
+    public void subscribeOpenOrders(final String marketId, final String userId,
+                                    final OpenOrdersSubscriber subscriber) {
+        List<BookOrder> current;
+        try {
+            current = PostgresOrderBookGateway.openOrdersOf(orderRepository, marketId);
+        }
+        catch (final RepositoryException ex) {
+            // sent with the next successful read instead
+            current = null;
+        }
+        feed.subscribeOpenOrders(marketId, userId, subscriber, current);
+    }
+
+    @Override
+    public void unsubscribeOpenOrders(final String marketId, final String userId,
+                                      final OpenOrdersSubscriber subscriber) {
+        feed.unsubscribeOpenOrders(marketId, userId, subscriber);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listener.interrupt();
+    }
+
+    private void listenLoop() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection conn = connector.open()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                firstAttempt.countDown();
+                final PGConnection pgConn = conn.unwrap(PGConnection.class);
+                if (reconnecting) {
+                    // changes made while we were disconnected were never announced
+                    refresh(feed.markets(), true);
+                    reconnecting = false;
+                }
+                while (running) {
+                    final PGNotification[] notifications = pgConn.getNotifications(WAIT_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        final Set<String> changed = new LinkedHashSet<>();
+                        for (final PGNotification n : notifications) {
+                            changed.add(n.getParameter());
+                        }
+                        refresh(changed, false);
+                    }
+                }
+            }
+            catch (final SQLException ex) {
+                firstAttempt.countDown();
+                if (!running) {
+                    return;
+                }
+                System.err.println("Order book listener lost its connection: " + ex.getMessage());
+                reconnecting = true;
+                for (final String marketId : feed.markets()) {
+                    for (final OrderBookSubscriber sub : feed.subscribers(marketId)) {
+                        sub.onConnectionError("Live updates interrupted, reconnecting");
+                    }
+                }
+                try {
+                    Thread.sleep(reconnectDelayMs);
+                }
+                catch (final InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void refresh(final Set<String> marketIds, final boolean restored) {
+        for (final String marketId : marketIds) {
+            if (!feed.isWatched(marketId)) {
+                continue;
+            }
+            final List<OrderBookSubscriber> list = feed.subscribers(marketId);
+            try {
+                PostgresOrderBookGateway.publish(orderRepository, feed, marketId);
+                if (restored) {
+                    for (final OrderBookSubscriber sub : list) {
+                        sub.onConnectionRestored();
+                    }
+                }
+            }
+            catch (final RepositoryException ex) {
+                for (final OrderBookSubscriber sub : list) {
+                    sub.onConnectionError("Error refreshing: " + ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -4,17 +4,17 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 import stakemate.engine.BookOrder;
 import stakemate.entity.OrderBook;
 import stakemate.entity.OrderBookEntry;
 import stakemate.entity.Side;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
 import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
+import stakemate.use_case.view_market.OpenOrdersSubscriber;
+import stakemate.use_case.view_market.OrderBookFeed;
 import stakemate.use_case.view_market.OrderBookGateway;
 import stakemate.use_case.view_market.OrderBookSubscriber;
 import stakemate.use_case.view_market.RepositoryException;
@@ -22,49 +22,129 @@ import stakemate.use_case.view_market.RepositoryException;
 /**
  * [Adapter Pattern]
  * Adapts the PostgresOrderRepository (Data Layer) to the OrderBookGateway interface.
- * Implements thread-safe polling for the Observer Pattern.
+ * Implements thread-safe polling for the Observer Pattern; subscribers are sent
+ * only the levels that changed between polls. Each poll reads a watched market's
+ * orders once, for its book and for the users watching their own orders in it.
+ * Polls run as a job of the application's {@link Scheduler}.
  */
-public class PostgresOrderBookGateway implements OrderBookGateway {
+public class PostgresOrderBookGateway implements OrderBookGateway, AutoCloseable {
 
     private static final long POLLING_INTERVAL_MS = 500;
-    private static final double ROUNDING_FACTOR = 100.0;
+    private static final long POLLING_MAX_BACKOFF_MS = 8000;
 
     private final OrderRepository orderRepository;
-    // Use CopyOnWriteArrayList to prevent ConcurrentModificationException during iteration
-    private final Map<String, List<OrderBookSubscriber>> subscribers = new ConcurrentHashMap<>();
-    private final Timer pollingTimer;
+    private final OrderBookFeed feed = new OrderBookFeed();
+    private final ScheduledJob polling;
 
     public PostgresOrderBookGateway(final OrderRepository orderRepository) {
+        this(orderRepository, Scheduler.shared());
+    }
+
+    /**
+     * Creates a gateway that polls on the given scheduler.
+     *
+     * @param orderRepository where open orders are read from.
+     * @param scheduler       runs the polling job.
+     */
+    public PostgresOrderBookGateway(final OrderRepository orderRepository, final Scheduler scheduler) {
         this.orderRepository = orderRepository;
-        this.pollingTimer = new Timer("DB_Polling_Timer", true);
-
-        // Poll database every 500ms
-        this.pollingTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    notifySubscribers();
-                }
-                // -@cs[IllegalCatch] Catching Exception is necessary to prevent timer thread death
-                catch (final Exception ex) {
-                    // Catch ALL exceptions to prevent the timer thread from dying
-                    System.err.println("Critical error in polling timer: " + ex.getMessage());
-                    ex.printStackTrace();
-                }
-            }
-        }, 0, POLLING_INTERVAL_MS);
+        // Poll database every 500ms, less often while it keeps failing
+        this.polling = scheduler.schedule("order-book-poll", 0, POLLING_INTERVAL_MS, Scheduler.DEFAULT_JITTER,
+            POLLING_MAX_BACKOFF_MS, this::notifySubscribers);
     }
 
+    /**
+     * Stops polling, waiting for a poll in progress.
+     */
+    @Override
+    public void close() {
+        polling.cancelAndAwait();
+    }
+
+    /**
+     * Returns the last polled book of a watched market, so that a subscriber
+     * resyncing after a gap gets the snapshot the next delta applies to. Other
+     * markets are read from the database.
+     */
     @Override
     public OrderBook getSnapshot(final String marketId) throws RepositoryException {
-        try {
-            final List<BookOrder> rawBids = orderRepository.findOpenOrdersForMarket(marketId, Side.BUY);
-            final List<BookOrder> rawAsks = orderRepository.findOpenOrdersForMarket(marketId, Side.SELL);
+        OrderBook result = feed.latestIfWatched(marketId);
+        if (result == null) {
+            result = snapshotOf(orderRepository, marketId);
+        }
+        return result;
+    }
+
+    /**
+     * Reads both sides of a market and aggregates them into price levels.
+     * Shared with {@link PostgresNotifyOrderBookGateway}.
+     *
+     * @param orderRepository where open orders are read from.
+     * @param marketId        the market to snapshot.
+     * @return the aggregated order book.
+     * @throws RepositoryException if the orders cannot be read.
+     */
+    static OrderBook snapshotOf(final OrderRepository orderRepository, final String marketId)
+        throws RepositoryException {
+        final List<BookOrder> rawBids = openOrders(orderRepository, marketId, Side.BUY);
+        final List<BookOrder> rawAsks = openOrders(orderRepository, marketId, Side.SELL);
+
+        final List<OrderBookEntry> bids = aggregateOrders(rawBids, Side.BUY);
+        final List<OrderBookEntry> asks = aggregateOrders(rawAsks, Side.SELL);
+
+        return new OrderBook(marketId, bids, asks);
+    }
+
+    /**
+     * Reads a market's open orders once and publishes both the aggregated book and
+     * the orders themselves to {@code feed}.
+     * Shared with {@link PostgresNotifyOrderBookGateway}.
+     *
+     * @param orderRepository where open orders are read from.
+     * @param feed            where the book and orders are published.
+     * @param marketId        the market to read.
+     * @throws RepositoryException if the orders cannot be read.
+     */
+    static void publish(final OrderRepository orderRepository, final OrderBookFeed feed, final String marketId)
+        throws RepositoryException {
+        final List<BookOrder> rawBids = openOrders(orderRepository, marketId, Side.BUY);
+        final List<BookOrder> rawAsks = openOrders(orderRepository, marketId, Side.SELL);
+        feed.publish(new OrderBook(marketId, aggregateOrders(rawBids, Side.BUY), aggregateOrders(rawAsks, Side.SELL)));
+
+        final List<BookOrder> all = new ArrayList<>(rawBids.size() + rawAsks.size());
+        all.addAll(rawBids);
+        all.addAll(rawAsks);
+        feed.publishOpenOrders(marketId, all);
+    }
 
-            final List<OrderBookEntry> bids = aggregateOrders(rawBids, Side.BUY);
-            final List<OrderBookEntry> asks = aggregateOrders(rawAsks, Side.SELL);
+    /**
+     * Reads both sides of a market's open orders, bids first.
+     * Shared with {@link PostgresNotifyOrderBookGateway}.
+     *
+     * @param orderRepository where open orders are read from.
+     * @param marketId        the market to read.
+     * @return the open orders.
+     * @throws RepositoryException if the orders cannot be read.
+     */
+    static List<BookOrder> openOrdersOf(final OrderRepository orderRepository, final String marketId)
+        throws RepositoryException {
+        final List<BookOrder> all = new ArrayList<>(openOrders(orderRepository, marketId, Side.BUY));
+        all.addAll(openOrders(orderRepository, marketId, Side.SELL));
+        return all;
+    }
 
-            return new OrderBook(marketId, bids, asks);
+    private static List<BookOrder> openOrders(final OrderRepository orderRepository, final String marketId,
+                                              final Side side) throws RepositoryException {
+        try {
+            final List<BookOrder> orders = orderRepository.findOpenOrdersForMarket(marketId, side);
+            final List<BookOrder> result;
+            if (orders == null) {
+                result = new ArrayList<>();
+            }
+            else {
+                result = orders;
+            }
+            return result;
         }
         // -@cs[IllegalCatch] Catching generic Exception to wrap into RepositoryException for callers
         catch (final Exception ex) {
@@ -73,58 +153,55 @@ public class PostgresOrderBookGateway implements OrderBookGateway {
     }
 
     /**
-     * Aggregates orders by price, rounding to 2 decimal places to ensure correct grouping.
+     * Aggregates orders by tick price in a single pass; ticks are exact, so no
+     * rounding is needed to group. Levels come out sorted best-first.
      *
      * @param orders The list of raw orders to aggregate.
      * @param side   The side of the book (BUY/SELL) for sorting.
      * @return A list of aggregated OrderBookEntry objects.
      */
-    private List<OrderBookEntry> aggregateOrders(final List<BookOrder> orders, final Side side) {
+    static List<OrderBookEntry> aggregateOrders(final List<BookOrder> orders, final Side side) {
         final List<OrderBookEntry> result;
         if (orders == null || orders.isEmpty()) {
             result = new ArrayList<>();
         }
         else {
-            final Map<Double, Double> aggregated = orders.stream()
-                .collect(Collectors.groupingBy(
-                    this::getRoundedPrice,
-                    Collectors.summingDouble(BookOrder::getRemainingQty)
-                ));
-
-            final Comparator<OrderBookEntry> comparator;
+            final TreeMap<Long, double[]> levels;
             if (side == Side.BUY) {
-                comparator = Comparator.comparingDouble(OrderBookEntry::getPrice).reversed();
+                levels = new TreeMap<>(Comparator.reverseOrder());
             }
             else {
-                comparator = Comparator.comparingDouble(OrderBookEntry::getPrice);
+                levels = new TreeMap<>();
+            }
+            for (final BookOrder order : orders) {
+                // one mutable running total per level instead of re-boxing a Double per order
+                levels.computeIfAbsent(getLevelTicks(order), ticks -> new double[1])[0] += order.getRemainingQty();
             }
 
-            result = aggregated.entrySet().stream()
-                .map(entry -> new OrderBookEntry(side, entry.getKey(), entry.getValue()))
-                .sorted(comparator)
-                .collect(Collectors.toList());
+            result = new ArrayList<>(levels.size());
+            for (final Map.Entry<Long, double[]> level : levels.entrySet()) {
+                result.add(OrderBookEntry.ofTicks(side, level.getKey(), level.getValue()[0]));
+            }
         }
         return result;
     }
 
-    private double getRoundedPrice(final BookOrder order) {
-        final double price;
-        if (order.getPrice() == null) {
-            price = 0.0;
+    private static long getLevelTicks(final BookOrder order) {
+        final long ticks;
+        if (order.isMarket()) {
+            ticks = 0L;
         }
         else {
-            // Round to 2 decimal places to ensure consistent grouping
-            price = Math.round(order.getPrice() * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+            ticks = order.getPriceTicks();
         }
-        return price;
+        return ticks;
     }
 
     @Override
     public void subscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        subscribers.computeIfAbsent(marketId, key -> new CopyOnWriteArrayList<>()).add(subscriber);
         // Send immediate initial data
         try {
-            subscriber.onOrderBookUpdated(getSnapshot(marketId));
+            feed.subscribe(marketId, subscriber, snapshotOf(orderRepository, marketId));
         }
         catch (final RepositoryException ex) {
             subscriber.onConnectionError("Could not fetch initial data");
@@ -133,32 +210,50 @@ public class PostgresOrderBookGateway implements OrderBookGateway {
 
     @Override
     public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        if (subscribers.containsKey(marketId)) {
-            subscribers.get(marketId).remove(subscriber);
-        }
+        feed.unsubscribe(marketId, subscriber);
     }
 
-    private void notifySubscribers() {
-        for (final String marketId : subscribers.keySet()) {
-            final List<OrderBookSubscriber> list = subscribers.get(marketId);
+    @Override
+    public void subscribeOpenOrders(final String marketId, final String userId,
+                                    final OpenOrdersSubscriber subscriber) {
+        List<BookOrder> current;
+        try {
+            current = openOrdersOf(orderRepository, marketId);
+        }
+        catch (final RepositoryException ex) {
+            // sent with the next successful read instead
+            current = null;
+        }
+        feed.subscribeOpenOrders(marketId, userId, subscriber, current);
+    }
 
-            // Cleanup empty subscriptions
-            if (list == null || list.isEmpty()) {
-                subscribers.remove(marketId);
-                continue;
-            }
+    @Override
+    public void unsubscribeOpenOrders(final String marketId, final String userId,
+                                      final OpenOrdersSubscriber subscriber) {
+        feed.unsubscribeOpenOrders(marketId, userId, subscriber);
+    }
 
+    /**
+     * Polls every watched market once.
+     *
+     * @throws RepositoryException after the other markets were polled, if a
+     *     market could not be read, so that the scheduler backs off.
+     */
+    private void notifySubscribers() throws RepositoryException {
+        RepositoryException failure = null;
+        for (final String marketId : feed.markets()) {
             try {
-                final OrderBook snapshot = getSnapshot(marketId);
-                for (final OrderBookSubscriber sub : list) {
-                    sub.onOrderBookUpdated(snapshot);
-                }
+                publish(orderRepository, feed, marketId);
             }
             catch (final RepositoryException ex) {
-                for (final OrderBookSubscriber sub : list) {
+                failure = ex;
+                for (final OrderBookSubscriber sub : feed.subscribers(marketId)) {
                     sub.onConnectionError("Error refreshing: " + ex.getMessage());
                 }
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
     }
 }
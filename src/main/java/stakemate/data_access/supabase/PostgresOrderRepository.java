@@ -9,14 +9,25 @@ import java.time.Instant;
 
 import stakemate.engine.BookOrder;
 import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
+import stakemate.entity.PriceTicks;
 import stakemate.entity.Side;
 import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.List;
-import java.time.Instant;
 
 public class PostgresOrderRepository implements OrderRepository {
 
+    static final String INSERT_SQL = "INSERT INTO orders (" +
+            "id, user_id, market_id, side, price, " +
+            "original_qty, remaining_qty, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String UPDATE_REMAINING_SQL = "UPDATE orders SET remaining_qty = ? WHERE id = ?";
+
+    static final String REDUCE_REMAINING_SQL = "UPDATE orders " +
+            "SET remaining_qty = remaining_qty - ? " +
+            "WHERE id = ? AND remaining_qty > 0";
+
     private final DataSource dataSource;
 
     public PostgresOrderRepository(DataSource dataSource) {
@@ -25,26 +36,10 @@ public class PostgresOrderRepository implements OrderRepository {
 
     @Override
     public void save(BookOrder order) {
-        final String sql = "INSERT INTO orders (" +
-                "id, user_id, market_id, side, price, " +
-                "original_qty, remaining_qty, timestamp) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, order.getId());
-            stmt.setString(2, order.getUserId());
-            stmt.setString(3, order.getMarketId());
-            stmt.setString(4, order.getSide().name());
-            if (order.getPrice() == null)
-                stmt.setObject(5, null);
-            else
-                stmt.setDouble(5, order.getPrice());
-            stmt.setDouble(6, order.getOriginalQty());
-            stmt.setDouble(7, order.getRemainingQty());
-            stmt.setTimestamp(8, Timestamp.from(order.getTimestamp()));
+                PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
 
+            bindInsert(stmt, order);
             stmt.executeUpdate();
 
         } catch (SQLException e) {
@@ -53,6 +48,47 @@ public class PostgresOrderRepository implements OrderRepository {
         }
     }
 
+    /**
+     * Inserts all orders with one batched statement in one transaction.
+     */
+    @Override
+    public void saveAll(List<BookOrder> orders) {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                for (BookOrder order : orders) {
+                    bindInsert(stmt, order);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to save orders", e);
+        }
+    }
+
+    /**
+     * Binds an order to {@link #INSERT_SQL}; shared with the batched write paths.
+     */
+    static void bindInsert(PreparedStatement stmt, BookOrder order) throws SQLException {
+        stmt.setString(1, order.getId());
+        stmt.setString(2, order.getUserId());
+        stmt.setString(3, order.getMarketId());
+        stmt.setString(4, order.getSide().name());
+        if (order.isMarket())
+            stmt.setObject(5, null);
+        else
+            stmt.setDouble(5, PriceTicks.toPrice(order.getPriceTicks()));
+        stmt.setDouble(6, order.getOriginalQty());
+        stmt.setDouble(7, order.getRemainingQty());
+        stmt.setTimestamp(8, Timestamp.from(order.getTimestamp()));
+    }
+
     @Override
     public BookOrder findById(String orderId) {
         final String sql = "SELECT id, user_id, market_id, side, price, " +
@@ -69,25 +105,7 @@ public class PostgresOrderRepository implements OrderRepository {
                     return null;
                 }
 
-                String id = rs.getString("id");
-                String userId = rs.getString("user_id");
-                String marketId = rs.getString("market_id");
-                String sideStr = rs.getString("side");
-                Double price = (Double) rs.getObject("price");
-                double originalQty = rs.getDouble("original_qty");
-                double remainingQty = rs.getDouble("remaining_qty");
-                Instant timestamp = rs.getTimestamp("timestamp").toInstant();
-
-                // ★ This uses your reconstruction constructor ★
-                return new BookOrder(
-                        id,
-                        userId,
-                        marketId,
-                        stakemate.entity.Side.valueOf(sideStr),
-                        price,
-                        originalQty,
-                        remainingQty,
-                        timestamp);
+                return mapRowToBookOrder(rs);
             }
 
         } catch (SQLException e) {
@@ -153,10 +171,8 @@ public class PostgresOrderRepository implements OrderRepository {
 
     @Override
     public void updateRemainingQty(String orderId, double newRemainingQty) {
-        final String sql = "UPDATE orders SET remaining_qty = ? WHERE id = ?";
-
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+                PreparedStatement stmt = conn.prepareStatement(UPDATE_REMAINING_SQL)) {
 
             stmt.setDouble(1, newRemainingQty);
             stmt.setString(2, orderId);
@@ -175,7 +191,9 @@ public class PostgresOrderRepository implements OrderRepository {
         String userId = rs.getString("user_id");
         String marketId = rs.getString("market_id");
         String sideStr = rs.getString("side");
-        Double price = (Double) rs.getObject("price");
+        // NULL price => market order; prices are converted to ticks here, at the JDBC edge
+        double price = rs.getDouble("price");
+        boolean market = rs.wasNull();
         double originalQty = rs.getDouble("original_qty");
         double remainingQty = rs.getDouble("remaining_qty");
         Instant ts = rs.getTimestamp("timestamp").toInstant();
@@ -185,7 +203,8 @@ public class PostgresOrderRepository implements OrderRepository {
                 userId,
                 marketId,
                 stakemate.entity.Side.valueOf(sideStr),
-                price,
+                PriceTicks.toTicks(price),
+                market,
                 originalQty,
                 remainingQty,
                 ts);
@@ -231,12 +250,8 @@ public class PostgresOrderRepository implements OrderRepository {
 
     @Override
     public void reduceRemainingQty(String orderId, double executedQty) {
-        final String sql = "UPDATE orders " +
-                "SET remaining_qty = remaining_qty - ? " +
-                "WHERE id = ? AND remaining_qty > 0";
-
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+                PreparedStatement stmt = conn.prepareStatement(REDUCE_REMAINING_SQL)) {
 
             stmt.setDouble(1, executedQty);
             stmt.setString(2, orderId);
@@ -11,6 +11,10 @@ import java.sql.Timestamp;
 
 public class PostgresPositionRepository implements PositionRepository {
 
+    static final String INSERT_SQL = "INSERT INTO positions (" +
+            "user_id, asset_name, amount, settled, market_id, price, \"won?\", side) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
     private final DataSource ds;
 
     public PostgresPositionRepository(DataSource ds) {
@@ -23,24 +27,11 @@ public class PostgresPositionRepository implements PositionRepository {
                 + ", executedAmount=" + executedAmount
                 + ", executedPrice=" + executedPrice);
 
-        final String sql = "INSERT INTO positions (" +
-                "user_id, asset_name, amount, settled, market_id, price, \"won?\", side) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
         try (Connection conn = ds.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setObject(1, java.util.UUID.fromString(order.getUserId()), java.sql.Types.OTHER); // uuid
-            ps.setString(2, order.getMarketId()); // asset_name
-            ps.setDouble(3, executedAmount); // amount filled in trade
-            ps.setBoolean(4, false); // settled = false initially
-            ps.setString(5, order.getMarketId()); // market_id
-
-            ps.setDouble(6, executedPrice); // <-- ALWAYS write the ratio, even for market orders
-
-            ps.setNull(7, java.sql.Types.BOOLEAN); // won is unknown until settlement logic
-            ps.setString(8, order.getSide().name()); // BUY or SELL
+                PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
+            bindInsert(ps, order.getUserId(), order.getMarketId(), order.getSide().name(),
+                    executedAmount, executedPrice);
             ps.executeUpdate();
             System.out.println("Position inserted for order " + order.getId());
 
@@ -49,4 +40,21 @@ public class PostgresPositionRepository implements PositionRepository {
             throw new RuntimeException("Failed to save position", e);
         }
     }
+
+    /**
+     * Binds one executed fill to {@link #INSERT_SQL}; shared with the batched write paths.
+     */
+    static void bindInsert(PreparedStatement ps, String userId, String marketId, String side,
+            double executedAmount, double executedPrice) throws SQLException {
+        ps.setObject(1, java.util.UUID.fromString(userId), java.sql.Types.OTHER); // uuid
+        ps.setString(2, marketId); // asset_name
+        ps.setDouble(3, executedAmount); // amount filled in trade
+        ps.setBoolean(4, false); // settled = false initially
+        ps.setString(5, marketId); // market_id
+
+        ps.setDouble(6, executedPrice); // <-- ALWAYS write the ratio, even for market orders
+
+        ps.setNull(7, java.sql.Types.BOOLEAN); // won is unknown until settlement logic
+        ps.setString(8, side); // BUY or SELL
+    }
 }
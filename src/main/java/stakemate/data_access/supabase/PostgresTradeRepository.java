@@ -0,0 +1,348 @@
+package stakemate.data_access.supabase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+
+import stakemate.engine.Trade;
+import stakemate.entity.PriceTicks;
+import stakemate.use_case.PlaceOrderUseCase.TradeRepository;
+
+/**
+ * Trade history in the {@code trades} table.
+ * <p>
+ * {@link #saveAll} only queues trades in memory; a daemon flusher streams each
+ * batch of up to {@code maxBatch} trades with one {@code COPY} into a temporary
+ * staging table and moves them into {@code trades} in the same transaction,
+ * skipping ids that are already there. The matching path never waits on the
+ * database, and retrying a batch whose commit went through but was not
+ * acknowledged does no harm.
+ * <p>
+ * Connection failures are retried for as long as they last; a batch failing for
+ * another reason is given up after {@value #MAX_ATTEMPTS} attempts and logged.
+ * Trades {@link #close()} cannot write in time are logged the same way; trades
+ * still queued when the process dies without it are lost. The fills and
+ * positions they came from are persisted separately.
+ */
+public class PostgresTradeRepository implements TradeRepository, AutoCloseable {
+
+    static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS trades ("
+            + "id text PRIMARY KEY, "
+            + "market_id text NOT NULL, "
+            + "buy_order_id text NOT NULL, "
+            + "sell_order_id text NOT NULL, "
+            + "price numeric(12, 2) NOT NULL, "
+            + "size double precision NOT NULL, "
+            + "executed_at timestamptz NOT NULL)";
+    static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS trades_market_executed_at ON trades (market_id, executed_at)";
+
+    private static final String COLUMNS = "id, market_id, buy_order_id, sell_order_id, price, size, executed_at";
+    // per session; emptied by every commit, so a pooled connection starts each batch clean
+    static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS trades_staging "
+            + "(LIKE trades INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    static final String COPY_SQL = "COPY trades_staging (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    static final String MOVE_SQL = "INSERT INTO trades (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM trades_staging ON CONFLICT (id) DO NOTHING";
+    private static final String RECENT_SQL = "SELECT id, market_id, buy_order_id, sell_order_id, price, size, "
+            + "executed_at FROM trades WHERE market_id = ? ORDER BY executed_at DESC LIMIT ?";
+    private static final String VWAP_SQL = "SELECT SUM(price * size) / NULLIF(SUM(size), 0) FROM trades "
+            + "WHERE market_id = ? AND executed_at >= ?";
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+
+    private final DataSource dataSource;
+    private final long flushIntervalMs;
+    private final int maxBatch;
+    private final long retryDelayMs;
+    private final long drainTimeoutMs;
+
+    private final Deque<Trade> pending = new ArrayDeque<>();
+    private final Thread flusher;
+    // trades taken by the flusher but not yet committed
+    private int inFlight;
+    private boolean closed;
+
+    public PostgresTradeRepository(DataSource dataSource, long flushIntervalMs, int maxBatch) {
+        this(dataSource, flushIntervalMs, maxBatch, RETRY_DELAY_MS, DRAIN_TIMEOUT_MS);
+    }
+
+    PostgresTradeRepository(DataSource dataSource, long flushIntervalMs, int maxBatch, long retryDelayMs,
+            long drainTimeoutMs) {
+        this.dataSource = dataSource;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatch = maxBatch;
+        this.retryDelayMs = retryDelayMs;
+        this.drainTimeoutMs = drainTimeoutMs;
+        this.flusher = new Thread(this::flushLoop, "trades-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Creates the {@code trades} table and its (market, time) index if missing.
+     */
+    public static void createTable(DataSource dataSource) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+            stmt.execute(CREATE_INDEX_SQL);
+        }
+    }
+
+    @Override
+    public synchronized void saveAll(List<Trade> trades) {
+        if (closed) {
+            throw new IllegalStateException("Trade repository is closed");
+        }
+        pending.addAll(trades);
+        notifyAll();
+    }
+
+    @Override
+    public List<Trade> findRecentForMarket(String marketId, int limit) {
+        drain();
+        final List<Trade> result = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(RECENT_SQL)) {
+            ps.setString(1, marketId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new Trade(rs.getString("id"),
+                            rs.getString("market_id"),
+                            rs.getString("buy_order_id"),
+                            rs.getString("sell_order_id"),
+                            PriceTicks.toTicks(rs.getDouble("price")),
+                            rs.getDouble("size"),
+                            rs.getTimestamp("executed_at").toInstant()));
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Failed to load trades for market " + marketId, e);
+        }
+        return result;
+    }
+
+    @Override
+    public double volumeWeightedPrice(String marketId, Instant since) {
+        drain();
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(VWAP_SQL)) {
+            ps.setString(1, marketId);
+            ps.setTimestamp(2, Timestamp.from(since));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                final double vwap = rs.getDouble(1);
+                return rs.wasNull() ? Double.NaN : vwap;
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Failed to compute VWAP for market " + marketId, e);
+        }
+    }
+
+    /**
+     * Blocks until every trade saved so far is committed (or given up). Readers
+     * call this first so they see the latest fills.
+     *
+     * @throws IllegalStateException if that takes longer than {@value #DRAIN_TIMEOUT_MS} ms,
+     *                               e.g. while the database is unreachable.
+     */
+    public synchronized void drain() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        boolean interrupted = false;
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    throw new IllegalStateException("Trades were not written within " + drainTimeoutMs
+                            + " ms (" + pendingCount() + " pending)");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, left);
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size() + inFlight;
+    }
+
+    /**
+     * Flushes what is queued and stops the flusher. Trades that could not be
+     * written within the drain timeout are logged as csv rows.
+     */
+    @Override
+    public void close() {
+        try {
+            drain();
+        }
+        catch (IllegalStateException e) {
+            System.err.println("Warning: closing trade repository with unwritten trades: " + e.getMessage());
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        // wakes the flusher from a retry delay
+        flusher.interrupt();
+        try {
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // the flusher has put back a batch it did not write
+            if (!pending.isEmpty()) {
+                System.err.println("Warning: dropping " + pending.size() + " unwritten trades:"
+                        + System.lineSeparator() + toCsv(new ArrayList<>(pending)));
+            }
+        }
+    }
+
+    private void flushLoop() {
+        // failed attempts at the batch at the head of the queue
+        int attempts = 0;
+        while (true) {
+            final List<Trade> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            boolean done = false;
+            try {
+                copy(batch);
+                done = true;
+            }
+            catch (IOException e) {
+                System.err.println("Trade flush failed, retrying: " + e.getMessage());
+            }
+            catch (SQLException e) {
+                if (SqlErrors.isTransient(e) || ++attempts < MAX_ATTEMPTS) {
+                    System.err.println("Trade flush failed, retrying: " + e.getMessage());
+                }
+                else {
+                    // the rows go to the log so they can still be loaded by hand
+                    System.err.println("Warning: giving up on " + batch.size() + " trades after " + MAX_ATTEMPTS
+                            + " failures: " + e.getMessage() + System.lineSeparator() + toCsv(batch));
+                    done = true;
+                }
+            }
+            synchronized (this) {
+                if (!done) {
+                    // put the batch back in front, in order
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        pending.addFirst(batch.get(i));
+                    }
+                }
+                inFlight = 0;
+                notifyAll();
+            }
+            if (done) {
+                attempts = 0;
+            }
+            else {
+                sleepQuietly(retryDelayMs);
+            }
+        }
+    }
+
+    private synchronized List<Trade> nextBatch() {
+        while (pending.isEmpty() && !closed) {
+            try {
+                wait(flushIntervalMs);
+            }
+            catch (InterruptedException e) {
+                // only close() stops the flusher, and it sets closed first; queued trades stay queued
+            }
+        }
+        if (closed) {
+            // close() has drained or given up waiting
+            return null;
+        }
+        final List<Trade> batch = new ArrayList<>();
+        while (!pending.isEmpty() && batch.size() < maxBatch) {
+            batch.add(pending.pollFirst());
+        }
+        inFlight = batch.size();
+        return batch;
+    }
+
+    // overridden by tests
+    void copy(List<Trade> batch) throws SQLException, IOException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_STAGING_SQL);
+                conn.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(toCsv(batch)));
+                stmt.executeUpdate(MOVE_SQL);
+                conn.commit();
+            }
+            catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Renders trades as COPY csv rows, in the column order of {@link #COPY_SQL}.
+     */
+    static String toCsv(List<Trade> trades) {
+        final StringBuilder sb = new StringBuilder(trades.size() * 160);
+        for (Trade t : trades) {
+            appendQuoted(sb, t.getId());
+            sb.append(',');
+            appendQuoted(sb, t.getMarketId());
+            sb.append(',');
+            appendQuoted(sb, t.getBuyOrderId());
+            sb.append(',');
+            appendQuoted(sb, t.getSellOrderId());
+            sb.append(',')
+                    .append(PriceTicks.toPrice(t.getPriceTicks())).append(',')
+                    .append(t.getSize()).append(',')
+                    .append(t.getTimestamp()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
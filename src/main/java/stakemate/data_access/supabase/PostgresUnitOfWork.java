@@ -0,0 +1,128 @@
+package stakemate.data_access.supabase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.sql.DataSource;
+
+import stakemate.engine.BookOrder;
+import stakemate.engine.Trade;
+import stakemate.service.DbAccountService;
+import stakemate.use_case.PlaceOrderUseCase.UnitOfWork;
+
+/**
+ * Unit of work that buffers a matching pass and writes it on one connection in one
+ * transaction, as JDBC batches (see {@link WriteBatchExecutor}).
+ * <p>
+ * Balance changes are summed per user and written last, ordered by user id, so two
+ * passes touching the same profiles always lock them in the same order. Funds a
+ * pass means to spend are held in the shared ledger until then.
+ */
+public class PostgresUnitOfWork implements UnitOfWork {
+
+    private final DataSource dataSource;
+    private final DbAccountService accountService;
+
+    private final List<PendingWrite> writes = new ArrayList<>();
+    private final Map<String, Double> balanceDeltas = new TreeMap<>();
+    // ledger updates (reservation releases) that only apply once the writes commit
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final Map<String, Double> holds = new TreeMap<>();
+
+    public PostgresUnitOfWork(DataSource dataSource, DbAccountService accountService) {
+        this.dataSource = dataSource;
+        this.accountService = accountService;
+    }
+
+    @Override
+    public double getBalance(String userId) {
+        return accountService.getBalance(userId) + balanceDeltas.getOrDefault(userId, 0.0);
+    }
+
+    @Override
+    public boolean holdFunds(String userId, double amount) {
+        if (!accountService.holdFunds(userId, amount)) {
+            return false;
+        }
+        holds.merge(userId, amount, Double::sum);
+        return true;
+    }
+
+    @Override
+    public void updateRemainingQty(String orderId, double newRemainingQty) {
+        writes.add(PendingWrite.setRemaining(orderId, newRemainingQty));
+        if (newRemainingQty <= 0) {
+            afterCommit.add(() -> accountService.releaseOrder(orderId));
+        }
+    }
+
+    @Override
+    public void reduceRemainingQty(String orderId, double executedQty) {
+        writes.add(PendingWrite.reduceRemaining(orderId, executedQty));
+    }
+
+    @Override
+    public void savePosition(BookOrder order, double executedAmount, double executedPrice) {
+        writes.add(PendingWrite.insertPosition(order, executedAmount, executedPrice));
+    }
+
+    @Override
+    public void applyTrade(BookOrder buy, BookOrder sell, Trade trade) {
+        balanceDeltas.merge(buy.getUserId(), -DbAccountService.buyerCost(trade), Double::sum);
+        balanceDeltas.merge(sell.getUserId(), -DbAccountService.sellerCost(trade), Double::sum);
+        afterCommit.add(() -> {
+            accountService.releaseFilled(buy, trade.getSize());
+            accountService.releaseFilled(sell, trade.getSize());
+        });
+    }
+
+    @Override
+    public void commit() {
+        final List<PendingWrite> all = new ArrayList<>(writes);
+        for (Map.Entry<String, Double> e : balanceDeltas.entrySet()) {
+            all.add(PendingWrite.adjustBalance(e.getKey(), e.getValue()));
+        }
+        if (all.isEmpty()) {
+            afterCommit.clear();
+            return;
+        }
+
+        try {
+            // the ledger picks up the balance deltas only if the transaction commits
+            accountService.writeThrough(balanceDeltas, () -> {
+                try (Connection conn = dataSource.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        WriteBatchExecutor.execute(conn, all);
+                        conn.commit();
+                    }
+                    catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+            });
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Failed to commit matching pass", e);
+        }
+        for (Runnable r : afterCommit) {
+            r.run();
+        }
+        writes.clear();
+        balanceDeltas.clear();
+        afterCommit.clear();
+    }
+
+    @Override
+    public void releaseHolds() {
+        // after commit the deltas are in the ledger balance; after a failure nothing was spent
+        for (Map.Entry<String, Double> e : holds.entrySet()) {
+            accountService.releaseHold(e.getKey(), e.getValue());
+        }
+        holds.clear();
+    }
+}
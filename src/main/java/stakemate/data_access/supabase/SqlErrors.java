@@ -0,0 +1,25 @@
+package stakemate.data_access.supabase;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
+/**
+ * Classifies database errors for the background flushers.
+ */
+final class SqlErrors {
+
+    private SqlErrors() {
+    }
+
+    /**
+     * Connection problems, deadlocks, lack of resources: worth retrying for as
+     * long as they last, unlike errors caused by the data being written.
+     */
+    static boolean isTransient(SQLException e) {
+        final String state = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || state != null && (state.startsWith("08") || state.startsWith("40")
+                        || state.startsWith("53") || state.startsWith("57"));
+    }
+}
@@ -4,22 +4,56 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 /**
- * Factory for creating Supabase database connections.
- * Manages connection configuration and provides reusable connections.
+ * Factory for Supabase database connections.
+ * Owns one Hikari connection pool (created on first use); every connection handed
+ * out by {@link #createConnection()} or {@link #getDataSource()} is borrowed from it,
+ * so repositories that share a factory share the pool and its TLS sessions.
  */
 public class SupabaseClientFactory {
 
+    /**
+     * How the JDBC driver may cache prepared statements.
+     */
+    public enum StatementCacheMode {
+        /**
+         * Session pooler or direct connection: the driver promotes hot statements to
+         * server-side prepared statements (driver defaults).
+         */
+        SESSION,
+        /**
+         * Transaction pooler (pgBouncer, port 6543): consecutive transactions may run
+         * on different backends, so server-side prepared statements are disabled.
+         * The driver still caches parsed statements on the client.
+         */
+        TRANSACTION
+    }
+
     // Default values (can be overridden by environment variables)
     private static final String DEFAULT_HOST = "aws-1-ca-central-1.pooler.supabase.com";
     private static final String DEFAULT_PORT = "5432";
     private static final String DEFAULT_DATABASE = "postgres";
+    private static final String DEFAULT_POOL_SIZE = "10";
+    private static final String TRANSACTION_POOLER_PORT = "6543";
+    private static final String POOL_NAME = "stakemate-db";
+
+    private static SupabaseClientFactory shared;
 
     private final String host;
     private final String port;
     private final String database;
     private final String user;
     private final String password;
+    private final int maxPoolSize;
+    private final StatementCacheMode statementCacheMode;
+
+    private volatile HikariDataSource dataSource;
 
     /**
      * Creates a factory using environment variables or defaults.
@@ -29,6 +63,9 @@ public class SupabaseClientFactory {
      * - SUPABASE_DB_NAME
      * - SUPABASE_DB_USER
      * - SUPABASE_DB_PASSWORD
+     * - SUPABASE_DB_POOL_SIZE (default 10)
+     * - SUPABASE_DB_STATEMENT_CACHE ("session" or "transaction"; defaults to
+     *   "transaction" on port 6543, "session" otherwise)
      */
     public SupabaseClientFactory() {
         this.host = getEnvOrDefault("SUPABASE_DB_HOST", DEFAULT_HOST);
@@ -36,6 +73,10 @@ public class SupabaseClientFactory {
         this.database = getEnvOrDefault("SUPABASE_DB_NAME", DEFAULT_DATABASE);
         this.user = getEnvOrDefault("SUPABASE_DB_USER", "postgres.huqjovbougtvwlqtxppo");
         this.password = getEnvOrDefault("SUPABASE_DB_PASSWORD", "stakematedb");
+        this.maxPoolSize = Integer.parseInt(getEnvOrDefault("SUPABASE_DB_POOL_SIZE", DEFAULT_POOL_SIZE));
+        this.statementCacheMode = StatementCacheMode.valueOf(
+            getEnvOrDefault("SUPABASE_DB_STATEMENT_CACHE", defaultStatementCacheMode(port).name())
+                .toUpperCase());
     }
 
     /**
@@ -53,20 +94,113 @@ public class SupabaseClientFactory {
         this.database = database;
         this.user = user;
         this.password = password;
+        this.maxPoolSize = Integer.parseInt(DEFAULT_POOL_SIZE);
+        this.statementCacheMode = defaultStatementCacheMode(port);
+    }
+
+    /**
+     * The process-wide factory built from environment variables; use it so the whole
+     * application shares one pool.
+     * @return the shared factory
+     */
+    public static synchronized SupabaseClientFactory shared() {
+        if (shared == null) {
+            shared = new SupabaseClientFactory();
+        }
+        return shared;
     }
 
     /**
-     * Creates a new database connection.
+     * Borrows a connection from the pool; closing it returns it to the pool.
      *
-     * @return A new Connection to the Supabase database
+     * @return A pooled Connection to the Supabase database
      * @throws SQLException if connection fails
      */
     public Connection createConnection() throws SQLException {
-        System.out.println("[SupabaseClientFactory] Opening new database connection...");
-        final String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s?\n"
-                + "prepareThreshold=0&preparedStatementCacheQueries=0",
-            host, port, database);
-        return DriverManager.getConnection(jdbcUrl, user, password);
+        return getDataSource().getConnection();
+    }
+
+    /**
+     * Opens a connection of its own, outside the pool, for a session that stays
+     * open as long as the process does (e.g. one that LISTENs). Holding a pooled
+     * connection for that would leave the pool one short for good.
+     *
+     * @return an unpooled connection; closing it closes the session
+     * @throws SQLException if connection fails
+     */
+    public Connection createDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl(), user, password);
+    }
+
+    /**
+     * The pooled DataSource behind this factory, created on first use.
+     * @return the pooled DataSource
+     */
+    public DataSource getDataSource() {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (this) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = new HikariDataSource(buildConfig());
+                    dataSource = ds;
+                }
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Live pool metrics (active, idle, waiting threads, total connections), also
+     * registered over JMX as {@code com.zaxxer.hikari:type=Pool (stakemate-db)}.
+     * @return the pool's MXBean, or null if the pool has not been created yet
+     */
+    public HikariPoolMXBean getPoolMetrics() {
+        final HikariDataSource ds = dataSource;
+        if (ds == null) {
+            return null;
+        }
+        return ds.getHikariPoolMXBean();
+    }
+
+    public StatementCacheMode getStatementCacheMode() {
+        return statementCacheMode;
+    }
+
+    /**
+     * Closes the pool, if it was ever created.
+     */
+    public synchronized void close() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    String jdbcUrl() {
+        String url = String.format("jdbc:postgresql://%s:%s/%s", host, port, database);
+        if (statementCacheMode == StatementCacheMode.TRANSACTION) {
+            url += "?prepareThreshold=0";
+        }
+        return url;
+    }
+
+    private HikariConfig buildConfig() {
+        final HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setJdbcUrl(jdbcUrl());
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setRegisterMbeans(true);
+        return config;
+    }
+
+    private static StatementCacheMode defaultStatementCacheMode(final String port) {
+        if (TRANSACTION_POOLER_PORT.equals(port)) {
+            return StatementCacheMode.TRANSACTION;
+        }
+        return StatementCacheMode.SESSION;
     }
 
     /**
@@ -26,7 +26,7 @@ public class SupabaseCommentRepository implements CommentRepository {
     private final SupabaseClientFactory clientFactory;
 
     public SupabaseCommentRepository() {
-        this.clientFactory = new SupabaseClientFactory();
+        this.clientFactory = SupabaseClientFactory.shared();
     }
 
     public SupabaseCommentRepository(SupabaseClientFactory factory) {
@@ -8,38 +8,55 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
 
 import stakemate.entity.OrderBook;
 import stakemate.entity.OrderBookEntry;
+import stakemate.entity.PriceTicks;
 import stakemate.entity.Side;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
+import stakemate.use_case.view_market.OrderBookFeed;
 import stakemate.use_case.view_market.OrderBookGateway;
 import stakemate.use_case.view_market.OrderBookSubscriber;
 import stakemate.use_case.view_market.RepositoryException;
 
-public class SupabaseOrderBookGateway implements OrderBookGateway {
+public class SupabaseOrderBookGateway implements OrderBookGateway, AutoCloseable {
 
     private static final long POLLING_INTERVAL = 3000L;
 
     private final SupabaseClientFactory factory;
-    private final Map<String, List<OrderBookSubscriber>> subscribers = new ConcurrentHashMap<>();
-    private final Timer pollingTimer;
+    private final OrderBookFeed feed = new OrderBookFeed();
+    private final ScheduledJob polling;
 
     public SupabaseOrderBookGateway(final SupabaseClientFactory factory) {
+        this(factory, Scheduler.shared());
+    }
+
+    public SupabaseOrderBookGateway(final SupabaseClientFactory factory, final Scheduler scheduler) {
         this.factory = factory;
-        this.pollingTimer = new Timer("SupabaseOrderBookPoller", true);
-        this.pollingTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                notifySubscribers();
-            }
-        }, POLLING_INTERVAL, POLLING_INTERVAL);
+        this.polling = scheduler.schedule("supabase-order-book-poll", POLLING_INTERVAL, POLLING_INTERVAL,
+            this::notifySubscribers);
+    }
+
+    /**
+     * Stops polling, waiting for a poll in progress.
+     */
+    @Override
+    public void close() {
+        polling.cancelAndAwait();
     }
 
     @Override
     public OrderBook getSnapshot(final String marketId) throws RepositoryException {
+        // a watched market answers with the snapshot its subscribers' deltas build on
+        OrderBook result = feed.latestIfWatched(marketId);
+        if (result == null) {
+            result = query(marketId);
+        }
+        return result;
+    }
+
+    private OrderBook query(final String marketId) throws RepositoryException {
         // DEBUG PRINT to help confirm IDs match
         System.out.println("DEBUG: Fetching orders for Market ID: " + marketId);
 
@@ -63,26 +80,29 @@ public class SupabaseOrderBookGateway implements OrderBookGateway {
 
     @Override
     public void subscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        subscribers.computeIfAbsent(marketId, key -> new ArrayList<>()).add(subscriber);
+        try {
+            feed.subscribe(marketId, subscriber, query(marketId));
+        }
+        catch (final RepositoryException ex) {
+            subscriber.onConnectionError("Sync Error");
+        }
     }
 
     @Override
     public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
-        if (subscribers.containsKey(marketId)) {
-            subscribers.get(marketId).remove(subscriber);
-        }
+        feed.unsubscribe(marketId, subscriber);
     }
 
     private OrderBook createOrderBookFromResultSet(final String marketId,
                                                    final ResultSet resultSet) throws SQLException {
-        final Map<Double, Double> buyAgg = new HashMap<>();
-        final Map<Double, Double> sellAgg = new HashMap<>();
+        final Map<Long, Double> buyAgg = new HashMap<>();
+        final Map<Long, Double> sellAgg = new HashMap<>();
         int rowCount = 0;
 
         while (resultSet.next()) {
             rowCount++;
             final String sideStr = resultSet.getString("side");
-            final double price = resultSet.getDouble("price");
+            final long price = PriceTicks.toTicks(resultSet.getDouble("price"));
             final double qty = resultSet.getDouble("remaining_qty");
 
             if ("BUY".equalsIgnoreCase(sideStr)) {
@@ -98,33 +118,35 @@ public class SupabaseOrderBookGateway implements OrderBookGateway {
         }
 
         final List<OrderBookEntry> bids = new ArrayList<>();
-        buyAgg.forEach((price, quantity) -> bids.add(new OrderBookEntry(Side.BUY, price, quantity)));
+        buyAgg.forEach((price, quantity) -> bids.add(OrderBookEntry.ofTicks(Side.BUY, price, quantity)));
 
         final List<OrderBookEntry> asks = new ArrayList<>();
-        sellAgg.forEach((price, quantity) -> asks.add(new OrderBookEntry(Side.SELL, price, quantity)));
+        sellAgg.forEach((price, quantity) -> asks.add(OrderBookEntry.ofTicks(Side.SELL, price, quantity)));
 
         return new OrderBook(marketId, bids, asks);
     }
 
-    private void notifySubscribers() {
-        for (String marketId : subscribers.keySet()) {
-            final List<OrderBookSubscriber> marketSubs = subscribers.get(marketId);
-            if (marketSubs == null || marketSubs.isEmpty()) {
-                continue;
-            }
+    private void notifySubscribers() throws RepositoryException {
+        RepositoryException failure = null;
+        for (String marketId : feed.markets()) {
+            final List<OrderBookSubscriber> marketSubs = feed.subscribers(marketId);
 
             try {
-                final OrderBook snapshot = getSnapshot(marketId);
+                feed.publish(query(marketId));
                 for (OrderBookSubscriber sub : marketSubs) {
-                    sub.onOrderBookUpdated(snapshot);
                     sub.onConnectionRestored();
                 }
             }
             catch (final RepositoryException ex) {
+                failure = ex;
                 for (OrderBookSubscriber sub : marketSubs) {
                     sub.onConnectionError("Sync Error");
                 }
             }
         }
+        // lets the scheduler back off while the database is unreachable
+        if (failure != null) {
+            throw failure;
+        }
     }
 }
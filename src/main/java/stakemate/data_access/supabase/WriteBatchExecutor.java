@@ -0,0 +1,87 @@
+package stakemate.data_access.supabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import stakemate.service.DbAccountService;
+
+/**
+ * Runs queued writes as JDBC batches, preserving their order.
+ * Each run of consecutive writes of the same kind becomes one prepared statement
+ * and one {@code executeBatch()} round trip.
+ */
+final class WriteBatchExecutor {
+
+    // re-applying a spooled insert after a crash must not fail the whole batch
+    private static final String INSERT_ORDER_SQL = PostgresOrderRepository.INSERT_SQL
+            + " ON CONFLICT (id) DO NOTHING";
+
+    private WriteBatchExecutor() {
+    }
+
+    /**
+     * Executes {@code writes} on {@code conn}; the caller owns the transaction.
+     */
+    static void execute(Connection conn, List<PendingWrite> writes) throws SQLException {
+        int start = 0;
+        while (start < writes.size()) {
+            PendingWrite.Kind kind = writes.get(start).getKind();
+            int end = start;
+            while (end < writes.size() && writes.get(end).getKind() == kind) {
+                end++;
+            }
+            executeRun(conn, kind, writes.subList(start, end));
+            start = end;
+        }
+    }
+
+    private static void executeRun(Connection conn, PendingWrite.Kind kind, List<PendingWrite> run)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sqlFor(kind))) {
+            for (PendingWrite w : run) {
+                switch (kind) {
+                    case INSERT_ORDER:
+                        PostgresOrderRepository.bindInsert(stmt, w.toOrder());
+                        break;
+                    case SET_REMAINING:
+                    case REDUCE_REMAINING:
+                        stmt.setDouble(1, w.getQty());
+                        stmt.setString(2, w.getOrderId());
+                        break;
+                    case INSERT_POSITION:
+                        PostgresPositionRepository.bindInsert(stmt, w.getUserId(), w.getMarketId(),
+                                w.getSide(), w.getExecutedAmount(), w.getExecutedPrice());
+                        break;
+                    case ADJUST_BALANCE:
+                        stmt.setDouble(1, w.getQty());
+                        stmt.setObject(2, UUID.fromString(w.getUserId()));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown write kind: " + kind);
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static String sqlFor(PendingWrite.Kind kind) {
+        switch (kind) {
+            case INSERT_ORDER:
+                return INSERT_ORDER_SQL;
+            case SET_REMAINING:
+                return PostgresOrderRepository.UPDATE_REMAINING_SQL;
+            case REDUCE_REMAINING:
+                return PostgresOrderRepository.REDUCE_REMAINING_SQL;
+            case INSERT_POSITION:
+                return PostgresPositionRepository.INSERT_SQL;
+            case ADJUST_BALANCE:
+                return DbAccountService.ADJUST_BALANCE_SQL;
+            default:
+                throw new IllegalStateException("Unknown write kind: " + kind);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package stakemate.data_access.supabase;
+
+import java.util.List;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.Side;
+import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
+
+/**
+ * OrderRepository whose writes go through a {@link WriteBehindQueue}.
+ * Reads wait for queued writes to commit and then hit the wrapped repository,
+ * so callers always see their own writes.
+ */
+public class WriteBehindOrderRepository implements OrderRepository {
+
+    private final OrderRepository delegate;
+    private final WriteBehindQueue queue;
+
+    public WriteBehindOrderRepository(OrderRepository delegate, WriteBehindQueue queue) {
+        this.delegate = delegate;
+        this.queue = queue;
+    }
+
+    @Override
+    public void save(BookOrder order) {
+        queue.enqueue(PendingWrite.insertOrder(order));
+    }
+
+    @Override
+    public BookOrder findById(String orderId) {
+        queue.drain();
+        return delegate.findById(orderId);
+    }
+
+    @Override
+    public List<BookOrder> findOpenOrdersForMarket(String marketId, Side side) {
+        queue.drain();
+        return delegate.findOpenOrdersForMarket(marketId, side);
+    }
+
+    @Override
+    public List<BookOrder> findOpenOrdersForUser(String userId) {
+        queue.drain();
+        return delegate.findOpenOrdersForUser(userId);
+    }
+
+    @Override
+    public void updateRemainingQty(String orderId, double newRemainingQty) {
+        queue.enqueue(PendingWrite.setRemaining(orderId, newRemainingQty));
+    }
+
+    @Override
+    public void reduceRemainingQty(String orderId, double executedQty) {
+        queue.enqueue(PendingWrite.reduceRemaining(orderId, executedQty));
+    }
+
+    @Override
+    public List<BookOrder> findOppositeSideOrders(String marketId, Side incomingSide) {
+        queue.drain();
+        return delegate.findOppositeSideOrders(marketId, incomingSide);
+    }
+}
@@ -0,0 +1,21 @@
+package stakemate.data_access.supabase;
+
+import stakemate.engine.BookOrder;
+import stakemate.use_case.PlaceOrderUseCase.PositionRepository;
+
+/**
+ * PositionRepository whose inserts are batched through a {@link WriteBehindQueue}.
+ */
+public class WriteBehindPositionRepository implements PositionRepository {
+
+    private final WriteBehindQueue queue;
+
+    public WriteBehindPositionRepository(WriteBehindQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void savePosition(BookOrder order, double executedAmount, double executedPrice) {
+        queue.enqueue(PendingWrite.insertPosition(order, executedAmount, executedPrice));
+    }
+}
@@ -0,0 +1,467 @@
+package stakemate.data_access.supabase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+/**
+ * Durable queue that persists order and position writes in the background.
+ * <p>
+ * Every write is appended to a spool file (one {@code seq<TAB>write} line) and
+ * forced to disk before {@link #enqueue} returns, then a daemon flusher commits
+ * pending writes in batches of up to {@code maxBatch}, one transaction per batch.
+ * On startup any spooled write above the last committed sequence number is
+ * replayed. That number is the larger of the local {@code write-behind.committed}
+ * file and the progress row in the database, so new writes never reuse a
+ * sequence number the database has already seen.
+ * <p>
+ * Each batch also records its highest sequence number in the
+ * {@code write_behind_progress} table, in the same transaction, and skips the
+ * writes that table says are already in. A batch retried after an ambiguous
+ * commit, or replayed after a crash, therefore applies each write once; that
+ * matters for position rows, which are plain inserts.
+ * <p>
+ * A batch that fails for a reason other than a lost connection is retried
+ * {@value #MAX_ATTEMPTS} times, then its writes are retried one at a time and a
+ * write that still fails is moved to a dead-letter file next to the spool, so
+ * one bad write cannot hold up the writes behind it.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS write_behind_progress ("
+            + "queue_id text PRIMARY KEY, "
+            + "committed_seq bigint NOT NULL)";
+    // creates the row on first use; either way the row stays locked until the batch commits
+    private static final String LOCK_PROGRESS_SQL = "INSERT INTO write_behind_progress (queue_id, committed_seq) "
+            + "VALUES (?, 0) ON CONFLICT (queue_id) DO UPDATE SET queue_id = EXCLUDED.queue_id "
+            + "RETURNING committed_seq";
+    private static final String SAVE_PROGRESS_SQL =
+            "UPDATE write_behind_progress SET committed_seq = ? WHERE queue_id = ?";
+    private static final String READ_PROGRESS_SQL =
+            "SELECT committed_seq FROM write_behind_progress WHERE queue_id = ?";
+    private static final String UNDEFINED_TABLE = "42P01";
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+
+    private final DataSource dataSource;
+    private final Path spoolFile;
+    private final Path committedFile;
+    private final Path deadLetterFile;
+    private final String queueId;
+    private final long flushIntervalMs;
+    private final int maxBatch;
+    private final long retryDelayMs;
+    private final long drainTimeoutMs;
+
+    private final FileChannel spool;
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private final Thread flusher;
+    private long lastSeq;
+    // writes up to this sequence number are committed one per batch, to find a bad one
+    private long isolateThrough;
+    private boolean closed;
+
+    /**
+     * Opens the spool in {@code spoolDir} and replays what it holds.
+     *
+     * @throws RuntimeException if the spool cannot be opened or this queue's
+     *                          progress cannot be read from the database.
+     */
+    public WriteBehindQueue(DataSource dataSource, Path spoolDir, long flushIntervalMs, int maxBatch) {
+        this(dataSource, spoolDir, flushIntervalMs, maxBatch, RETRY_DELAY_MS, DRAIN_TIMEOUT_MS);
+    }
+
+    WriteBehindQueue(DataSource dataSource, Path spoolDir, long flushIntervalMs, int maxBatch, long retryDelayMs,
+            long drainTimeoutMs) {
+        this.dataSource = dataSource;
+        this.spoolFile = spoolDir.resolve("write-behind.spool");
+        this.committedFile = spoolDir.resolve("write-behind.committed");
+        this.deadLetterFile = spoolDir.resolve("write-behind.dead");
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatch = maxBatch;
+        this.retryDelayMs = retryDelayMs;
+        this.drainTimeoutMs = drainTimeoutMs;
+        try {
+            Files.createDirectories(spoolDir);
+            this.queueId = loadQueueId(spoolDir.resolve("write-behind.id"));
+            recover(committedInDatabase());
+            this.spool = FileChannel.open(spoolFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to open write-behind spool " + spoolFile, e);
+        }
+        this.flusher = new Thread(this::flushLoop, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Creates the {@code write_behind_progress} table if missing.
+     */
+    public static void createTable(DataSource dataSource) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        }
+    }
+
+    /**
+     * Spools a write and queues it for the next batch.
+     */
+    synchronized void enqueue(PendingWrite write) {
+        if (closed) {
+            throw new IllegalStateException("Write-behind queue is closed");
+        }
+        final Entry entry = new Entry(++lastSeq, write);
+        final byte[] line = (entry.seq + "\t" + write.encode() + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            final ByteBuffer buf = ByteBuffer.wrap(line);
+            while (buf.hasRemaining()) {
+                spool.write(buf);
+            }
+            // the caller goes on as if the write were made, so it must survive a power loss
+            spool.force(false);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to spool write", e);
+        }
+        pending.addLast(entry);
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every write enqueued so far has been committed (or dead-lettered).
+     * Readers call this first so they see their own writes.
+     *
+     * @throws IllegalStateException if that takes longer than {@value #DRAIN_TIMEOUT_MS} ms,
+     *                               e.g. while the database is unreachable.
+     */
+    public synchronized void drain() {
+        final long target = lastSeq;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        boolean interrupted = false;
+        try {
+            while (!pending.isEmpty() && pending.peekFirst().seq <= target) {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    throw new IllegalStateException("Write-behind queue did not commit within "
+                            + drainTimeoutMs + " ms (" + pending.size() + " writes pending)");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, left);
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Flushes what is queued, stops the flusher and closes the spool. Writes that
+     * cannot be committed in time stay in the spool and are replayed on the next start.
+     */
+    @Override
+    public void close() {
+        try {
+            drain();
+        }
+        catch (IllegalStateException e) {
+            System.err.println("Warning: closing write-behind queue with uncommitted writes: " + e.getMessage());
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        // wakes the flusher from a retry delay
+        flusher.interrupt();
+        try {
+            flusher.join();
+            spool.close();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to close write-behind spool", e);
+        }
+    }
+
+    private void flushLoop() {
+        // failed attempts at the batch at the head of the queue
+        int attempts = 0;
+        while (true) {
+            final List<Entry> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            try {
+                commit(batch);
+                markCommitted(batch);
+                attempts = 0;
+            }
+            catch (IOException e) {
+                // the commit (if any) is recorded in the database, so the retry skips it
+                System.err.println("Write-behind flush failed, retrying: " + e.getMessage());
+                sleepQuietly(retryDelayMs);
+            }
+            catch (SQLException e) {
+                if (SqlErrors.isTransient(e) || ++attempts < MAX_ATTEMPTS) {
+                    System.err.println("Write-behind flush failed, retrying: " + e.getMessage());
+                    sleepQuietly(retryDelayMs);
+                }
+                else {
+                    attempts = 0;
+                    giveUp(batch, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles a batch that failed {@value #MAX_ATTEMPTS} times: a batch of several
+     * writes is retried one write at a time, a single write is dead-lettered.
+     */
+    private void giveUp(List<Entry> batch, SQLException cause) {
+        if (batch.size() > 1) {
+            synchronized (this) {
+                isolateThrough = batch.get(batch.size() - 1).seq;
+            }
+            System.err.println("Warning: write-behind batch keeps failing, retrying its "
+                    + batch.size() + " writes one at a time: " + cause.getMessage());
+            return;
+        }
+        final Entry entry = batch.get(0);
+        try {
+            final byte[] line = (entry.seq + "\t" + entry.write.encode() + "\t"
+                    + String.valueOf(cause.getMessage()).replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+            try (FileChannel dead = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                final ByteBuffer buf = ByteBuffer.wrap(line);
+                while (buf.hasRemaining()) {
+                    dead.write(buf);
+                }
+                dead.force(false);
+            }
+            markCommitted(batch);
+            System.err.println("Warning: write-behind moved write " + entry.seq + " to " + deadLetterFile
+                    + " after " + MAX_ATTEMPTS + " failures: " + cause.getMessage());
+        }
+        catch (IOException e) {
+            System.err.println("Write-behind dead-letter failed, retrying: " + e.getMessage());
+            sleepQuietly(retryDelayMs);
+        }
+    }
+
+    private synchronized List<Entry> nextBatch() {
+        while (pending.isEmpty() && !closed) {
+            try {
+                wait(flushIntervalMs);
+            }
+            catch (InterruptedException e) {
+                // the writes stay queued and spooled
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        if (closed) {
+            // close() has drained or given up; what is left replays on the next start
+            return null;
+        }
+        final int limit = pending.peekFirst().seq <= isolateThrough ? 1 : maxBatch;
+        final List<Entry> batch = new ArrayList<>();
+        for (Entry e : pending) {
+            if (batch.size() == limit) {
+                break;
+            }
+            batch.add(e);
+        }
+        return batch;
+    }
+
+    private void commit(List<Entry> batch) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                final long committed = lockProgress(conn);
+                final List<PendingWrite> writes = new ArrayList<>(batch.size());
+                for (Entry e : batch) {
+                    if (e.seq > committed) {
+                        writes.add(e.write);
+                    }
+                }
+                WriteBatchExecutor.execute(conn, writes);
+                try (PreparedStatement ps = conn.prepareStatement(SAVE_PROGRESS_SQL)) {
+                    ps.setLong(1, Math.max(committed, batch.get(batch.size() - 1).seq));
+                    ps.setString(2, queueId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            }
+            catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Locks this queue's progress row for the transaction on {@code conn}.
+     *
+     * @return the highest sequence number already committed.
+     */
+    private long lockProgress(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(LOCK_PROGRESS_SQL)) {
+            ps.setString(1, queueId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void markCommitted(List<Entry> batch) throws IOException {
+        final long seq = batch.get(batch.size() - 1).seq;
+        final Path tmp = committedFile.resolveSibling(committedFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buf = ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            // the rename must not reach the disk before the number does
+            out.force(false);
+        }
+        Files.move(tmp, committedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                pending.pollFirst();
+            }
+            if (pending.isEmpty()) {
+                // everything spooled is committed; start the spool afresh
+                spool.truncate(0);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * The id this spool's progress is recorded under, created on first use; spools
+     * of different processes never share one.
+     */
+    private static String loadQueueId(Path idFile) throws IOException {
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile).trim();
+        }
+        final String id = UUID.randomUUID().toString();
+        final Path tmp = idFile.resolveSibling(idFile.getFileName() + ".tmp");
+        Files.writeString(tmp, id);
+        Files.move(tmp, idFile, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    /**
+     * The highest sequence number the database has committed for this queue, or 0
+     * if it has none yet.
+     */
+    private long committedInDatabase() {
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(READ_PROGRESS_SQL)) {
+            ps.setString(1, queueId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+        catch (SQLException e) {
+            if (UNDEFINED_TABLE.equals(e.getSQLState())) {
+                // no batch was ever committed
+                return 0;
+            }
+            throw new RuntimeException("Failed to read write-behind progress of queue " + queueId, e);
+        }
+    }
+
+    /**
+     * Re-queues spooled writes that were not committed before the last shutdown.
+     * The committed file is written after the database commit, so it can lag
+     * behind the database (or be lost); the database's number wins then.
+     */
+    private void recover(long committedInDatabase) throws IOException {
+        long committed = committedInDatabase;
+        if (Files.exists(committedFile)) {
+            committed = Math.max(committed, Long.parseLong(Files.readString(committedFile).trim()));
+        }
+        lastSeq = committed;
+        if (!Files.exists(spoolFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(spoolFile, StandardCharsets.UTF_8)) {
+            final Entry entry;
+            try {
+                final int tab = line.indexOf('\t');
+                entry = new Entry(Long.parseLong(line.substring(0, tab)),
+                        PendingWrite.decode(line.substring(tab + 1)));
+            }
+            catch (RuntimeException e) {
+                // torn final line from a crash mid-append; it was never acknowledged
+                continue;
+            }
+            if (entry.seq > committed) {
+                pending.addLast(entry);
+            }
+            lastSeq = Math.max(lastSeq, entry.seq);
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("Write-behind: replaying " + pending.size() + " uncommitted writes");
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Entry {
+        private final long seq;
+        private final PendingWrite write;
+
+        private Entry(long seq, PendingWrite write) {
+            this.seq = seq;
+            this.write = write;
+        }
+    }
+}
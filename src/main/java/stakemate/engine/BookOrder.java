@@ -1,31 +1,53 @@
 package stakemate.engine;
 
 import java.time.Instant;
-import java.util.UUID;
 
+import stakemate.entity.PriceTicks;
 import stakemate.entity.Side;
 
 /**
  * Internal (mutable) order representation used by the matching engine.
+ * <p>
+ * Limit prices are held in ticks (see {@link PriceTicks}); market orders carry
+ * an explicit flag instead of a null price.
+ * <p>
+ * New orders take a numeric id from {@link IdGenerator}; its string form is only
+ * built when {@link #getId()} is first called. That id also orders orders by
+ * arrival (see {@link #getSequence()}).
  */
 public class BookOrder {
-    private final String id;
+    // rendered from sequence on first use; a racing second render yields an equal string
+    private String id;
+    private final long sequence;
     private final String userId;
     private final String marketId;
     private final Side side;
-    private final Double price;
+    private final long priceTicks;
+    private final boolean market;
     private final Instant timestamp;
 
     private final double originalQty;
     private double remainingQty;
 
+    /**
+     * Creates a new order from a decimal price (null price => market order).
+     */
     public BookOrder(final String userId, final String marketId, final Side side, final Double price,
             final double qty) {
-        this.id = UUID.randomUUID().toString();
+        this(userId, marketId, side, price == null ? 0L : PriceTicks.toTicks(price), price == null, qty);
+    }
+
+    /**
+     * Creates a new order priced in ticks.
+     */
+    public BookOrder(final String userId, final String marketId, final Side side, final long priceTicks,
+            final boolean market, final double qty) {
+        this.sequence = IdGenerator.shared().next();
         this.userId = userId;
         this.marketId = marketId;
         this.side = side;
-        this.price = price;
+        this.priceTicks = market ? 0L : priceTicks;
+        this.market = market;
         this.originalQty = qty;
         this.remainingQty = qty;
         this.timestamp = Instant.now();
@@ -38,22 +60,39 @@ public class BookOrder {
             final String userId,
             final String marketId,
             final Side side,
-            final Double price,
+            final long priceTicks,
+            final boolean market,
             final double originalQty,
             final double remainingQty,
             final Instant timestamp) {
         this.id = id;
+        this.sequence = IdGenerator.parse(id);
         this.userId = userId;
         this.marketId = marketId;
         this.side = side;
-        this.price = price;
+        this.priceTicks = market ? 0L : priceTicks;
+        this.market = market;
         this.originalQty = originalQty;
         this.remainingQty = remainingQty;
         this.timestamp = timestamp;
     }
 
     public String getId() {
-        return id;
+        String rendered = id;
+        if (rendered == null) {
+            rendered = IdGenerator.format(sequence);
+            id = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Numeric id; increases with arrival for orders created by the same node.
+     * Orders rebuilt from a legacy (non-numeric) id report -1, which sorts them
+     * ahead of every newer order.
+     */
+    public long getSequence() {
+        return sequence;
     }
 
     public String getUserId() {
@@ -68,8 +107,18 @@ public class BookOrder {
         return side;
     }
 
+    /**
+     * Limit price in ticks (0 for market orders).
+     */
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    /**
+     * Decimal limit price for display and persistence, or null for market orders.
+     */
     public Double getPrice() {
-        return price;
+        return market ? null : PriceTicks.toPrice(priceTicks);
     }
 
     public Instant getTimestamp() {
@@ -93,6 +142,6 @@ public class BookOrder {
     }
 
     public boolean isMarket() {
-        return price == null;
+        return market;
     }
 }
@@ -0,0 +1,139 @@
+package stakemate.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import stakemate.entity.Side;
+
+/**
+ * One side (bids or asks) of a limit order book.
+ * Price levels are keyed by exact tick price and kept sorted best-first:
+ * highest price for bids, lowest for asks.
+ * <p>
+ * Resting market orders (only possible with DB-backed matching semantics) are kept
+ * in their own FIFO queue outside the price levels.
+ */
+class BookSide implements Iterable<BookOrder> {
+    private final Side side;
+    private final TreeMap<Long, PriceLevel> levels;
+    private final PriceLevel marketOrders = new PriceLevel(0L);
+
+    BookSide(final Side side) {
+        this.side = side;
+        if (side == Side.BUY) {
+            this.levels = new TreeMap<>(Comparator.reverseOrder());
+        }
+        else {
+            this.levels = new TreeMap<>();
+        }
+    }
+
+    Side getSide() {
+        return side;
+    }
+
+    /**
+     * Queues an order at the back of its price level (or of the market-order queue).
+     */
+    PriceLevel.Node add(final BookOrder order) {
+        if (order.isMarket()) {
+            return marketOrders.add(order);
+        }
+        return levels.computeIfAbsent(order.getPriceTicks(), PriceLevel::new).add(order);
+    }
+
+    /**
+     * Best (most aggressive) price level, or null when this side has no limit orders.
+     */
+    PriceLevel bestLevel() {
+        final var entry = levels.firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    void removeLevel(final PriceLevel level) {
+        levels.remove(level.getPriceTicks());
+    }
+
+    /**
+     * Unlinks a resting order from its level, dropping the level once it is empty.
+     */
+    void remove(final PriceLevel.Node node) {
+        final PriceLevel level = node.getLevel();
+        level.unlink(node);
+        if (level.isEmpty() && level != marketOrders) {
+            levels.remove(level.getPriceTicks());
+        }
+    }
+
+    int levelCount() {
+        return levels.size();
+    }
+
+    Iterable<PriceLevel> levels() {
+        return levels.values();
+    }
+
+    PriceLevel getMarketOrders() {
+        return marketOrders;
+    }
+
+    /**
+     * Walks resting orders lazily in the same order the DB-backed engine reads them
+     * ({@code ORDER BY price, timestamp}, where a null market price sorts as the
+     * largest): best price first, oldest first within a price, with resting market
+     * orders ahead of the bids and behind the asks.
+     * The book must not be modified while iterating.
+     */
+    @Override
+    public Iterator<BookOrder> iterator() {
+        final List<Iterable<BookOrder>> queues = new ArrayList<>();
+        if (side == Side.BUY) {
+            queues.add(marketOrders.orders());
+        }
+        for (final PriceLevel level : levels.values()) {
+            queues.add(level.orders());
+        }
+        if (side == Side.SELL) {
+            queues.add(marketOrders.orders());
+        }
+        final Iterator<Iterable<BookOrder>> queueIt = queues.iterator();
+        return new Iterator<>() {
+            private Iterator<BookOrder> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!queueIt.hasNext()) {
+                        return false;
+                    }
+                    current = queueIt.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public BookOrder next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * All resting orders in matching priority.
+     */
+    List<BookOrder> orders() {
+        final List<BookOrder> result = new ArrayList<>();
+        for (final BookOrder o : this) {
+            result.add(o);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
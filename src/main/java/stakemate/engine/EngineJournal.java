@@ -0,0 +1,538 @@
+package stakemate.engine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import stakemate.entity.Side;
+
+/**
+ * Append-only journal of what an in-memory {@link MatchingEngine} did: each
+ * placed order with its remaining quantity after matching, each trade, cancel
+ * and amend. Replaying it in order ({@link MatchingEngineRegistry#recover})
+ * rebuilds every book, with the same queue positions, and the trade tapes.
+ * <p>
+ * Appends only copy the record into a buffer. A background thread writes the
+ * buffer through a {@link FileChannel} and forces it to disk, so every record
+ * appended while one force is running goes to disk with the next (group
+ * commit). {@link #awaitDurable} blocks until a given position is on disk;
+ * the registry calls it before it answers a command.
+ * <p>
+ * Records are {@code [int length][int crc32c][payload]}. A torn record at the
+ * end of the file (a crash during a write) fails its length or checksum; it
+ * and anything after it are cut off when the journal is opened.
+ * <p>
+ * A record's position is its byte offset in the journal. An {@link EngineSnapshot}
+ * remembers the position it was taken at, so a restart reads only the records
+ * after it.
+ * <p>
+ * The journal is a chain of segment files: the first is the file it was opened
+ * with, each later one is named after the position it starts at
+ * ({@code engine.journal.000000000004a2c0}). {@link #roll} starts a new segment,
+ * and {@link #deleteBefore} drops the segments a snapshot has made redundant, so
+ * the journal does not grow for ever; {@link EngineSnapshotter} does both after
+ * each snapshot.
+ */
+public final class EngineJournal implements AutoCloseable {
+
+    private static final byte ORDER = 1;
+    private static final byte TRADE = 2;
+    private static final byte CANCEL = 3;
+    private static final byte AMEND = 4;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int SEGMENT_NAME_DIGITS = 16;
+
+    /**
+     * Receives the journal's records in the order they were appended.
+     */
+    interface Visitor {
+        /** An order as it stood after its matching pass; trades it took part in come first. */
+        void order(long position, BookOrder order);
+
+        void trade(long position, Trade trade);
+
+        void cancel(long position, String marketId, String orderId);
+
+        void amend(long position, String marketId, String orderId, double newQty);
+    }
+
+    private final Path file;
+    private final boolean fsync;
+    private final Thread syncer;
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32C crc = new CRC32C();
+
+    // guarded by this: records appended but not yet written
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+    // the segment appended to, and the position it starts at
+    private FileChannel channel;
+    private long segmentStart;
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private EngineJournal(final Path file, final FileChannel channel, final long segmentStart, final long end,
+                          final boolean fsync) {
+        this.file = file;
+        this.channel = channel;
+        this.segmentStart = segmentStart;
+        this.fsync = fsync;
+        this.appended = end;
+        this.durable = end;
+        this.syncer = new Thread(this::syncLoop, "engine-journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Opens (or creates) a journal and cuts off a torn record at its end.
+     *
+     * @param fsync force every group of records to the storage device; without
+     *     it records survive a crash of the process but not of the machine.
+     */
+    public static EngineJournal open(final Path file, final boolean fsync) throws IOException {
+        return open(file, fsync, 0);
+    }
+
+    /**
+     * Opens a journal whose records up to {@code validFrom} are known to be intact,
+     * e.g. because a snapshot was taken there; only the rest is checked.
+     *
+     * @throws IOException if the journal ends before {@code validFrom}, or its
+     *     segments up to there have been deleted.
+     */
+    public static EngineJournal open(final Path file, final boolean fsync, final long validFrom)
+            throws IOException {
+        final List<Long> starts = segmentStarts(file);
+        if (!starts.isEmpty() && starts.get(0) > validFrom) {
+            throw new IOException("Journal " + file + " starts at " + starts.get(0)
+                    + ", after snapshot position " + validFrom);
+        }
+        final long last = starts.isEmpty() ? 0 : starts.get(starts.size() - 1);
+        final FileChannel channel = FileChannel.open(segment(file, last), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (last + channel.size() < validFrom) {
+                throw new IOException("Journal " + file + " ends at " + (last + channel.size())
+                        + ", before snapshot position " + validFrom);
+            }
+            // only the newest segment can end in a torn record
+            final long end = scan(channel, last, Math.max(0, validFrom - last), null);
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+            channel.position(end);
+            return new EngineJournal(file, channel, last, last + end, fsync);
+        }
+        catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The file the journal was opened with, which is also its first segment.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads back every record written so far from position {@code from}, oldest
+     * first; meant for startup, before anything new is appended.
+     *
+     * @throws IOException if the segment holding {@code from} has been deleted.
+     */
+    void replay(final Visitor visitor, final long from) throws IOException {
+        final List<Long> starts = segmentStarts(file);
+        if (starts.isEmpty() || starts.get(0) > from) {
+            throw new IOException("Journal " + file + " no longer holds position " + from);
+        }
+        for (int i = 0; i < starts.size(); i++) {
+            final long start = starts.get(i);
+            if (i + 1 < starts.size() && starts.get(i + 1) <= from) {
+                continue;
+            }
+            try (FileChannel reader = FileChannel.open(segment(file, start), StandardOpenOption.READ)) {
+                scan(reader, start, Math.max(0, from - start), visitor);
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment at the end of the journal once everything before it
+     * is on disk; does nothing if the current segment is still empty.
+     */
+    synchronized void roll() throws IOException {
+        boolean interrupted = false;
+        while (durable < appended && failure == null && !closed) {
+            try {
+                wait();
+            }
+            catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed: " + file, failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal " + file + " is closed");
+        }
+        if (appended > segmentStart) {
+            // the writer is idle: everything appended is durable and we hold the lock
+            final FileChannel next = FileChannel.open(segment(file, appended), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.close();
+            channel = next;
+            segmentStart = appended;
+        }
+    }
+
+    /**
+     * Deletes the segments that end at or before {@code position}, e.g. the start
+     * of the oldest snapshot kept. The current segment is never deleted.
+     */
+    synchronized void deleteBefore(final long position) throws IOException {
+        final List<Long> starts = segmentStarts(file);
+        for (int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= position; i++) {
+            Files.deleteIfExists(segment(file, starts.get(i)));
+        }
+    }
+
+    void appendOrder(final BookOrder o) {
+        synchronized (this) {
+            record.clear();
+            record.put(ORDER);
+            putString(o.getId());
+            putString(o.getUserId());
+            putString(o.getMarketId());
+            record.put((byte) o.getSide().ordinal());
+            record.put((byte) (o.isMarket() ? 1 : 0));
+            record.putLong(o.getPriceTicks());
+            record.putDouble(o.getOriginalQty());
+            record.putDouble(o.getRemainingQty());
+            putInstant(o.getTimestamp());
+            commitRecord();
+        }
+    }
+
+    void appendTrade(final Trade t) {
+        synchronized (this) {
+            record.clear();
+            record.put(TRADE);
+            putString(t.getId());
+            putString(t.getMarketId());
+            putString(t.getBuyOrderId());
+            putString(t.getSellOrderId());
+            record.putLong(t.getPriceTicks());
+            record.putDouble(t.getSize());
+            putInstant(t.getTimestamp());
+            commitRecord();
+        }
+    }
+
+    void appendCancel(final String marketId, final String orderId) {
+        synchronized (this) {
+            record.clear();
+            record.put(CANCEL);
+            putString(marketId);
+            putString(orderId);
+            commitRecord();
+        }
+    }
+
+    void appendAmend(final String marketId, final String orderId, final double newQty) {
+        synchronized (this) {
+            record.clear();
+            record.put(AMEND);
+            putString(marketId);
+            putString(orderId);
+            record.putDouble(newQty);
+            commitRecord();
+        }
+    }
+
+    /**
+     * End of the journal, counting records not yet on disk.
+     */
+    synchronized long position() {
+        return appended;
+    }
+
+    /**
+     * Blocks until every record up to {@code position} is on disk.
+     *
+     * @throws UncheckedIOException if the journal could not be written.
+     */
+    public synchronized void awaitDurable(final long position) {
+        boolean interrupted = false;
+        while (durable < position && failure == null && !closed) {
+            try {
+                wait();
+            }
+            catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed: " + file, failure);
+        }
+    }
+
+    /**
+     * Writes and forces everything appended so far, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            awaitDurable(appended);
+            closed = true;
+            notifyAll();
+        }
+        try {
+            syncer.join();
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    private void putString(final String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        record.putShort((short) bytes.length);
+        record.put(bytes);
+    }
+
+    private void putInstant(final Instant instant) {
+        record.putLong(instant.getEpochSecond());
+        record.putInt(instant.getNano());
+    }
+
+    // caller holds this
+    private void commitRecord() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed: " + file, failure);
+        }
+        record.flip();
+        crc.reset();
+        crc.update(record.duplicate());
+        final int size = HEADER_BYTES + record.remaining();
+        while (pending.remaining() < size) {
+            // the writer is behind by a full buffer; let it catch up
+            notifyAll();
+            try {
+                wait();
+            }
+            catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while appending to " + file, ex);
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Journal write failed: " + file, failure);
+            }
+        }
+        pending.putInt(record.remaining());
+        pending.putInt((int) crc.getValue());
+        pending.put(record);
+        appended += size;
+        notifyAll();
+    }
+
+    private void syncLoop() {
+        while (true) {
+            final long target;
+            final FileChannel out;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    }
+                    catch (final InterruptedException ex) {
+                        // only close() stops the writer
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                final ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                target = appended;
+                out = channel;
+            }
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    out.write(writing);
+                }
+                writing.clear();
+                if (fsync) {
+                    out.force(false);
+                }
+                synchronized (this) {
+                    durable = target;
+                    notifyAll();
+                }
+            }
+            catch (final IOException ex) {
+                synchronized (this) {
+                    failure = ex;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * The file of the segment starting at {@code start}.
+     */
+    private static Path segment(final Path file, final long start) {
+        final Path result;
+        if (start == 0) {
+            result = file;
+        }
+        else {
+            result = file.resolveSibling(String.format("%s.%016x", file.getFileName(), start));
+        }
+        return result;
+    }
+
+    /**
+     * Start positions of the segments that exist, oldest first.
+     */
+    private static List<Long> segmentStarts(final Path file) throws IOException {
+        final List<Long> starts = new ArrayList<>();
+        if (Files.exists(file)) {
+            starts.add(0L);
+        }
+        final Path dir = file.toAbsolutePath().getParent();
+        final String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, p -> isSegmentName(p, prefix))) {
+            for (final Path p : stream) {
+                starts.add(HexFormat.fromHexDigitsToLong(p.getFileName().toString().substring(prefix.length())));
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+
+    private static boolean isSegmentName(final Path p, final String prefix) {
+        final String name = p.getFileName().toString();
+        return name.length() == prefix.length() + SEGMENT_NAME_DIGITS && name.startsWith(prefix)
+                && name.substring(prefix.length()).chars().allMatch(HexFormat::isHexDigit);
+    }
+
+    /**
+     * Reads records from offset {@code from} of a segment starting at position
+     * {@code segmentStart}, passing each to {@code visitor} if there is one.
+     *
+     * @return the offset after the last complete, intact record.
+     */
+    private static long scan(final FileChannel channel, final long segmentStart, final long from,
+                             final Visitor visitor) throws IOException {
+        channel.position(from);
+        final InputStream raw = new BufferedInputStream(Channels.newInputStream(channel));
+        final DataInputStream in = new DataInputStream(raw);
+        final CRC32C check = new CRC32C();
+        long end = from;
+        while (true) {
+            final int length;
+            final int expectedCrc;
+            final byte[] payload;
+            try {
+                length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    return end;
+                }
+                expectedCrc = in.readInt();
+                payload = new byte[length];
+                in.readFully(payload);
+            }
+            catch (final EOFException ex) {
+                return end;
+            }
+            check.reset();
+            check.update(payload);
+            if ((int) check.getValue() != expectedCrc) {
+                return end;
+            }
+            if (visitor != null) {
+                dispatch(segmentStart + end, ByteBuffer.wrap(payload), visitor);
+            }
+            end += HEADER_BYTES + length;
+        }
+    }
+
+    private static void dispatch(final long position, final ByteBuffer in, final Visitor visitor) {
+        final byte type = in.get();
+        switch (type) {
+            case ORDER -> {
+                final String id = getString(in);
+                final String userId = getString(in);
+                final String marketId = getString(in);
+                final Side side = Side.values()[in.get()];
+                final boolean market = in.get() == 1;
+                final long priceTicks = in.getLong();
+                final double originalQty = in.getDouble();
+                final double remainingQty = in.getDouble();
+                visitor.order(position, new BookOrder(id, userId, marketId, side, priceTicks, market, originalQty,
+                        remainingQty, getInstant(in)));
+            }
+            case TRADE -> {
+                final String id = getString(in);
+                final String marketId = getString(in);
+                final String buyOrderId = getString(in);
+                final String sellOrderId = getString(in);
+                final long priceTicks = in.getLong();
+                final double size = in.getDouble();
+                visitor.trade(position, new Trade(id, marketId, buyOrderId, sellOrderId, priceTicks, size, getInstant(in)));
+            }
+            case CANCEL -> visitor.cancel(position, getString(in), getString(in));
+            case AMEND -> visitor.amend(position, getString(in), getString(in), in.getDouble());
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String getString(final ByteBuffer in) {
+        final byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Instant getInstant(final ByteBuffer in) {
+        final long seconds = in.getLong();
+        return Instant.ofEpochSecond(seconds, in.getInt());
+    }
+}
@@ -0,0 +1,311 @@
+package stakemate.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import stakemate.entity.Side;
+
+/**
+ * The books and trade tapes of journaled engines at one point of their
+ * {@link EngineJournal}, so that a restart loads it and replays only the
+ * journal records that follow ({@link MatchingEngineRegistry#recover}).
+ * <p>
+ * Shards are captured one after another, each at its own journal position;
+ * every market remembers the position of its shard, and replay skips the
+ * records of a market that its snapshot already covers. The id index is not
+ * stored: it is rebuilt as the orders are put back into their books.
+ * <p>
+ * Snapshot files are named after the journal position they reach, so the
+ * newest sorts last; a file that fails its checksum is ignored.
+ */
+public final class EngineSnapshot {
+
+    private static final long MAGIC = 0x534d534e41503031L;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final List<MarketState> markets;
+    private final long journalStart;
+    private final long journalEnd;
+
+    EngineSnapshot(final List<MarketState> markets, final long journalStart, final long journalEnd) {
+        this.markets = markets;
+        this.journalStart = journalStart;
+        this.journalEnd = journalEnd;
+    }
+
+    /**
+     * One market's resting orders (bids, then asks, each in matching priority)
+     * and retained trades (oldest first).
+     */
+    static final class MarketState {
+        private final String marketId;
+        private final long journalPosition;
+        private final List<BookOrder> orders;
+        private final List<Trade> trades;
+
+        MarketState(final String marketId, final long journalPosition, final List<BookOrder> orders,
+                    final List<Trade> trades) {
+            this.marketId = marketId;
+            this.journalPosition = journalPosition;
+            this.orders = orders;
+            this.trades = trades;
+        }
+
+        String getMarketId() {
+            return marketId;
+        }
+
+        /** Journal records of this market from here on are not in the snapshot. */
+        long getJournalPosition() {
+            return journalPosition;
+        }
+
+        List<BookOrder> getOrders() {
+            return orders;
+        }
+
+        List<Trade> getTrades() {
+            return trades;
+        }
+    }
+
+    /**
+     * Combines the snapshots of several shards.
+     */
+    static EngineSnapshot merge(final List<EngineSnapshot> parts) {
+        final List<MarketState> all = new ArrayList<>();
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        for (final EngineSnapshot part : parts) {
+            all.addAll(part.markets);
+            start = Math.min(start, part.journalStart);
+            end = Math.max(end, part.journalEnd);
+        }
+        return new EngineSnapshot(all, parts.isEmpty() ? 0 : start, end);
+    }
+
+    List<MarketState> getMarkets() {
+        return Collections.unmodifiableList(markets);
+    }
+
+    /**
+     * Where replay has to start: the earliest position any shard was captured at.
+     * Pass it to {@link EngineJournal#open(Path, boolean, long)}.
+     */
+    public long getJournalStart() {
+        return journalStart;
+    }
+
+    /**
+     * The latest position any shard was captured at; the journal must be durable
+     * up to here before the snapshot is written.
+     */
+    public long getJournalEnd() {
+        return journalEnd;
+    }
+
+    public int getOrderCount() {
+        int count = 0;
+        for (final MarketState m : markets) {
+            count += m.orders.size();
+        }
+        return count;
+    }
+
+    /**
+     * Writes the snapshot into {@code dir} under a temporary name, forces it to
+     * disk and then renames it, so a crash never leaves a partial snapshot behind.
+     *
+     * @return the snapshot file.
+     */
+    public Path writeTo(final Path dir) throws IOException {
+        Files.createDirectories(dir);
+        final Path target = dir.resolve(String.format("%s%016x%s", PREFIX, journalEnd, SUFFIX));
+        final Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            final CRC32C crc = new CRC32C();
+            final DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file), crc));
+            write(out);
+            out.flush();
+            // the checksum covers everything before it
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * The newest readable snapshot in {@code dir}, or null if there is none.
+     */
+    public static EngineSnapshot latest(final Path dir) throws IOException {
+        final List<Path> files = list(dir);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return read(files.get(i));
+            }
+            catch (final IOException ex) {
+                System.err.println("Warning: skipping unreadable snapshot " + files.get(i) + ": " + ex.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes all but the {@code keep} newest snapshots in {@code dir}.
+     */
+    public static void prune(final Path dir, final int keep) throws IOException {
+        final List<Path> files = list(dir);
+        for (int i = 0; i < files.size() - keep; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    /**
+     * Where replay from the oldest snapshot in {@code dir} starts, or -1 if there
+     * is none; journal records before it are not needed any more. Only the
+     * header is read.
+     */
+    static long oldestJournalStart(final Path dir) throws IOException {
+        long result = -1;
+        for (final Path file : list(dir)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                if (in.readLong() == MAGIC) {
+                    result = in.readLong();
+                    break;
+                }
+            }
+            catch (final EOFException ex) {
+                // truncated; a newer snapshot decides
+            }
+        }
+        return result;
+    }
+
+    static EngineSnapshot read(final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("truncated");
+        }
+        final int bodyLength = bytes.length - Long.BYTES;
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bodyLength);
+        final long expected = new DataInputStream(new ByteArrayInputStream(bytes, bodyLength, Long.BYTES)).readLong();
+        if (crc.getValue() != expected) {
+            throw new IOException("checksum mismatch");
+        }
+        return read(new DataInputStream(new ByteArrayInputStream(bytes, 0, bodyLength)));
+    }
+
+    private static List<Path> list(final Path dir) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (final Path p : stream) {
+                files.add(p);
+            }
+        }
+        // fixed-width hex positions: name order is position order
+        Collections.sort(files);
+        return files;
+    }
+
+    private void write(final DataOutputStream out) throws IOException {
+        out.writeLong(MAGIC);
+        out.writeLong(journalStart);
+        out.writeLong(journalEnd);
+        out.writeInt(markets.size());
+        for (final MarketState m : markets) {
+            out.writeUTF(m.marketId);
+            out.writeLong(m.journalPosition);
+            out.writeInt(m.orders.size());
+            for (final BookOrder o : m.orders) {
+                out.writeUTF(o.getId());
+                out.writeUTF(o.getUserId());
+                out.writeByte(o.getSide().ordinal());
+                out.writeBoolean(o.isMarket());
+                out.writeLong(o.getPriceTicks());
+                out.writeDouble(o.getOriginalQty());
+                out.writeDouble(o.getRemainingQty());
+                writeInstant(out, o.getTimestamp());
+            }
+            out.writeInt(m.trades.size());
+            for (final Trade t : m.trades) {
+                out.writeUTF(t.getId());
+                out.writeUTF(t.getBuyOrderId());
+                out.writeUTF(t.getSellOrderId());
+                out.writeLong(t.getPriceTicks());
+                out.writeDouble(t.getSize());
+                writeInstant(out, t.getTimestamp());
+            }
+        }
+    }
+
+    private static EngineSnapshot read(final DataInputStream in) throws IOException {
+        if (in.readLong() != MAGIC) {
+            throw new IOException("not an engine snapshot");
+        }
+        final long start = in.readLong();
+        final long end = in.readLong();
+        final int marketCount = in.readInt();
+        final List<MarketState> markets = new ArrayList<>(marketCount);
+        for (int i = 0; i < marketCount; i++) {
+            final String marketId = in.readUTF();
+            final long position = in.readLong();
+            final int orderCount = in.readInt();
+            final List<BookOrder> orders = new ArrayList<>(orderCount);
+            for (int k = 0; k < orderCount; k++) {
+                final String id = in.readUTF();
+                final String userId = in.readUTF();
+                final Side side = Side.values()[in.readByte()];
+                final boolean market = in.readBoolean();
+                final long priceTicks = in.readLong();
+                final double originalQty = in.readDouble();
+                final double remainingQty = in.readDouble();
+                orders.add(new BookOrder(id, userId, marketId, side, priceTicks, market, originalQty, remainingQty,
+                        readInstant(in)));
+            }
+            final int tradeCount = in.readInt();
+            final List<Trade> trades = new ArrayList<>(tradeCount);
+            for (int k = 0; k < tradeCount; k++) {
+                final String id = in.readUTF();
+                final String buyOrderId = in.readUTF();
+                final String sellOrderId = in.readUTF();
+                final long priceTicks = in.readLong();
+                final double size = in.readDouble();
+                trades.add(new Trade(id, marketId, buyOrderId, sellOrderId, priceTicks, size, readInstant(in)));
+            }
+            markets.add(new MarketState(marketId, position, orders, trades));
+        }
+        return new EngineSnapshot(markets, start, end);
+    }
+
+    private static void writeInstant(final DataOutputStream out, final Instant instant) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(final DataInputStream in) throws IOException {
+        final long seconds = in.readLong();
+        return Instant.ofEpochSecond(seconds, in.readInt());
+    }
+}
@@ -0,0 +1,98 @@
+package stakemate.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
+
+/**
+ * Writes {@link EngineSnapshot}s of a registry of journaled engines to a
+ * directory, on demand or at a fixed interval, keeping the newest few and
+ * deleting the journal segments none of them needs.
+ * <p>
+ * Startup then looks like:
+ * <pre>{@code
+ * EngineSnapshot latest = EngineSnapshot.latest(dir);
+ * EngineJournal journal = EngineJournal.open(file, true, latest == null ? 0 : latest.getJournalStart());
+ * registry.recover(journal, latest);
+ * }</pre>
+ */
+public final class EngineSnapshotter implements AutoCloseable {
+
+    private final MatchingEngineRegistry registry;
+    private final EngineJournal journal;
+    private final Path dir;
+    private final int keep;
+    private ScheduledJob job;
+
+    /**
+     * @param keep how many snapshot files to keep (at least 1).
+     */
+    public EngineSnapshotter(final MatchingEngineRegistry registry, final EngineJournal journal, final Path dir,
+                             final int keep) {
+        if (keep < 1) {
+            throw new IllegalArgumentException("keep must be >= 1");
+        }
+        this.registry = registry;
+        this.journal = journal;
+        this.dir = dir;
+        this.keep = keep;
+    }
+
+    /**
+     * Captures every shard and writes the snapshot once the journal is durable up
+     * to it, so a snapshot never holds a change the journal could still lose.
+     * Then rolls the journal to a new segment and deletes the segments that end
+     * before the oldest snapshot kept.
+     */
+    public synchronized EngineSnapshot snapshotNow() throws IOException {
+        final EngineSnapshot snapshot = registry.snapshot();
+        journal.awaitDurable(snapshot.getJournalEnd());
+        snapshot.writeTo(dir);
+        EngineSnapshot.prune(dir, keep);
+        // the segment just closed goes with the next snapshot, unless no command came in meanwhile
+        journal.roll();
+        final long oldest = EngineSnapshot.oldestJournalStart(dir);
+        if (oldest >= 0) {
+            journal.deleteBefore(oldest);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot every {@code periodSeconds} as the {@code engine-snapshots}
+     * job of the shared {@link Scheduler} until closed; a failed snapshot is
+     * retried with backoff.
+     */
+    public void start(final long periodSeconds) {
+        start(periodSeconds, Scheduler.shared());
+    }
+
+    /**
+     * Like {@link #start(long)}, on the given scheduler.
+     */
+    public synchronized void start(final long periodSeconds, final Scheduler scheduler) {
+        if (job != null) {
+            throw new IllegalStateException("already started");
+        }
+        final long periodMs = TimeUnit.SECONDS.toMillis(periodSeconds);
+        job = scheduler.schedule("engine-snapshots", periodMs, periodMs, this::snapshotNow);
+    }
+
+    /**
+     * Stops taking snapshots, waiting for one in progress.
+     */
+    @Override
+    public void close() {
+        final ScheduledJob j;
+        synchronized (this) {
+            j = job;
+            job = null;
+        }
+        if (j != null) {
+            j.cancelAndAwait();
+        }
+    }
+}
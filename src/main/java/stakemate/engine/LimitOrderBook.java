@@ -0,0 +1,130 @@
+package stakemate.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.Side;
+
+/**
+ * Price-level indexed limit order book used by the in-memory matching engine.
+ * <p>
+ * Each side keeps its price levels sorted best-first with a FIFO queue per level,
+ * and every resting order is indexed by id, so matching costs
+ * O(log levels + fills) instead of a full sort of the opposite side, and an order
+ * is found, reduced or unlinked by id in O(1).
+ * <p>
+ * The id index may be shared by all books of one engine, which then finds any
+ * resting order by id alone.
+ * <p>
+ * Every change (add, fill, remove) bumps {@link #getVersion()}; a depth snapshot
+ * taken at one version can be reused until the version moves.
+ */
+class LimitOrderBook {
+    private final BookSide bids = new BookSide(Side.BUY);
+    private final BookSide asks = new BookSide(Side.SELL);
+    private final Map<String, PriceLevel.Node> ordersById;
+    private long version;
+    private OrderBook snapshot;
+    private long snapshotVersion = -1;
+
+    LimitOrderBook() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * @param ordersById id index to register this book's resting orders in.
+     */
+    LimitOrderBook(final Map<String, PriceLevel.Node> ordersById) {
+        this.ordersById = ordersById;
+    }
+
+    BookSide side(final Side side) {
+        return side == Side.BUY ? bids : asks;
+    }
+
+    BookSide opposite(final Side side) {
+        return side == Side.BUY ? asks : bids;
+    }
+
+    BookSide getBids() {
+        return bids;
+    }
+
+    BookSide getAsks() {
+        return asks;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    void add(final BookOrder order) {
+        ordersById.put(order.getId(), side(order.getSide()).add(order));
+        version++;
+    }
+
+    /**
+     * Fills part of a resting order found in {@code level}.
+     */
+    void fill(final PriceLevel level, final BookOrder order, final double qty) {
+        level.fill(order, qty);
+        version++;
+    }
+
+    /**
+     * Fills part of a resting order, wherever it sits in the book.
+     */
+    void fill(final BookOrder order, final double qty) {
+        final PriceLevel.Node node = ordersById.get(order.getId());
+        if (node == null) {
+            order.reduce(qty);
+        }
+        else {
+            node.getLevel().fill(order, qty);
+        }
+        version++;
+    }
+
+    BookOrder find(final String orderId) {
+        final PriceLevel.Node node = ordersById.get(orderId);
+        return node == null ? null : node.getOrder();
+    }
+
+    /**
+     * Removes a resting order wherever it sits in the book.
+     */
+    boolean remove(final BookOrder order) {
+        final PriceLevel.Node node = ordersById.remove(order.getId());
+        if (node == null) {
+            return false;
+        }
+        side(order.getSide()).remove(node);
+        version++;
+        return true;
+    }
+
+    /**
+     * The snapshot cached for the current version, or null if the book changed since.
+     */
+    OrderBook cachedSnapshot() {
+        return snapshotVersion == version ? snapshot : null;
+    }
+
+    void cacheSnapshot(final OrderBook orderBook) {
+        snapshot = orderBook;
+        snapshotVersion = version;
+    }
+
+    /**
+     * Drops a fully filled order from the head of its level (and the level itself once empty).
+     */
+    void removeFilledHead(final BookSide bookSide, final PriceLevel level) {
+        final PriceLevel.Node head = level.poll();
+        ordersById.remove(head.getOrder().getId());
+        version++;
+        if (level.isEmpty()) {
+            bookSide.removeLevel(level);
+        }
+    }
+}
@@ -3,18 +3,24 @@ package stakemate.engine;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.Set;
 
-import stakemate.data_access.supabase.PostgresOrderRepository;
+import stakemate.engine.metrics.OrderPhase;
+import stakemate.engine.metrics.PlaceOrderMetrics;
 import stakemate.entity.OrderBook;
 import stakemate.entity.OrderBookEntry;
+import stakemate.entity.PriceTicks;
 import stakemate.entity.Side;
 import stakemate.service.DbAccountService;
+import stakemate.use_case.PlaceOrderUseCase.ImmediateUnitOfWork;
+import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
 import stakemate.use_case.PlaceOrderUseCase.PositionRepository;
+import stakemate.use_case.PlaceOrderUseCase.UnitOfWork;
 
 /**
  * MatchingEngine holds internal mutable order lists (per market) and performs
@@ -23,20 +29,60 @@ import stakemate.use_case.PlaceOrderUseCase.PositionRepository;
  * using OrderBookFactory.
  * 
  * Updated to support both In-Memory (legacy) and DB-backed (Postgres) modes.
+ * A third, memory-resident mode ({@link #memoryResident}) applies the DB-backed
+ * matching rules to an in-memory book loaded once per market, so matching no
+ * longer queries the database; pair it with write-behind repositories to take
+ * persistence off the matching path as well.
+ * <p>
+ * A single engine may serve several markets; use {@link MatchingEngineRegistry}
+ * to give each market shard its own engine and writer thread.
+ * <p>
+ * An in-memory engine created with {@link #journaled} survives restarts: it
+ * appends its orders, trades, cancels and amends to an {@link EngineJournal},
+ * from which {@link MatchingEngineRegistry#recover} rebuilds the books. Its
+ * trades are charged through a {@link Settlement}; replaying the journal does
+ * not charge them again.
  */
 public class MatchingEngine {
 
     // --- In-Memory Fields ---
-    private final List<BookOrder> bids = new ArrayList<>();
-    private final List<BookOrder> asks = new ArrayList<>();
+    // one independent book per market
+    private final Map<String, LimitOrderBook> books = new HashMap<>();
+    // every resting order of every book, by id
+    private final Map<String, PriceLevel.Node> restingById = new HashMap<>();
 
     // --- DB Fields ---
-    private PostgresOrderRepository orderRepo;
-    private PositionRepository positionRepo;
-    private DbAccountService accountService;
+    private OrderRepository orderRepo;
+    // collects the writes of one matching pass
+    private UnitOfWork.Factory unitOfWork;
+    // DB-backed rules, but the book is read from memory instead of the orders table
+    private boolean memoryResident;
 
-    // keep trades for display (shared)
-    private final List<Trade> trades = new ArrayList<>();
+    /**
+     * Number of recent trades kept in memory per market.
+     */
+    public static final int TRADE_TAPE_CAPACITY = 1000;
+
+    // recent trades per market, for display; older ones are only in the trades table
+    private final TradeTape trades = new TradeTape(TRADE_TAPE_CAPACITY);
+
+    // per-phase latency of placeOrder
+    private PlaceOrderMetrics metrics = PlaceOrderMetrics.shared();
+
+    // in-memory mode: where commands are journaled, and the end of this engine's last record
+    private EngineJournal journal;
+    private volatile long journalMark;
+    // in-memory mode: charges both sides of each trade, if set
+    private Settlement settlement;
+
+    /**
+     * Charges both sides of a trade made by an in-memory engine, e.g.
+     * {@link DbAccountService#applyTrade}.
+     */
+    @FunctionalInterface
+    public interface Settlement {
+        void settle(BookOrder buy, BookOrder sell, Trade trade);
+    }
 
     /**
      * Default constructor for In-Memory mode.
@@ -47,12 +93,64 @@ public class MatchingEngine {
     /**
      * Constructor for DB-backed mode.
      */
-    public MatchingEngine(PostgresOrderRepository orderRepo,
+    public MatchingEngine(OrderRepository orderRepo,
             PositionRepository positionRepo,
             DbAccountService accountService) {
+        this(orderRepo, () -> new ImmediateUnitOfWork(orderRepo, positionRepo, accountService));
+    }
+
+    /**
+     * Constructor for DB-backed mode where each matching pass (its fills, positions,
+     * balance changes and cancels) is persisted through its own unit of work, e.g.
+     * one transaction per incoming order.
+     */
+    public MatchingEngine(OrderRepository orderRepo, UnitOfWork.Factory unitOfWork) {
         this.orderRepo = orderRepo;
-        this.positionRepo = positionRepo;
-        this.accountService = accountService;
+        this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * DB-backed matching over a memory-resident book.
+     * Each market's open orders are loaded from {@code orderRepo} the first time the
+     * market is touched; after that the engine is the authority for the book and only
+     * writes through the repositories. Fills are persisted as absolute remaining
+     * quantities, so writing one twice does no harm; position rows are plain inserts,
+     * so a write-behind repository must not replay them twice (WriteBehindQueue
+     * records its progress in each batch's transaction for that).
+     */
+    public static MatchingEngine memoryResident(OrderRepository orderRepo,
+            PositionRepository positionRepo,
+            DbAccountService accountService) {
+        return memoryResident(orderRepo,
+                () -> new ImmediateUnitOfWork(orderRepo, positionRepo, accountService));
+    }
+
+    /**
+     * Memory-resident matching that persists each pass through its own unit of work.
+     */
+    static MatchingEngine memoryResident(OrderRepository orderRepo, UnitOfWork.Factory unitOfWork) {
+        MatchingEngine engine = new MatchingEngine(orderRepo, unitOfWork);
+        engine.memoryResident = true;
+        return engine;
+    }
+
+    /**
+     * In-memory matching that journals every change to the books in {@code journal}.
+     * Replies must wait for {@link #awaitJournal()}; the registry does that.
+     */
+    public static MatchingEngine journaled(final EngineJournal journal) {
+        return journaled(journal, null);
+    }
+
+    /**
+     * Journaled in-memory matching whose trades are charged through
+     * {@code settlement} as they are made.
+     */
+    public static MatchingEngine journaled(final EngineJournal journal, final Settlement settlement) {
+        MatchingEngine engine = new MatchingEngine();
+        engine.journal = journal;
+        engine.settlement = settlement;
+        return engine;
     }
 
     /**
@@ -60,116 +158,336 @@ public class MatchingEngine {
      * empty).
      */
     public synchronized List<Trade> placeOrder(final BookOrder incoming) {
-        if (orderRepo != null) {
+        if (memoryResident) {
+            return placeOrderMemoryResident(incoming);
+        } else if (orderRepo != null) {
             return placeOrderDb(incoming);
         } else {
             return placeOrderInMemory(incoming);
         }
     }
 
+    /**
+     * Places several orders under one acquisition of the engine lock, in list order.
+     * An order whose matching pass fails does not stop the ones after it.
+     *
+     * @return the trades of each order, index-aligned with {@code incoming}; null
+     *     for an order whose pass failed.
+     */
+    public synchronized List<List<Trade>> placeOrders(final List<BookOrder> incoming) {
+        final List<List<Trade>> result = new ArrayList<>(incoming.size());
+        for (final BookOrder order : incoming) {
+            List<Trade> trades = null;
+            try {
+                trades = placeOrder(order);
+            } catch (RuntimeException ex) {
+                System.err.println("Warning: could not place order " + order.getId() + ": " + ex.getMessage());
+            }
+            result.add(trades);
+        }
+        return result;
+    }
+
+    /**
+     * Cancels every resting order {@code userId} has in {@code marketId}. In the
+     * DB-backed modes the cancels are persisted (remaining quantity 0) in one
+     * unit of work, which also releases their reservations.
+     *
+     * @return the cancelled orders; their remaining quantity is what was still open.
+     */
+    public synchronized List<BookOrder> cancelAll(final String userId, final String marketId) {
+        final List<BookOrder> cancelled = new ArrayList<>();
+        final LimitOrderBook book;
+        if (memoryResident) {
+            book = residentBook(marketId);
+        } else {
+            book = books.get(marketId);
+        }
+        if (book != null) {
+            for (final BookOrder o : book.getBids().orders()) {
+                if (o.getUserId().equals(userId)) {
+                    cancelled.add(o);
+                }
+            }
+            for (final BookOrder o : book.getAsks().orders()) {
+                if (o.getUserId().equals(userId)) {
+                    cancelled.add(o);
+                }
+            }
+            for (final BookOrder o : cancelled) {
+                book.remove(o);
+                journalCancel(o);
+            }
+        } else if (orderRepo != null) {
+            for (final Side side : Side.values()) {
+                for (final BookOrder o : orderRepo.findOpenOrdersForMarket(marketId, side)) {
+                    if (o.getUserId().equals(userId)) {
+                        cancelled.add(o);
+                    }
+                }
+            }
+        }
+        if (orderRepo != null && !cancelled.isEmpty()) {
+            final UnitOfWork uow = unitOfWork.begin();
+            for (final BookOrder o : cancelled) {
+                uow.updateRemainingQty(o.getId(), 0.0);
+            }
+            uow.commit();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels one resting order. In the DB-backed modes the cancel is persisted
+     * (remaining quantity 0) in its own unit of work.
+     *
+     * @return the cancelled order with the quantity that was still open, or null
+     *     if no such order is open.
+     */
+    public synchronized BookOrder cancelOrder(final String orderId) {
+        final BookOrder order = findResting(orderId);
+        if (order == null) {
+            return null;
+        }
+        final LimitOrderBook book = books.get(order.getMarketId());
+        if (book != null) {
+            book.remove(order);
+        }
+        persistRemaining(orderId, 0.0);
+        journalCancel(order);
+        return order;
+    }
+
+    /**
+     * Reduces a resting order's open quantity to {@code newQty}. The order keeps
+     * its place in the queue; the level's depth drops by the difference.
+     *
+     * @return the amended order, or null if no such order is open.
+     * @throws IllegalArgumentException if {@code newQty} is not positive or exceeds
+     *     the open quantity; use {@link #cancelOrder} or {@link #replaceOrder} instead.
+     */
+    public synchronized BookOrder amendOrder(final String orderId, final double newQty) {
+        if (newQty <= 0) {
+            throw new IllegalArgumentException("newQty must be > 0");
+        }
+        final BookOrder order = findResting(orderId);
+        if (order == null) {
+            return null;
+        }
+        if (newQty > order.getRemainingQty()) {
+            throw new IllegalArgumentException("amendOrder can only reduce quantity");
+        }
+        // a reduction is booked like a fill, so the level total follows
+        reduceResting(books.get(order.getMarketId()), order, order.getRemainingQty() - newQty);
+        persistRemaining(orderId, order.getRemainingQty());
+        if (journal != null) {
+            journal.appendAmend(order.getMarketId(), orderId, newQty);
+            journalMark = journal.position();
+        }
+        return order;
+    }
+
+    /**
+     * Cancels a resting order and places {@code replacement} in its stead, for
+     * amends that lose time priority (a new price or a larger quantity). The
+     * replacement goes to the back of its level and matches like any new order;
+     * as with {@link #placeOrder}, DB-backed callers save it first.
+     *
+     * @return the replacement's trades, or null if the original is no longer
+     *     open (the replacement is then not placed).
+     */
+    public synchronized List<Trade> replaceOrder(final String orderId, final BookOrder replacement) {
+        final BookOrder original = findResting(orderId);
+        if (original == null) {
+            return null;
+        }
+        if (!original.getUserId().equals(replacement.getUserId())
+                || !original.getMarketId().equals(replacement.getMarketId())
+                || original.getSide() != replacement.getSide()) {
+            throw new IllegalArgumentException("replacement must be for the same user, market and side");
+        }
+        cancelOrder(orderId);
+        return placeOrder(replacement);
+    }
+
+    /**
+     * The open order with this id: from the id index when its book is in memory,
+     * otherwise from the orders table (loading the book in memory-resident mode).
+     */
+    private BookOrder findResting(final String orderId) {
+        final PriceLevel.Node node = restingById.get(orderId);
+        if (node != null) {
+            return node.getOrder();
+        }
+        if (orderRepo == null) {
+            return null;
+        }
+        final BookOrder stored = orderRepo.findById(orderId);
+        if (stored == null || stored.isFilled()) {
+            return null;
+        }
+        if (memoryResident) {
+            // the table may lag the book; only an order the loaded book holds is open
+            return residentBook(stored.getMarketId()).find(orderId);
+        }
+        return stored;
+    }
+
+    private void journalCancel(final BookOrder order) {
+        if (journal != null) {
+            journal.appendCancel(order.getMarketId(), order.getId());
+            journalMark = journal.position();
+        }
+    }
+
+    private void persistRemaining(final String orderId, final double remainingQty) {
+        if (orderRepo != null) {
+            final UnitOfWork uow = unitOfWork.begin();
+            uow.updateRemainingQty(orderId, remainingQty);
+            uow.commit();
+        }
+    }
+
     // --- DB Implementation ---
     private List<Trade> placeOrderDb(BookOrder incoming) {
-        List<Trade> executedTrades = new ArrayList<>();
-        double incomingRemaining = incoming.getRemainingQty();
-
         // All opposite-side resting orders for this market, best first
+        long t = metrics.start();
         List<BookOrder> opposite = orderRepo.findOppositeSideOrders(incoming.getMarketId(), incoming.getSide());
+        metrics.record(incoming.getMarketId(), OrderPhase.FIND_OPPOSITE, t);
+        return matchWithFunds(incoming, opposite, null);
+    }
 
-        // --- Market Order Pre-Check (All-Or-None) ---
-        if (incoming.isMarket()) {
-            double simulatedFilled = 0;
-            double simulatedCost = 0;
-            double tempRemaining = incoming.getOriginalQty();
+    // --- Memory-Resident Implementation ---
+    private List<Trade> placeOrderMemoryResident(BookOrder incoming) {
+        long t = metrics.start();
+        LimitOrderBook book = residentBook(incoming.getMarketId());
+        metrics.record(incoming.getMarketId(), OrderPhase.FIND_OPPOSITE, t);
+        // the order may already be in the table (saved just before matching) when
+        // this call is the one that loaded the book
+        BookOrder loaded = book.find(incoming.getId());
+        if (loaded != null) {
+            book.remove(loaded);
+        }
 
-            for (BookOrder resting : opposite) {
-                if (tempRemaining <= 0)
-                    break;
-                if (resting.getRemainingQty() <= 0)
-                    continue;
-                if (resting.isMarket())
-                    continue; // Market orders only match Limit orders
+        List<Trade> executedTrades = matchWithFunds(incoming, book.opposite(incoming.getSide()), book);
 
-                double matchSize = Math.min(tempRemaining, resting.getRemainingQty());
-                Double p = resting.getPrice();
-                if (p == null)
-                    continue; // Should be covered by isMarket(), but safety first
-                double matchPrice = p;
-
-                simulatedFilled += matchSize;
-                // In prediction market: BUY pays price, SELL pays (1-price)
-                double matchCost = incoming.getSide() == Side.BUY ? matchSize * matchPrice
-                        : matchSize * (1.0 - matchPrice);
-                simulatedCost += matchCost;
-                tempRemaining -= matchSize;
-            }
+        // same as the table: any open remainder (limit or market) keeps resting
+        if (!incoming.isFilled()) {
+            book.add(incoming);
+        }
+        return executedTrades;
+    }
 
-            // Check 1: Full Fill Required - REMOVED to allow resting market orders
-            // if (tempRemaining > 1e-9) {
-            // // Cancel order (insufficient liquidity)
-            // orderRepo.updateRemainingQty(incoming.getId(), 0.0);
-            // incoming.reduce(incoming.getRemainingQty());
-            // return executedTrades;
-            // }
-
-            // Check 2: Sufficient Funds for IMMEDIATE matches
-            // We only check funds for what can be matched RIGHT NOW.
-            // If simulatedCost > balance, we cancel.
-            // Note: If simulatedCost is 0 (no matches), we allow it to rest (cost is
-            // unknown).
-            double balance = accountService.getBalance(incoming.getUserId());
-            if (simulatedCost > 0 && balance < simulatedCost) {
-                // Cancel order (insufficient funds for immediate match)
-                orderRepo.updateRemainingQty(incoming.getId(), 0.0);
-                incoming.reduce(incoming.getRemainingQty());
-                return executedTrades;
+    private LimitOrderBook residentBook(String marketId) {
+        LimitOrderBook book = books.get(marketId);
+        if (book == null) {
+            book = new LimitOrderBook(restingById);
+            List<BookOrder> open = new ArrayList<>(orderRepo.findOpenOrdersForMarket(marketId, Side.BUY));
+            open.addAll(orderRepo.findOpenOrdersForMarket(marketId, Side.SELL));
+            // arrival order gives each price level its time priority; legacy ids (-1) go first.
+            // Orders may come from several nodes, so ids are compared without their node bits
+            open.sort(Comparator.<BookOrder>comparingLong(o -> IdGenerator.sequenceOf(o.getSequence()))
+                    .thenComparingInt(o -> IdGenerator.nodeOf(o.getSequence()))
+                    .thenComparing(BookOrder::getTimestamp));
+            for (BookOrder o : open) {
+                book.add(o);
             }
+            books.put(marketId, book);
         }
+        return book;
+    }
 
-        // --- Limit Order Pre-Check (for both BUY and SELL) ---
-        // Simulate upfront cost for incoming limit orders to avoid balance issues
-        // during matching
-        // In prediction market: BUY pays price*size, SELL pays (1-price)*size
-        if (!incoming.isMarket()) {
-            double simulatedCost = 0;
-            double tempRemaining = incomingRemaining;
-
-            for (BookOrder resting : opposite) {
-                if (tempRemaining <= 0)
-                    break;
-                if (resting.getRemainingQty() <= 0)
-                    continue;
-                if (incoming.isMarket() && resting.isMarket())
-                    continue;
-
-                // Calculate execution price
-                Double restPrice = resting.getPrice();
-                Double inPrice = incoming.getPrice();
-                double execPrice = (restPrice != null) ? restPrice : (inPrice != null) ? inPrice : 1.0;
-
-                // Check if it crosses
-                if (inPrice != null && restPrice != null && inPrice < restPrice)
-                    break; // No more matches possible
-
-                double matchSize = Math.min(tempRemaining, resting.getRemainingQty());
-                // Calculate cost based on side: BUY pays price, SELL pays (1-price)
-                double cost = incoming.getSide() == Side.BUY ? matchSize * execPrice : matchSize * (1.0 - execPrice);
-                simulatedCost += cost;
-                tempRemaining -= matchSize;
+    /**
+     * DB-backed matching rules (funds pre-checks, per-match resting funds check,
+     * positions and balances) over {@code opposite}, walked best first.
+     * When {@code book} is non-null the resting orders live in it: fills go through
+     * the book so its level depth stays current, and resting orders whose remaining
+     * quantity drops to zero leave it once the walk is over.
+     */
+    private List<Trade> matchWithFunds(BookOrder incoming, Iterable<BookOrder> opposite,
+            LimitOrderBook book) {
+        UnitOfWork uow = unitOfWork.begin();
+        try {
+            List<Trade> executedTrades = matchWithFunds(incoming, opposite, book, uow);
+            // every write of this pass (fills, positions, balances, cancels) lands together
+            long t = metrics.start();
+            uow.commit();
+            metrics.record(incoming.getMarketId(), OrderPhase.COMMIT, t);
+            // the tape only shows trades whose writes are in the database
+            for (Trade trade : executedTrades) {
+                trades.record(trade);
             }
+            return executedTrades;
+        } catch (RuntimeException e) {
+            if (book != null) {
+                // the walk already filled the book; the table still has the orders as they were
+                dropResidentBook(incoming.getMarketId());
+            }
+            throw e;
+        } finally {
+            uow.releaseHolds();
+        }
+    }
 
-            // Check if user has enough balance for all potential matches
-            if (simulatedCost > 0) {
-                double balance = accountService.getBalance(incoming.getUserId());
-                if (balance < simulatedCost) {
-                    // Cancel order (insufficient funds for immediate matches)
-                    orderRepo.updateRemainingQty(incoming.getId(), 0.0);
-                    incoming.reduce(incoming.getRemainingQty());
-                    return executedTrades;
-                }
+    /**
+     * Forgets a memory-resident book so the next access reloads it from the table.
+     */
+    private void dropResidentBook(String marketId) {
+        LimitOrderBook book = books.remove(marketId);
+        if (book != null) {
+            for (BookOrder o : book.getBids().orders()) {
+                restingById.remove(o.getId());
             }
+            for (BookOrder o : book.getAsks().orders()) {
+                restingById.remove(o.getId());
+            }
+        }
+    }
+
+    private List<Trade> matchWithFunds(BookOrder incoming, Iterable<BookOrder> opposite,
+            LimitOrderBook book, UnitOfWork uow) {
+        List<Trade> executedTrades = new ArrayList<>();
+        List<BookOrder> exhausted = new ArrayList<>();
+        double incomingRemaining = incoming.getRemainingQty();
+        String marketId = incoming.getMarketId();
+        long passStart = metrics.start();
+        // time spent in unit-of-work calls, to tell matching logic from DB round trips
+        long fillNanos = 0;
+        long applyNanos = 0;
+
+        // The opposite side is walked once. The funds pre-check reads resting orders
+        // from the walk until it has priced the incoming order's immediate fills and
+        // keeps them in "priced"; the match loop then replays those and carries on
+        // with the same walk. Nothing is written before the pre-check has passed, so
+        // cancelling the incoming order leaves the book untouched.
+        Iterator<BookOrder> walk = opposite.iterator();
+        List<BookOrder> priced = new ArrayList<>();
+        double simulatedCost = simulateCost(incoming, walk, priced);
+        long t = metrics.start();
+        // the funds are held (check and hold in one step) so that a pass on another
+        // shard cannot spend them before this pass's balance changes are applied
+        boolean affordable = simulatedCost <= 0 || uow.holdFunds(incoming.getUserId(), simulatedCost);
+        double incomingHeld = Math.max(simulatedCost, 0.0);
+        double incomingSpent = 0.0;
+        long balanceNanos = metrics.since(t);
+        metrics.recordNanos(marketId, OrderPhase.PRE_CHECK, metrics.since(passStart));
+        if (!affordable) {
+            // Cancel order (insufficient funds for immediate matches)
+            uow.updateRemainingQty(incoming.getId(), 0.0);
+            incoming.reduce(incoming.getRemainingQty());
+            metrics.countFundsCancel();
+            return executedTrades;
         }
 
-        for (BookOrder resting : opposite) {
+        for (int next = 0; ; next++) {
+            BookOrder resting;
+            if (next < priced.size()) {
+                resting = priced.get(next);
+            } else if (walk.hasNext()) {
+                resting = walk.next();
+            } else {
+                break;
+            }
 
             if (incomingRemaining <= 0)
                 break;
@@ -184,9 +502,8 @@ public class MatchingEngine {
                 continue;
 
             // --- Calculate execution price for trade ---
-            Double restPriceObj = resting.getPrice();
-            Double inPriceObj = incoming.getPrice();
-            double executionPrice = (restPriceObj != null) ? restPriceObj : (inPriceObj != null) ? inPriceObj : 1.0;
+            long executionTicks = executionTicks(incoming, resting);
+            double executionPrice = PriceTicks.toPrice(executionTicks);
             double potentialMatchSize = Math.min(incomingRemaining, resting.getRemainingQty());
             double matchCost = potentialMatchSize * executionPrice;
 
@@ -196,15 +513,32 @@ public class MatchingEngine {
             double restingCost = resting.getSide() == Side.BUY ? matchCost
                     : potentialMatchSize * (1.0 - executionPrice);
 
-            double restingBalance = accountService.getBalance(resting.getUserId());
-            if (restingBalance < restingCost) {
+            t = metrics.start();
+            if (!uow.holdFunds(resting.getUserId(), restingCost)) {
                 // Insufficient funds for this match -> Cancel resting order
-                orderRepo.updateRemainingQty(resting.getId(), 0.0);
-                resting.reduce(resting.getRemainingQty());
+                uow.updateRemainingQty(resting.getId(), 0.0);
+                reduceResting(book, resting, resting.getRemainingQty());
+                exhausted.add(resting);
+                metrics.countRestingFundsCancel();
+                fillNanos += metrics.since(t);
                 continue; // Skip this resting order
             }
             // ---------------------------------------------------
 
+            // The pre-check priced the fills against the book as it stood; once resting
+            // orders are cancelled for funds the walk can go past them, so hold the rest
+            double incomingCost = resting.getSide() == Side.BUY
+                    ? potentialMatchSize * (1.0 - executionPrice) : matchCost;
+            double extra = incomingSpent + incomingCost - incomingHeld;
+            if (extra > 1e-9) {
+                if (!uow.holdFunds(incoming.getUserId(), extra)) {
+                    fillNanos += metrics.since(t);
+                    break;
+                }
+                incomingHeld += extra;
+            }
+            incomingSpent += incomingCost;
+
             double restingRemaining = resting.getRemainingQty();
             double executedSize = Math.min(incomingRemaining, restingRemaining);
 
@@ -215,115 +549,173 @@ public class MatchingEngine {
             // --------- Save positions with execution prices ---------
             // Buy order: save at execution price
             // Sell order: save at (1 - execution price)
-            positionRepo.savePosition(buyOrder, executedSize, executionPrice);
-            positionRepo.savePosition(sellOrder, executedSize, 1.0 - executionPrice);
-
-            // --------- Update remaining_qty in DB ---------
-            orderRepo.reduceRemainingQty(incoming.getId(), executedSize);
-            orderRepo.reduceRemainingQty(resting.getId(), executedSize);
+            uow.savePosition(buyOrder, executedSize, executionPrice);
+            uow.savePosition(sellOrder, executedSize, PriceTicks.toPrice(PriceTicks.ONE - executionTicks));
 
             // Keep in-memory orders in sync (so remainingQty is correct if reused)
             incoming.reduce(executedSize);
-            resting.reduce(executedSize);
+            reduceResting(book, resting, executedSize);
             incomingRemaining -= executedSize;
 
+            // --------- Update remaining_qty in DB ---------
+            persistFill(uow, incoming, executedSize);
+            persistFill(uow, resting, executedSize);
+            if (resting.isFilled())
+                exhausted.add(resting);
+            fillNanos += metrics.since(t);
+
             // --------- Apply balances + record Trade ---------
             Trade trade = new Trade(
                     incoming.getMarketId(),
                     buyOrder.getId(),
                     sellOrder.getId(),
-                    executionPrice,
+                    executionTicks,
                     executedSize);
-            accountService.applyTrade(buyOrder, sellOrder, trade);
+            t = metrics.start();
+            uow.applyTrade(buyOrder, sellOrder, trade);
+            applyNanos += metrics.since(t);
             executedTrades.add(trade);
-            trades.add(trade); // Keep in-memory log
 
             // Removed break to allow partial fills / multiple matches
         }
+
+        // filled or cancelled resting orders leave the book once the walk is over
+        if (book != null) {
+            for (BookOrder o : exhausted) {
+                book.remove(o);
+            }
+        }
+        if (passStart != 0) {
+            if (!executedTrades.isEmpty()) {
+                metrics.recordNanos(marketId, OrderPhase.FILL_WRITES, fillNanos);
+                metrics.recordNanos(marketId, OrderPhase.APPLY_TRADE, applyNanos);
+            }
+            metrics.recordNanos(marketId, OrderPhase.MATCH_LOGIC,
+                    metrics.since(passStart) - balanceNanos - fillNanos - applyNanos);
+        }
         return executedTrades;
     }
 
-    private boolean crosses(BookOrder incoming, BookOrder resting) {
-        Double inPrice = incoming.getPrice();
-        Double restPrice = resting.getPrice();
+    /**
+     * Prices the fills the incoming order would get against the book as it stands,
+     * reading resting orders from {@code walk} and appending each to {@code seen}.
+     * <p>
+     * Market orders are priced for their full size against limit orders only; limit
+     * orders for their open size, stopping at the first resting limit priced above
+     * the incoming one. In prediction market: BUY pays price, SELL pays (1-price).
+     *
+     * @return what the incoming order's owner must be able to pay.
+     */
+    private static double simulateCost(BookOrder incoming, Iterator<BookOrder> walk, List<BookOrder> seen) {
+        double simulatedCost = 0;
+        double tempRemaining = incoming.isMarket() ? incoming.getOriginalQty() : incoming.getRemainingQty();
+        while (tempRemaining > 0 && walk.hasNext()) {
+            BookOrder resting = walk.next();
+            seen.add(resting);
+            if (resting.getRemainingQty() <= 0)
+                continue;
+            if (incoming.isMarket()) {
+                if (resting.isMarket())
+                    continue; // Market orders only match Limit orders
+            } else if (!resting.isMarket() && incoming.getPriceTicks() < resting.getPriceTicks()) {
+                break; // No more matches possible
+            }
+
+            double matchSize = Math.min(tempRemaining, resting.getRemainingQty());
+            double execPrice = PriceTicks.toPrice(executionTicks(incoming, resting));
+            simulatedCost += incoming.getSide() == Side.BUY ? matchSize * execPrice
+                    : matchSize * (1.0 - execPrice);
+            tempRemaining -= matchSize;
+        }
+        return simulatedCost;
+    }
+
+    private static void reduceResting(LimitOrderBook book, BookOrder resting, double qty) {
+        if (book != null) {
+            book.fill(resting, qty);
+        } else {
+            resting.reduce(qty);
+        }
+    }
+
+    /**
+     * Writes a fill to the orders table. The memory-resident book already holds the
+     * new quantity, so it is written absolutely; plain DB mode decrements in SQL.
+     */
+    private void persistFill(UnitOfWork uow, BookOrder order, double executedSize) {
+        if (memoryResident) {
+            uow.updateRemainingQty(order.getId(), order.getRemainingQty());
+        } else {
+            uow.reduceRemainingQty(order.getId(), executedSize);
+        }
+    }
 
+    private boolean crosses(BookOrder incoming, BookOrder resting) {
         // If either is a market order -> always eligible
-        if (inPrice == null || restPrice == null) {
+        if (incoming.isMarket() || resting.isMarket()) {
             return true;
         }
 
         if (incoming.getSide() == Side.BUY) {
-            return inPrice >= restPrice;
+            return incoming.getPriceTicks() >= resting.getPriceTicks();
         } else {
-            return inPrice <= restPrice;
+            return incoming.getPriceTicks() <= resting.getPriceTicks();
         }
     }
 
+    /**
+     * Trade price: the resting order's price if it has one, otherwise the incoming
+     * price, otherwise (both market) 1.00.
+     */
+    private static long executionTicks(BookOrder incoming, BookOrder resting) {
+        if (!resting.isMarket()) {
+            return resting.getPriceTicks();
+        }
+        return incoming.isMarket() ? PriceTicks.ONE : incoming.getPriceTicks();
+    }
+
     // --- In-Memory Implementation ---
     private List<Trade> placeOrderInMemory(final BookOrder incoming) {
+        final long start = metrics.start();
         final List<Trade> executed = new ArrayList<>();
-        final List<BookOrder> opposite = (incoming.getSide() == Side.BUY) ? asks : bids;
-        final Comparator<BookOrder> cmp;
-        if (incoming.getSide() == Side.BUY) {
-            // match buys against lowest ask price first, then earlier timestamp
-            cmp = Comparator.comparing((BookOrder o) -> o.getPrice() == null ? Double.MAX_VALUE : o.getPrice())
-                    .thenComparing(BookOrder::getTimestamp);
-        } else {
-            // match sells against highest bid price first, then earlier timestamp
-            cmp = Comparator.comparing((BookOrder o) -> o.getPrice() == null ? Double.MIN_VALUE : o.getPrice())
-                    .reversed()
-                    .thenComparing(BookOrder::getTimestamp);
-        }
-        final List<BookOrder> sortedOpposite = opposite.stream().sorted(cmp).collect(Collectors.toList());
-
-        final Iterator<BookOrder> it = sortedOpposite.iterator();
-        while (!incoming.isFilled() && it.hasNext()) {
-            final BookOrder resting = it.next();
+        final LimitOrderBook book = books.computeIfAbsent(incoming.getMarketId(),
+                k -> new LimitOrderBook(restingById));
+        // buys match against the lowest asks first, sells against the highest bids;
+        // within a level the oldest order is at the head of the queue
+        final BookSide opposite = book.opposite(incoming.getSide());
+
+        while (!incoming.isFilled()) {
+            final PriceLevel level = opposite.bestLevel();
+            if (level == null) {
+                break;
+            }
+            final BookOrder resting = level.peek();
             // - If incoming is market -> always eligible
             // - If incoming is limit -> must cross: buy.price >= sell.price
-            final Double restingPrice = resting.getPrice();
-            final Double incomingPrice = incoming.getPrice();
-
-            final boolean crosses;
-            if (incoming.isMarket() || restingPrice == null) {
-                crosses = true;
-            } else {
-                if (incoming.getSide() == Side.BUY) {
-                    // incoming buy limit must be >= resting sell price
-                    crosses = incomingPrice >= restingPrice - 1e-9;
-                } else {
-                    // incoming sell limit must be <= resting buy price
-                    crosses = incomingPrice <= restingPrice + 1e-9;
-                }
-            }
-
-            if (!crosses) {
-                continue;
+            if (!crosses(incoming, resting)) {
+                // levels are sorted best-first, so nothing further down can cross either
+                break;
             }
 
-            // choose trade price: prefer resting order price if available, otherwise
-            // incoming price
-            Double tradePrice = (restingPrice != null) ? restingPrice : incomingPrice;
-            if (tradePrice == null) {
-                // both market — choose 1.0 fallback
-                tradePrice = 1.0;
-            }
+            // trade price: prefer resting order price, otherwise incoming price
+            final long tradeTicks = executionTicks(incoming, resting);
 
             final double tradeSize = Math.min(incoming.getRemainingQty(), resting.getRemainingQty());
-            if (tradeSize <= 0) {
-                continue;
+            if (tradeSize > 0) {
+                // build trade (buyOrderId first)
+                final String buyId = (incoming.getSide() == Side.BUY) ? incoming.getId() : resting.getId();
+                final String sellId = (incoming.getSide() == Side.SELL) ? incoming.getId() : resting.getId();
+
+                final Trade t = new Trade(incoming.getMarketId(), buyId, sellId, tradeTicks, tradeSize);
+                executed.add(t);
+                trades.record(t);
+                incoming.reduce(tradeSize);
+                book.fill(level, resting, tradeSize);
+                settle(incoming, resting, t);
+            }
+            if (resting.isFilled()) {
+                book.removeFilledHead(opposite, level);
             }
-
-            // build trade (buyOrderId first)
-            final String buyId = (incoming.getSide() == Side.BUY) ? incoming.getId() : resting.getId();
-            final String sellId = (incoming.getSide() == Side.SELL) ? incoming.getId() : resting.getId();
-
-            final Trade t = new Trade(incoming.getMarketId(), buyId, sellId, tradePrice, tradeSize);
-            executed.add(t);
-            trades.add(t);
-            incoming.reduce(tradeSize);
-            reduceResting(resting.getId(), tradeSize);
-            removeFilledFromLists();
         }
 
         // after matching: if limit and remainder > 0 => rest in book; if market =>
@@ -333,39 +725,146 @@ public class MatchingEngine {
                 // market remainder cancels -> nothing to add
             } else {
                 // rest incoming into book
-                if (incoming.getSide() == Side.BUY) {
-                    bids.add(incoming);
-                } else {
-                    asks.add(incoming);
-                }
+                book.add(incoming);
+            }
+        }
+        metrics.record(incoming.getMarketId(), OrderPhase.MATCH_LOGIC, start);
+        if (journal != null) {
+            // trades first: replay applies them to the resting orders, then rests the incoming remainder
+            for (final Trade t : executed) {
+                journal.appendTrade(t);
             }
+            journal.appendOrder(incoming);
+            journalMark = journal.position();
         }
         return executed;
     }
 
-    // helper to reduce the actual resting order in real lists (not the sorted copy)
-    private void reduceResting(final String restingId, final double qty) {
-        for (final BookOrder o : bids) {
-            if (o.getId().equals(restingId)) {
-                o.reduce(qty);
-                return;
-            }
+    /**
+     * The book has already moved when a trade is charged, so a charge that fails
+     * is reported rather than failing the pass.
+     */
+    private void settle(final BookOrder incoming, final BookOrder resting, final Trade trade) {
+        if (settlement == null) {
+            return;
         }
-        for (final BookOrder o : asks) {
-            if (o.getId().equals(restingId)) {
-                o.reduce(qty);
-                return;
+        final BookOrder buy = incoming.getSide() == Side.BUY ? incoming : resting;
+        final BookOrder sell = incoming.getSide() == Side.BUY ? resting : incoming;
+        try {
+            settlement.settle(buy, sell, trade);
+        } catch (RuntimeException e) {
+            System.err.println("Warning: could not settle trade " + trade.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Blocks until everything this engine has journaled so far is durable; a no-op
+     * without a journal. Call it outside the engine lock before acknowledging a
+     * command, so that one disk write covers the commands of many callers.
+     */
+    public void awaitJournal() {
+        if (journal != null) {
+            journal.awaitDurable(journalMark);
+        }
+    }
+
+    /**
+     * Copies this engine's books and trade tapes for a snapshot. Runs on the
+     * shard's writer, so the copy matches the journal position taken with it.
+     */
+    synchronized EngineSnapshot captureSnapshot() {
+        if (journal == null) {
+            throw new IllegalStateException("Only journaled engines can be snapshotted");
+        }
+        final long position = journal.position();
+        final Set<String> markets = new LinkedHashSet<>(books.keySet());
+        markets.addAll(trades.markets());
+        final List<EngineSnapshot.MarketState> states = new ArrayList<>(markets.size());
+        for (final String marketId : markets) {
+            final List<BookOrder> orders = new ArrayList<>();
+            final LimitOrderBook book = books.get(marketId);
+            if (book != null) {
+                // orders keep changing after this returns, so the snapshot gets copies
+                for (final BookOrder o : book.getBids()) {
+                    orders.add(copy(o));
+                }
+                for (final BookOrder o : book.getAsks()) {
+                    orders.add(copy(o));
+                }
             }
+            states.add(new EngineSnapshot.MarketState(marketId, position, orders,
+                    trades.lastN(marketId, TRADE_TAPE_CAPACITY)));
         }
+        return new EngineSnapshot(states, position, position);
     }
 
-    private void removeFilledFromLists() {
-        bids.removeIf(BookOrder::isFilled);
-        asks.removeIf(BookOrder::isFilled);
+    private static BookOrder copy(final BookOrder o) {
+        return new BookOrder(o.getId(), o.getUserId(), o.getMarketId(), o.getSide(), o.getPriceTicks(),
+                o.isMarket(), o.getOriginalQty(), o.getRemainingQty(), o.getTimestamp());
+    }
+
+    /**
+     * Puts a market back as a snapshot recorded it; call before replaying the journal tail.
+     */
+    synchronized void restore(final EngineSnapshot.MarketState state) {
+        final LimitOrderBook book = books.computeIfAbsent(state.getMarketId(),
+                k -> new LimitOrderBook(restingById));
+        for (final BookOrder o : state.getOrders()) {
+            book.add(o);
+        }
+        for (final Trade t : state.getTrades()) {
+            trades.record(t);
+        }
+    }
+
+    // --- Journal replay (recovery): re-applies recorded effects without matching ---
+
+    synchronized void replayOrder(final BookOrder order) {
+        // a market order's remainder is cancelled, exactly as when it was placed
+        if (!order.isFilled() && !order.isMarket()) {
+            books.computeIfAbsent(order.getMarketId(), k -> new LimitOrderBook(restingById)).add(order);
+        }
+    }
+
+    synchronized void replayTrade(final Trade trade) {
+        trades.record(trade);
+        // the incoming side is not in the book yet; its ORDER record follows with its remainder
+        replayFill(trade.getMarketId(), trade.getBuyOrderId(), trade.getSize());
+        replayFill(trade.getMarketId(), trade.getSellOrderId(), trade.getSize());
+    }
+
+    private void replayFill(final String marketId, final String orderId, final double size) {
+        final PriceLevel.Node node = restingById.get(orderId);
+        if (node == null) {
+            return;
+        }
+        final LimitOrderBook book = books.get(marketId);
+        final BookOrder resting = node.getOrder();
+        book.fill(resting, size);
+        if (resting.isFilled()) {
+            book.remove(resting);
+        }
+    }
+
+    synchronized void replayCancel(final String marketId, final String orderId) {
+        final PriceLevel.Node node = restingById.get(orderId);
+        if (node != null) {
+            books.get(marketId).remove(node.getOrder());
+        }
+    }
+
+    synchronized void replayAmend(final String marketId, final String orderId, final double newQty) {
+        final PriceLevel.Node node = restingById.get(orderId);
+        if (node != null) {
+            final BookOrder order = node.getOrder();
+            books.get(marketId).fill(order, order.getRemainingQty() - newQty);
+        }
     }
 
     public synchronized OrderBook snapshotOrderBook(final String marketId) {
-        if (orderRepo != null) {
+        if (memoryResident) {
+            return snapshotOrderBookMemoryResident(marketId);
+        } else if (orderRepo != null) {
             return snapshotOrderBookDb(marketId);
         } else {
             return snapshotOrderBookInMemory(marketId);
@@ -379,54 +878,165 @@ public class MatchingEngine {
         List<OrderBookEntry> bidEntries = new ArrayList<>();
         List<OrderBookEntry> askEntries = new ArrayList<>();
 
+        // market orders are shown with a price of -1
         for (BookOrder b : dbBids) {
-            double priceValue = (b.getPrice() == null) ? -1.0 : b.getPrice();
-            bidEntries.add(new OrderBookEntry(Side.BUY, priceValue, b.getRemainingQty()));
+            long priceTicks = b.isMarket() ? -PriceTicks.ONE : b.getPriceTicks();
+            bidEntries.add(OrderBookEntry.ofTicks(Side.BUY, priceTicks, b.getRemainingQty()));
         }
 
         for (BookOrder a : dbAsks) {
-            double priceValue = (a.getPrice() == null) ? -1.0 : a.getPrice();
-            askEntries.add(new OrderBookEntry(Side.SELL, priceValue, a.getRemainingQty()));
+            long priceTicks = a.isMarket() ? -PriceTicks.ONE : a.getPriceTicks();
+            askEntries.add(OrderBookEntry.ofTicks(Side.SELL, priceTicks, a.getRemainingQty()));
         }
 
         return new OrderBook(marketId, bidEntries, askEntries);
     }
 
+    /**
+     * Top {@code maxLevels} price levels per side. Memory-backed books build this in
+     * O(maxLevels); DB mode truncates the full snapshot.
+     */
+    public synchronized OrderBook snapshotOrderBook(final String marketId, final int maxLevels) {
+        if (maxLevels < 0) {
+            throw new IllegalArgumentException("maxLevels must be >= 0");
+        }
+        final OrderBook full;
+        if (orderRepo != null && !memoryResident) {
+            full = snapshotOrderBookDb(marketId);
+        } else {
+            final LimitOrderBook book = memoryResident ? residentBook(marketId) : books.get(marketId);
+            if (book == null) {
+                return new OrderBook(marketId, Collections.emptyList(), Collections.emptyList());
+            }
+            final OrderBook cached = book.cachedSnapshot();
+            if (cached == null) {
+                return new OrderBook(marketId, depth(book.getBids(), memoryResident, maxLevels),
+                        depth(book.getAsks(), memoryResident, maxLevels));
+            }
+            full = cached;
+        }
+        return new OrderBook(marketId, top(full.getBids(), maxLevels), top(full.getAsks(), maxLevels));
+    }
+
     private OrderBook snapshotOrderBookInMemory(final String marketId) {
-        // aggregate price levels into OrderBookEntry lists
-        final Map<Double, Double> bidAgg = new TreeMap<>(Comparator.reverseOrder());
-        final Map<Double, Double> askAgg = new TreeMap<>();
+        final LimitOrderBook book = books.get(marketId);
+        if (book == null) {
+            return new OrderBook(marketId, Collections.emptyList(), Collections.emptyList());
+        }
+        return cachedDepth(marketId, book, false);
+    }
 
-        for (final BookOrder b : bids) {
-            final Double p = b.getPrice() == null ? 0.0 : b.getPrice();
-            bidAgg.put(p, bidAgg.getOrDefault(p, 0.0) + b.getRemainingQty());
+    private OrderBook snapshotOrderBookMemoryResident(String marketId) {
+        return cachedDepth(marketId, residentBook(marketId), true);
+    }
+
+    /**
+     * Full depth from the per-level totals, reused until the book version changes.
+     */
+    private static OrderBook cachedDepth(final String marketId, final LimitOrderBook book,
+            final boolean withMarketOrders) {
+        OrderBook snapshot = book.cachedSnapshot();
+        if (snapshot == null) {
+            // price levels are already aggregated and sorted best-first
+            snapshot = new OrderBook(marketId,
+                    depth(book.getBids(), withMarketOrders, Integer.MAX_VALUE),
+                    depth(book.getAsks(), withMarketOrders, Integer.MAX_VALUE));
+            book.cacheSnapshot(snapshot);
         }
-        for (final BookOrder a : asks) {
-            final Double p = a.getPrice() == null ? 0.0 : a.getPrice();
-            askAgg.put(p, askAgg.getOrDefault(p, 0.0) + a.getRemainingQty());
+        return snapshot;
+    }
+
+    // market orders (memory-resident mode only) are shown with a price of -1, as in the DB snapshot
+    private static List<OrderBookEntry> depth(final BookSide bookSide, final boolean withMarketOrders,
+            final int maxLevels) {
+        final List<OrderBookEntry> entries = new ArrayList<>(Math.min(maxLevels, bookSide.levelCount() + 1));
+        final PriceLevel marketOrders = bookSide.getMarketOrders();
+        if (withMarketOrders && marketOrders.getTotalQty() > 0 && entries.size() < maxLevels) {
+            entries.add(OrderBookEntry.ofTicks(bookSide.getSide(), -PriceTicks.ONE, marketOrders.getTotalQty()));
+        }
+        for (final PriceLevel level : bookSide.levels()) {
+            if (entries.size() >= maxLevels) {
+                break;
+            }
+            entries.add(OrderBookEntry.ofTicks(bookSide.getSide(), level.getPriceTicks(), level.getTotalQty()));
         }
+        return entries;
+    }
 
-        final List<OrderBookEntry> bidEntries = bidAgg.entrySet().stream()
-                .map(e -> new OrderBookEntry(stakemate.entity.Side.BUY, e.getKey(), e.getValue()))
-                .collect(Collectors.toList());
+    private static List<OrderBookEntry> top(final List<OrderBookEntry> entries, final int maxLevels) {
+        return entries.size() <= maxLevels ? entries : entries.subList(0, maxLevels);
+    }
 
-        final List<OrderBookEntry> askEntries = askAgg.entrySet().stream()
-                .map(e -> new OrderBookEntry(stakemate.entity.Side.SELL, e.getKey(), e.getValue()))
-                .collect(Collectors.toList());
+    /**
+     * Every trade still on the in-memory tape, across markets, oldest first.
+     */
+    public synchronized List<Trade> getTrades() {
+        return Collections.unmodifiableList(trades.all());
+    }
 
-        return new OrderBook(marketId, bidEntries, askEntries);
+    /**
+     * The newest trade of a market, or null if it has not traded.
+     */
+    public synchronized Trade lastTrade(final String marketId) {
+        return trades.last(marketId);
     }
 
-    public List<Trade> getTrades() {
-        return Collections.unmodifiableList(trades);
+    /**
+     * Up to {@code n} of a market's newest trades, oldest first.
+     */
+    public synchronized List<Trade> recentTrades(final String marketId, final int n) {
+        return Collections.unmodifiableList(trades.lastN(marketId, n));
     }
 
-    // convenience getters for demo/UI
-    public List<BookOrder> getBids() {
-        return Collections.unmodifiableList(bids);
+    /**
+     * Where per-phase latencies of placeOrder are recorded; by default the shared metrics.
+     */
+    public synchronized void setMetrics(final PlaceOrderMetrics metrics) {
+        this.metrics = metrics;
     }
 
-    public List<BookOrder> getAsks() {
-        return Collections.unmodifiableList(asks);
+    // convenience getters for demo/UI (all markets)
+    public synchronized List<BookOrder> getBids() {
+        final List<BookOrder> result = new ArrayList<>();
+        for (final LimitOrderBook book : books.values()) {
+            result.addAll(book.getBids().orders());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public synchronized List<BookOrder> getAsks() {
+        final List<BookOrder> result = new ArrayList<>();
+        for (final LimitOrderBook book : books.values()) {
+            result.addAll(book.getAsks().orders());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Copies of the resting orders of one market, bids first.
+     */
+    public synchronized List<BookOrder> openOrders(final String marketId) {
+        final List<BookOrder> result = new ArrayList<>();
+        final LimitOrderBook book = books.get(marketId);
+        if (book != null) {
+            for (final BookOrder o : book.getBids()) {
+                result.add(copy(o));
+            }
+            for (final BookOrder o : book.getAsks()) {
+                result.add(copy(o));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies of the resting orders of every market of this engine.
+     */
+    public synchronized List<BookOrder> openOrders() {
+        final List<BookOrder> result = new ArrayList<>();
+        for (final String marketId : books.keySet()) {
+            result.addAll(openOrders(marketId));
+        }
+        return result;
     }
 }
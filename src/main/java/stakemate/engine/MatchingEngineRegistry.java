@@ -0,0 +1,345 @@
+package stakemate.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import stakemate.entity.OrderBook;
+
+/**
+ * Routes every market to one of a fixed number of engine shards.
+ * <p>
+ * Each shard owns its own {@link MatchingEngine} (and therefore its own books)
+ * and a single writer thread. All commands for a market run on that market's
+ * writer, so markets on different shards match in parallel while each book still
+ * sees a strictly ordered stream of orders.
+ */
+public class MatchingEngineRegistry implements AutoCloseable {
+
+    private final MatchingEngine[] engines;
+    private final ExecutorService[] writers;
+    private final Thread[] writerThreads;
+
+    /**
+     * Creates a registry with {@code shardCount} shards.
+     *
+     * @param shardCount    number of independent engines / writer threads (at least 1)
+     * @param engineFactory creates the engine for each shard
+     */
+    public MatchingEngineRegistry(final int shardCount, final Supplier<MatchingEngine> engineFactory) {
+        this(createEngines(shardCount, engineFactory));
+    }
+
+    private MatchingEngineRegistry(final MatchingEngine[] engines) {
+        this.engines = engines;
+        this.writers = new ExecutorService[engines.length];
+        this.writerThreads = new Thread[engines.length];
+        for (int i = 0; i < engines.length; i++) {
+            final int shard = i;
+            final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        final Thread t = new Thread(r, "matching-shard-" + shard);
+                        t.setDaemon(true);
+                        writerThreads[shard] = t;
+                        return t;
+                    });
+            // start the writer now so writerThreads is fully published with this registry
+            writer.prestartCoreThread();
+            writers[i] = writer;
+        }
+    }
+
+    /**
+     * Wraps an existing engine as a registry with a single shard.
+     */
+    public static MatchingEngineRegistry single(final MatchingEngine engine) {
+        return new MatchingEngineRegistry(new MatchingEngine[] {engine});
+    }
+
+    private static MatchingEngine[] createEngines(final int shardCount, final Supplier<MatchingEngine> factory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be >= 1");
+        }
+        final MatchingEngine[] result = new MatchingEngine[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            result[i] = factory.get();
+        }
+        return result;
+    }
+
+    public int getShardCount() {
+        return engines.length;
+    }
+
+    public int shardOf(final String marketId) {
+        return Math.floorMod(marketId.hashCode(), engines.length);
+    }
+
+    public MatchingEngine engineFor(final String marketId) {
+        return engines[shardOf(marketId)];
+    }
+
+    /**
+     * Runs a command against the engine that owns {@code marketId} on that
+     * shard's writer thread and waits for the result.
+     */
+    public <T> T execute(final String marketId, final Function<MatchingEngine, T> command) {
+        final int shard = shardOf(marketId);
+        final MatchingEngine engine = engines[shard];
+        if (Thread.currentThread() == writerThreads[shard]) {
+            // already on the writer (nested call) - run inline to avoid self-deadlock
+            return command.apply(engine);
+        }
+        final T result = await(writers[shard].submit((Callable<T>) () -> command.apply(engine)));
+        // outside the writer, so the shard keeps matching while this reply waits for the disk
+        engine.awaitJournal();
+        return result;
+    }
+
+    public List<Trade> placeOrder(final BookOrder incoming) {
+        return execute(incoming.getMarketId(), engine -> engine.placeOrder(incoming));
+    }
+
+    /**
+     * Places a batch of orders. Orders are grouped by shard; each shard matches its
+     * group in one task on its writer thread, and shards run in parallel. Orders of
+     * one market keep their relative order.
+     *
+     * @return the trades of each order, index-aligned with {@code incoming}; null
+     *     for an order that could not be placed, e.g. because its shard failed.
+     */
+    public List<List<Trade>> placeOrders(final List<BookOrder> incoming) {
+        final List<List<Integer>> indicesByShard = new ArrayList<>();
+        for (int s = 0; s < engines.length; s++) {
+            indicesByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < incoming.size(); i++) {
+            indicesByShard.get(shardOf(incoming.get(i).getMarketId())).add(i);
+        }
+
+        final List<Future<List<List<Trade>>>> pending = new ArrayList<>();
+        final List<List<Integer>> pendingIndices = new ArrayList<>();
+        final List<List<Trade>> result = new ArrayList<>(Collections.nCopies(incoming.size(), null));
+        for (int s = 0; s < engines.length; s++) {
+            final List<Integer> indices = indicesByShard.get(s);
+            if (indices.isEmpty()) {
+                continue;
+            }
+            final List<BookOrder> group = new ArrayList<>(indices.size());
+            for (final int i : indices) {
+                group.add(incoming.get(i));
+            }
+            final MatchingEngine engine = engines[s];
+            if (Thread.currentThread() == writerThreads[s]) {
+                scatter(engine.placeOrders(group), indices, result);
+            }
+            else {
+                pending.add(writers[s].submit(() -> engine.placeOrders(group)));
+                pendingIndices.add(indices);
+            }
+        }
+        for (int k = 0; k < pending.size(); k++) {
+            try {
+                scatter(await(pending.get(k)), pendingIndices.get(k), result);
+            }
+            catch (final RuntimeException ex) {
+                // the group's entries stay null; the other shards' results still count
+                System.err.println("Warning: shard failed to place " + pendingIndices.get(k).size()
+                        + " orders: " + ex.getMessage());
+            }
+        }
+        for (int s = 0; s < engines.length; s++) {
+            if (!indicesByShard.get(s).isEmpty()) {
+                engines[s].awaitJournal();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rebuilds the books and trade tapes of journaled engines from {@code journal},
+     * each record going to the shard that owns its market. Call it once at startup,
+     * before any command; the shard count may differ from the run that wrote it.
+     */
+    public void recover(final EngineJournal journal) throws IOException {
+        recover(journal, null);
+    }
+
+    /**
+     * Like {@link #recover(EngineJournal)}, but starts from {@code snapshot} (if not
+     * null) and replays only the journal records it does not cover.
+     */
+    public void recover(final EngineJournal journal, final EngineSnapshot snapshot) throws IOException {
+        final Map<String, Long> coveredUntil = new HashMap<>();
+        long from = 0;
+        if (snapshot != null) {
+            for (final EngineSnapshot.MarketState market : snapshot.getMarkets()) {
+                engineFor(market.getMarketId()).restore(market);
+                coveredUntil.put(market.getMarketId(), market.getJournalPosition());
+            }
+            from = snapshot.getJournalStart();
+        }
+        journal.replay(new EngineJournal.Visitor() {
+            private boolean covered(final long position, final String marketId) {
+                return position < coveredUntil.getOrDefault(marketId, 0L);
+            }
+
+            @Override
+            public void order(final long position, final BookOrder order) {
+                if (!covered(position, order.getMarketId())) {
+                    engineFor(order.getMarketId()).replayOrder(order);
+                }
+            }
+
+            @Override
+            public void trade(final long position, final Trade trade) {
+                if (!covered(position, trade.getMarketId())) {
+                    engineFor(trade.getMarketId()).replayTrade(trade);
+                }
+            }
+
+            @Override
+            public void cancel(final long position, final String marketId, final String orderId) {
+                if (!covered(position, marketId)) {
+                    engineFor(marketId).replayCancel(marketId, orderId);
+                }
+            }
+
+            @Override
+            public void amend(final long position, final String marketId, final String orderId,
+                              final double newQty) {
+                if (!covered(position, marketId)) {
+                    engineFor(marketId).replayAmend(marketId, orderId, newQty);
+                }
+            }
+        }, from);
+    }
+
+    /**
+     * Captures the books and trade tapes of every shard; each shard is copied on
+     * its writer thread, between two commands. The engines must be journaled.
+     */
+    public EngineSnapshot snapshot() {
+        final List<Future<EngineSnapshot>> parts = new ArrayList<>(engines.length);
+        for (int s = 0; s < engines.length; s++) {
+            parts.add(writers[s].submit(engines[s]::captureSnapshot));
+        }
+        final List<EngineSnapshot> captured = new ArrayList<>(engines.length);
+        for (final Future<EngineSnapshot> part : parts) {
+            captured.add(await(part));
+        }
+        return EngineSnapshot.merge(captured);
+    }
+
+    private static void scatter(final List<List<Trade>> groupResult, final List<Integer> indices,
+                                final List<List<Trade>> result) {
+        for (int j = 0; j < indices.size(); j++) {
+            result.set(indices.get(j), groupResult.get(j));
+        }
+    }
+
+    public List<BookOrder> cancelAll(final String userId, final String marketId) {
+        return execute(marketId, engine -> engine.cancelAll(userId, marketId));
+    }
+
+    public BookOrder cancelOrder(final String marketId, final String orderId) {
+        return execute(marketId, engine -> engine.cancelOrder(orderId));
+    }
+
+    public BookOrder amendOrder(final String marketId, final String orderId, final double newQty) {
+        return execute(marketId, engine -> engine.amendOrder(orderId, newQty));
+    }
+
+    public List<Trade> replaceOrder(final String orderId, final BookOrder replacement) {
+        return execute(replacement.getMarketId(), engine -> engine.replaceOrder(orderId, replacement));
+    }
+
+    public OrderBook snapshotOrderBook(final String marketId) {
+        return execute(marketId, engine -> engine.snapshotOrderBook(marketId));
+    }
+
+    public OrderBook snapshotOrderBook(final String marketId, final int maxLevels) {
+        return execute(marketId, engine -> engine.snapshotOrderBook(marketId, maxLevels));
+    }
+
+    /**
+     * Copies of the resting orders of one market, read on its shard's writer.
+     */
+    public List<BookOrder> openOrders(final String marketId) {
+        return execute(marketId, engine -> engine.openOrders(marketId));
+    }
+
+    /**
+     * Copies of the resting orders of every market on every shard.
+     */
+    public List<BookOrder> openOrders() {
+        final List<BookOrder> all = new ArrayList<>();
+        for (final MatchingEngine engine : engines) {
+            all.addAll(engine.openOrders());
+        }
+        return all;
+    }
+
+    /**
+     * Recent trades from every shard, oldest first.
+     */
+    public List<Trade> getTrades() {
+        final List<Trade> all = new ArrayList<>();
+        for (final MatchingEngine engine : engines) {
+            all.addAll(engine.getTrades());
+        }
+        // trade ids come from one process-wide sequence, so they order trades across shards
+        all.sort((a, b) -> IdGenerator.compare(a.getSequence(), b.getSequence()));
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * The newest trade of a market; asks only the shard that owns it.
+     */
+    public Trade lastTrade(final String marketId) {
+        return engineFor(marketId).lastTrade(marketId);
+    }
+
+    public List<Trade> recentTrades(final String marketId, final int n) {
+        return engineFor(marketId).recentTrades(marketId, n);
+    }
+
+    private static <T> T await(final Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for matching engine", ex);
+        }
+        catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Matching engine command failed", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+    }
+}
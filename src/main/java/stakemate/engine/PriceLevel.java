@@ -0,0 +1,158 @@
+package stakemate.engine;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue of resting orders that share one price.
+ * The head of the queue is always the oldest order (time priority).
+ * <p>
+ * The queue is an intrusive doubly linked list of {@link Node}s; the book keeps
+ * each order's node in its id index, so an order is unlinked from anywhere in
+ * the queue in O(1).
+ * <p>
+ * The level also keeps the total remaining quantity of its orders, updated as
+ * orders are added, filled and removed, so depth snapshots never walk the queue.
+ * Fills must therefore go through {@link #fill} rather than {@link BookOrder#reduce}.
+ */
+class PriceLevel {
+    private final long priceTicks;
+    private Node head;
+    private Node tail;
+    private double totalQty;
+
+    PriceLevel(final long priceTicks) {
+        this.priceTicks = priceTicks;
+    }
+
+    long getPriceTicks() {
+        return priceTicks;
+    }
+
+    double getTotalQty() {
+        return totalQty;
+    }
+
+    /**
+     * Appends an order at the back of the queue.
+     *
+     * @return the order's node, for later O(1) removal.
+     */
+    Node add(final BookOrder order) {
+        final Node node = new Node(order, this);
+        if (tail == null) {
+            head = node;
+        }
+        else {
+            tail.next = node;
+            node.prev = tail;
+        }
+        tail = node;
+        totalQty += order.getRemainingQty();
+        return node;
+    }
+
+    /**
+     * Reduces a resting order in this level by {@code qty}; it keeps its place in the queue.
+     */
+    void fill(final BookOrder order, final double qty) {
+        final double before = order.getRemainingQty();
+        order.reduce(qty);
+        totalQty -= before - order.getRemainingQty();
+        settle();
+    }
+
+    BookOrder peek() {
+        return head == null ? null : head.order;
+    }
+
+    /**
+     * Removes the head of the queue.
+     *
+     * @return the removed node, or null if the level was empty.
+     */
+    Node poll() {
+        final Node first = head;
+        if (first != null) {
+            unlink(first);
+        }
+        return first;
+    }
+
+    /**
+     * Removes {@code node} from wherever it sits in this queue.
+     */
+    void unlink(final Node node) {
+        if (node.prev == null) {
+            head = node.next;
+        }
+        else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        }
+        else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        totalQty -= node.order.getRemainingQty();
+        settle();
+    }
+
+    // drop floating-point residue so an emptied level reads exactly zero
+    private void settle() {
+        if (head == null || totalQty < 0.0) {
+            totalQty = 0.0;
+        }
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    Iterable<BookOrder> orders() {
+        return () -> new Iterator<>() {
+            private Node next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BookOrder next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final BookOrder order = next.order;
+                next = next.next;
+                return order;
+            }
+        };
+    }
+
+    /**
+     * An order's place in its level's queue.
+     */
+    static final class Node {
+        private final BookOrder order;
+        private final PriceLevel level;
+        private Node prev;
+        private Node next;
+
+        private Node(final BookOrder order, final PriceLevel level) {
+            this.order = order;
+            this.level = level;
+        }
+
+        BookOrder getOrder() {
+            return order;
+        }
+
+        PriceLevel getLevel() {
+            return level;
+        }
+    }
+}
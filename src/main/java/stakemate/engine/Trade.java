@@ -1,29 +1,66 @@
 package stakemate.engine;
 
 import java.time.Instant;
-import java.util.UUID;
 
+import stakemate.entity.PriceTicks;
+
+/**
+ * One execution between a buy and a sell order.
+ * <p>
+ * Like {@link BookOrder}, a new trade holds a numeric id from {@link IdGenerator}
+ * and renders it as a string on first use.
+ */
 public class Trade {
-    private final String id;
+    // rendered from sequence on first use; a racing second render yields an equal string
+    private String id;
+    private final long sequence;
     private final String marketId;
     private final String buyOrderId;
     private final String sellOrderId;
-    private final double price;
+    private final long priceTicks;
     private final double size;
     private final Instant timestamp;
 
-    public Trade(final String marketId, final String buyOrderId, final String sellOrderId, final double price, final double size) {
-        this.id = UUID.randomUUID().toString();
+    public Trade(final String marketId, final String buyOrderId, final String sellOrderId, final long priceTicks,
+                 final double size) {
+        this(null, IdGenerator.shared().next(), marketId, buyOrderId, sellOrderId, priceTicks, size, Instant.now());
+    }
+
+    /**
+     * Rebuilds a trade that was executed earlier, e.g. when reading trade history.
+     */
+    public Trade(final String id, final String marketId, final String buyOrderId, final String sellOrderId,
+                 final long priceTicks, final double size, final Instant timestamp) {
+        this(id, IdGenerator.parse(id), marketId, buyOrderId, sellOrderId, priceTicks, size, timestamp);
+    }
+
+    private Trade(final String id, final long sequence, final String marketId, final String buyOrderId,
+                  final String sellOrderId, final long priceTicks, final double size, final Instant timestamp) {
+        this.id = id;
+        this.sequence = sequence;
         this.marketId = marketId;
         this.buyOrderId = buyOrderId;
         this.sellOrderId = sellOrderId;
-        this.price = price;
+        this.priceTicks = priceTicks;
         this.size = size;
-        this.timestamp = Instant.now();
+        this.timestamp = timestamp;
     }
 
     public String getId() {
-        return id;
+        String rendered = id;
+        if (rendered == null) {
+            rendered = IdGenerator.format(sequence);
+            id = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Numeric id; increases with execution order for trades of the same node,
+     * -1 for trades rebuilt from a legacy id.
+     */
+    public long getSequence() {
+        return sequence;
     }
 
     public String getMarketId() {
@@ -39,7 +76,11 @@ public class Trade {
     }
 
     public double getPrice() {
-        return price;
+        return PriceTicks.toPrice(priceTicks);
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
     }
 
     public double getSize() {
@@ -53,6 +94,6 @@ public class Trade {
     @Override
     public String toString() {
         return String.format("[%s] TRADE %s BUY:%s SELL:%s @ %.2f x %.2f",
-            timestamp, id, buyOrderId, sellOrderId, price, size);
+            timestamp, getId(), buyOrderId, sellOrderId, getPrice(), size);
     }
 }
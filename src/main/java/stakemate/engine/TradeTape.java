@@ -0,0 +1,105 @@
+package stakemate.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The most recent trades of each market, kept in one fixed-size ring buffer per
+ * market. The last trade and the last N trades of a market are read without
+ * touching any other market; once a market's ring is full, its oldest trade is
+ * overwritten. Older trades are read from the trades table where there is one.
+ * <p>
+ * Not thread-safe: the owning {@link MatchingEngine} guards it with its own lock.
+ */
+final class TradeTape {
+
+    private final int capacity;
+    private final Map<String, Ring> rings = new HashMap<>();
+
+    TradeTape(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.capacity = capacity;
+    }
+
+    void record(Trade trade) {
+        rings.computeIfAbsent(trade.getMarketId(), id -> new Ring(capacity)).add(trade);
+    }
+
+    /**
+     * @return the newest trade of the market, or null if it has none.
+     */
+    Trade last(String marketId) {
+        final Ring ring = rings.get(marketId);
+        return ring == null ? null : ring.newest(0);
+    }
+
+    /**
+     * @return up to {@code n} of the market's newest trades, oldest first.
+     */
+    List<Trade> lastN(String marketId, int n) {
+        final Ring ring = rings.get(marketId);
+        final List<Trade> result = new ArrayList<>();
+        if (ring != null) {
+            for (int i = Math.min(n, ring.size) - 1; i >= 0; i--) {
+                result.add(ring.newest(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return every market that has had a trade.
+     */
+    Set<String> markets() {
+        return rings.keySet();
+    }
+
+    /**
+     * @return every retained trade of every market, oldest first.
+     */
+    List<Trade> all() {
+        final List<Trade> result = new ArrayList<>();
+        for (final String marketId : rings.keySet()) {
+            result.addAll(lastN(marketId, capacity));
+        }
+        result.sort((a, b) -> IdGenerator.compare(a.getSequence(), b.getSequence()));
+        return result;
+    }
+
+    private static final class Ring {
+        private final Trade[] slots;
+        // index the next trade is written to
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.slots = new Trade[capacity];
+        }
+
+        /**
+         * Adds a trade, overwriting the oldest one if the ring is full.
+         */
+        void add(Trade trade) {
+            slots[head] = trade;
+            head = (head + 1) % slots.length;
+            if (size < slots.length) {
+                size++;
+            }
+        }
+
+        /**
+         * @param age 0 for the newest trade, 1 for the one before, ...
+         */
+        Trade newest(int age) {
+            if (age >= size) {
+                return null;
+            }
+            return slots[Math.floorMod(head - 1 - age, slots.length)];
+        }
+    }
+}
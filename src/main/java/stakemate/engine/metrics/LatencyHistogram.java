@@ -0,0 +1,131 @@
+package stakemate.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in microseconds with log-linear buckets, in the style of
+ * HdrHistogram: values below 128 us are counted exactly, larger ones in buckets
+ * no wider than 1/64 of their value, up to about 71 minutes. Recording is a
+ * couple of atomic increments and never allocates, so any number of threads may
+ * record while another one takes snapshots.
+ * <p>
+ * Counts only ever grow; {@link Snapshot#minus} turns two snapshots into the
+ * histogram of the interval between them.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 32;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+    private static final long NANOS_PER_MICRO = 1_000L;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(final long nanos) {
+        final long micros = Math.max(0, Math.min(MAX_VALUE, nanos / NANOS_PER_MICRO));
+        counts.incrementAndGet(indexOf(micros));
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalMicros.sum(), maxMicros.get());
+    }
+
+    private static int indexOf(final long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        final int bucket = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1);
+        return bucket * SUB_BUCKET_HALF + (int) (micros >>> bucket);
+    }
+
+    /**
+     * The largest value counted in the same bucket as index {@code index}.
+     */
+    private static long highestValueAt(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int bucket = index / SUB_BUCKET_HALF - 1;
+        final long lowest = (long) (index % SUB_BUCKET_HALF + SUB_BUCKET_HALF) << bucket;
+        return lowest + (1L << bucket) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram's counts.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        private Snapshot(final long[] counts, final long count, final long totalMicros, final long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+
+        /**
+         * Largest value ever recorded; for an interval this is the all-time maximum,
+         * capped by the interval's own highest bucket.
+         */
+        public long getMaxMicros() {
+            return count == 0 ? 0 : Math.min(maxMicros, valueAtPercentile(100));
+        }
+
+        /**
+         * @param percentile 0-100.
+         * @return the value at or below which that share of the samples fall, to
+         *     the histogram's precision, or 0 if there are none.
+         */
+        public long valueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        /**
+         * The samples recorded after {@code earlier} was taken from the same histogram.
+         */
+        public Snapshot minus(final Snapshot earlier) {
+            final long[] diff = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(diff, count - earlier.count, totalMicros - earlier.totalMicros, maxMicros);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package stakemate.engine.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of one latency histogram, in microseconds; JMX shows it as a
+ * composite value.
+ */
+public final class LatencyStats {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+    public LatencyStats(final long count, final double mean, final long p50, final long p90, final long p99,
+                        final long p999, final long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public static LatencyStats of(final LatencyHistogram.Snapshot s) {
+        return new LatencyStats(s.getCount(), s.getMeanMicros(), s.valueAtPercentile(50), s.valueAtPercentile(90),
+                s.valueAtPercentile(99), s.valueAtPercentile(99.9), s.getMaxMicros());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+                count, p50, p90, p99, p999, max);
+    }
+}
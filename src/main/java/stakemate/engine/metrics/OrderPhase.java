@@ -0,0 +1,41 @@
+package stakemate.engine.metrics;
+
+/**
+ * The steps an order goes through between {@code PlaceOrderUseCase.place} and
+ * its response. Phases marked as round trips talk to the database in the
+ * DB-backed modes; the rest is in-process work. Each phase is recorded once per
+ * order, so per-fill work is summed over the order's fills.
+ */
+public enum OrderPhase {
+    /** Quantity and price checks. */
+    VALIDATE,
+    /** Balance check and reservation (round trip for DB accounts). */
+    FUNDS_CHECK,
+    /** Inserting accepted orders (round trip). */
+    SAVE,
+    /** Handing the orders to their engine shards and waiting for the fills. */
+    MATCH,
+    /** Reading the resting opposite side (round trip, or a one-off book load). */
+    FIND_OPPOSITE,
+    /** Pricing the immediate fills and checking the incoming owner's balance. */
+    PRE_CHECK,
+    /** Resting owners' balances, positions and remaining quantities of all fills. */
+    FILL_WRITES,
+    /** Balance transfers between buyers and sellers of all fills. */
+    APPLY_TRADE,
+    /** Committing the matching pass's unit of work (round trip). */
+    COMMIT,
+    /** Matching logic alone: a matching pass minus its unit-of-work calls. */
+    MATCH_LOGIC,
+    /** Recording executed trades. */
+    TRADE_SAVE,
+    /** The whole call, as the caller saw it. */
+    TOTAL;
+
+    /**
+     * Lower-case name used in JMX keys and log lines.
+     */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
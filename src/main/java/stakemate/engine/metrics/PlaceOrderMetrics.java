@@ -0,0 +1,302 @@
+package stakemate.engine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
+
+/**
+ * Latency per {@link OrderPhase}, overall and per market, plus order counters,
+ * for the place-order path. The use case and the engines record into the
+ * {@link #shared()} instance unless given another one.
+ * <p>
+ * Timing a phase costs two {@link System#nanoTime()} calls and a few atomic
+ * increments; {@link #setEnabled(boolean) disabled} metrics skip even the clock
+ * reads. Results are readable over JMX ({@link #registerMBean()}) and can be
+ * printed periodically ({@link #startLogging(long)}).
+ * <p>
+ * Usage: {@code long t = metrics.start(); ...; metrics.record(marketId, phase, t);}
+ */
+public final class PlaceOrderMetrics implements PlaceOrderMetricsMXBean {
+
+    public static final String OBJECT_NAME = "stakemate:type=PlaceOrderMetrics";
+
+    private static final OrderPhase[] PHASES = OrderPhase.values();
+    private static final PlaceOrderMetrics SHARED = new PlaceOrderMetrics();
+
+    private volatile boolean enabled = true;
+    private volatile Window window = new Window();
+    private ScheduledJob logger;
+
+    /**
+     * The instance production code records into.
+     */
+    public static PlaceOrderMetrics shared() {
+        return SHARED;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the current time to pass to {@link #record}, or 0 when disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return nanoseconds since {@code start}, or 0 if it came from disabled metrics.
+     */
+    public long since(final long start) {
+        return start == 0 ? 0 : System.nanoTime() - start;
+    }
+
+    /**
+     * Records the time since {@code start} against {@code phase}.
+     *
+     * @return the recorded duration in nanoseconds (0 when disabled).
+     */
+    public long record(final String marketId, final OrderPhase phase, final long start) {
+        final long nanos = since(start);
+        if (start != 0) {
+            recordNanos(marketId, phase, nanos);
+        }
+        return nanos;
+    }
+
+    public void recordNanos(final String marketId, final OrderPhase phase, final long nanos) {
+        if (!enabled) {
+            return;
+        }
+        final Window w = window;
+        w.all.get(phase).recordNanos(nanos);
+        if (marketId != null) {
+            w.markets.computeIfAbsent(marketId, m -> new Phases()).get(phase).recordNanos(nanos);
+        }
+    }
+
+    public void countOrders(final int n) {
+        window.orders.add(n);
+    }
+
+    public void countRejected() {
+        window.rejected.increment();
+    }
+
+    public void countFills(final int n) {
+        window.fills.add(n);
+    }
+
+    public void countFundsCancel() {
+        window.fundsCancels.increment();
+    }
+
+    public void countRestingFundsCancel() {
+        window.restingFundsCancels.increment();
+    }
+
+    @Override
+    public long getOrders() {
+        return window.orders.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return window.rejected.sum();
+    }
+
+    @Override
+    public long getFills() {
+        return window.fills.sum();
+    }
+
+    @Override
+    public long getFundsCancels() {
+        return window.fundsCancels.sum();
+    }
+
+    @Override
+    public long getRestingFundsCancels() {
+        return window.restingFundsCancels.sum();
+    }
+
+    @Override
+    public Map<String, LatencyStats> getPhaseLatencies() {
+        final Map<String, LatencyStats> result = new TreeMap<>();
+        final Map<OrderPhase, LatencyHistogram.Snapshot> snapshots = window.all.snapshots();
+        for (final Map.Entry<OrderPhase, LatencyHistogram.Snapshot> e : snapshots.entrySet()) {
+            result.put(e.getKey().label(), LatencyStats.of(e.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencyStats> getMarketPhaseLatencies() {
+        final Map<String, LatencyStats> result = new TreeMap<>();
+        for (final Map.Entry<String, Phases> market : window.markets.entrySet()) {
+            for (final Map.Entry<OrderPhase, LatencyHistogram.Snapshot> e : market.getValue().snapshots().entrySet()) {
+                result.put(market.getKey() + "/" + e.getKey().label(), LatencyStats.of(e.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts over with empty histograms and counters.
+     */
+    @Override
+    public void reset() {
+        window = new Window();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under
+     * {@link #OBJECT_NAME}; registering twice is harmless.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (final InstanceAlreadyExistsException ex) {
+            // already visible
+        }
+        catch (final JMException ex) {
+            throw new RuntimeException("Could not register " + OBJECT_NAME, ex);
+        }
+    }
+
+    /**
+     * Prints a summary of the latest {@code periodSeconds} to standard out every
+     * {@code periodSeconds}, as the {@code place-order-metrics} job of the shared
+     * {@link Scheduler}, until {@link #stopLogging()}.
+     */
+    public synchronized void startLogging(final long periodSeconds) {
+        stopLogging();
+        final long periodMs = TimeUnit.SECONDS.toMillis(periodSeconds);
+        // no jitter: each line covers the stated interval
+        logger = Scheduler.shared().schedule("place-order-metrics", periodMs, periodMs, 0.0,
+                Scheduler.DEFAULT_MAX_BACKOFF_MS, new IntervalLog(periodSeconds));
+    }
+
+    public synchronized void stopLogging() {
+        if (logger != null) {
+            logger.cancel();
+            logger = null;
+        }
+    }
+
+    /**
+     * Everything recorded since start or the last reset, over all markets.
+     */
+    public String summary() {
+        final Window w = window;
+        return format("since reset", w.counters(), w.all.snapshots());
+    }
+
+    private static String format(final String span, final long[] counters,
+                                 final Map<OrderPhase, LatencyHistogram.Snapshot> phases) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("[place-order] %s: %d orders, %d rejected, %d fills, %d funds cancels "
+                        + "(%d resting)%n", span, counters[0], counters[1], counters[2], counters[3], counters[4]));
+        for (final Map.Entry<OrderPhase, LatencyHistogram.Snapshot> e : phases.entrySet()) {
+            if (e.getValue().getCount() > 0) {
+                sb.append(String.format("  %-14s %s%n", e.getKey().label(), LatencyStats.of(e.getValue())));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints the difference between consecutive snapshots of the overall histograms.
+     */
+    private final class IntervalLog implements Scheduler.Task {
+        private final long periodSeconds;
+        private Window lastWindow;
+        private Map<OrderPhase, LatencyHistogram.Snapshot> last;
+        private long[] lastCounters;
+
+        IntervalLog(final long periodSeconds) {
+            this.periodSeconds = periodSeconds;
+        }
+
+        @Override
+        public void run() {
+            final Window w = window;
+            final boolean sameWindow = w == lastWindow;
+            final long[] counters = w.counters();
+            final long[] intervalCounters = counters.clone();
+            if (sameWindow) {
+                for (int i = 0; i < counters.length; i++) {
+                    intervalCounters[i] -= lastCounters[i];
+                }
+            }
+            final Map<OrderPhase, LatencyHistogram.Snapshot> now = w.all.snapshots();
+            final Map<OrderPhase, LatencyHistogram.Snapshot> interval = new TreeMap<>();
+            for (final Map.Entry<OrderPhase, LatencyHistogram.Snapshot> e : now.entrySet()) {
+                final LatencyHistogram.Snapshot before = sameWindow ? last.get(e.getKey()) : null;
+                interval.put(e.getKey(), before == null ? e.getValue() : e.getValue().minus(before));
+            }
+            lastWindow = w;
+            last = now;
+            lastCounters = counters;
+            System.out.print(format("last " + periodSeconds + "s", intervalCounters, interval));
+        }
+    }
+
+    /**
+     * Everything recorded since the last reset.
+     */
+    private static final class Window {
+        private final Phases all = new Phases();
+        private final Map<String, Phases> markets = new ConcurrentHashMap<>();
+        private final LongAdder orders = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder fills = new LongAdder();
+        private final LongAdder fundsCancels = new LongAdder();
+        private final LongAdder restingFundsCancels = new LongAdder();
+
+        long[] counters() {
+            return new long[] {orders.sum(), rejected.sum(), fills.sum(), fundsCancels.sum(),
+                restingFundsCancels.sum()};
+        }
+    }
+
+    /**
+     * One histogram per phase, created when the phase is first recorded.
+     */
+    private static final class Phases {
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+                new AtomicReferenceArray<>(PHASES.length);
+
+        LatencyHistogram get(final OrderPhase phase) {
+            final LatencyHistogram existing = histograms.get(phase.ordinal());
+            if (existing != null) {
+                return existing;
+            }
+            histograms.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+            return histograms.get(phase.ordinal());
+        }
+
+        Map<OrderPhase, LatencyHistogram.Snapshot> snapshots() {
+            final Map<OrderPhase, LatencyHistogram.Snapshot> result = new TreeMap<>();
+            for (final OrderPhase phase : PHASES) {
+                final LatencyHistogram h = histograms.get(phase.ordinal());
+                if (h != null) {
+                    result.put(phase, h.snapshot());
+                }
+            }
+            return result;
+        }
+    }
+}
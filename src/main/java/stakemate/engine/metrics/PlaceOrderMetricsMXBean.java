@@ -0,0 +1,31 @@
+package stakemate.engine.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link PlaceOrderMetrics}, registered as
+ * {@value PlaceOrderMetrics#OBJECT_NAME}. Latencies are cumulative since start
+ * or the last {@link #reset}.
+ */
+public interface PlaceOrderMetricsMXBean {
+
+    long getOrders();
+
+    long getRejected();
+
+    long getFills();
+
+    /** Incoming orders cancelled because their owner could not pay for the immediate fills. */
+    long getFundsCancels();
+
+    /** Resting orders cancelled during matching because their owner could not pay. */
+    long getRestingFundsCancels();
+
+    /** Latency per phase over all markets, keyed by {@link OrderPhase#label()}. */
+    Map<String, LatencyStats> getPhaseLatencies();
+
+    /** Latency per market and phase, keyed {@code marketId/phase}. */
+    Map<String, LatencyStats> getMarketPhaseLatencies();
+
+    void reset();
+}
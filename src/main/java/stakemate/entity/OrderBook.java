@@ -8,13 +8,31 @@ public class OrderBook {
     private final String marketId;
     private final List<OrderBookEntry> bids;
     private final List<OrderBookEntry> asks;
+    private final long sequence;
 
     public OrderBook(final String marketId,
                      final List<OrderBookEntry> bids,
                      final List<OrderBookEntry> asks) {
+        this(marketId, bids, asks, 0L);
+    }
+
+    /**
+     * Creates a snapshot stamped with the feed sequence it reflects, so that a
+     * subscriber can tell which {@link OrderBookDelta} is meant to follow it.
+     *
+     * @param marketId the market.
+     * @param bids     the bid levels.
+     * @param asks     the ask levels.
+     * @param sequence the sequence of the last delta folded into this snapshot.
+     */
+    public OrderBook(final String marketId,
+                     final List<OrderBookEntry> bids,
+                     final List<OrderBookEntry> asks,
+                     final long sequence) {
         this.marketId = marketId;
         this.bids = Collections.unmodifiableList(new ArrayList<>(bids));
         this.asks = Collections.unmodifiableList(new ArrayList<>(asks));
+        this.sequence = sequence;
     }
 
     public String getMarketId() {
@@ -28,4 +46,8 @@ public class OrderBook {
     public List<OrderBookEntry> getAsks() {
         return asks;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
 }
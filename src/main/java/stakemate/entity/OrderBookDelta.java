@@ -0,0 +1,177 @@
+package stakemate.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The price levels that changed between two consecutive order book snapshots.
+ * <p>
+ * Each change carries the new total quantity of one level; a quantity of zero
+ * means the level is gone. Deltas are numbered so a subscriber can spot a gap,
+ * and carry the {@link #checksum(OrderBook) checksum} of the book they produce
+ * so it can prove its local copy still matches the publisher's.
+ */
+public class OrderBookDelta {
+    private final String marketId;
+    private final long sequence;
+    private final List<OrderBookEntry> changes;
+    private final long checksum;
+
+    public OrderBookDelta(final String marketId,
+                          final long sequence,
+                          final List<OrderBookEntry> changes,
+                          final long checksum) {
+        this.marketId = marketId;
+        this.sequence = sequence;
+        this.changes = Collections.unmodifiableList(new ArrayList<>(changes));
+        this.checksum = checksum;
+    }
+
+    /**
+     * Diffs two snapshots of the same market.
+     *
+     * @param previous the book the subscriber already has.
+     * @param next     the book it should end up with.
+     * @param sequence the number to give the delta.
+     * @return the changed levels; empty if the books are identical.
+     */
+    public static OrderBookDelta between(final OrderBook previous,
+                                         final OrderBook next,
+                                         final long sequence) {
+        final List<OrderBookEntry> changes = new ArrayList<>();
+        diff(previous.getBids(), next.getBids(), Side.BUY, changes);
+        diff(previous.getAsks(), next.getAsks(), Side.SELL, changes);
+        return new OrderBookDelta(next.getMarketId(), sequence, changes, checksum(next));
+    }
+
+    private static void diff(final List<OrderBookEntry> before,
+                             final List<OrderBookEntry> after,
+                             final Side side,
+                             final List<OrderBookEntry> changes) {
+        final Map<Long, Double> old = new HashMap<>(before.size() * 2);
+        for (final OrderBookEntry level : before) {
+            old.put(level.getPriceTicks(), level.getQuantity());
+        }
+        for (final OrderBookEntry level : after) {
+            if (level.getQuantity() == 0.0) {
+                continue;
+            }
+            final Double was = old.remove(level.getPriceTicks());
+            if (was == null || Double.compare(was, level.getQuantity()) != 0) {
+                changes.add(OrderBookEntry.ofTicks(side, level.getPriceTicks(), level.getQuantity()));
+            }
+        }
+        for (final Map.Entry<Long, Double> gone : old.entrySet()) {
+            if (gone.getValue() != 0.0) {
+                changes.add(OrderBookEntry.ofTicks(side, gone.getKey(), 0.0));
+            }
+        }
+    }
+
+    /**
+     * Returns the book this delta produces from {@code book}: changed levels
+     * replaced, emptied ones dropped, best level first, stamped with this delta's
+     * sequence. It does not check that the delta follows on from {@code book};
+     * compare the sequences and the {@link #checksum} of the result for that.
+     *
+     * @param book the book the delta applies to.
+     * @return the updated book.
+     */
+    public OrderBook applyTo(final OrderBook book) {
+        return new OrderBook(marketId, merge(book.getBids(), Side.BUY), merge(book.getAsks(), Side.SELL), sequence);
+    }
+
+    private List<OrderBookEntry> merge(final List<OrderBookEntry> levels, final Side side) {
+        final TreeMap<Long, OrderBookEntry> merged;
+        if (side == Side.BUY) {
+            merged = new TreeMap<>(Comparator.reverseOrder());
+        }
+        else {
+            merged = new TreeMap<>();
+        }
+        for (final OrderBookEntry level : levels) {
+            merged.put(level.getPriceTicks(), level);
+        }
+        for (final OrderBookEntry change : changes) {
+            if (change.getSide() != side) {
+                continue;
+            }
+            if (change.getQuantity() == 0.0) {
+                merged.remove(change.getPriceTicks());
+            }
+            else {
+                merged.put(change.getPriceTicks(), change);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Order-independent checksum of a book: the sum of {@link #levelHash} over
+     * its non-empty levels. Being a sum, it can be kept up to date one level at a
+     * time by subtracting a level's old hash and adding its new one.
+     *
+     * @param book the snapshot.
+     * @return the checksum.
+     */
+    public static long checksum(final OrderBook book) {
+        long sum = 0L;
+        for (final OrderBookEntry level : book.getBids()) {
+            sum += levelHash(Side.BUY, level.getPriceTicks(), level.getQuantity());
+        }
+        for (final OrderBookEntry level : book.getAsks()) {
+            sum += levelHash(Side.SELL, level.getPriceTicks(), level.getQuantity());
+        }
+        return sum;
+    }
+
+    /**
+     * Hash of one level; zero for an empty level so that removing a level and
+     * never having had it give the same checksum.
+     *
+     * @param side       the side of the book.
+     * @param priceTicks the level price in ticks.
+     * @param quantity   the total quantity at the level.
+     * @return the level hash.
+     */
+    public static long levelHash(final Side side, final long priceTicks, final double quantity) {
+        final long result;
+        if (quantity == 0.0) {
+            result = 0L;
+        }
+        else {
+            // splitmix64 finalizer over the level's identity and exact quantity bits
+            long h = priceTicks * 0x9E3779B97F4A7C15L + side.ordinal();
+            h ^= Double.doubleToLongBits(quantity) * 0xC2B2AE3D27D4EB4FL;
+            h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+            result = h ^ (h >>> 31);
+        }
+        return result;
+    }
+
+    public String getMarketId() {
+        return marketId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<OrderBookEntry> getChanges() {
+        return changes;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
@@ -2,21 +2,36 @@ package stakemate.entity;
 
 public class OrderBookEntry {
     private final Side side;
-    private final double price;
+    private final long priceTicks;
     private final double quantity;
 
     public OrderBookEntry(final Side side, final double price, final double quantity) {
+        this(side, PriceTicks.toTicks(price), quantity);
+    }
+
+    private OrderBookEntry(final Side side, final long priceTicks, final double quantity) {
         this.side = side;
-        this.price = price;
+        this.priceTicks = priceTicks;
         this.quantity = quantity;
     }
 
+    /**
+     * Creates an entry for a price level already expressed in ticks.
+     */
+    public static OrderBookEntry ofTicks(final Side side, final long priceTicks, final double quantity) {
+        return new OrderBookEntry(side, priceTicks, quantity);
+    }
+
     public Side getSide() {
         return side;
     }
 
     public double getPrice() {
-        return price;
+        return PriceTicks.toPrice(priceTicks);
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
     }
 
     public double getQuantity() {
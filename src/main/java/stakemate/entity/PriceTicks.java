@@ -0,0 +1,55 @@
+package stakemate.entity;
+
+/**
+ * Fixed-point price grid shared by the matching engine and the order book.
+ * <p>
+ * Prices are held as a whole number of ticks ({@value #TICKS_PER_UNIT} ticks per
+ * 1.00), so price levels compare exactly and need no boxing or epsilons.
+ * Conversion to and from {@code double} only happens at the UI and JDBC edges.
+ */
+public final class PriceTicks {
+
+    /**
+     * Number of ticks in one unit of price, i.e. a tick size of 0.01.
+     */
+    public static final long TICKS_PER_UNIT = 100L;
+
+    /**
+     * Tick value of a price of 1.00.
+     */
+    public static final long ONE = TICKS_PER_UNIT;
+
+    private PriceTicks() {
+    }
+
+    /**
+     * Converts a decimal price to the nearest tick.
+     *
+     * @param price the decimal price.
+     * @return the price in ticks.
+     */
+    public static long toTicks(final double price) {
+        return Math.round(price * TICKS_PER_UNIT);
+    }
+
+    /**
+     * Whether a decimal price lies on the tick grid, i.e. {@link #toTicks} does
+     * not have to round it (beyond floating-point noise).
+     *
+     * @param price the decimal price.
+     * @return true if the price is a whole number of ticks.
+     */
+    public static boolean isOnGrid(final double price) {
+        return Math.abs(price * TICKS_PER_UNIT - toTicks(price)) < 1e-6;
+    }
+
+    /**
+     * Converts a tick price back to its decimal value.
+     *
+     * @param ticks the price in ticks.
+     * @return the decimal price.
+     */
+    public static double toPrice(final long ticks) {
+        return (double) ticks / TICKS_PER_UNIT;
+    }
+}
@@ -36,6 +36,8 @@ import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
  */
 public class OrderBookDemo {
 
+    private static final int TRADE_LOG_SIZE = 50;
+
     private final PlaceOrderUseCase useCase;
     private final MatchingEngine engine;
     private final AccountService accountService;
@@ -95,7 +97,7 @@ public class OrderBookDemo {
                 final PlaceOrderRequest req = new PlaceOrderRequest(user, "demo-market", side, price, qty);
                 final PlaceOrderResponse res = useCase.place(req);
                 JOptionPane.showMessageDialog(frame, res.message);
-                final List<Trade> trades = useCase.recentTrades();
+                final List<Trade> trades = useCase.recentTrades("demo-market", TRADE_LOG_SIZE);
                 tradesLog.setText("");
                 for (final Trade t : trades) {
                     tradesLog.append(t.toString() + "\n");
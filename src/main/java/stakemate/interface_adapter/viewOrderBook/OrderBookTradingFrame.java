@@ -1,24 +1,45 @@
 package stakemate.interface_adapter.viewOrderBook;
 
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 import stakemate.entity.OrderBookEntry;
 import stakemate.entity.Side;
 import stakemate.engine.BookOrder;
 import stakemate.engine.Trade;
+import stakemate.interface_adapter.view_market.OrderBookRepaintCoalescer;
 import stakemate.use_case.PlaceOrderUseCase.PlaceOrderRequest;
 import stakemate.use_case.PlaceOrderUseCase.PlaceOrderResponse;
 import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+import stakemate.use_case.view_market.OpenOrdersSubscriber;
+import stakemate.use_case.view_market.OrderBookGateway;
+import stakemate.use_case.view_market.OrderBookResponseModel;
+import stakemate.use_case.view_market.OrderBookSubscriber;
+import stakemate.use_case.view_market.OrderBookSync;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Clean Swing UI for viewing an order book and placing orders.
- * Depends only on the PlaceOrderUseCase (application layer).
+ * Depends only on the PlaceOrderUseCase and the OrderBookGateway (application layer).
+ *
+ * The book and the user's resting orders in the market are live: the window
+ * subscribes to them through the gateway, which reads each watched market once
+ * per change for every window and view watching it, and sends only changed
+ * levels. Placing an order runs on the use case's executor, off the EDT; orders
+ * sent while others are in flight are placed concurrently.
  */
 public class OrderBookTradingFrame extends JFrame {
 
@@ -43,7 +64,24 @@ public class OrderBookTradingFrame extends JFrame {
     private final JTextField priceField = new JTextField(6);
     private final JTextField qtyField = new JTextField(6);
 
+    private final OrderBookGateway orderBookGateway;
+    private final LiveFeed liveFeed = new LiveFeed();
+
+    // EDT only
+    private String subscribedMarketId;
+    // subscription changes run in order, off the EDT: subscribing reads the book
+    private CompletableFuture<Void> subscriptions = CompletableFuture.completedFuture(null);
+    private OrderBook shownBook;
+    // decides which deltas apply and when to resync, as for the markets view
+    private final OrderBookSync sync;
+    // the tables are updated at most once per frame, however fast deltas arrive
+    private final OrderBookRepaintCoalescer repaints =
+            new OrderBookRepaintCoalescer(this::show, OrderBookRepaintCoalescer.DEFAULT_FRAMES_PER_SECOND);
+    private final Map<String, List<BookOrder>> openOrdersByMarket = new LinkedHashMap<>();
+    private int pendingOrders;
+
     public OrderBookTradingFrame(PlaceOrderUseCase placeOrderUseCase,
+            OrderBookGateway orderBookGateway,
             String currentUserId,
             String currentUsername,
             String initialMarketId,
@@ -52,6 +90,8 @@ public class OrderBookTradingFrame extends JFrame {
         super("StakeMate – Order Book");
 
         this.placeOrderUseCase = placeOrderUseCase;
+        this.orderBookGateway = orderBookGateway;
+        this.sync = new OrderBookSync(orderBookGateway::getSnapshot);
         this.currentUserId = currentUserId;
         this.currentUsername = currentUsername;
         this.currentMarketId = initialMarketId;
@@ -225,7 +265,7 @@ public class OrderBookTradingFrame extends JFrame {
         // Change market
         changeMarketBtn.addActionListener(e -> {
             currentMarketId = marketField.getText().trim();
-            refreshAll();
+            watch(currentMarketId);
         });
 
         // Toggle Limit / Market: disable price for Market
@@ -239,16 +279,26 @@ public class OrderBookTradingFrame extends JFrame {
 
         placeBtn.addActionListener(e -> placeOrder());
 
-        // Team selector change - refresh order book to swap perspective
-        teamCombo.addActionListener(e -> refreshOrderBook());
+        // Team selector change - redraw the order book from the other perspective
+        teamCombo.addActionListener(e -> renderOrderBook());
 
-        // initial load
-        refreshAll();
+        // stop this window's feed once it is closed
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                watch(null);
+            }
+        });
+
+        // initial load; the feed keeps both up to date from here on
+        watch(currentMarketId);
+        loadOpenOrders();
     }
 
     private void placeOrder() {
+        PlaceOrderRequest req;
+        final String marketId = marketField.getText().trim();
         try {
-            String marketId = marketField.getText().trim();
             if (marketId.isEmpty()) {
                 setStatus("Please enter a market id.");
                 return;
@@ -285,84 +335,163 @@ public class OrderBookTradingFrame extends JFrame {
                 price = null;
             }
 
-            PlaceOrderRequest req = new PlaceOrderRequest(currentUserId, marketId, side, price, qty);
+            req = new PlaceOrderRequest(currentUserId, marketId, side, price, qty);
+        } catch (NumberFormatException ex) {
+            setStatus("Invalid number in price or quantity.");
+            return;
+        }
 
-            // This will save the order via OrderRepository and match it via MatchingEngine.
-            PlaceOrderResponse resp = placeOrderUseCase.place(req);
-            setStatus(resp.message);
+        pendingOrders++;
+        setStatus("Submitting order..." + pendingNote());
 
-            // Optional: update "last trade" text from recent trades
-            List<Trade> trades = placeOrderUseCase.recentTrades();
-            if (!trades.isEmpty()) {
-                Trade last = trades.get(trades.size() - 1);
-                lastTradeLabel.setText(
-                        String.format("Last: %.2f   Size: %.2f", last.getPrice(), last.getSize()));
-            }
+        // This will save the order via OrderRepository and match it via MatchingEngine,
+        // off the EDT; the new book and open orders arrive through the feed.
+        placeOrderUseCase.placeAsync(req)
+                .thenApply(resp -> new Acknowledgement(resp, placeOrderUseCase.lastTrade(marketId)))
+                .whenCompleteAsync(this::acknowledge, SwingUtilities::invokeLater);
+    }
 
-            // refresh to show open orders + new book state
-            refreshAll();
-        } catch (NumberFormatException ex) {
-            setStatus("Invalid number in price or quantity.");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            setStatus("Error placing order: " + ex.getMessage());
+    // on the EDT
+    private void acknowledge(Acknowledgement ack, Throwable error) {
+        pendingOrders--;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            cause.printStackTrace();
+            setStatus("Error placing order: " + cause.getMessage() + pendingNote());
+            return;
+        }
+        setStatus(ack.response.message + pendingNote());
+
+        // Optional: update "last trade" text from this market's tape
+        if (ack.lastTrade != null) {
+            lastTradeLabel.setText(
+                    String.format("Last: %.2f   Size: %.2f", ack.lastTrade.getPrice(), ack.lastTrade.getSize()));
         }
     }
 
-    private void refreshAll() {
-        refreshOrderBook();
-        refreshOpenOrders();
+    private String pendingNote() {
+        return pendingOrders > 0 ? "   (" + pendingOrders + " pending)" : "";
     }
 
-    private void refreshOrderBook() {
-        if (currentMarketId == null || currentMarketId.isEmpty()) {
+    // on the EDT: moves this window's subscriptions to another market (none if null)
+    private void watch(String marketId) {
+        final String old = subscribedMarketId;
+        final String next = marketId == null || marketId.isEmpty() ? null : marketId;
+        if (Objects.equals(old, next)) {
             return;
         }
-        OrderBook ob = placeOrderUseCase.snapshot(currentMarketId);
-
+        subscribedMarketId = next;
+        shownBook = null;
+        sync.reset();
         bidsModel.setRowCount(0);
         asksModel.setRowCount(0);
+        subscriptions = subscriptions.thenRunAsync(() -> {
+            if (old != null) {
+                orderBookGateway.unsubscribe(old, liveFeed);
+                orderBookGateway.unsubscribeOpenOrders(old, currentUserId, liveFeed);
+            }
+            if (next != null) {
+                orderBookGateway.subscribe(next, liveFeed);
+                orderBookGateway.subscribeOpenOrders(next, currentUserId, liveFeed);
+            }
+        }, placeOrderUseCase.getExecutor()).exceptionally(error -> {
+            error.printStackTrace();
+            return null;
+        });
+    }
+
+    // the user's orders in every market, once; the feed then updates the watched one
+    private void loadOpenOrders() {
+        CompletableFuture.supplyAsync(() -> placeOrderUseCase.openOrdersForUser(currentUserId),
+                placeOrderUseCase.getExecutor())
+                .whenCompleteAsync((orders, error) -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                        setStatus("Error loading open orders: " + error.getMessage());
+                        return;
+                    }
+                    Map<String, List<BookOrder>> byMarket = new LinkedHashMap<>();
+                    for (BookOrder o : orders) {
+                        byMarket.computeIfAbsent(o.getMarketId(), k -> new ArrayList<>()).add(o);
+                    }
+                    // whatever the feed already sent is newer
+                    byMarket.forEach(openOrdersByMarket::putIfAbsent);
+                    renderOpenOrders();
+                }, SwingUtilities::invokeLater);
+    }
+
+    // on the EDT: a checked update from the sync, merged per frame by the coalescer
+    private void show(OrderBookResponseModel model) {
+        if (model.getOrderBook() != null) {
+            if (model.getOrderBook().getMarketId().equals(subscribedMarketId)) {
+                shownBook = model.getOrderBook();
+                renderOrderBook();
+            }
+        } else if (model.getDelta() != null) {
+            if (shownBook != null && model.getDelta().getMarketId().equals(subscribedMarketId)) {
+                shownBook = model.getDelta().applyTo(shownBook);
+                renderOrderBook();
+            }
+        } else if (model.isReconnecting()) {
+            setStatus(model.getMessage());
+        }
+    }
+
+    private void renderOrderBook() {
+        if (shownBook == null) {
+            return;
+        }
+        OrderBook ob = shownBook;
 
         String team = (String) teamCombo.getSelectedItem();
         boolean isTeamB = teamBName.equals(team);
 
-        // For Team B, swap the display and transform prices using 1 - price
+        // For Team B, swap the display and transform prices using 1 - price:
+        // Team A's bids become Team B's asks and Team A's asks become Team B's bids
         if (isTeamB) {
-            // Team B perspective: Team A's bids become Team B's asks with transformed price
-            // Best bid for Team B = 1 - best ask for Team A
-            for (OrderBookEntry e : ob.getBids()) {
-                Object priceDisplay;
-                if (e.getPrice() < 0) {
-                    priceDisplay = "MARKET";
-                } else {
-                    // Transform price: 1 - Team A price
-                    priceDisplay = 1.0 - e.getPrice();
-                }
-                asksModel.addRow(new Object[] { priceDisplay, e.getQuantity() });
-            }
-            // Team B perspective: Team A's asks become Team B's bids with transformed price
-            // Best ask for Team B = 1 - best bid for Team A
-            for (OrderBookEntry e : ob.getAsks()) {
-                Object priceDisplay;
-                if (e.getPrice() < 0) {
-                    priceDisplay = "MARKET";
-                } else {
-                    // Transform price: 1 - Team A price
-                    priceDisplay = 1.0 - e.getPrice();
-                }
-                bidsModel.addRow(new Object[] { priceDisplay, e.getQuantity() });
-            }
+            updateRows(asksModel, rows(ob.getBids(), true));
+            updateRows(bidsModel, rows(ob.getAsks(), true));
         } else {
-            // Team A perspective: normal view
-            for (OrderBookEntry e : ob.getAsks()) {
-                Object priceDisplay = (e.getPrice() < 0) ? "MARKET" : e.getPrice();
-                asksModel.addRow(new Object[] { priceDisplay, e.getQuantity() });
+            updateRows(asksModel, rows(ob.getAsks(), false));
+            updateRows(bidsModel, rows(ob.getBids(), false));
+        }
+    }
+
+    private static List<Object[]> rows(List<OrderBookEntry> levels, boolean teamB) {
+        List<Object[]> rows = new ArrayList<>(levels.size());
+        for (OrderBookEntry e : levels) {
+            Object priceDisplay;
+            if (e.getPrice() < 0) {
+                priceDisplay = "MARKET";
+            } else if (teamB) {
+                // Transform price: 1 - Team A price
+                priceDisplay = 1.0 - e.getPrice();
+            } else {
+                priceDisplay = e.getPrice();
             }
-            for (OrderBookEntry e : ob.getBids()) {
-                Object priceDisplay = (e.getPrice() < 0) ? "MARKET" : e.getPrice();
-                bidsModel.addRow(new Object[] { priceDisplay, e.getQuantity() });
+            rows.add(new Object[] { priceDisplay, e.getQuantity() });
+        }
+        return rows;
+    }
+
+    // repaints only the cells that changed; rows are added or dropped at the end
+    private static void updateRows(DefaultTableModel model, List<Object[]> rows) {
+        int common = Math.min(model.getRowCount(), rows.size());
+        for (int r = 0; r < common; r++) {
+            Object[] row = rows.get(r);
+            for (int c = 0; c < row.length; c++) {
+                if (!Objects.equals(model.getValueAt(r, c), row[c])) {
+                    model.setValueAt(row[c], r, c);
+                }
             }
         }
+        for (int r = common; r < rows.size(); r++) {
+            model.addRow(rows.get(r));
+        }
+        if (model.getRowCount() > rows.size()) {
+            model.setRowCount(rows.size());
+        }
     }
 
     /**
@@ -381,23 +510,73 @@ public class OrderBookTradingFrame extends JFrame {
         }
     }
 
-    private void refreshOpenOrders() {
+    private void renderOpenOrders() {
         openOrdersModel.setRowCount(0);
-        List<BookOrder> orders = placeOrderUseCase.openOrdersForUser(currentUserId);
-        for (BookOrder o : orders) {
-            openOrdersModel.addRow(new Object[] {
-                    o.getSide().name(),
-                    o.getMarketId(),
-                    o.getPrice(),
-                    o.getRemainingQty(),
-                    o.getOriginalQty()
-            });
+        for (List<BookOrder> orders : openOrdersByMarket.values()) {
+            for (BookOrder o : orders) {
+                openOrdersModel.addRow(new Object[] {
+                        o.getSide().name(),
+                        o.getMarketId(),
+                        o.getPrice(),
+                        o.getRemainingQty(),
+                        o.getOriginalQty()
+                });
+            }
         }
     }
 
     private void setStatus(String msg) {
         statusLabel.setText(msg);
     }
+
+    /**
+     * The outcome of one placed order.
+     */
+    private static final class Acknowledgement {
+        final PlaceOrderResponse response;
+        final Trade lastTrade;
+
+        Acknowledgement(PlaceOrderResponse response, Trade lastTrade) {
+            this.response = response;
+            this.lastTrade = lastTrade;
+        }
+    }
+
+    /**
+     * Receives the gateway's updates on its thread and hands them to the EDT.
+     */
+    private final class LiveFeed implements OrderBookSubscriber, OpenOrdersSubscriber {
+        @Override
+        public void onOrderBookUpdated(OrderBook orderBook) {
+            repaints.submit(sync.snapshot(orderBook));
+        }
+
+        @Override
+        public void onOrderBookDelta(OrderBookDelta delta) {
+            OrderBookResponseModel model = sync.delta(delta);
+            if (model != null) {
+                repaints.submit(model);
+            }
+        }
+
+        @Override
+        public void onConnectionError(String message) {
+            SwingUtilities.invokeLater(() -> setStatus(message));
+        }
+
+        @Override
+        public void onConnectionRestored() {
+            SwingUtilities.invokeLater(() -> setStatus("Live updates restored"));
+        }
+
+        @Override
+        public void onOpenOrdersUpdated(String marketId, List<BookOrder> orders) {
+            SwingUtilities.invokeLater(() -> {
+                openOrdersByMarket.put(marketId, orders);
+                renderOpenOrders();
+            });
+        }
+    }
 }
 // // ================== RUNNABLE MAIN (for demo/testing) ==================
 // public static void main(String[] args) {
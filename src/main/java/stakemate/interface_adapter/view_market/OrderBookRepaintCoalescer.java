@@ -0,0 +1,185 @@
+package stakemate.interface_adapter.view_market;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
+import stakemate.use_case.view_market.OrderBookResponseModel;
+
+/**
+ * Sits between a fast order book feed and the view: keeps only the latest state
+ * of each market and hands it to the view on the EDT at most a fixed number of
+ * times per second. Deltas that arrive between two frames are merged, so a level
+ * that changed many times is repainted once with its last quantity; a snapshot
+ * replaces whatever was pending for its market. Status-only updates (reconnecting,
+ * restored) go out after the data of the same frame.
+ * <p>
+ * Deltas must already be validated: the merged delta carries the sequence and
+ * checksum of the last one it contains.
+ */
+public class OrderBookRepaintCoalescer {
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 20;
+
+    private final Consumer<OrderBookResponseModel> target;
+    private final long frameNanos;
+    private final Timer timer;
+
+    // guarded by this
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private OrderBookResponseModel status;
+    private boolean scheduled;
+    private long lastFlush;
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param target          receives the coalesced updates, on the EDT.
+     * @param framesPerSecond the most flushes per second.
+     */
+    public OrderBookRepaintCoalescer(final Consumer<OrderBookResponseModel> target, final int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("framesPerSecond must be > 0");
+        }
+        this.target = target;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        this.timer = new Timer(0, event -> flush());
+        this.timer.setRepeats(false);
+        this.lastFlush = System.nanoTime() - frameNanos;
+    }
+
+    /**
+     * Queues an update; safe to call from any thread.
+     *
+     * @param model a snapshot, a delta, or a status-only update.
+     */
+    public void submit(final OrderBookResponseModel model) {
+        final String marketId = marketOf(model);
+        synchronized (this) {
+            if (marketId == null) {
+                status = model;
+            }
+            else {
+                // newer data carries its own status
+                status = null;
+                pending.computeIfAbsent(marketId, Pending::new).add(model);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                schedule();
+            }
+        }
+    }
+
+    // caller holds this
+    private void schedule() {
+        final long wait = lastFlush + frameNanos - System.nanoTime();
+        if (wait <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        }
+        else {
+            timer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            timer.restart();
+        }
+    }
+
+    private void flush() {
+        final List<OrderBookResponseModel> out = new ArrayList<>();
+        synchronized (this) {
+            scheduled = false;
+            lastFlush = System.nanoTime();
+            for (final Pending p : pending.values()) {
+                out.add(p.toModel());
+            }
+            pending.clear();
+            if (status != null) {
+                out.add(status);
+                status = null;
+            }
+        }
+        for (final OrderBookResponseModel model : out) {
+            target.accept(model);
+        }
+    }
+
+    private static String marketOf(final OrderBookResponseModel model) {
+        final String result;
+        if (model.getOrderBook() != null) {
+            result = model.getOrderBook().getMarketId();
+        }
+        else if (model.getDelta() != null) {
+            result = model.getDelta().getMarketId();
+        }
+        else {
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * What one market will show at the next frame: a snapshot with later deltas
+     * folded in, or the merged changes since the last frame.
+     */
+    private static final class Pending {
+        private final String marketId;
+        private final Map<Long, OrderBookEntry> bidChanges = new LinkedHashMap<>();
+        private final Map<Long, OrderBookEntry> askChanges = new LinkedHashMap<>();
+        private OrderBook book;
+        private OrderBookDelta lastDelta;
+        private OrderBookResponseModel lastModel;
+
+        Pending(final String marketId) {
+            this.marketId = marketId;
+        }
+
+        void add(final OrderBookResponseModel model) {
+            lastModel = model;
+            if (model.getOrderBook() != null) {
+                book = model.getOrderBook();
+                bidChanges.clear();
+                askChanges.clear();
+                lastDelta = null;
+            }
+            else if (book != null) {
+                book = model.getDelta().applyTo(book);
+            }
+            else {
+                lastDelta = model.getDelta();
+                for (final OrderBookEntry change : lastDelta.getChanges()) {
+                    if (change.getSide() == Side.BUY) {
+                        bidChanges.put(change.getPriceTicks(), change);
+                    }
+                    else {
+                        askChanges.put(change.getPriceTicks(), change);
+                    }
+                }
+            }
+        }
+
+        OrderBookResponseModel toModel() {
+            final OrderBookResponseModel result;
+            if (book != null) {
+                result = new OrderBookResponseModel(book, lastModel.isEmpty(), lastModel.isReconnecting(),
+                    lastModel.getMessage());
+            }
+            else {
+                final List<OrderBookEntry> changes = new ArrayList<>(bidChanges.values());
+                changes.addAll(askChanges.values());
+                final OrderBookDelta merged = new OrderBookDelta(marketId, lastDelta.getSequence(), changes,
+                    lastDelta.getChecksum());
+                result = new OrderBookResponseModel(merged, lastModel.isEmpty(), lastModel.getMessage());
+            }
+            return result;
+        }
+    }
+}
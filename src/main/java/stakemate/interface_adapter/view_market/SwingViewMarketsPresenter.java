@@ -10,9 +10,16 @@ import stakemate.use_case.view_market.ViewMarketOutputBoundary;
 public class SwingViewMarketsPresenter implements ViewMarketOutputBoundary {
 
     private final MarketsView view;
+    // order book updates reach the view at a bounded frame rate, however fast the feed
+    private final OrderBookRepaintCoalescer orderBookUpdates;
 
     public SwingViewMarketsPresenter(final MarketsView view) {
+        this(view, OrderBookRepaintCoalescer.DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    public SwingViewMarketsPresenter(final MarketsView view, final int orderBookFramesPerSecond) {
         this.view = view;
+        this.orderBookUpdates = new OrderBookRepaintCoalescer(view::showOrderBook, orderBookFramesPerSecond);
     }
 
     private void runOnEdt(final Runnable runnable) {
@@ -38,7 +45,7 @@ public class SwingViewMarketsPresenter implements ViewMarketOutputBoundary {
 
     @Override
     public void presentOrderBook(final OrderBookResponseModel responseModel) {
-        runOnEdt(() -> view.showOrderBook(responseModel));
+        orderBookUpdates.submit(responseModel);
     }
 
     @Override
@@ -11,4 +11,35 @@ public interface AccountService {
     void reserveForOrder(String userId, String orderId, double amount);
 
     void capture(Trade trade);
+
+    /**
+     * Releases what is still reserved for an order that will not trade again.
+     */
+    default void releaseOrder(String orderId) {
+    }
+
+    /**
+     * Lowers what is reserved for an order to at most {@code amount}, e.g. after
+     * its quantity was reduced.
+     */
+    default void shrinkReservation(String orderId, double amount) {
+    }
+
+    /**
+     * Reserves {@code amount} for an order replacing {@code oldOrderId} if the
+     * user's available funds, counting what the old order still holds as
+     * available, cover it. The old reservation stays until it is released once
+     * the old order is cancelled. Services that track reservations make the
+     * check and the reservation one step; this default ignores the old order's
+     * share, so it only errs on the side of refusing.
+     *
+     * @return false, reserving nothing, if the funds do not cover {@code amount}.
+     */
+    default boolean reserveReplacement(String userId, String oldOrderId, String newOrderId, double amount) {
+        if (!hasSufficientFunds(userId, null, amount, 1.0)) {
+            return false;
+        }
+        reserveForOrder(userId, newOrderId, amount);
+        return true;
+    }
 }
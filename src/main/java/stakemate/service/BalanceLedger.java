@@ -0,0 +1,272 @@
+package stakemate.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process view of account balances: the last known {@code profiles.balance}
+ * per user plus the amounts reserved by that user's open orders.
+ * <p>
+ * Balances are loaded on first use and re-read once they are older than the
+ * refresh interval, so changes made by other writers show up eventually. Local
+ * writes are applied as deltas after they commit; while one is in flight the
+ * account is not refreshed, so a reload can never count a delta twice.
+ * <p>
+ * A matching pass holds the funds it is about to spend with {@link #tryHold}
+ * until its balance changes have been applied. Check and hold happen under the
+ * account's lock, so passes on different engine shards can never both spend
+ * the same balance.
+ */
+class BalanceLedger {
+
+    /**
+     * Reads the current balance of a user from the database.
+     */
+    interface Loader {
+        double load(String userId);
+    }
+
+    private final Loader loader;
+    private final long refreshNanos;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    // orderId -> owning account, for releasing reservations by order
+    private final Map<String, Account> reservationOwners = new ConcurrentHashMap<>();
+
+    BalanceLedger(Loader loader, long refreshMillis) {
+        this.loader = loader;
+        this.refreshNanos = refreshMillis * 1_000_000L;
+    }
+
+    double balance(String userId) {
+        final Account account = account(userId);
+        if (account.isStale(System.nanoTime())) {
+            refresh(account);
+        }
+        return account.balance();
+    }
+
+    /**
+     * Holds {@code amount} if the balance not already held covers it.
+     *
+     * @return false, holding nothing, if it does not.
+     */
+    boolean tryHold(String userId, double amount) {
+        final Account account = account(userId);
+        if (account.isStale(System.nanoTime())) {
+            refresh(account);
+        }
+        return account.tryHold(amount);
+    }
+
+    void releaseHold(String userId, double amount) {
+        account(userId).releaseHold(amount);
+    }
+
+    double reserved(String userId) {
+        return account(userId).reserved();
+    }
+
+    void reserve(String userId, String orderId, double amount) {
+        final Account account = account(userId);
+        account.reserve(orderId, amount);
+        reservationOwners.put(orderId, account);
+    }
+
+    /**
+     * Reserves {@code amount} for {@code newOrderId} if the balance not reserved,
+     * plus what {@code oldOrderId} still holds, covers it; check and reservation
+     * are one step. The old reservation is left in place.
+     */
+    boolean reserveReplacement(String userId, String oldOrderId, String newOrderId, double amount) {
+        final Account account = account(userId);
+        if (account.isStale(System.nanoTime())) {
+            refresh(account);
+        }
+        final boolean reserved = account.reserveReplacement(oldOrderId, newOrderId, amount);
+        if (reserved) {
+            reservationOwners.put(newOrderId, account);
+        }
+        return reserved;
+    }
+
+    /**
+     * Lowers what is still reserved for an order to at most {@code amount}.
+     */
+    void shrink(String orderId, double amount) {
+        final Account account = reservationOwners.get(orderId);
+        if (account != null && account.shrink(orderId, amount)) {
+            reservationOwners.remove(orderId);
+        }
+    }
+
+    /**
+     * Releases the share of an order's reservation that {@code filledQty} out of
+     * {@code originalQty} used up.
+     */
+    void releaseFilled(String orderId, double filledQty, double originalQty) {
+        final Account account = reservationOwners.get(orderId);
+        if (account != null && account.releaseFilled(orderId, filledQty, originalQty)) {
+            reservationOwners.remove(orderId);
+        }
+    }
+
+    void release(String orderId) {
+        final Account account = reservationOwners.remove(orderId);
+        if (account != null) {
+            account.release(orderId);
+        }
+    }
+
+    void beginWrite(String userId) {
+        account(userId).beginWrite();
+    }
+
+    void endWrite(String userId, double committedDelta) {
+        account(userId).endWrite(committedDelta);
+    }
+
+    void invalidate(String userId) {
+        final Account account = accounts.get(userId);
+        if (account != null) {
+            account.invalidate();
+        }
+    }
+
+    private Account account(String userId) {
+        return accounts.computeIfAbsent(userId, Account::new);
+    }
+
+    private void refresh(Account account) {
+        final long version = account.version();
+        final double loaded = loader.load(account.userId);
+        account.applyLoaded(loaded, version, System.nanoTime());
+    }
+
+    private final class Account {
+        private final String userId;
+        // orderId -> {reserved at placement, still reserved}
+        private final Map<String, double[]> reservations = new HashMap<>();
+        private double balance;
+        private double reservedTotal;
+        // funds held by matching passes in progress
+        private double held;
+        private boolean loaded;
+        private boolean invalidated;
+        private long loadedAtNanos;
+        private long version;
+        private int inFlight;
+
+        private Account(String userId) {
+            this.userId = userId;
+        }
+
+        synchronized boolean isStale(long now) {
+            return !loaded || (inFlight == 0 && (invalidated || now - loadedAtNanos > refreshNanos));
+        }
+
+        synchronized double balance() {
+            return balance;
+        }
+
+        synchronized double reserved() {
+            return reservedTotal;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void applyLoaded(double value, long readVersion, long now) {
+            // a local write landed (or is landing) while we read: keep the local view
+            if (inFlight > 0 || version != readVersion) {
+                if (loaded) {
+                    return;
+                }
+            }
+            balance = value;
+            loaded = true;
+            invalidated = false;
+            loadedAtNanos = now;
+        }
+
+        synchronized void beginWrite() {
+            inFlight++;
+        }
+
+        synchronized void endWrite(double delta) {
+            inFlight--;
+            balance += delta;
+            version++;
+        }
+
+        synchronized void invalidate() {
+            invalidated = true;
+        }
+
+        synchronized boolean tryHold(double amount) {
+            if (balance - held < amount) {
+                return false;
+            }
+            held += amount;
+            return true;
+        }
+
+        synchronized void releaseHold(double amount) {
+            held = Math.max(0.0, held - amount);
+        }
+
+        synchronized void reserve(String orderId, double amount) {
+            reservations.put(orderId, new double[] {amount, amount});
+            reservedTotal += amount;
+        }
+
+        synchronized boolean reserveReplacement(String oldOrderId, String newOrderId, double amount) {
+            final double[] old = reservations.get(oldOrderId);
+            final double freed = old == null ? 0.0 : old[1];
+            if (balance - reservedTotal + freed + 1e-9 < amount) {
+                return false;
+            }
+            reserve(newOrderId, amount);
+            return true;
+        }
+
+        synchronized boolean shrink(String orderId, double amount) {
+            final double[] left = reservations.get(orderId);
+            if (left == null) {
+                return true;
+            }
+            if (left[1] <= amount) {
+                return false;
+            }
+            return take(orderId, left, left[1] - Math.max(amount, 0.0));
+        }
+
+        synchronized boolean releaseFilled(String orderId, double filledQty, double originalQty) {
+            final double[] left = reservations.get(orderId);
+            if (left == null) {
+                return true;
+            }
+            final double share = originalQty > 0 ? left[0] * Math.min(1.0, filledQty / originalQty) : left[1];
+            return take(orderId, left, share);
+        }
+
+        synchronized void release(String orderId) {
+            final double[] left = reservations.get(orderId);
+            if (left != null) {
+                take(orderId, left, left[1]);
+            }
+        }
+
+        private boolean take(String orderId, double[] left, double amount) {
+            final double taken = Math.min(left[1], amount);
+            left[1] -= taken;
+            reservedTotal = Math.max(0.0, reservedTotal - taken);
+            if (left[1] <= 1e-9) {
+                reservations.remove(orderId);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -8,31 +8,66 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
 
 /**
  * Account service backed by the Supabase "profiles" table.
  * Expects userId to be profiles.id (uuid as String).
+ * <p>
+ * Balances and open-order reservations are served from an in-process ledger;
+ * balance changes are written through to the table and then applied to the
+ * ledger, and cached balances are re-read every {@link #BALANCE_REFRESH_MS} to
+ * pick up changes made elsewhere.
  */
 public class DbAccountService implements AccountService {
 
+    public static final long BALANCE_REFRESH_MS = 5_000;
+
+    /**
+     * Parameters: delta, profile id. Public so batched writers can reuse it.
+     */
+    public static final String ADJUST_BALANCE_SQL =
+            "UPDATE public.profiles SET balance = balance + ?, updated_at = now() WHERE id = ?";
+
     private final SupabaseClientFactory factory;
+    private final BalanceLedger ledger;
 
     public DbAccountService(SupabaseClientFactory factory) {
         this.factory = factory;
+        this.ledger = new BalanceLedger(this::loadBalance, BALANCE_REFRESH_MS);
+    }
+
+    /**
+     * A database write that changes balances; see {@link #writeThrough}.
+     */
+    @FunctionalInterface
+    public interface BalanceWrite {
+        void run() throws SQLException;
     }
 
     @Override
     public boolean hasSufficientFunds(String userId, String marketId, double qty, Double price) {
         final double p = (price == null ? 1.0 : price);
         final double needed = p * qty;
-        final double current = getBalance(userId);
-        return current + 1e-9 >= needed;
+        // funds already promised to the user's other open orders are not available
+        final double available = getBalance(userId) - ledger.reserved(userId);
+        return available + 1e-9 >= needed;
     }
 
     @Override
     public void reserveForOrder(String userId, String orderId, double amount) {
-        // For now we don't implement separate reservations in DB.
-        // Balance is checked above; settlement happens when trade executes.
+        // Reservations are in-process only; the balance itself moves when a trade executes.
+        ledger.reserve(userId, orderId, amount);
+    }
+
+    @Override
+    public boolean reserveReplacement(String userId, String oldOrderId, String newOrderId, double amount) {
+        return ledger.reserveReplacement(userId, oldOrderId, newOrderId, amount);
+    }
+
+    @Override
+    public void shrinkReservation(String orderId, double amount) {
+        ledger.shrink(orderId, amount);
     }
 
     @Override
@@ -43,7 +78,39 @@ public class DbAccountService implements AccountService {
 
     // --- Helpers used by PlaceOrderUseCase settlement ---
 
+    /**
+     * Total balance (including reserved funds), served from the ledger.
+     */
     public double getBalance(String userId) {
+        return ledger.balance(userId);
+    }
+
+    public double getReserved(String userId) {
+        return ledger.reserved(userId);
+    }
+
+    /**
+     * Holds {@code amount} of the user's balance for the matching pass in progress
+     * if the balance not held by other passes covers it. Check and hold are one
+     * step, so engine shards sharing this service cannot spend the same funds
+     * twice. Give the funds back with {@link #releaseHold} once the pass's
+     * balance changes have been applied, or abandoned.
+     *
+     * @return false, holding nothing, if the balance does not cover it.
+     */
+    public boolean holdFunds(String userId, double amount) {
+        return ledger.tryHold(userId, amount);
+    }
+
+    public void releaseHold(String userId, double amount) {
+        ledger.releaseHold(userId, amount);
+    }
+
+    /**
+     * Reads a user's balance from the table; the ledger calls it on first use
+     * and whenever the cached balance is stale.
+     */
+    protected double loadBalance(String userId) {
         final String sql = "SELECT balance FROM public.profiles WHERE id = ?";
 
         try (Connection conn = factory.createConnection();
@@ -62,19 +129,65 @@ public class DbAccountService implements AccountService {
     }
 
     public void adjustBalance(String userId, double delta) {
-        final String sql = "UPDATE public.profiles SET balance = balance + ?, updated_at = now() WHERE id = ?";
-
-        try (Connection conn = factory.createConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setDouble(1, delta);
-            ps.setObject(2, java.util.UUID.fromString(userId));
-            ps.executeUpdate();
+        try {
+            writeThrough(Map.of(userId, delta), () -> {
+                try (Connection conn = factory.createConnection();
+                        PreparedStatement ps = conn.prepareStatement(ADJUST_BALANCE_SQL)) {
+
+                    ps.setDouble(1, delta);
+                    ps.setObject(2, java.util.UUID.fromString(userId));
+                    ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Error updating balance", e);
         }
     }
 
+    /**
+     * Runs a database write that applies {@code deltas} to profile balances, then
+     * applies the same deltas to the ledger. The affected balances are not
+     * refreshed from the table while the write is in flight, and the ledger is
+     * left untouched if it fails.
+     */
+    public void writeThrough(Map<String, Double> deltas, BalanceWrite write) throws SQLException {
+        for (String userId : deltas.keySet()) {
+            ledger.beginWrite(userId);
+        }
+        boolean committed = false;
+        try {
+            write.run();
+            committed = true;
+        } finally {
+            for (Map.Entry<String, Double> e : deltas.entrySet()) {
+                ledger.endWrite(e.getKey(), committed ? e.getValue() : 0.0);
+            }
+        }
+    }
+
+    /**
+     * Releases the reservation share used by {@code filledQty} of an order.
+     */
+    public void releaseFilled(BookOrder order, double filledQty) {
+        ledger.releaseFilled(order.getId(), filledQty, order.getOriginalQty());
+    }
+
+    /**
+     * Releases whatever is still reserved for an order that will not trade again
+     * (filled or cancelled).
+     */
+    @Override
+    public void releaseOrder(String orderId) {
+        ledger.release(orderId);
+    }
+
+    /**
+     * Forces the next read of this user's balance to go to the table.
+     */
+    public void invalidateBalance(String userId) {
+        ledger.invalidate(userId);
+    }
+
     /**
      * Apply a trade in a prediction market: both sides pay to enter their
      * positions.
@@ -82,15 +195,21 @@ public class DbAccountService implements AccountService {
      * Seller pays (1-price)*size (betting NO on the outcome).
      */
     public void applyTrade(BookOrder buy, BookOrder sell, Trade trade) {
-        final double price = trade.getPrice();
-        final double size = trade.getSize();
-
         // Buyer pays the full execution price
-        final double buyerCost = price * size;
-        adjustBalance(buy.getUserId(), -buyerCost);
+        adjustBalance(buy.getUserId(), -buyerCost(trade));
 
         // Seller pays the complementary amount (1 - price)
-        final double sellerCost = (1.0 - price) * size;
-        adjustBalance(sell.getUserId(), -sellerCost);
+        adjustBalance(sell.getUserId(), -sellerCost(trade));
+
+        releaseFilled(buy, trade.getSize());
+        releaseFilled(sell, trade.getSize());
+    }
+
+    public static double buyerCost(Trade trade) {
+        return trade.getPrice() * trade.getSize();
+    }
+
+    public static double sellerCost(Trade trade) {
+        return (1.0 - trade.getPrice()) * trade.getSize();
     }
 }
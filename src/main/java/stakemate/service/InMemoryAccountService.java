@@ -40,6 +40,33 @@ public class InMemoryAccountService implements AccountService {
         // For demo clarity, skip complex settlement. (You may extend this to map orderId->userId to settle precisely.)
     }
 
+    @Override
+    public void releaseOrder(final String orderId) {
+        for (final Map<String, Double> byOrder : reservations.values()) {
+            byOrder.remove(orderId);
+        }
+    }
+
+    @Override
+    public void shrinkReservation(final String orderId, final double amount) {
+        for (final Map<String, Double> byOrder : reservations.values()) {
+            byOrder.computeIfPresent(orderId, (id, reserved) -> Math.min(reserved, amount));
+        }
+    }
+
+    @Override
+    public synchronized boolean reserveReplacement(final String userId, final String oldOrderId,
+                                                   final String newOrderId, final double amount) {
+        final Map<String, Double> byOrder = reservations.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
+        final double reserved = byOrder.values().stream().mapToDouble(Double::doubleValue).sum();
+        final double available = balances.getOrDefault(userId, 0.0) - reserved + byOrder.getOrDefault(oldOrderId, 0.0);
+        final boolean ok = available + 1e-9 >= amount;
+        if (ok) {
+            byOrder.put(newOrderId, amount);
+        }
+        return ok;
+    }
+
     // demo helper methods
     public void deposit(final String user, final double amount) {
         balances.put(user, balances.getOrDefault(user, 0.0) + amount);
@@ -0,0 +1,91 @@
+package stakemate.service.scheduling;
+
+/**
+ * What one {@link ScheduledJob} has done so far. Durations are in milliseconds.
+ */
+public final class JobStats {
+
+    private final String name;
+    private final String state;
+    private final long periodMillis;
+    private final long runs;
+    private final long failures;
+    private final int consecutiveFailures;
+    private final double lastDurationMillis;
+    private final double maxDurationMillis;
+    private final double meanDurationMillis;
+    private final long nextRunInMillis;
+    private final String lastError;
+
+    JobStats(final String name, final String state, final long periodMillis, final long runs, final long failures,
+             final int consecutiveFailures, final double lastDurationMillis, final double maxDurationMillis,
+             final double meanDurationMillis, final long nextRunInMillis, final String lastError) {
+        this.name = name;
+        this.state = state;
+        this.periodMillis = periodMillis;
+        this.runs = runs;
+        this.failures = failures;
+        this.consecutiveFailures = consecutiveFailures;
+        this.lastDurationMillis = lastDurationMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.meanDurationMillis = meanDurationMillis;
+        this.nextRunInMillis = nextRunInMillis;
+        this.lastError = lastError;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** One of {@link ScheduledJob.State}. */
+    public String getState() {
+        return state;
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /** Finished runs, failed or not. */
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    /** Failures since the last successful run; the job backs off while this is above 0. */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public double getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    public double getMaxDurationMillis() {
+        return maxDurationMillis;
+    }
+
+    public double getMeanDurationMillis() {
+        return meanDurationMillis;
+    }
+
+    /** Time until the next planned run, or -1 if none is planned (running, paused or cancelled). */
+    public long getNextRunInMillis() {
+        return nextRunInMillis;
+    }
+
+    /** Message of the latest failure, or null if the job never failed. */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s] every %d ms: %d runs, %d failed (%d in a row), last %.1f ms, mean %.1f ms, "
+                + "max %.1f ms", name, state, periodMillis, runs, failures, consecutiveFailures, lastDurationMillis,
+            meanDurationMillis, maxDurationMillis);
+    }
+}
@@ -0,0 +1,267 @@
+package stakemate.service.scheduling;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A named periodic job of a {@link Scheduler}: runs its task, waits its period
+ * (longer after failures) and runs it again, until cancelled.
+ * <p>
+ * Safe to use from any thread; {@link #pause()} and {@link #resume()} are
+ * cheap enough to call from window listeners on the EDT.
+ */
+public final class ScheduledJob {
+
+    /**
+     * What a job is doing.
+     */
+    public enum State {
+        WAITING, RUNNING, BACKING_OFF, PAUSED, CANCELLED
+    }
+
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final Scheduler scheduler;
+    private final String name;
+    private final long periodNanos;
+    private final double jitter;
+    private final long maxBackoffNanos;
+    private final Scheduler.Task task;
+
+    // guarded by this
+    private ScheduledFuture<?> next;
+    private long nextRunAt;
+    private Thread runner;
+    private boolean paused;
+    private boolean cancelled;
+    private int consecutiveFailures;
+    private long runs;
+    private long failures;
+    private long lastDurationNanos;
+    private long maxDurationNanos;
+    private long totalDurationNanos;
+    private String lastError;
+
+    ScheduledJob(final Scheduler scheduler, final String name, final long periodMs, final double jitter,
+                 final long maxBackoffMs, final Scheduler.Task task) {
+        this.scheduler = scheduler;
+        this.name = name;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMs);
+        this.jitter = jitter;
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMs);
+        this.task = task;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    synchronized void start(final long initialDelayMs) {
+        arm(TimeUnit.MILLISECONDS.toNanos(initialDelayMs));
+    }
+
+    /**
+     * Stops planning runs; a run in progress finishes.
+     */
+    public synchronized void pause() {
+        if (!paused && !cancelled) {
+            paused = true;
+            disarm();
+        }
+    }
+
+    /**
+     * Runs the job right away (or as soon as a run in progress ends) and then
+     * on its period again.
+     */
+    public synchronized void resume() {
+        if (paused && !cancelled) {
+            paused = false;
+            if (runner == null) {
+                arm(0);
+            }
+        }
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the job for good; a run in progress finishes on its own.
+     */
+    public synchronized void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            disarm();
+            scheduler.remove(this);
+        }
+    }
+
+    /**
+     * Cancels the job and waits for a run in progress to end, unless called
+     * from that run. Not for the EDT: a run may block for a while.
+     */
+    public synchronized void cancelAndAwait() {
+        cancel();
+        boolean interrupted = false;
+        while (runner != null && runner != Thread.currentThread()) {
+            try {
+                wait();
+            }
+            catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Counters and timings of this job so far.
+     */
+    public synchronized JobStats stats() {
+        final long nextRunInMs;
+        if (next == null) {
+            nextRunInMs = -1;
+        }
+        else {
+            nextRunInMs = Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextRunAt - System.nanoTime()));
+        }
+        return new JobStats(name, state().name(), TimeUnit.NANOSECONDS.toMillis(periodNanos), runs, failures,
+            consecutiveFailures, nanosToMillis(lastDurationNanos), nanosToMillis(maxDurationNanos),
+            runs == 0 ? 0 : nanosToMillis(totalDurationNanos / runs), nextRunInMs, lastError);
+    }
+
+    // caller holds this
+    private State state() {
+        final State result;
+        if (cancelled) {
+            result = State.CANCELLED;
+        }
+        else if (paused) {
+            result = State.PAUSED;
+        }
+        else if (runner != null) {
+            result = State.RUNNING;
+        }
+        else if (consecutiveFailures > 0) {
+            result = State.BACKING_OFF;
+        }
+        else {
+            result = State.WAITING;
+        }
+        return result;
+    }
+
+    // caller holds this
+    private void arm(final long delayNanos) {
+        if (cancelled || paused || scheduler.isClosed()) {
+            return;
+        }
+        nextRunAt = System.nanoTime() + delayNanos;
+        try {
+            next = scheduler.at(delayNanos, this::fire);
+        }
+        catch (final RejectedExecutionException ex) {
+            // the scheduler closed meanwhile
+            next = null;
+        }
+    }
+
+    // caller holds this
+    private void disarm() {
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+    }
+
+    /**
+     * On the timing thread: hands the run to a virtual thread of its own.
+     */
+    private synchronized void fire() {
+        next = null;
+        if (cancelled || paused || runner != null) {
+            return;
+        }
+        runner = scheduler.newRunThread(name, this::runOnce);
+        runner.start();
+    }
+
+    private void runOnce() {
+        final long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            task.run();
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure = ex;
+        }
+        // -@cs[IllegalCatch] A failing task must not end its job
+        catch (final Exception ex) {
+            failure = ex;
+        }
+        finally {
+            finish(System.nanoTime() - start, failure);
+        }
+    }
+
+    private synchronized void finish(final long durationNanos, final Exception failure) {
+        runner = null;
+        runs++;
+        lastDurationNanos = durationNanos;
+        maxDurationNanos = Math.max(maxDurationNanos, durationNanos);
+        totalDurationNanos += durationNanos;
+        final long delay;
+        if (failure == null) {
+            consecutiveFailures = 0;
+            delay = jittered(periodNanos);
+        }
+        else {
+            failures++;
+            consecutiveFailures++;
+            lastError = String.valueOf(failure.getMessage());
+            delay = jittered(backoffNanos());
+            System.err.println("Warning: job " + name + " failed (" + consecutiveFailures + " in a row), retrying in "
+                + TimeUnit.NANOSECONDS.toMillis(delay) + " ms: " + failure);
+        }
+        arm(delay);
+        notifyAll();
+    }
+
+    // caller holds this
+    private long backoffNanos() {
+        final int doublings = Math.min(consecutiveFailures, MAX_DOUBLINGS);
+        final long result;
+        if (periodNanos > maxBackoffNanos >> doublings) {
+            result = maxBackoffNanos;
+        }
+        else {
+            result = periodNanos << doublings;
+        }
+        return result;
+    }
+
+    private long jittered(final long nanos) {
+        final double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (nanos * factor);
+    }
+
+    private static double nanosToMillis(final long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return stats().toString();
+    }
+}
@@ -0,0 +1,195 @@
+package stakemate.service.scheduling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runs the application's periodic background work: order book polling, live
+ * match refresh, the frames' auto-refresh and the like. Pollers register a named
+ * {@link ScheduledJob} here instead of starting their own {@code Timer} threads.
+ * <p>
+ * One platform thread keeps time; every run gets a virtual thread of its own,
+ * so a job blocked on the database never holds up another. A job's next run is
+ * planned when the previous one ends (runs of one job never overlap), with some
+ * jitter so that jobs with equal periods drift apart. A failed run is retried
+ * after an exponentially growing delay, up to a cap; the first success goes
+ * back to the normal period. Jobs can be paused, e.g. while their window is
+ * hidden, and report per-job statistics over JMX ({@link #registerMBean()}).
+ */
+public final class Scheduler implements SchedulerMXBean, AutoCloseable {
+
+    public static final String OBJECT_NAME = "stakemate:type=Scheduler";
+
+    /** Fraction of each delay added or taken away at random. */
+    public static final double DEFAULT_JITTER = 0.1;
+
+    /** Longest delay between retries of a failing job, unless its period is longer. */
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60_000L;
+
+    private static final Scheduler SHARED = new Scheduler("scheduler");
+
+    /**
+     * Work a job does on each run; an exception counts as a failed run.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private final ScheduledThreadPoolExecutor ticker;
+    private final Set<ScheduledJob> jobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a scheduler with its own timing thread; most code uses {@link #shared()}.
+     *
+     * @param name names the timing thread and prefixes the run threads'
+     *             names, which are {@code name/jobName}.
+     */
+    public Scheduler(final String name) {
+        this.name = name;
+        this.ticker = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        this.ticker.setRemoveOnCancelPolicy(true);
+        this.ticker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * The application-wide instance.
+     */
+    public static Scheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules a job with the default jitter and backoff.
+     *
+     * @param jobName        shown in logs and statistics.
+     * @param initialDelayMs delay before the first run.
+     * @param periodMs       delay from the end of one run to the start of the next.
+     * @param task           the work to do.
+     * @return the job, running.
+     */
+    public ScheduledJob schedule(final String jobName, final long initialDelayMs, final long periodMs,
+                                 final Task task) {
+        return schedule(jobName, initialDelayMs, periodMs, DEFAULT_JITTER, DEFAULT_MAX_BACKOFF_MS, task);
+    }
+
+    /**
+     * Schedules a job.
+     *
+     * @param jobName        shown in logs and statistics.
+     * @param initialDelayMs delay before the first run.
+     * @param periodMs       delay from the end of one run to the start of the next.
+     * @param jitter         fraction (0 to 1) of each delay added or taken away at random.
+     * @param maxBackoffMs   longest delay between retries after failures; the
+     *                       period is used if it is longer.
+     * @param task           the work to do.
+     * @return the job, running.
+     */
+    public ScheduledJob schedule(final String jobName, final long initialDelayMs, final long periodMs,
+                                 final double jitter, final long maxBackoffMs, final Task task) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs must be > 0");
+        }
+        if (initialDelayMs < 0) {
+            throw new IllegalArgumentException("initialDelayMs must be >= 0");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        if (ticker.isShutdown()) {
+            throw new IllegalStateException("Scheduler " + name + " is closed");
+        }
+        final ScheduledJob job = new ScheduledJob(this, jobName, periodMs, jitter,
+            Math.max(periodMs, maxBackoffMs), task);
+        jobs.add(job);
+        job.start(initialDelayMs);
+        return job;
+    }
+
+    /**
+     * The jobs that have not been cancelled.
+     */
+    public List<ScheduledJob> jobs() {
+        final List<ScheduledJob> result = new ArrayList<>(jobs);
+        result.sort(Comparator.comparing(ScheduledJob::getName));
+        return result;
+    }
+
+    @Override
+    public List<JobStats> getJobs() {
+        final List<JobStats> result = new ArrayList<>();
+        for (final ScheduledJob job : jobs()) {
+            result.add(job.stats());
+        }
+        return result;
+    }
+
+    /**
+     * One line per job, for logs.
+     */
+    public String summary() {
+        final StringBuilder sb = new StringBuilder();
+        for (final JobStats s : getJobs()) {
+            sb.append(s).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under
+     * {@link #OBJECT_NAME}; registering twice is harmless.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (final InstanceAlreadyExistsException ex) {
+            // already visible
+        }
+        catch (final JMException ex) {
+            throw new RuntimeException("Could not register " + OBJECT_NAME, ex);
+        }
+    }
+
+    /**
+     * Cancels every job, waits for runs in progress and stops the timing thread.
+     */
+    @Override
+    public void close() {
+        ticker.shutdown();
+        for (final ScheduledJob job : jobs()) {
+            job.cancelAndAwait();
+        }
+    }
+
+    ScheduledFuture<?> at(final long delayNanos, final Runnable action) {
+        return ticker.schedule(action, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    boolean isClosed() {
+        return ticker.isShutdown();
+    }
+
+    Thread newRunThread(final String jobName, final Runnable run) {
+        return Thread.ofVirtual().name(name + "/" + jobName).unstarted(run);
+    }
+
+    void remove(final ScheduledJob job) {
+        jobs.remove(job);
+    }
+}
@@ -0,0 +1,12 @@
+package stakemate.service.scheduling;
+
+import java.util.List;
+
+/**
+ * JMX view of a {@link Scheduler}, registered as {@value Scheduler#OBJECT_NAME}.
+ */
+public interface SchedulerMXBean {
+
+    /** Every job that has not been cancelled, by name. */
+    List<JobStats> getJobs();
+}
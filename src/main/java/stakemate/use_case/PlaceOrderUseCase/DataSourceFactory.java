@@ -1,18 +1,15 @@
 package stakemate.use_case.PlaceOrderUseCase;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
-
 import javax.sql.DataSource;
 
+import stakemate.data_access.supabase.SupabaseClientFactory;
+
 public class DataSourceFactory {
 
+    /**
+     * The application's shared connection pool (see SupabaseClientFactory#shared).
+     */
     public static DataSource create() {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:postgresql://aws-1-ca-central-1.pooler.supabase.com:5432/postgres");
-        config.setUsername("postgres.huqjovbougtvwlqtxppo");
-        config.setPassword("stakematedb");
-        config.setMaximumPoolSize(5);
-        return new HikariDataSource(config);
+        return SupabaseClientFactory.shared().getDataSource();
     }
 }
@@ -0,0 +1,96 @@
+package stakemate.use_case.PlaceOrderUseCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import stakemate.engine.BookOrder;
+import stakemate.engine.Trade;
+import stakemate.service.DbAccountService;
+
+/**
+ * UnitOfWork that writes straight through to the repositories as each call is made;
+ * {@link #commit()} has nothing left to do. Used when no batching unit is configured.
+ */
+public class ImmediateUnitOfWork implements UnitOfWork {
+
+    private final OrderRepository orderRepo;
+    private final PositionRepository positionRepo;
+    private final DbAccountService accountService;
+    // funds held by this pass and not yet spent, per user
+    private final Map<String, Double> holds = new HashMap<>();
+
+    public ImmediateUnitOfWork(OrderRepository orderRepo, PositionRepository positionRepo,
+            DbAccountService accountService) {
+        this.orderRepo = orderRepo;
+        this.positionRepo = positionRepo;
+        this.accountService = accountService;
+    }
+
+    @Override
+    public double getBalance(String userId) {
+        return accountService.getBalance(userId);
+    }
+
+    @Override
+    public boolean holdFunds(String userId, double amount) {
+        if (!accountService.holdFunds(userId, amount)) {
+            return false;
+        }
+        holds.merge(userId, amount, Double::sum);
+        return true;
+    }
+
+    @Override
+    public void updateRemainingQty(String orderId, double newRemainingQty) {
+        orderRepo.updateRemainingQty(orderId, newRemainingQty);
+        if (newRemainingQty <= 0) {
+            // filled or cancelled: nothing left to reserve funds for
+            accountService.releaseOrder(orderId);
+        }
+    }
+
+    @Override
+    public void reduceRemainingQty(String orderId, double executedQty) {
+        orderRepo.reduceRemainingQty(orderId, executedQty);
+    }
+
+    @Override
+    public void savePosition(BookOrder order, double executedAmount, double executedPrice) {
+        positionRepo.savePosition(order, executedAmount, executedPrice);
+    }
+
+    @Override
+    public void applyTrade(BookOrder buy, BookOrder sell, Trade trade) {
+        accountService.applyTrade(buy, sell, trade);
+        // the balances have moved, so the funds held for this trade are spent
+        spend(buy.getUserId(), DbAccountService.buyerCost(trade));
+        spend(sell.getUserId(), DbAccountService.sellerCost(trade));
+    }
+
+    private void spend(String userId, double amount) {
+        final Double held = holds.get(userId);
+        if (held == null) {
+            return;
+        }
+        final double taken = Math.min(held, amount);
+        accountService.releaseHold(userId, taken);
+        if (held - taken <= 1e-9) {
+            holds.remove(userId);
+        } else {
+            holds.put(userId, held - taken);
+        }
+    }
+
+    @Override
+    public void commit() {
+        // every write has already been applied
+    }
+
+    @Override
+    public void releaseHolds() {
+        for (Map.Entry<String, Double> e : holds.entrySet()) {
+            accountService.releaseHold(e.getKey(), e.getValue());
+        }
+        holds.clear();
+    }
+}
@@ -8,6 +8,15 @@ import java.util.List;
 public interface OrderRepository {
     void save(BookOrder order);
 
+    /**
+     * Persist several new orders; implementations may do it in one round trip.
+     */
+    default void saveAll(List<BookOrder> orders) {
+        for (BookOrder order : orders) {
+            save(order);
+        }
+    }
+
     BookOrder findById(String orderId);
 
     /**
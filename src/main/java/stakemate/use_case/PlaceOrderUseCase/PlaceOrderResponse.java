@@ -3,18 +3,36 @@ package stakemate.use_case.PlaceOrderUseCase;
 public class PlaceOrderResponse {
     public final boolean ok;
     public final String message;
+    /**
+     * Id of the accepted order, e.g. for a later cancel; null on failure.
+     */
+    public final String orderId;
+    /**
+     * Number of trades the order executed when it was placed.
+     */
+    public final int fills;
 
-    private PlaceOrderResponse(final boolean ok, final String message) {
+    private PlaceOrderResponse(final boolean ok, final String message, final String orderId, final int fills) {
         this.ok = ok;
         this.message = message;
+        this.orderId = orderId;
+        this.fills = fills;
     }
 
     public static PlaceOrderResponse success(final String m) {
-        return new PlaceOrderResponse(true, m);
+        return new PlaceOrderResponse(true, m, null, 0);
+    }
+
+    public static PlaceOrderResponse success(final String m, final String orderId) {
+        return success(m, orderId, 0);
+    }
+
+    public static PlaceOrderResponse success(final String m, final String orderId, final int fills) {
+        return new PlaceOrderResponse(true, m, orderId, fills);
     }
 
     public static PlaceOrderResponse fail(final String m) {
-        return new PlaceOrderResponse(false, m);
+        return new PlaceOrderResponse(false, m, null, 0);
     }
 }
 
@@ -1,10 +1,20 @@
 package stakemate.use_case.PlaceOrderUseCase;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import stakemate.engine.BookOrder;
 import stakemate.engine.MatchingEngine;
+import stakemate.engine.MatchingEngineRegistry;
 import stakemate.engine.Trade;
+import stakemate.engine.metrics.OrderPhase;
+import stakemate.engine.metrics.PlaceOrderMetrics;
+import stakemate.entity.PriceTicks;
 import stakemate.service.AccountService;
 
 /**
@@ -14,18 +24,35 @@ import stakemate.service.AccountService;
  */
 public class PlaceOrderUseCase {
 
-    private final MatchingEngine engine;
+    // one virtual thread per async placement: they park cheaply on database I/O
+    private static final Executor VIRTUAL_THREADS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("place-order-", 0).factory());
+
+    private final MatchingEngineRegistry engines;
     private final AccountService accountService;
 
     // --- DB Fields ---
     private OrderRepository orderRepository;
     private PositionRepository positionRepository;
+    private TradeRepository tradeRepository;
+
+    // per-phase latency of place/placeOrders
+    private PlaceOrderMetrics metrics = PlaceOrderMetrics.shared();
+
+    private Executor executor = VIRTUAL_THREADS;
 
     /**
      * Constructor for In-Memory mode.
      */
     public PlaceOrderUseCase(final MatchingEngine engine, final AccountService accountService) {
-        this.engine = engine;
+        this(MatchingEngineRegistry.single(engine), accountService);
+    }
+
+    /**
+     * Constructor for In-Memory mode with markets sharded across several engines.
+     */
+    public PlaceOrderUseCase(final MatchingEngineRegistry engines, final AccountService accountService) {
+        this.engines = engines;
         this.accountService = accountService;
     }
 
@@ -34,47 +61,350 @@ public class PlaceOrderUseCase {
      */
     public PlaceOrderUseCase(final MatchingEngine engine, final AccountService accountService,
             final OrderRepository orderRepository, PositionRepository positionRepository) {
-        this.engine = engine;
+        this(MatchingEngineRegistry.single(engine), accountService, orderRepository, positionRepository);
+    }
+
+    /**
+     * Constructor for DB-backed mode with markets sharded across several engines.
+     */
+    public PlaceOrderUseCase(final MatchingEngineRegistry engines, final AccountService accountService,
+            final OrderRepository orderRepository, PositionRepository positionRepository) {
+        this(engines, accountService, orderRepository, positionRepository, null);
+    }
+
+    /**
+     * Constructor for DB-backed mode that also records every executed trade in
+     * {@code tradeRepository}.
+     */
+    public PlaceOrderUseCase(final MatchingEngineRegistry engines, final AccountService accountService,
+            final OrderRepository orderRepository, final PositionRepository positionRepository,
+            final TradeRepository tradeRepository) {
+        this.engines = engines;
         this.accountService = accountService;
         this.orderRepository = orderRepository;
         this.positionRepository = positionRepository;
+        this.tradeRepository = tradeRepository;
     }
 
     /**
      * Place an order and return trades executed (and high-level response)
      */
     public PlaceOrderResponse place(final PlaceOrderRequest req) {
-        if (req.quantity <= 0) {
-            return PlaceOrderResponse.fail("Quantity must be > 0.");
+        return placeOrders(List.of(req)).get(0);
+    }
+
+    /**
+     * Places an order without blocking the caller, e.g. a Swing event handler,
+     * for the database round trips. Concurrent calls run side by side; the
+     * future completes exceptionally if placing the order throws.
+     */
+    public CompletableFuture<PlaceOrderResponse> placeAsync(final PlaceOrderRequest req) {
+        return CompletableFuture.supplyAsync(() -> place(req), executor);
+    }
+
+    /**
+     * Where {@link #placeAsync} runs; callers may use it for their own reads too.
+     * By default a new virtual thread per task.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Places a batch of orders, e.g. a quote ladder, as one operation: accepted
+     * orders are saved together and each engine shard matches its share of the
+     * batch in one pass, in request order.
+     *
+     * @return one response per request, in request order.
+     */
+    public List<PlaceOrderResponse> placeOrders(final List<PlaceOrderRequest> requests) {
+        final long start = metrics.start();
+        final PlaceOrderResponse[] responses = new PlaceOrderResponse[requests.size()];
+        final List<BookOrder> accepted = new ArrayList<>();
+        final List<Integer> acceptedAt = new ArrayList<>();
+        metrics.countOrders(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            final PlaceOrderRequest req = requests.get(i);
+            final PlaceOrderResponse rejected = validate(req);
+            if (rejected != null) {
+                responses[i] = rejected;
+                metrics.countRejected();
+                continue;
+            }
+            // optional funds check
+            final long checked = metrics.start();
+            if (!accountService.hasSufficientFunds(req.userId, req.marketId, req.quantity, req.price)) {
+                metrics.record(req.marketId, OrderPhase.FUNDS_CHECK, checked);
+                responses[i] = PlaceOrderResponse.fail("Insufficient funds");
+                metrics.countRejected();
+                continue;
+            }
+            // create internal order (price == null => market); reserving before the next
+            // request's funds check makes the batch spend the balance only once
+            final BookOrder incoming = new BookOrder(req.userId, req.marketId, req.side, req.price, req.quantity);
+            accountService.reserveForOrder(req.userId, incoming.getId(), estimateReservationAmount(incoming));
+            metrics.record(req.marketId, OrderPhase.FUNDS_CHECK, checked);
+            accepted.add(incoming);
+            acceptedAt.add(i);
         }
-        if (req.price != null && req.price <= 0) {
-            return PlaceOrderResponse.fail("Price must be > 0 for limit orders.");
+        if (accepted.isEmpty()) {
+            recordTotal(requests, start);
+            return Arrays.asList(responses);
         }
 
-        // optional funds check
-        if (!accountService.hasSufficientFunds(req.userId, req.marketId, req.quantity, req.price)) {
-            return PlaceOrderResponse.fail("Insufficient funds");
+        // batch steps are recorded once per order: each order waited for all of them
+        long step = metrics.start();
+        // --- DB Specific: Save orders ---
+        if (orderRepository != null) {
+            orderRepository.saveAll(accepted);
+            recordPerOrder(accepted, OrderPhase.SAVE, metrics.since(step));
         }
 
-        // create internal order (price == null => market)
-        final BookOrder incoming = new BookOrder(req.userId, req.marketId, req.side, req.price, req.quantity);
-        accountService.reserveForOrder(req.userId, incoming.getId(), estimateReservationAmount(incoming));
+        // each shard matches its orders on its own writer thread
+        step = metrics.start();
+        final List<List<Trade>> tradesPerOrder = engines.placeOrders(accepted);
+        recordPerOrder(accepted, OrderPhase.MATCH, metrics.since(step));
+        if (tradeRepository != null) {
+            final List<Trade> all = new ArrayList<>();
+            for (final List<Trade> trades : tradesPerOrder) {
+                if (trades != null) {
+                    all.addAll(trades);
+                }
+            }
+            if (!all.isEmpty()) {
+                step = metrics.start();
+                tradeRepository.saveAll(all);
+                recordPerOrder(accepted, OrderPhase.TRADE_SAVE, metrics.since(step));
+            }
+        }
+
+        for (int k = 0; k < accepted.size(); k++) {
+            final BookOrder incoming = accepted.get(k);
+            final List<Trade> trades = tradesPerOrder.get(k);
+            if (trades == null) {
+                responses[acceptedAt.get(k)] = abandon(incoming);
+                metrics.countRejected();
+                continue;
+            }
+
+            // --- In-Memory Specific: Naive settlement ---
+            if (orderRepository == null) {
+                for (final Trade t : trades) {
+                    // naive settlement: buyer pays price*size to seller
+                    accountService.capture(t);
+                }
+                releaseIfNotResting(incoming);
+            }
+            responses[acceptedAt.get(k)] = PlaceOrderResponse.success(describe(incoming, trades), incoming.getId(),
+                    trades.size());
+            metrics.countFills(trades.size());
+        }
+        recordTotal(requests, start);
+        return Arrays.asList(responses);
+    }
 
-        // --- DB Specific: Save order ---
+    /**
+     * Gives back what an order whose matching pass failed had reserved, and closes
+     * its saved row so a book loaded from the table does not pick it up.
+     */
+    private PlaceOrderResponse abandon(final BookOrder order) {
+        accountService.releaseOrder(order.getId());
         if (orderRepository != null) {
-            orderRepository.save(incoming);
+            try {
+                orderRepository.updateRemainingQty(order.getId(), 0.0);
+            }
+            catch (final RuntimeException ex) {
+                System.err.println("Warning: could not close failed order " + order.getId() + ": "
+                        + ex.getMessage());
+            }
+        }
+        return PlaceOrderResponse.fail("Order could not be placed, please try again");
+    }
+
+    /**
+     * In-memory engines cancel what a market order could not fill, so neither a
+     * filled order nor a market order keeps anything reserved.
+     */
+    private void releaseIfNotResting(final BookOrder order) {
+        if (order.isFilled() || order.isMarket()) {
+            accountService.releaseOrder(order.getId());
+        }
+    }
+
+    /**
+     * Reserves again what every order resting in the in-memory engines still
+     * needs, e.g. after the books were recovered from a journal: reservations
+     * are kept only by the account service. Each order is reserved for its
+     * original quantity and then shrunk to its remainder, so later fills release
+     * the same share as before the restart.
+     */
+    public void restoreReservations() {
+        for (final BookOrder o : engines.openOrders()) {
+            accountService.reserveForOrder(o.getUserId(), o.getId(), estimateReservationAmount(o));
+            accountService.shrinkReservation(o.getId(), reservationPerUnit(o) * o.getRemainingQty());
         }
+    }
+
+    private void recordPerOrder(final List<BookOrder> orders, final OrderPhase phase, final long nanos) {
+        if (nanos > 0) {
+            for (final BookOrder o : orders) {
+                metrics.recordNanos(o.getMarketId(), phase, nanos);
+            }
+        }
+    }
 
-        final List<Trade> trades = engine.placeOrder(incoming);
+    private void recordTotal(final List<PlaceOrderRequest> requests, final long start) {
+        final long nanos = metrics.since(start);
+        if (nanos > 0) {
+            for (final PlaceOrderRequest req : requests) {
+                metrics.recordNanos(req.marketId, OrderPhase.TOTAL, nanos);
+            }
+        }
+    }
 
-        // --- In-Memory Specific: Naive settlement ---
+    /**
+     * Where per-phase latencies are recorded; by default the shared metrics.
+     */
+    public void setMetrics(final PlaceOrderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Cancels every resting order a user has in a market.
+     *
+     * @return the cancelled orders, with the quantity that was still open.
+     */
+    public List<BookOrder> cancelAll(final String userId, final String marketId) {
+        final List<BookOrder> cancelled = engines.cancelAll(userId, marketId);
+        // DB-backed engines release reservations as part of persisting the cancel
         if (orderRepository == null) {
-            for (final Trade t : trades) {
-                // naive settlement: buyer pays price*size to seller
-                accountService.capture(t);
+            for (final BookOrder o : cancelled) {
+                accountService.releaseOrder(o.getId());
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels one resting order.
+     *
+     * @return the cancelled order, or null if it was no longer open.
+     */
+    public BookOrder cancelOrder(final String marketId, final String orderId) {
+        final BookOrder cancelled = engines.cancelOrder(marketId, orderId);
+        if (cancelled != null && orderRepository == null) {
+            accountService.releaseOrder(orderId);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Reduces a resting order to {@code newQty}, keeping its time priority. A
+     * reduction needs no new funds; what the quantity taken off had reserved is
+     * given back.
+     *
+     * @return the amended order, or null if it was no longer open.
+     * @throws IllegalArgumentException if {@code newQty} is not between 0 and the
+     *     open quantity; use {@link #replaceOrder} to raise it.
+     */
+    public BookOrder amendOrder(final String marketId, final String orderId, final double newQty) {
+        final BookOrder amended = engines.amendOrder(marketId, orderId, newQty);
+        if (amended != null) {
+            accountService.shrinkReservation(orderId, reservationPerUnit(amended) * newQty);
+        }
+        return amended;
+    }
+
+    /**
+     * Cancels a resting order and places the order described by {@code req} in its
+     * stead (same user, market and side), e.g. at a new price or for more. The
+     * replacement must be affordable with the user's available funds plus what
+     * the original still has reserved; that reservation moves to the replacement.
+     *
+     * @return the replacement's response; a failure if it is invalid, not
+     *     affordable, or the original is no longer open.
+     */
+    public PlaceOrderResponse replaceOrder(final String orderId, final PlaceOrderRequest req) {
+        PlaceOrderResponse response = validate(req);
+        if (response == null) {
+            final BookOrder replacement = new BookOrder(req.userId, req.marketId, req.side, req.price, req.quantity);
+            if (!accountService.reserveReplacement(req.userId, orderId, replacement.getId(),
+                    estimateReservationAmount(replacement))) {
+                response = PlaceOrderResponse.fail("Insufficient funds");
+            }
+            else {
+                response = placeReplacement(orderId, replacement);
             }
         }
+        return response;
+    }
 
+    private PlaceOrderResponse placeReplacement(final String orderId, final BookOrder replacement) {
+        if (orderRepository != null) {
+            orderRepository.save(replacement);
+        }
+        List<Trade> trades = null;
+        try {
+            trades = engines.replaceOrder(orderId, replacement);
+        }
+        finally {
+            if (trades == null) {
+                // the original stays as it was (or is already gone); the replacement never rests
+                accountService.releaseOrder(replacement.getId());
+                if (orderRepository != null) {
+                    orderRepository.updateRemainingQty(replacement.getId(), 0.0);
+                }
+            }
+        }
+        final PlaceOrderResponse response;
+        if (trades == null) {
+            response = PlaceOrderResponse.fail("Order is no longer open");
+        }
+        else {
+            // the original is cancelled; DB-backed engines have released its reservation already
+            accountService.releaseOrder(orderId);
+            if (tradeRepository != null && !trades.isEmpty()) {
+                tradeRepository.saveAll(trades);
+            }
+            if (orderRepository == null) {
+                for (final Trade t : trades) {
+                    accountService.capture(t);
+                }
+                releaseIfNotResting(replacement);
+            }
+            response = PlaceOrderResponse.success(describe(replacement, trades), replacement.getId(), trades.size());
+        }
+        return response;
+    }
+
+    private PlaceOrderResponse validate(final PlaceOrderRequest req) {
+        final long t = metrics.start();
+        PlaceOrderResponse rejected = null;
+        if (req.quantity <= 0) {
+            rejected = PlaceOrderResponse.fail("Quantity must be > 0.");
+        }
+        // limit prices live on the tick grid; anything that rounds to zero ticks is invalid
+        else if (req.price != null && PriceTicks.toTicks(req.price) <= 0) {
+            rejected = PlaceOrderResponse.fail("Price must be > 0 for limit orders.");
+        }
+        else if (req.price != null && PriceTicks.toTicks(req.price) > PriceTicks.ONE) {
+            rejected = PlaceOrderResponse.fail("Price must be at most 1.00.");
+        }
+        // rounding an off-grid price would place the order at a price the user did not ask for
+        else if (req.price != null && !PriceTicks.isOnGrid(req.price)) {
+            rejected = PlaceOrderResponse.fail(String.format(Locale.ROOT, "Price must be a multiple of %.2f.",
+                    PriceTicks.toPrice(1)));
+        }
+        metrics.record(req.marketId, OrderPhase.VALIDATE, t);
+        return rejected;
+    }
+
+    private static String describe(final BookOrder incoming, final List<Trade> trades) {
         String msg;
         if (incoming.isMarket() && trades.isEmpty()) {
             if (incoming.getRemainingQty() > 0) {
@@ -86,21 +416,33 @@ public class PlaceOrderUseCase {
             msg = trades.isEmpty() ? "Order placed (no immediate trades)"
                     : String.format("Executed %d trades", trades.size());
         }
-        return PlaceOrderResponse.success(msg);
+        return msg;
     }
 
     private double estimateReservationAmount(final BookOrder o) {
-        final double price = (o.getPrice() == null) ? 1.0 : o.getPrice();
-        return price * o.getOriginalQty();
+        return reservationPerUnit(o) * o.getOriginalQty();
+    }
+
+    private static double reservationPerUnit(final BookOrder o) {
+        final long priceTicks = o.isMarket() ? PriceTicks.ONE : o.getPriceTicks();
+        return PriceTicks.toPrice(priceTicks);
     }
 
     // expose engine snapshot for UI
     public stakemate.entity.OrderBook snapshot(final String marketId) {
-        return engine.snapshotOrderBook(marketId);
+        return engines.snapshotOrderBook(marketId);
     }
 
     public List<Trade> recentTrades() {
-        return engine.getTrades();
+        return engines.getTrades();
+    }
+
+    public List<Trade> recentTrades(final String marketId, final int n) {
+        return engines.recentTrades(marketId, n);
+    }
+
+    public Trade lastTrade(final String marketId) {
+        return engines.lastTrade(marketId);
     }
 
     /**
@@ -111,7 +453,12 @@ public class PlaceOrderUseCase {
         if (orderRepository != null) {
             return orderRepository.findOpenOrdersForUser(userId);
         }
-        // In-memory fallback (not implemented/needed for demo)
-        return java.util.Collections.emptyList();
+        final List<BookOrder> result = new ArrayList<>();
+        for (final BookOrder o : engines.openOrders()) {
+            if (o.getUserId().equals(userId)) {
+                result.add(o);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,29 @@
+package stakemate.use_case.PlaceOrderUseCase;
+
+import java.time.Instant;
+import java.util.List;
+
+import stakemate.engine.Trade;
+
+/**
+ * Durable history of executed trades.
+ */
+public interface TradeRepository {
+
+    /**
+     * Records trades; implementations may write them asynchronously, so this must
+     * not block the matching path on the database.
+     */
+    void saveAll(List<Trade> trades);
+
+    /**
+     * @return up to {@code limit} of the market's newest trades, newest first.
+     */
+    List<Trade> findRecentForMarket(String marketId, int limit);
+
+    /**
+     * @return the volume-weighted average price of the market's trades since
+     *     {@code since}, or {@code NaN} if it has not traded in that window.
+     */
+    double volumeWeightedPrice(String marketId, Instant since);
+}
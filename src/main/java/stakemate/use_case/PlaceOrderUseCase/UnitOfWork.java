@@ -0,0 +1,60 @@
+package stakemate.use_case.PlaceOrderUseCase;
+
+import stakemate.engine.BookOrder;
+import stakemate.engine.Trade;
+
+/**
+ * Collects every write made while matching one incoming order so they can be
+ * persisted together.
+ * <p>
+ * Reads through the unit see its own uncommitted writes: {@link #getBalance}
+ * includes balance changes from earlier fills in the same pass.
+ */
+public interface UnitOfWork {
+
+    double getBalance(String userId);
+
+    /**
+     * Sets {@code amount} of the user's balance aside for this pass if it is
+     * still available, as one step. Units backed by a balance shared between
+     * engine shards must make the check and the hold atomic per user; the default
+     * only checks {@link #getBalance}, which is enough when one thread owns every
+     * balance the unit sees.
+     *
+     * @return false, holding nothing, if the user cannot pay {@code amount}.
+     */
+    default boolean holdFunds(String userId, double amount) {
+        return getBalance(userId) >= amount;
+    }
+
+    /**
+     * Gives back what {@link #holdFunds} set aside; by now the pass's balance
+     * changes have been applied, or abandoned. Called once per pass, after
+     * {@link #commit()} or in its place if the pass failed.
+     */
+    default void releaseHolds() {
+    }
+
+    void updateRemainingQty(String orderId, double newRemainingQty);
+
+    void reduceRemainingQty(String orderId, double executedQty);
+
+    void savePosition(BookOrder order, double executedAmount, double executedPrice);
+
+    /**
+     * Charge both sides of a trade (see DbAccountService#applyTrade).
+     */
+    void applyTrade(BookOrder buy, BookOrder sell, Trade trade);
+
+    /**
+     * Make every collected write durable, or none of them.
+     */
+    void commit();
+
+    /**
+     * Opens one unit per matching pass.
+     */
+    interface Factory {
+        UnitOfWork begin();
+    }
+}
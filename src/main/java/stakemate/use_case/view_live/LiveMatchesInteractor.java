@@ -1,21 +1,19 @@
 package stakemate.use_case.view_live;
 
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import stakemate.entity.Game;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
 import stakemate.use_case.fetch_games.FetchGamesInputBoundary;
 import stakemate.use_case.fetch_games.GameRepository;
 import stakemate.use_case.fetch_games.RepositoryException;
 
 /**
  * Interactor for the Live Matches use case.
- * Orchestrates the periodic fetching and retrieval of game data.
- *
- * <p>
- *
+ * Orchestrates the periodic fetching and retrieval of game data, as a job of
+ * the application's {@link Scheduler} while tracking is on.
  */
 public class LiveMatchesInteractor implements LiveMatchesInputBoundary {
 
@@ -24,45 +22,58 @@ public class LiveMatchesInteractor implements LiveMatchesInputBoundary {
     private final FetchGamesInputBoundary fetchGamesInteractor;
     private final GameRepository gameRepository;
     private final LiveMatchesOutputBoundary presenter;
+    private final Scheduler scheduler;
 
-    private ScheduledExecutorService scheduler;
+    private ScheduledJob tracking;
 
     public LiveMatchesInteractor(final FetchGamesInputBoundary fetchGamesInteractor,
                                  final GameRepository gameRepository,
                                  final LiveMatchesOutputBoundary presenter) {
+        this(fetchGamesInteractor, gameRepository, presenter, Scheduler.shared());
+    }
+
+    public LiveMatchesInteractor(final FetchGamesInputBoundary fetchGamesInteractor,
+                                 final GameRepository gameRepository,
+                                 final LiveMatchesOutputBoundary presenter,
+                                 final Scheduler scheduler) {
         this.fetchGamesInteractor = fetchGamesInteractor;
         this.gameRepository = gameRepository;
         this.presenter = presenter;
+        this.scheduler = scheduler;
     }
 
     @Override
-    public void startTracking() {
+    public synchronized void startTracking() {
         if (shouldNotStartTracking()) {
             return;
         }
 
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::fetchAndPresent, 0, POLLING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        tracking = scheduler.schedule("live-matches", 0, TimeUnit.SECONDS.toMillis(POLLING_INTERVAL_SECONDS),
+            this::fetchAndPresent);
     }
 
     /**
      * Checks if tracking should not be started.
      *
-     * @return true if scheduler is already running, false otherwise
+     * @return true if the tracking job is already running, false otherwise
      */
     private boolean shouldNotStartTracking() {
-        return scheduler != null && !scheduler.isShutdown();
+        return tracking != null && !tracking.isCancelled();
     }
 
     @Override
-    public void stopTracking() {
-        if (scheduler != null) {
-            scheduler.shutdown();
-            scheduler = null;
+    public synchronized void stopTracking() {
+        if (tracking != null) {
+            tracking.cancel();
+            tracking = null;
         }
     }
 
-    private void fetchAndPresent() {
+    /**
+     * One tracking run; a failure is presented and then rethrown so that the
+     * scheduler retries with backoff.
+     */
+    private void fetchAndPresent() throws RepositoryException {
         try {
             // 1. Trigger a refresh from the API
             // Note: fetchGamesInteractor.refreshGames() usually calls its own presenter.
@@ -78,9 +89,11 @@ public class LiveMatchesInteractor implements LiveMatchesInputBoundary {
         }
         catch (final RepositoryException ex) {
             presenter.presentError("Failed to retrieve matches: " + ex.getMessage());
+            throw ex;
         }
         catch (final RuntimeException ex) {
             presenter.presentError("Unexpected error during tracking: " + ex.getMessage());
+            throw ex;
         }
     }
 }
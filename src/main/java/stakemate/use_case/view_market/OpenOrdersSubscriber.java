@@ -0,0 +1,21 @@
+package stakemate.use_case.view_market;
+
+import java.util.List;
+
+import stakemate.engine.BookOrder;
+
+/**
+ * Observer of one user's resting orders in one market. Fills, cancels and newly
+ * placed orders all arrive as a new list; an order that is gone was filled or
+ * cancelled.
+ */
+public interface OpenOrdersSubscriber {
+    /**
+     * Called once on subscribe and then whenever the user's resting orders in the
+     * market change.
+     *
+     * @param marketId the market.
+     * @param orders   the user's resting orders there, with their remaining quantities.
+     */
+    void onOpenOrdersUpdated(String marketId, List<BookOrder> orders);
+}
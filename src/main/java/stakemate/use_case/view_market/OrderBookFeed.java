@@ -0,0 +1,313 @@
+package stakemate.use_case.view_market;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+
+/**
+ * [Observer Pattern]
+ * Subscriber bookkeeping shared by the OrderBookGateway implementations.
+ * Gateways hand every fresh snapshot to {@link #publish}; the feed remembers the
+ * last one per market and sends subscribers only the levels that changed, or
+ * nothing at all if the book is unchanged. A subscriber gets a full snapshot
+ * when it subscribes and can ask for it again with {@link #latest} if it ever
+ * detects a gap.
+ * <p>
+ * Gateways that read the orders behind a book also hand them to
+ * {@link #publishOpenOrders}; each user watching a market is sent their own
+ * resting orders there whenever they change.
+ * <p>
+ * Updates for one market are delivered one at a time and in sequence order.
+ */
+public class OrderBookFeed {
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a subscriber and sends it a snapshot. Existing subscribers first
+     * receive whatever changed between the previously published book and
+     * {@code current}, so everyone continues from the same sequence.
+     *
+     * @param marketId   the market to watch.
+     * @param subscriber the observer to add.
+     * @param current    a fresh snapshot of the market.
+     */
+    public void subscribe(final String marketId,
+                          final OrderBookSubscriber subscriber,
+                          final OrderBook current) {
+        channel(marketId).subscribe(subscriber, current);
+    }
+
+    /**
+     * Removes a subscriber; no further updates are sent to it.
+     *
+     * @param marketId   the market.
+     * @param subscriber the observer to remove.
+     */
+    public void unsubscribe(final String marketId, final OrderBookSubscriber subscriber) {
+        final Channel channel = channels.get(marketId);
+        if (channel != null) {
+            channel.subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * Adds an observer of one user's resting orders and sends it that user's
+     * orders in {@code current}; other watchers of the market are first sent
+     * whatever changed for them, as if {@code current} had been published.
+     *
+     * @param marketId   the market to watch.
+     * @param userId     whose orders to send.
+     * @param subscriber the observer to add.
+     * @param current    the market's open orders, freshly read; null if they could
+     *                   not be read, in which case the first publish sends them.
+     */
+    public void subscribeOpenOrders(final String marketId,
+                                    final String userId,
+                                    final OpenOrdersSubscriber subscriber,
+                                    final List<BookOrder> current) {
+        channel(marketId).subscribeOrders(userId, subscriber, current);
+    }
+
+    /**
+     * Removes an observer of a user's resting orders.
+     *
+     * @param marketId   the market.
+     * @param userId     the user.
+     * @param subscriber the observer to remove.
+     */
+    public void unsubscribeOpenOrders(final String marketId,
+                                      final String userId,
+                                      final OpenOrdersSubscriber subscriber) {
+        final Channel channel = channels.get(marketId);
+        if (channel != null) {
+            channel.unsubscribeOrders(userId, subscriber);
+        }
+    }
+
+    /**
+     * Sends every user watching the market their resting orders out of
+     * {@code openOrders}, if those changed since they were last sent.
+     *
+     * @param marketId   the market.
+     * @param openOrders all open orders of the market, freshly read.
+     */
+    public void publishOpenOrders(final String marketId, final List<BookOrder> openOrders) {
+        channel(marketId).publishOrders(openOrders);
+    }
+
+    /**
+     * Sends the subscribers of {@code book}'s market the levels that changed since
+     * the last published snapshot.
+     *
+     * @param book a fresh snapshot.
+     */
+    public void publish(final OrderBook book) {
+        channel(book.getMarketId()).publish(book);
+    }
+
+    /**
+     * Returns the last published snapshot, stamped with its sequence.
+     *
+     * @param marketId the market.
+     * @return the snapshot, or null if nothing was published for the market yet.
+     */
+    public OrderBook latest(final String marketId) {
+        final Channel channel = channels.get(marketId);
+        OrderBook result = null;
+        if (channel != null) {
+            result = channel.latest();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last published snapshot of a market that is still watched.
+     * Gateways only re-read watched markets, so once the last observer leaves the
+     * published snapshot goes stale and callers must read the market afresh.
+     *
+     * @param marketId the market.
+     * @return the snapshot, or null if the market is not watched or nothing was published yet.
+     */
+    public OrderBook latestIfWatched(final String marketId) {
+        final Channel channel = channels.get(marketId);
+        OrderBook result = null;
+        if (channel != null && channel.isWatched()) {
+            result = channel.latest();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the subscribers of a market.
+     *
+     * @param marketId the market.
+     * @return the subscribers; safe to iterate while others subscribe.
+     */
+    public List<OrderBookSubscriber> subscribers(final String marketId) {
+        final Channel channel = channels.get(marketId);
+        final List<OrderBookSubscriber> result;
+        if (channel == null) {
+            result = Collections.emptyList();
+        }
+        else {
+            result = channel.subscribers;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the markets that currently have at least one subscriber to their
+     * book or to someone's orders in them.
+     *
+     * @return the market ids.
+     */
+    public Set<String> markets() {
+        final Set<String> result = new LinkedHashSet<>();
+        for (final Map.Entry<String, Channel> entry : channels.entrySet()) {
+            if (entry.getValue().isWatched()) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether anyone watches a market's book or someone's orders in it.
+     *
+     * @param marketId the market.
+     * @return true if the market should be re-read when it changes.
+     */
+    public boolean isWatched(final String marketId) {
+        final Channel channel = channels.get(marketId);
+        return channel != null && channel.isWatched();
+    }
+
+    private Channel channel(final String marketId) {
+        return channels.computeIfAbsent(marketId, Channel::new);
+    }
+
+    /**
+     * Per-market state; the monitor serializes delivery so sequences arrive in order.
+     */
+    private static final class Channel {
+        private final String marketId;
+        private final List<OrderBookSubscriber> subscribers = new CopyOnWriteArrayList<>();
+        // users with at least one observer of their orders
+        private final Map<String, UserOrders> users = new ConcurrentHashMap<>();
+        private OrderBook last;
+        private long sequence;
+
+        Channel(final String marketId) {
+            this.marketId = marketId;
+        }
+
+        boolean isWatched() {
+            return !subscribers.isEmpty() || !users.isEmpty();
+        }
+
+        synchronized OrderBook latest() {
+            return last;
+        }
+
+        synchronized void subscribe(final OrderBookSubscriber subscriber, final OrderBook current) {
+            publish(current);
+            subscribers.add(subscriber);
+            subscriber.onOrderBookUpdated(last);
+        }
+
+        synchronized void publish(final OrderBook book) {
+            if (last == null) {
+                // no subscriber holds a base yet, so there is nothing to diff against
+                sequence++;
+                last = stamp(book);
+            }
+            else {
+                final OrderBookDelta delta = OrderBookDelta.between(last, book, sequence + 1);
+                if (!delta.isEmpty()) {
+                    sequence++;
+                    last = stamp(book);
+                    for (final OrderBookSubscriber sub : subscribers) {
+                        sub.onOrderBookDelta(delta);
+                    }
+                }
+            }
+        }
+
+        private OrderBook stamp(final OrderBook book) {
+            return new OrderBook(book.getMarketId(), book.getBids(), book.getAsks(), sequence);
+        }
+
+        synchronized void subscribeOrders(final String userId,
+                                          final OpenOrdersSubscriber subscriber,
+                                          final List<BookOrder> current) {
+            final UserOrders user = users.computeIfAbsent(userId, key -> new UserOrders());
+            if (current != null) {
+                publishOrders(current);
+            }
+            user.subscribers.add(subscriber);
+            if (user.last != null) {
+                subscriber.onOpenOrdersUpdated(marketId, user.last);
+            }
+        }
+
+        synchronized void unsubscribeOrders(final String userId, final OpenOrdersSubscriber subscriber) {
+            final UserOrders user = users.get(userId);
+            if (user != null) {
+                user.subscribers.remove(subscriber);
+                if (user.subscribers.isEmpty()) {
+                    users.remove(userId);
+                }
+            }
+        }
+
+        synchronized void publishOrders(final List<BookOrder> orders) {
+            if (users.isEmpty()) {
+                return;
+            }
+            final Map<String, List<BookOrder>> byUser = new HashMap<>();
+            for (final BookOrder order : orders) {
+                if (users.containsKey(order.getUserId())) {
+                    byUser.computeIfAbsent(order.getUserId(), key -> new ArrayList<>()).add(order);
+                }
+            }
+            for (final Map.Entry<String, UserOrders> entry : users.entrySet()) {
+                final List<BookOrder> now = byUser.getOrDefault(entry.getKey(), Collections.emptyList());
+                final UserOrders user = entry.getValue();
+                if (user.last == null || !sameOrders(user.last, now)) {
+                    user.last = Collections.unmodifiableList(now);
+                    for (final OpenOrdersSubscriber sub : user.subscribers) {
+                        sub.onOpenOrdersUpdated(marketId, user.last);
+                    }
+                }
+            }
+        }
+
+        private static boolean sameOrders(final List<BookOrder> a, final List<BookOrder> b) {
+            boolean result = a.size() == b.size();
+            for (int i = 0; result && i < a.size(); i++) {
+                result = a.get(i).getId().equals(b.get(i).getId())
+                    && Double.compare(a.get(i).getRemainingQty(), b.get(i).getRemainingQty()) == 0;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One user's observers in a market and the orders they were last sent.
+     */
+    private static final class UserOrders {
+        private final List<OpenOrdersSubscriber> subscribers = new CopyOnWriteArrayList<>();
+        private List<BookOrder> last;
+    }
+}
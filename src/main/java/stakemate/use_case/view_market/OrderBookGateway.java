@@ -27,4 +27,26 @@ public interface OrderBookGateway {
      * @param subscriber the observer to remove.
      */
     void unsubscribe(String marketId, OrderBookSubscriber subscriber);
+
+    /**
+     * Subscribes an observer to one user's resting orders in a market. Gateways
+     * that read the orders behind the book send them from the same reads; by
+     * default nothing is sent.
+     *
+     * @param marketId   the ID of the market to watch.
+     * @param userId     whose orders to send.
+     * @param subscriber the observer to notify of changes.
+     */
+    default void subscribeOpenOrders(String marketId, String userId, OpenOrdersSubscriber subscriber) {
+    }
+
+    /**
+     * Unsubscribes an observer from a user's resting orders in a market.
+     *
+     * @param marketId   the ID of the market.
+     * @param userId     the user.
+     * @param subscriber the observer to remove.
+     */
+    default void unsubscribeOpenOrders(String marketId, String userId, OpenOrdersSubscriber subscriber) {
+    }
 }
@@ -0,0 +1,87 @@
+package stakemate.use_case.view_market;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
+
+/**
+ * A subscriber-side copy of one market's levels, kept just well enough to check
+ * incoming deltas: their sequence must follow on, and the checksum of the result
+ * must match the publisher's. The checksum is maintained per level, so applying
+ * a delta costs only as much as the levels it touches.
+ */
+final class OrderBookReplica {
+
+    private final String marketId;
+    private final Map<Long, Double> bids = new HashMap<>();
+    private final Map<Long, Double> asks = new HashMap<>();
+    private long sequence;
+    private long checksum;
+
+    OrderBookReplica(final OrderBook snapshot) {
+        this.marketId = snapshot.getMarketId();
+        this.sequence = snapshot.getSequence();
+        for (final OrderBookEntry level : snapshot.getBids()) {
+            set(Side.BUY, level.getPriceTicks(), level.getQuantity());
+        }
+        for (final OrderBookEntry level : snapshot.getAsks()) {
+            set(Side.SELL, level.getPriceTicks(), level.getQuantity());
+        }
+    }
+
+    String getMarketId() {
+        return marketId;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    /**
+     * Applies the next delta.
+     *
+     * @param delta a delta for this market.
+     * @return false if the delta does not follow on or the result does not match
+     *     the publisher's checksum; the replica must then be rebuilt from a snapshot.
+     */
+    boolean apply(final OrderBookDelta delta) {
+        boolean inSync = delta.getSequence() == sequence + 1;
+        if (inSync) {
+            for (final OrderBookEntry change : delta.getChanges()) {
+                set(change.getSide(), change.getPriceTicks(), change.getQuantity());
+            }
+            sequence = delta.getSequence();
+            inSync = checksum == delta.getChecksum();
+        }
+        return inSync;
+    }
+
+    private void set(final Side side, final long priceTicks, final double quantity) {
+        final Map<Long, Double> levels;
+        if (side == Side.BUY) {
+            levels = bids;
+        }
+        else {
+            levels = asks;
+        }
+        final Double old;
+        if (quantity == 0.0) {
+            old = levels.remove(priceTicks);
+        }
+        else {
+            old = levels.put(priceTicks, quantity);
+        }
+        if (old != null) {
+            checksum -= OrderBookDelta.levelHash(side, priceTicks, old);
+        }
+        checksum += OrderBookDelta.levelHash(side, priceTicks, quantity);
+    }
+}
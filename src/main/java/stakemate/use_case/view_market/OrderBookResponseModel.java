@@ -1,18 +1,43 @@
 package stakemate.use_case.view_market;
 
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 
 public class OrderBookResponseModel {
     private final OrderBook orderBook;
     private final boolean empty;
     private final boolean reconnecting;
     private final String message;
+    private final OrderBookDelta delta;
 
     public OrderBookResponseModel(final OrderBook orderBook,
                                   final boolean empty,
                                   final boolean reconnecting,
                                   final String message) {
+        this(orderBook, null, empty, reconnecting, message);
+    }
+
+    /**
+     * Creates a response carrying only the levels that changed; the view applies
+     * them to the book it is already showing.
+     *
+     * @param delta   the changed levels.
+     * @param empty   whether the book is empty after the change.
+     * @param message the status message, if any.
+     */
+    public OrderBookResponseModel(final OrderBookDelta delta,
+                                  final boolean empty,
+                                  final String message) {
+        this(null, delta, empty, false, message);
+    }
+
+    private OrderBookResponseModel(final OrderBook orderBook,
+                                   final OrderBookDelta delta,
+                                   final boolean empty,
+                                   final boolean reconnecting,
+                                   final String message) {
         this.orderBook = orderBook;
+        this.delta = delta;
         this.empty = empty;
         this.reconnecting = reconnecting;
         this.message = message;
@@ -22,6 +47,10 @@ public class OrderBookResponseModel {
         return orderBook;
     }
 
+    public OrderBookDelta getDelta() {
+        return delta;
+    }
+
     public boolean isEmpty() {
         return empty;
     }
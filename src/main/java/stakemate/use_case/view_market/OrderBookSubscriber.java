@@ -1,15 +1,25 @@
 package stakemate.use_case.view_market;
 
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 
 public interface OrderBookSubscriber {
     /**
-     * Called when the order book data has been updated.
+     * Called with a full snapshot: once on subscribe, and whenever the publisher
+     * cannot express the change as a delta. Replaces whatever the subscriber had.
      *
      * @param orderBook the new snapshot of the order book.
      */
     void onOrderBookUpdated(OrderBook orderBook);
 
+    /**
+     * Called with the levels that changed since the previous update. Its sequence
+     * follows the one of the last snapshot or delta received for that market.
+     *
+     * @param delta the changed levels, with sequence number and checksum.
+     */
+    void onOrderBookDelta(OrderBookDelta delta);
+
     /**
      * Called when there is an error connecting to the order book data source.
      *
@@ -0,0 +1,115 @@
+package stakemate.use_case.view_market;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+
+/**
+ * Decides, for one subscriber, which order book updates can be shown as they are
+ * and when the subscriber must start over from a full snapshot. Deltas are checked
+ * against an {@link OrderBookReplica} of the last snapshot: a delta that skips a
+ * sequence number or does not produce the publisher's checksum triggers a resync
+ * from {@code source}.
+ * <p>
+ * Updates may arrive on the publisher's thread while a view switches markets, so
+ * every method is synchronized.
+ */
+public final class OrderBookSync {
+
+    private static final String RECONNECTING = "Reconnecting...";
+
+    private final SnapshotSource source;
+    private OrderBookReplica replica;
+
+    /**
+     * Where a full book is read from when a delta cannot be applied.
+     */
+    @FunctionalInterface
+    public interface SnapshotSource {
+        /**
+         * Reads the current book of a market.
+         *
+         * @param marketId the market.
+         * @return its current book.
+         * @throws RepositoryException if the book cannot be read.
+         */
+        OrderBook getSnapshot(String marketId) throws RepositoryException;
+    }
+
+    /**
+     * Creates a sync that resyncs from {@code source}.
+     *
+     * @param source where full books are read from.
+     */
+    public OrderBookSync(final SnapshotSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Starts over from a full book, e.g. the one sent on subscribe.
+     *
+     * @param orderBook the book.
+     * @return the book to present.
+     */
+    public synchronized OrderBookResponseModel snapshot(final OrderBook orderBook) {
+        replica = new OrderBookReplica(orderBook);
+        final boolean empty = orderBook.getBids().isEmpty() && orderBook.getAsks().isEmpty();
+        return new OrderBookResponseModel(orderBook, empty, false, emptyMessage(empty));
+    }
+
+    /**
+     * Checks the next delta.
+     *
+     * @param delta a delta from the publisher.
+     * @return the delta to present; a fresh snapshot, or a reconnecting status if
+     *     none could be read, when the delta did not follow on; null if the delta
+     *     is for another market or one already seen.
+     */
+    public synchronized OrderBookResponseModel delta(final OrderBookDelta delta) {
+        OrderBookResponseModel result = null;
+        if (replica != null
+            && replica.getMarketId().equals(delta.getMarketId())
+            && delta.getSequence() > replica.getSequence()) {
+            if (replica.apply(delta)) {
+                result = new OrderBookResponseModel(delta, replica.isEmpty(), emptyMessage(replica.isEmpty()));
+            }
+            else {
+                result = resync(delta.getMarketId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the current book; deltas are ignored until the next snapshot.
+     */
+    public synchronized void reset() {
+        replica = null;
+    }
+
+    /**
+     * A delta was missed or did not produce the publisher's book: start over from
+     * a full snapshot.
+     */
+    private OrderBookResponseModel resync(final String marketId) {
+        replica = null;
+        OrderBookResponseModel result;
+        try {
+            result = snapshot(source.getSnapshot(marketId));
+        }
+        catch (final RepositoryException ex) {
+            result = new OrderBookResponseModel(null, false, true, RECONNECTING);
+        }
+        return result;
+    }
+
+    private static String emptyMessage(final boolean empty) {
+        final String msg;
+        if (empty) {
+            msg = "No orders yet";
+        }
+        else {
+            msg = null;
+        }
+        return msg;
+    }
+}
@@ -4,11 +4,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import stakemate.entity.Market;
 import stakemate.entity.MarketStatus;
 import stakemate.entity.Match;
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 import stakemate.use_case.view_market.builder.MarketsResponseModelBuilder;
 import stakemate.use_case.view_market.decorator.HotAbstractMarketDecorator;
 import stakemate.use_case.view_market.facade.MarketDataFacade;
@@ -26,15 +28,19 @@ public class ViewMarketInteractor implements
     // [Facade Pattern]: Replaces individual Repos
     private final MarketDataFacade dataFacade;
     private final ViewMarketOutputBoundary presenter;
-    private final Map<String, Match> matchesById = new HashMap<>();
+    // written by background refreshes, read on match selection
+    private final Map<String, Match> matchesById = new ConcurrentHashMap<>();
     private MarketSortStrategy marketSortStrategy;
     private String currentSubscribedMarketId;
+    // validates incoming deltas against the subscribed book
+    private final OrderBookSync sync;
 
     public ViewMarketInteractor(final MarketDataFacade dataFacade,
                                 final ViewMarketOutputBoundary presenter) {
         this.dataFacade = dataFacade;
         this.presenter = presenter;
         this.marketSortStrategy = new StatusSortStrategy();
+        this.sync = new OrderBookSync(dataFacade::getOrderBookSnapshot);
     }
 
     // Setter to change strategy at runtime
@@ -46,15 +52,18 @@ public class ViewMarketInteractor implements
     public void loadMatches() {
         try {
             final List<Match> matches = dataFacade.getAllMatches();
-            matchesById.clear();
+            final Map<String, Match> loaded = new HashMap<>();
             final List<MatchSummary> summaries = new ArrayList<>();
 
             for (final Match m : matches) {
-                matchesById.put(m.getId(), m);
+                loaded.put(m.getId(), m);
                 final String label = m.getHomeTeam() + " vs " + m.getAwayTeam();
                 final String statusLabel = m.getStatus().name();
                 summaries.add(new MatchSummary(m.getId(), label, statusLabel));
             }
+            // never empty in between, for a selection made meanwhile
+            matchesById.putAll(loaded);
+            matchesById.keySet().retainAll(loaded.keySet());
 
             final String emptyMessage;
             if (summaries.isEmpty()) {
@@ -87,6 +96,7 @@ public class ViewMarketInteractor implements
         if (currentSubscribedMarketId != null) {
             dataFacade.unsubscribeFromOrderBook(currentSubscribedMarketId, this);
             currentSubscribedMarketId = null;
+            sync.reset();
         }
 
         final Match match = matchesById.get(matchId);
@@ -149,20 +159,7 @@ public class ViewMarketInteractor implements
         currentSubscribedMarketId = marketId;
 
         try {
-            final OrderBook orderBook = dataFacade.getOrderBookSnapshot(marketId);
-            final boolean empty = orderBook.getBids().isEmpty() && orderBook.getAsks().isEmpty();
-            final String msg;
-            if (empty) {
-                msg = "No orders yet";
-            }
-            else {
-                msg = null;
-            }
-
-            presenter.presentOrderBook(
-                new OrderBookResponseModel(orderBook, empty, false, msg)
-            );
-
+            presentSnapshot(dataFacade.getOrderBookSnapshot(marketId));
             dataFacade.subscribeToOrderBook(marketId, this);
 
         }
@@ -176,17 +173,20 @@ public class ViewMarketInteractor implements
     // [Observer Pattern]: Callback methods
     @Override
     public void onOrderBookUpdated(final OrderBook orderBook) {
-        final boolean empty = orderBook.getBids().isEmpty() && orderBook.getAsks().isEmpty();
-        final String msg;
-        if (empty) {
-            msg = "No orders yet";
-        }
-        else {
-            msg = null;
+        presentSnapshot(orderBook);
+    }
+
+    @Override
+    public void onOrderBookDelta(final OrderBookDelta delta) {
+        // null for a market we have moved away from, and for stale repeats
+        final OrderBookResponseModel response = sync.delta(delta);
+        if (response != null) {
+            presenter.presentOrderBook(response);
         }
-        presenter.presentOrderBook(
-            new OrderBookResponseModel(orderBook, empty, false, msg)
-        );
+    }
+
+    private void presentSnapshot(final OrderBook orderBook) {
+        presenter.presentOrderBook(sync.snapshot(orderBook));
     }
 
     @Override
@@ -3,6 +3,8 @@ package stakemate.view;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.FlowLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.List;
 
 import javax.swing.BorderFactory;
@@ -18,7 +20,6 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
-import javax.swing.Timer;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -32,6 +33,8 @@ import stakemate.interface_adapter.view_live.LiveMatchesController;
 import stakemate.interface_adapter.view_market.MarketsView;
 import stakemate.interface_adapter.view_market.SettleMarketView;
 import stakemate.interface_adapter.view_market.ViewMarketController;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
 import stakemate.use_case.view_market.MarketSummary;
 import stakemate.use_case.view_market.MarketsResponseModel;
 import stakemate.use_case.view_market.MatchSummary;
@@ -91,7 +94,7 @@ public class MarketsFrame extends JFrame implements MarketsView, SettleMarketVie
     private LiveMatchesFrame liveMatchesFrame;
     private LiveMatchesController liveMatchesController;
 
-    private Timer autoRefreshTimer;
+    private ScheduledJob autoRefresh;
 
     // Listeners stored as fields to allow detachment during updates
     private ListSelectionListener matchesSelectionListener;
@@ -110,9 +113,7 @@ public class MarketsFrame extends JFrame implements MarketsView, SettleMarketVie
     public void setController(final ViewMarketController controllerArg) {
         this.controller = controllerArg;
         hookEvents();
-        if (autoRefreshTimer != null && !autoRefreshTimer.isRunning()) {
-            autoRefreshTimer.start();
-        }
+        startAutoRefresh();
         if (controller != null) {
             controller.refresh();
         }
@@ -257,13 +258,37 @@ public class MarketsFrame extends JFrame implements MarketsView, SettleMarketVie
         return orderBookPanel;
     }
 
-    private void hookEvents() {
-        autoRefreshTimer = new Timer(REFRESH_INTERVAL, evt -> {
-            if (controller != null) {
-                controller.refresh();
+    /**
+     * Reloads the matches every few seconds on the shared scheduler, off the EDT:
+     * the refresh reads the database and its results reach the view through the
+     * presenter. Paused while the window is minimized.
+     */
+    private void startAutoRefresh() {
+        final ViewMarketController refreshController = controller;
+        if (autoRefresh != null || refreshController == null) {
+            return;
+        }
+        autoRefresh = Scheduler.shared().schedule("markets-refresh", REFRESH_INTERVAL, REFRESH_INTERVAL,
+                refreshController::refresh);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(final WindowEvent e) {
+                autoRefresh.pause();
+            }
+
+            @Override
+            public void windowDeiconified(final WindowEvent e) {
+                autoRefresh.resume();
+            }
+
+            @Override
+            public void windowClosed(final WindowEvent e) {
+                autoRefresh.cancel();
             }
         });
+    }
 
+    private void hookEvents() {
         refreshButton.addActionListener(evt -> {
             if (controller != null) {
                 controller.refreshWithApi();
@@ -456,6 +481,8 @@ public class MarketsFrame extends JFrame implements MarketsView, SettleMarketVie
     public void showOrderBook(final OrderBookResponseModel responseModel) {
         if (responseModel.getOrderBook() != null) {
             orderBookTableModel.setOrderBook(responseModel.getOrderBook());
+        } else if (responseModel.getDelta() != null) {
+            orderBookTableModel.applyDelta(responseModel.getDelta());
         }
 
         updateStatusLabels(responseModel);
@@ -573,7 +600,8 @@ public class MarketsFrame extends JFrame implements MarketsView, SettleMarketVie
 
                 final var uc = StakeMateApp.getPlaceOrderUseCase();
                 final var f = new stakemate.interface_adapter.viewOrderBook.OrderBookTradingFrame(
-                        uc, userId, currentUser, currentlySelectedMarket.getId(), teamAName, teamBName);
+                        uc, StakeMateApp.getOrderBookGateway(), userId, currentUser,
+                        currentlySelectedMarket.getId(), teamAName, teamBName);
                 f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
                 f.setVisible(true);
             }
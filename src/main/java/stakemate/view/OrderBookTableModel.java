@@ -3,12 +3,13 @@ package stakemate.view;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 
 import javax.swing.table.AbstractTableModel;
 
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
 
 /**
  * Table model for displaying the Order Book.
@@ -24,10 +25,14 @@ public class OrderBookTableModel extends AbstractTableModel {
     private static final int COL_ASK_PRICE = 2;
     private static final int COL_ASK_QTY = 3;
 
-    private final List<Row> rows = new ArrayList<>();
+    // best level first on each side; row i pairs the i-th bid with the i-th ask
+    private final List<OrderBookEntry> bids = new ArrayList<>();
+    private final List<OrderBookEntry> asks = new ArrayList<>();
+    private String marketId;
 
     /**
-     * Updates the table with a new OrderBook snapshot.
+     * Updates the table with a new OrderBook snapshot. A snapshot of the market
+     * already shown repaints only the levels that differ from it.
      *
      * @param orderBook The new order book data.
      */
@@ -35,55 +40,133 @@ public class OrderBookTableModel extends AbstractTableModel {
         if (orderBook == null) {
             clear();
         }
+        else if (orderBook.getMarketId() != null && orderBook.getMarketId().equals(marketId)) {
+            applyDelta(OrderBookDelta.between(new OrderBook(marketId, bids, asks), orderBook, 0L));
+        }
         else {
-            final List<OrderBookEntry> bids = new ArrayList<>(orderBook.getBids());
-            final List<OrderBookEntry> asks = new ArrayList<>(orderBook.getAsks());
-
-            bids.sort(Comparator.comparingDouble(OrderBookEntry::getPrice).reversed());
-            asks.sort(Comparator.comparingDouble(OrderBookEntry::getPrice));
-
-            final List<Row> newRows = new ArrayList<>();
-            final int max = Math.max(bids.size(), asks.size());
-            for (int i = 0; i < max; i++) {
-                final OrderBookEntry bid;
-                if (i < bids.size()) {
-                    bid = bids.get(i);
-                }
-                else {
-                    bid = null;
-                }
-
-                final OrderBookEntry ask;
-                if (i < asks.size()) {
-                    ask = asks.get(i);
-                }
-                else {
-                    ask = null;
-                }
-                newRows.add(new Row(bid, ask));
-            }
+            marketId = orderBook.getMarketId();
+            final List<OrderBookEntry> newBids = new ArrayList<>(orderBook.getBids());
+            final List<OrderBookEntry> newAsks = new ArrayList<>(orderBook.getAsks());
 
-            if (!rows.equals(newRows)) {
-                rows.clear();
-                rows.addAll(newRows);
+            newBids.sort(Comparator.comparingLong(OrderBookEntry::getPriceTicks).reversed());
+            newAsks.sort(Comparator.comparingLong(OrderBookEntry::getPriceTicks));
+
+            if (!sameLevels(bids, newBids) || !sameLevels(asks, newAsks)) {
+                bids.clear();
+                bids.addAll(newBids);
+                asks.clear();
+                asks.addAll(newAsks);
                 fireTableDataChanged();
             }
         }
     }
 
+    /**
+     * Applies changed levels to the rows already shown. A quantity change repaints
+     * one cell; an added or removed level shifts only the rows below it.
+     *
+     * @param delta the changed levels.
+     */
+    public void applyDelta(final OrderBookDelta delta) {
+        for (final OrderBookEntry change : delta.getChanges()) {
+            if (change.getSide() == Side.BUY) {
+                applyChange(bids, change, true, COL_BID_QTY);
+            }
+            else {
+                applyChange(asks, change, false, COL_ASK_QTY);
+            }
+        }
+    }
+
+    private void applyChange(final List<OrderBookEntry> levels,
+                             final OrderBookEntry change,
+                             final boolean descending,
+                             final int qtyColumn) {
+        final int index = indexOf(levels, change.getPriceTicks(), descending);
+        final int rowsBefore = getRowCount();
+        if (index >= 0) {
+            if (change.getQuantity() == 0.0) {
+                levels.remove(index);
+                fireShifted(index, rowsBefore);
+            }
+            else {
+                levels.set(index, change);
+                fireTableCellUpdated(index, qtyColumn);
+            }
+        }
+        else if (change.getQuantity() != 0.0) {
+            final int insertAt = -(index + 1);
+            levels.add(insertAt, change);
+            fireShifted(insertAt, rowsBefore);
+        }
+    }
+
+    /**
+     * Binary search by tick price.
+     *
+     * @return the index of the level, or {@code -(insertion point) - 1}.
+     */
+    private static int indexOf(final List<OrderBookEntry> levels, final long priceTicks,
+                               final boolean descending) {
+        int low = 0;
+        int high = levels.size() - 1;
+        int result = -1;
+        boolean found = false;
+        while (low <= high && !found) {
+            final int mid = (low + high) >>> 1;
+            int cmp = Long.compare(levels.get(mid).getPriceTicks(), priceTicks);
+            if (descending) {
+                cmp = -cmp;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                result = mid;
+                found = true;
+            }
+        }
+        if (!found) {
+            result = -(low + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Fires events for a level inserted into or removed from one side at {@code from}.
+     */
+    private void fireShifted(final int from, final int rowsBefore) {
+        final int rowsAfter = getRowCount();
+        final int common = Math.min(rowsBefore, rowsAfter);
+        if (from < common) {
+            fireTableRowsUpdated(from, common - 1);
+        }
+        if (rowsAfter > rowsBefore) {
+            fireTableRowsInserted(rowsBefore, rowsAfter - 1);
+        }
+        else if (rowsAfter < rowsBefore) {
+            fireTableRowsDeleted(rowsAfter, rowsBefore - 1);
+        }
+    }
+
     /**
      * Clears all data from the table.
      */
     public void clear() {
-        if (!rows.isEmpty()) {
-            rows.clear();
+        marketId = null;
+        if (!bids.isEmpty() || !asks.isEmpty()) {
+            bids.clear();
+            asks.clear();
             fireTableDataChanged();
         }
     }
 
     @Override
     public int getRowCount() {
-        return rows.size();
+        return Math.max(bids.size(), asks.size());
     }
 
     @Override
@@ -99,19 +182,20 @@ public class OrderBookTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
         final Object result;
-        final Row row = rows.get(rowIndex);
+        final OrderBookEntry bid = levelAt(bids, rowIndex);
+        final OrderBookEntry ask = levelAt(asks, rowIndex);
         switch (columnIndex) {
             case COL_BID_QTY:
-                result = formatQty(row.bidQty);
+                result = formatQty(quantityOf(bid));
                 break;
             case COL_BID_PRICE:
-                result = formatVal(row.bidPrice);
+                result = formatVal(priceOf(bid));
                 break;
             case COL_ASK_PRICE:
-                result = formatVal(row.askPrice);
+                result = formatVal(priceOf(ask));
                 break;
             case COL_ASK_QTY:
-                result = formatQty(row.askQty);
+                result = formatQty(quantityOf(ask));
                 break;
             default:
                 result = "";
@@ -142,53 +226,45 @@ public class OrderBookTableModel extends AbstractTableModel {
         return res;
     }
 
-    /**
-     * Internal row representation.
-     */
-    private static final class Row {
-        private final Double bidQty;
-        private final Double bidPrice;
-        private final Double askPrice;
-        private final Double askQty;
-
-        Row(final OrderBookEntry bid, final OrderBookEntry ask) {
-            if (bid != null) {
-                this.bidQty = bid.getQuantity();
-                this.bidPrice = bid.getPrice();
-            }
-            else {
-                this.bidQty = null;
-                this.bidPrice = null;
-            }
-            if (ask != null) {
-                this.askPrice = ask.getPrice();
-                this.askQty = ask.getQuantity();
-            }
-            else {
-                this.askPrice = null;
-                this.askQty = null;
-            }
+    private static OrderBookEntry levelAt(final List<OrderBookEntry> levels, final int index) {
+        final OrderBookEntry result;
+        if (index < levels.size()) {
+            result = levels.get(index);
+        }
+        else {
+            result = null;
         }
+        return result;
+    }
 
-        @Override
-        public boolean equals(final Object o) {
-            boolean result = false;
-            if (this == o) {
-                result = true;
-            }
-            else if (o != null && getClass() == o.getClass()) {
-                final Row row = (Row) o;
-                result = Objects.equals(bidQty, row.bidQty)
-                    && Objects.equals(bidPrice, row.bidPrice)
-                    && Objects.equals(askPrice, row.askPrice)
-                    && Objects.equals(askQty, row.askQty);
-            }
-            return result;
+    private static Double priceOf(final OrderBookEntry level) {
+        final Double result;
+        if (level != null) {
+            result = level.getPrice();
+        }
+        else {
+            result = null;
+        }
+        return result;
+    }
+
+    private static Double quantityOf(final OrderBookEntry level) {
+        final Double result;
+        if (level != null) {
+            result = level.getQuantity();
+        }
+        else {
+            result = null;
         }
+        return result;
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(bidQty, bidPrice, askPrice, askQty);
+    private static boolean sameLevels(final List<OrderBookEntry> a, final List<OrderBookEntry> b) {
+        boolean result = a.size() == b.size();
+        for (int i = 0; result && i < a.size(); i++) {
+            result = a.get(i).getPriceTicks() == b.get(i).getPriceTicks()
+                && Double.compare(a.get(i).getQuantity(), b.get(i).getQuantity()) == 0;
         }
+        return result;
     }
 }
@@ -16,10 +16,13 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableModel;
 
 import stakemate.interface_adapter.view_profile.ProfileState;
 import stakemate.interface_adapter.view_profile.ProfileViewModel;
+import stakemate.service.scheduling.ScheduledJob;
+import stakemate.service.scheduling.Scheduler;
 
 /**
  * Frame for the Profile View.
@@ -49,8 +52,9 @@ public class ProfileFrame extends JFrame implements PropertyChangeListener {
     private ProfileViewModel viewModel;
     private stakemate.interface_adapter.view_profile.ViewProfileController controller;
 
-    private stakemate.use_case.view_profile.SortCriteria currentOpenSort = stakemate.use_case.view_profile.SortCriteria.DATE;
-    private stakemate.use_case.view_profile.SortCriteria currentHistoricalSort = stakemate.use_case.view_profile.SortCriteria.DATE;
+    // read by the background refresh
+    private volatile stakemate.use_case.view_profile.SortCriteria currentOpenSort = stakemate.use_case.view_profile.SortCriteria.DATE;
+    private volatile stakemate.use_case.view_profile.SortCriteria currentHistoricalSort = stakemate.use_case.view_profile.SortCriteria.DATE;
 
     /**
      * Sets the view profile controller.
@@ -185,12 +189,15 @@ public class ProfileFrame extends JFrame implements PropertyChangeListener {
                 });
     }
 
-    private javax.swing.Timer autoRefreshTimer;
+    private ScheduledJob autoRefresh;
 
+    /**
+     * Reloads the profile every 3 seconds on the shared scheduler, off the EDT;
+     * the presenter's update is moved back onto the EDT in {@link #propertyChange}.
+     */
     private void initAutoRefresh() {
-        // Refresh every 3 seconds
-        autoRefreshTimer = new javax.swing.Timer(3000, e -> {
-            if (isVisible() && viewModel != null && controller != null) {
+        autoRefresh = Scheduler.shared().schedule("profile-refresh", 3000, 3000, () -> {
+            if (viewModel != null && controller != null) {
                 final String username = viewModel.getState().getUsername();
                 if (username != null && !username.isEmpty()) {
                     controller.execute(username, currentOpenSort, currentHistoricalSort);
@@ -199,23 +206,31 @@ public class ProfileFrame extends JFrame implements PropertyChangeListener {
         });
     }
 
+    /**
+     * Shows or hides the frame; auto-refresh runs only while it is visible.
+     */
     @Override
     public void setVisible(final boolean b) {
         super.setVisible(b);
         if (b) {
-            if (autoRefreshTimer == null) {
+            if (autoRefresh == null) {
                 initAutoRefresh();
+            } else {
+                autoRefresh.resume();
             }
-            autoRefreshTimer.start();
         } else {
-            if (autoRefreshTimer != null) {
-                autoRefreshTimer.stop();
+            if (autoRefresh != null) {
+                autoRefresh.pause();
             }
         }
     }
 
     @Override
     public void propertyChange(final PropertyChangeEvent evt) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> propertyChange(evt));
+            return;
+        }
         final ProfileState state = (ProfileState) evt.getNewValue();
         if (state.getError() != null) {
             // Don't show error dialog on auto-refresh to avoid spamming user
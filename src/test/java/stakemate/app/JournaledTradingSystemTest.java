@@ -0,0 +1,126 @@
+package stakemate.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import stakemate.data_access.in_memory.EngineOrderBookGateway;
+import stakemate.engine.BookOrder;
+import stakemate.entity.Side;
+import stakemate.service.DbAccountService;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderRequest;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderResponse;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+
+/**
+ * Journaled mode end to end: trades are charged as they are made, and a restart
+ * brings back the books and what their orders reserve.
+ */
+class JournaledTradingSystemTest {
+
+    @TempDir
+    Path dir;
+
+    // the profiles table, shared by the services before and after the restart
+    private final Map<String, Double> profiles = new ConcurrentHashMap<>(Map.of("alice", 100.0, "bob", 100.0));
+
+    @Test
+    void testFillsAreChargedAndReservationsSurviveARestart() throws IOException {
+        try (JournaledTradingSystem trading = open(new TableBalances(profiles))) {
+            final PlaceOrderUseCase useCase = trading.getPlaceOrderUseCase();
+            assertTrue(place(useCase, "alice", Side.BUY, 0.40, 10).ok);
+            assertTrue(place(useCase, "bob", Side.SELL, 0.40, 4).ok);
+            assertTrue(place(useCase, "bob", Side.SELL, 0.60, 5).ok);
+        }
+        // alice paid 4 x 0.40, bob 4 x 0.60
+        assertEquals(98.4, profiles.get("alice"), 1e-9);
+        assertEquals(97.6, profiles.get("bob"), 1e-9);
+
+        final TableBalances accounts = new TableBalances(profiles);
+        try (JournaledTradingSystem trading = open(accounts)) {
+            final PlaceOrderUseCase useCase = trading.getPlaceOrderUseCase();
+            // alice's 6 left at 0.40, bob's 5 at 0.60
+            assertEquals(2.4, accounts.getReserved("alice"), 1e-9);
+            assertEquals(3.0, accounts.getReserved("bob"), 1e-9);
+            assertEquals(List.of(6.0), remaining(useCase.openOrdersForUser("alice")));
+
+            assertTrue(place(useCase, "bob", Side.SELL, 0.40, 6).ok);
+
+            assertEquals(96.0, profiles.get("alice"), 1e-9);
+            assertEquals(94.0, profiles.get("bob"), 1e-9);
+            assertEquals(0.0, accounts.getReserved("alice"), 1e-9);
+            assertEquals(3.0, accounts.getReserved("bob"), 1e-9);
+            assertTrue(useCase.openOrdersForUser("alice").isEmpty());
+            assertEquals(List.of(5.0), remaining(useCase.openOrdersForUser("bob")));
+        }
+    }
+
+    @Test
+    void testOpenOrdersAreServedFromTheEngineBooks() throws IOException {
+        try (JournaledTradingSystem trading = open(new TableBalances(profiles));
+                EngineOrderBookGateway gateway = new EngineOrderBookGateway(trading.getEngines())) {
+            place(trading.getPlaceOrderUseCase(), "alice", Side.BUY, 0.40, 10);
+            place(trading.getPlaceOrderUseCase(), "bob", Side.SELL, 0.60, 5);
+            final List<List<BookOrder>> received = new ArrayList<>();
+
+            gateway.subscribeOpenOrders("m1", "alice", (marketId, orders) -> received.add(orders));
+
+            assertEquals(1, received.size());
+            assertEquals(List.of(10.0), remaining(received.get(0)));
+        }
+    }
+
+    private JournaledTradingSystem open(final DbAccountService accounts) throws IOException {
+        return JournaledTradingSystem.open(dir, 2, accounts, 2);
+    }
+
+    private static PlaceOrderResponse place(final PlaceOrderUseCase useCase, final String userId, final Side side,
+                                            final double price, final double qty) {
+        return useCase.place(new PlaceOrderRequest(userId, "m1", side, price, qty));
+    }
+
+    private static List<Double> remaining(final List<BookOrder> orders) {
+        final List<Double> result = new ArrayList<>();
+        for (final BookOrder o : orders) {
+            result.add(o.getRemainingQty());
+        }
+        return result;
+    }
+
+    /**
+     * Balances are read from and written to a map instead of the profiles table.
+     */
+    private static final class TableBalances extends DbAccountService {
+        private final Map<String, Double> table;
+
+        TableBalances(final Map<String, Double> table) {
+            super(null);
+            this.table = table;
+        }
+
+        @Override
+        protected double loadBalance(final String userId) {
+            return table.getOrDefault(userId, 0.0);
+        }
+
+        @Override
+        public void adjustBalance(final String userId, final double delta) {
+            try {
+                writeThrough(Map.of(userId, delta), () -> table.merge(userId, delta, Double::sum));
+            }
+            catch (final SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package stakemate.app.loadgen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderRequest;
+
+class OrderStreamTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSameSeedGeneratesSameStream() {
+        final OrderStream a = OrderStream.generate(42L, 500, 5, 3, 1000.0, 0.2, 5);
+        final OrderStream b = OrderStream.generate(42L, 500, 5, 3, 1000.0, 0.2, 5);
+
+        assertSameEntries(a.entries(), b.entries());
+        assertTrue(a.isPaced());
+        assertFalse(OrderStream.generate(42L, 500, 5, 3, 0, 0.2, 5).isPaced());
+    }
+
+    @Test
+    void testRecordedStreamReplaysIdentically() throws IOException {
+        final OrderStream original = OrderStream.generate(7L, 300, 4, 2, 5000.0, 0.5, 10);
+        final Path file = dir.resolve("stream.csv");
+
+        original.write(file);
+        final OrderStream replayed = OrderStream.read(file);
+
+        assertSameEntries(original.entries(), replayed.entries());
+        assertEquals(original.traders(), replayed.traders());
+        assertTrue(replayed.entries().stream().anyMatch(e -> e.getRequest().price == null));
+    }
+
+    @Test
+    void testLatencyPercentilesUseNearestRank() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 100; i >= 1; i--) {
+            recorder.record(i);
+        }
+
+        assertEquals(50, recorder.percentile(50));
+        assertEquals(99, recorder.percentile(99));
+        assertEquals(100, recorder.percentile(99.9));
+        assertEquals(100, recorder.max());
+        assertEquals(0, new LatencyRecorder().percentile(50));
+    }
+
+    private static void assertSameEntries(final List<OrderStream.Entry> expected,
+                                          final List<OrderStream.Entry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final PlaceOrderRequest e = expected.get(i).getRequest();
+            final PlaceOrderRequest a = actual.get(i).getRequest();
+            assertEquals(expected.get(i).getOffsetNanos(), actual.get(i).getOffsetNanos());
+            assertEquals(e.userId, a.userId);
+            assertEquals(e.marketId, a.marketId);
+            assertEquals(e.side, a.side);
+            if (e.price == null) {
+                assertNull(a.price);
+            }
+            else {
+                assertEquals(e.price, a.price);
+            }
+            assertEquals(e.quantity, a.quantity);
+        }
+    }
+}
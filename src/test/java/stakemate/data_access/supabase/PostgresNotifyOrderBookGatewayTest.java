@@ -0,0 +1,278 @@
+package stakemate.data_access.supabase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+import stakemate.entity.Side;
+import stakemate.use_case.PlaceOrderUseCase.OrderRepository;
+import stakemate.use_case.view_market.OrderBookSubscriber;
+
+class PostgresNotifyOrderBookGatewayTest {
+
+    private final FakeServer server = new FakeServer();
+    private final StubOrderRepository repo = new StubOrderRepository();
+    private PostgresNotifyOrderBookGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        if (gateway != null) {
+            gateway.close();
+        }
+    }
+
+    private PostgresNotifyOrderBookGateway open() {
+        gateway = new PostgresNotifyOrderBookGateway(repo, server::connect, 1, 5_000);
+        return gateway;
+    }
+
+    @Test
+    void testReturnsOnceListening() {
+        server.connectDelayMs = 100;
+
+        open();
+
+        assertEquals(1, server.listens.get());
+    }
+
+    @Test
+    void testNotificationRefreshesOnlyWatchedMarkets() throws Exception {
+        repo.put("m1", new BookOrder("u1", "m1", Side.BUY, 0.40, 5.0));
+        final RecordingSubscriber sub = new RecordingSubscriber();
+        open().subscribe("m1", sub);
+
+        repo.put("m1", new BookOrder("u2", "m1", Side.BUY, 0.40, 3.0));
+        server.notify("m1", "m2");
+
+        sub.await(2);
+        assertEquals(List.of("snapshot", "delta"), sub.events());
+        assertEquals(8.0, gateway.getSnapshot("m1").getBids().get(0).getQuantity());
+        assertEquals(0, repo.reads("m2"));
+    }
+
+    @Test
+    void testRefreshErrorReachesTheMarketsSubscribers() throws InterruptedException {
+        final RecordingSubscriber sub = new RecordingSubscriber();
+        open().subscribe("m1", sub);
+
+        repo.failing = true;
+        server.notify("m1");
+
+        sub.await(2);
+        assertTrue(sub.events().get(1).startsWith("error Error refreshing"));
+    }
+
+    @Test
+    void testLostConnectionReachesEverySubscriberAndResyncsOnReconnect() throws InterruptedException {
+        final RecordingSubscriber sub1 = new RecordingSubscriber();
+        final RecordingSubscriber sub2 = new RecordingSubscriber();
+        open().subscribe("m1", sub1);
+        gateway.subscribe("m2", sub2);
+
+        server.drop();
+
+        sub1.await(3);
+        sub2.await(3);
+        for (final RecordingSubscriber sub : List.of(sub1, sub2)) {
+            assertEquals(List.of("snapshot", "error Live updates interrupted, reconnecting", "restored"),
+                sub.events());
+        }
+        assertEquals(2, server.listens.get());
+    }
+
+    private static final class RecordingSubscriber implements OrderBookSubscriber {
+        private final List<String> events = new ArrayList<>();
+
+        synchronized List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                wait(50);
+            }
+        }
+
+        private synchronized void record(String event) {
+            events.add(event);
+            notifyAll();
+        }
+
+        @Override
+        public void onOrderBookUpdated(OrderBook orderBook) {
+            record("snapshot");
+        }
+
+        @Override
+        public void onOrderBookDelta(OrderBookDelta delta) {
+            record("delta");
+        }
+
+        @Override
+        public void onConnectionError(String message) {
+            record("error " + message);
+        }
+
+        @Override
+        public void onConnectionRestored() {
+            record("restored");
+        }
+    }
+
+    private static final class StubOrderRepository implements OrderRepository {
+        private final Map<String, List<BookOrder>> orders = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> reads = new ConcurrentHashMap<>();
+        volatile boolean failing;
+
+        void put(String marketId, BookOrder order) {
+            orders.computeIfAbsent(marketId, k -> new java.util.concurrent.CopyOnWriteArrayList<>()).add(order);
+        }
+
+        int reads(String marketId) {
+            return reads.getOrDefault(marketId, new AtomicInteger()).get();
+        }
+
+        @Override
+        public List<BookOrder> findOpenOrdersForMarket(String marketId, Side side) {
+            reads.computeIfAbsent(marketId, k -> new AtomicInteger()).incrementAndGet();
+            if (failing) {
+                throw new RuntimeException("connection refused");
+            }
+            final List<BookOrder> result = new ArrayList<>();
+            for (final BookOrder o : orders.getOrDefault(marketId, List.of())) {
+                if (o.getSide() == side) {
+                    result.add(o);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void save(BookOrder order) {
+        }
+
+        @Override
+        public BookOrder findById(String orderId) {
+            return null;
+        }
+
+        @Override
+        public List<BookOrder> findOpenOrdersForUser(String userId) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void updateRemainingQty(String orderId, double newRemainingQty) {
+        }
+
+        @Override
+        public void reduceRemainingQty(String orderId, double newRemainingQty) {
+        }
+
+        @Override
+        public List<BookOrder> findOppositeSideOrders(String marketId, Side incomingSide) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Hands out listening sessions; notifications and a dropped connection are
+     * queued for the session that is open at the time.
+     */
+    private static final class FakeServer {
+        private static final Object DROP = new Object();
+
+        final AtomicInteger listens = new AtomicInteger();
+        private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        volatile long connectDelayMs;
+
+        void notify(String... marketIds) {
+            events.add(marketIds);
+        }
+
+        void drop() {
+            events.add(DROP);
+        }
+
+        Connection connect() throws SQLException {
+            try {
+                Thread.sleep(connectDelayMs);
+            }
+            catch (final InterruptedException ex) {
+                throw new SQLException("interrupted", ex);
+            }
+            final PGConnection pg = proxy(PGConnection.class, (p, method, args) -> {
+                if (method.getName().equals("getNotifications")) {
+                    return next((Integer) args[0]);
+                }
+                return null;
+            });
+            final Statement stmt = proxy(Statement.class, (p, method, args) -> {
+                if (method.getName().equals("execute") && ((String) args[0]).startsWith("LISTEN")) {
+                    listens.incrementAndGet();
+                }
+                return method.getReturnType() == boolean.class ? false : null;
+            });
+            return proxy(Connection.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return stmt;
+                    case "unwrap":
+                        return pg;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PGNotification[] next(int timeoutMs) throws SQLException {
+            final Object event;
+            try {
+                event = events.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            catch (final InterruptedException ex) {
+                throw new SQLException("interrupted", ex);
+            }
+            if (event == DROP) {
+                throw new SQLException("An I/O error occurred while sending to the backend.", "08006");
+            }
+            if (event == null) {
+                return null;
+            }
+            final String[] marketIds = (String[]) event;
+            final PGNotification[] result = new PGNotification[marketIds.length];
+            for (int i = 0; i < marketIds.length; i++) {
+                final String marketId = marketIds[i];
+                result[i] = proxy(PGNotification.class, (p, method, args) ->
+                    method.getName().equals("getParameter") ? marketId : null);
+            }
+            return result;
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package stakemate.data_access.supabase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.engine.Trade;
+
+class PostgresTradeRepositoryTest {
+
+    private static final Instant AT = Instant.parse("2024-05-01T12:00:00Z");
+
+    /**
+     * Fails its first {@code failures} copies with {@code sqlState} and records
+     * every batch it is given.
+     */
+    private static final class FailingRepository extends PostgresTradeRepository {
+        final List<List<String>> attempts = new ArrayList<>();
+        private final String sqlState;
+        private int failures;
+
+        FailingRepository(int maxBatch, long drainTimeoutMs, String sqlState, int failures) {
+            super(null, 5, maxBatch, 1, drainTimeoutMs);
+            this.sqlState = sqlState;
+            this.failures = failures;
+        }
+
+        @Override
+        void copy(List<Trade> batch) throws SQLException {
+            final List<String> ids = new ArrayList<>();
+            for (Trade t : batch) {
+                ids.add(t.getId());
+            }
+            synchronized (attempts) {
+                attempts.add(ids);
+            }
+            if (failures != 0) {
+                failures--;
+                throw new SQLException("copy failed", sqlState);
+            }
+        }
+    }
+
+    private static Trade trade(String id) {
+        return new Trade(id, "m1", "b-" + id, "s-" + id, 55, 2.0, AT);
+    }
+
+    @Test
+    void testCsvQuotesTextAndDoublesEmbeddedQuotes() {
+        final Trade t = new Trade("t\"1", "market, one", "b1", "s1", 55, 2.5, AT);
+
+        assertEquals("\"t\"\"1\",\"market, one\",\"b1\",\"s1\",0.55,2.5,2024-05-01T12:00:00Z\n",
+                PostgresTradeRepository.toCsv(List.of(t)));
+    }
+
+    @Test
+    void testFailingBatchIsRetriedInOrderThenGivenUp() {
+        try (FailingRepository repo = new FailingRepository(2, 5_000, "23505", -1)) {
+            repo.saveAll(List.of(trade("t1"), trade("t2"), trade("t3")));
+            repo.drain();
+
+            final List<List<String>> expected = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                expected.add(List.of("t1", "t2"));
+            }
+            for (int i = 0; i < 5; i++) {
+                expected.add(List.of("t3"));
+            }
+            assertEquals(expected, repo.attempts);
+            assertEquals(0, repo.pendingCount());
+        }
+    }
+
+    @Test
+    void testConnectionFailuresAreRetriedPastTheAttemptLimit() {
+        try (FailingRepository repo = new FailingRepository(10, 5_000, "08006", 8)) {
+            repo.saveAll(List.of(trade("t1"), trade("t2")));
+            repo.drain();
+
+            assertEquals(9, repo.attempts.size());
+            for (List<String> attempt : repo.attempts) {
+                assertEquals(List.of("t1", "t2"), attempt);
+            }
+        }
+    }
+
+    @Test
+    void testCloseLogsTradesItCouldNotWrite() {
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final PrintStream original = System.err;
+        final List<Trade> trades = List.of(trade("t1"), trade("t2"));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try (FailingRepository repo = new FailingRepository(10, 100, "08006", -1)) {
+            repo.saveAll(trades);
+            assertThrows(IllegalStateException.class, repo::drain);
+        }
+        finally {
+            System.setErr(original);
+        }
+
+        final String log = err.toString(StandardCharsets.UTF_8);
+        assertTrue(log.contains("dropping 2 unwritten trades"), log);
+        assertTrue(log.contains(PostgresTradeRepository.toCsv(trades)), log);
+    }
+}
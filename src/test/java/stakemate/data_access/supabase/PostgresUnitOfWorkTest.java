@@ -0,0 +1,167 @@
+package stakemate.data_access.supabase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.engine.BookOrder;
+import stakemate.engine.Trade;
+import stakemate.entity.Side;
+import stakemate.service.DbAccountService;
+
+class PostgresUnitOfWorkTest {
+
+    private static final String BUYER = UUID.randomUUID().toString();
+    private static final String SELLER = UUID.randomUUID().toString();
+
+    private final FakeDatabase db = new FakeDatabase();
+    private final FixedBalances accounts = new FixedBalances(Map.of(BUYER, 100.0, SELLER, 100.0));
+
+    @Test
+    void testPassIsWrittenInOneTransaction() {
+        final BookOrder buy = new BookOrder(BUYER, "market1", Side.BUY, 0.40, 10.0);
+        final BookOrder sell = new BookOrder(SELLER, "market1", Side.SELL, 0.40, 10.0);
+        accounts.reserveForOrder(BUYER, buy.getId(), 4.0);
+        final PostgresUnitOfWork uow = new PostgresUnitOfWork(db.dataSource(), accounts);
+
+        uow.savePosition(buy, 10.0, 0.40);
+        uow.savePosition(sell, 10.0, 0.60);
+        uow.updateRemainingQty(buy.getId(), 0.0);
+        uow.updateRemainingQty(sell.getId(), 0.0);
+        uow.applyTrade(buy, sell, new Trade("market1", buy.getId(), sell.getId(), 40, 10.0));
+        // nothing is written or settled before commit
+        assertEquals(0, db.connections);
+        assertEquals(100.0, accounts.getBalance(BUYER), 1e-9);
+        assertEquals(100.0, accounts.getBalance(SELLER), 1e-9);
+        uow.commit();
+
+        assertEquals(1, db.connections);
+        assertEquals(List.of("autocommit false", "batch positions x2", "batch orders x2",
+                "batch balances x2", "commit"), db.log);
+        assertEquals(96.0, accounts.getBalance(BUYER), 1e-9);
+        assertEquals(94.0, accounts.getBalance(SELLER), 1e-9);
+        assertEquals(0.0, accounts.getReserved(BUYER), 1e-9);
+    }
+
+    @Test
+    void testFailedCommitRollsBackAndLeavesTheLedger() {
+        final BookOrder buy = new BookOrder(BUYER, "market1", Side.BUY, 0.40, 10.0);
+        final BookOrder sell = new BookOrder(SELLER, "market1", Side.SELL, 0.40, 10.0);
+        accounts.reserveForOrder(BUYER, buy.getId(), 4.0);
+        final PostgresUnitOfWork uow = new PostgresUnitOfWork(db.dataSource(), accounts);
+        db.failingTable = "profiles";
+
+        uow.updateRemainingQty(buy.getId(), 0.0);
+        uow.applyTrade(buy, sell, new Trade("market1", buy.getId(), sell.getId(), 40, 10.0));
+
+        assertThrows(RuntimeException.class, uow::commit);
+        assertEquals(List.of("autocommit false", "batch orders x1", "rollback"), db.log);
+        assertEquals(100.0, accounts.getBalance(BUYER), 1e-9);
+        assertEquals(100.0, accounts.getBalance(SELLER), 1e-9);
+        assertEquals(4.0, accounts.getReserved(BUYER), 1e-9);
+    }
+
+    @Test
+    void testHoldsAreReleasedWhetherOrNotThePassCommits() {
+        final PostgresUnitOfWork uow = new PostgresUnitOfWork(db.dataSource(), accounts);
+
+        assertTrue(uow.holdFunds(BUYER, 60.0));
+        assertFalse(accounts.holdFunds(BUYER, 60.0));
+        uow.releaseHolds();
+
+        assertTrue(accounts.holdFunds(BUYER, 60.0));
+    }
+
+    /**
+     * Balances come from a map instead of the profiles table.
+     */
+    private static final class FixedBalances extends DbAccountService {
+        private final Map<String, Double> balances;
+
+        FixedBalances(Map<String, Double> balances) {
+            super(null);
+            this.balances = balances;
+        }
+
+        @Override
+        protected double loadBalance(String userId) {
+            return balances.getOrDefault(userId, 0.0);
+        }
+    }
+
+    /**
+     * Logs what reaches the connection; a batch against {@code failingTable} fails.
+     */
+    private static final class FakeDatabase {
+        final List<String> log = new ArrayList<>();
+        int connections;
+        String failingTable;
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (p, method, args) -> {
+                if (method.getName().equals("getConnection")) {
+                    connections++;
+                    return connection();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "setAutoCommit":
+                        log.add("autocommit " + args[0]);
+                        return null;
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    case "commit":
+                    case "rollback":
+                        log.add(method.getName());
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            final String table = sql.contains("positions") ? "positions"
+                    : sql.contains("profiles") ? "profiles" : "orders";
+            final int[] rows = {0};
+            return proxy(PreparedStatement.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "addBatch":
+                        rows[0]++;
+                        return null;
+                    case "executeBatch":
+                        if (table.equals(failingTable)) {
+                            throw new SQLException("deadlock detected", "40P01");
+                        }
+                        log.add("batch " + (table.equals("profiles") ? "balances" : table) + " x" + rows[0]);
+                        return new int[rows[0]];
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package stakemate.data_access.supabase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteBehindQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private final FakeDatabase db = new FakeDatabase();
+
+    private WriteBehindQueue open(long drainTimeoutMs) {
+        return new WriteBehindQueue(db.dataSource(), dir, 5, 100, 1, drainTimeoutMs);
+    }
+
+    private static PendingWrite set(String orderId, double qty) {
+        return PendingWrite.setRemaining(orderId, qty);
+    }
+
+    @Test
+    void testSpooledWritesAreReplayedAfterACrash() {
+        db.commitsFail = true;
+        final WriteBehindQueue crashed = open(100);
+        crashed.enqueue(set("o1", 1));
+        crashed.enqueue(set("o2", 2));
+        // gives up waiting; the writes stay in the spool as after a crash
+        crashed.close();
+        assertTrue(db.applied.isEmpty());
+
+        db.commitsFail = false;
+        try (WriteBehindQueue queue = open(5_000)) {
+            queue.drain();
+        }
+        assertEquals(List.of("o1=1.0", "o2=2.0"), db.applied);
+    }
+
+    @Test
+    void testWritesTheDatabaseAlreadyHasAreSkippedOnReplay() throws IOException {
+        db.commitsFail = true;
+        final WriteBehindQueue crashed = open(100);
+        crashed.enqueue(set("o1", 1));
+        crashed.enqueue(set("o2", 2));
+        crashed.enqueue(set("o3", 3));
+        crashed.close();
+
+        // the first two were committed but the process died before recording it
+        db.progress.put(Files.readString(dir.resolve("write-behind.id")).trim(), 2L);
+        db.commitsFail = false;
+        try (WriteBehindQueue queue = open(5_000)) {
+            queue.drain();
+        }
+        assertEquals(List.of("o3=3.0"), db.applied);
+    }
+
+    @Test
+    void testLostCommittedFileDoesNotReuseSequenceNumbers() throws IOException {
+        try (WriteBehindQueue queue = open(5_000)) {
+            queue.enqueue(set("o1", 1));
+            queue.enqueue(set("o2", 2));
+            queue.drain();
+        }
+        Files.delete(dir.resolve("write-behind.committed"));
+
+        try (WriteBehindQueue queue = open(5_000)) {
+            queue.enqueue(set("o3", 3));
+            queue.drain();
+        }
+        assertEquals(List.of("o1=1.0", "o2=2.0", "o3=3.0"), db.applied);
+    }
+
+    @Test
+    void testWriteThatKeepsFailingIsDeadLetteredAndTheRestGoThrough() throws IOException {
+        db.failingOrderId = "bad";
+        try (WriteBehindQueue queue = open(10_000)) {
+            queue.enqueue(set("o1", 1));
+            queue.enqueue(set("bad", 2));
+            queue.enqueue(set("o3", 3));
+            queue.drain();
+            assertEquals(0, queue.pendingCount());
+        }
+
+        assertEquals(List.of("o1=1.0", "o3=3.0"), db.applied);
+        final List<String> dead = Files.readAllLines(dir.resolve("write-behind.dead"));
+        assertEquals(1, dead.size());
+        assertTrue(dead.get(0).contains("bad"), dead.get(0));
+    }
+
+    @Test
+    void testDrainGivesUpWhileTheDatabaseIsDown() {
+        db.commitsFail = true;
+        try (WriteBehindQueue queue = open(100)) {
+            queue.enqueue(set("o1", 1));
+            assertThrows(IllegalStateException.class, queue::drain);
+            assertEquals(1, queue.pendingCount());
+        }
+    }
+
+    /**
+     * Just enough of Postgres for the queue: the progress table and
+     * SET_REMAINING writes, applied only when their transaction commits.
+     */
+    private static final class FakeDatabase {
+        final Map<String, Long> progress = new HashMap<>();
+        final List<String> applied = new ArrayList<>();
+        volatile boolean commitsFail;
+        volatile String failingOrderId;
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (p, method, args) -> {
+                if (method.getName().equals("getConnection")) {
+                    return connection();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Connection connection() {
+            final List<String> writes = new ArrayList<>();
+            final Map<String, Long> progressWrites = new HashMap<>();
+            return proxy(Connection.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement((String) args[0], writes, progressWrites);
+                    case "commit":
+                        if (commitsFail) {
+                            throw new SQLException("connection lost", "08006");
+                        }
+                        synchronized (this) {
+                            applied.addAll(writes);
+                            progress.putAll(progressWrites);
+                        }
+                        return null;
+                    case "rollback":
+                        writes.clear();
+                        progressWrites.clear();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement statement(String sql, List<String> writes, Map<String, Long> progressWrites) {
+            final Map<Integer, Object> params = new HashMap<>();
+            final List<Map<Integer, Object>> batch = new ArrayList<>();
+            return proxy(PreparedStatement.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "setString":
+                    case "setDouble":
+                    case "setLong":
+                        params.put((Integer) args[0], args[1]);
+                        return null;
+                    case "addBatch":
+                        batch.add(new HashMap<>(params));
+                        return null;
+                    case "executeBatch":
+                        for (Map<Integer, Object> row : batch) {
+                            if (row.get(2).equals(failingOrderId)) {
+                                throw new SQLException("check constraint violated", "23514");
+                            }
+                            writes.add(row.get(2) + "=" + row.get(1));
+                        }
+                        return new int[batch.size()];
+                    case "executeQuery":
+                        final Long committed;
+                        synchronized (this) {
+                            committed = progress.get((String) params.get(1));
+                        }
+                        if (committed == null && sql.startsWith("SELECT")) {
+                            return resultSet(null);
+                        }
+                        return resultSet(committed == null ? 0L : committed);
+                    case "executeUpdate":
+                        progressWrites.put((String) params.get(2), (Long) params.get(1));
+                        return 1;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private static ResultSet resultSet(Long value) {
+            final boolean[] read = {value == null};
+            return proxy(ResultSet.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        final boolean hasRow = !read[0];
+                        read[0] = true;
+                        return hasRow;
+                    case "getLong":
+                        return value;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package stakemate.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
+import stakemate.service.scheduling.JobStats;
+import stakemate.service.scheduling.Scheduler;
+
+/**
+ * Journaled in-memory engines: a restart rebuilds the same books and tapes.
+ */
+class EngineJournalTest {
+
+    private static final String[] MARKETS = {"m1", "m2", "m3"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecoveryRebuildsBooksAndTradesAcrossShardCounts() throws IOException {
+        final Path file = dir.resolve("engine.journal");
+        final List<String> before;
+        try (EngineJournal journal = EngineJournal.open(file, true);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(2,
+                        () -> MatchingEngine.journaled(journal))) {
+            runRandomFlow(registry, new Random(7), 2000);
+            before = describe(registry);
+        }
+
+        try (EngineJournal journal = EngineJournal.open(file, true);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(3,
+                        () -> MatchingEngine.journaled(journal))) {
+            registry.recover(journal);
+            assertEquals(before, describe(registry));
+
+            // the recovered engine keeps journaling where the old one stopped
+            registry.placeOrder(new BookOrder("late", "m1", Side.BUY, 0.99, 1));
+            final List<String> afterMore = describe(registry);
+            journal.awaitDurable(journal.position());
+            try (MatchingEngineRegistry again = new MatchingEngineRegistry(1, MatchingEngine::new)) {
+                again.recover(journal);
+                assertEquals(afterMore, describe(again));
+            }
+        }
+    }
+
+    @Test
+    void testTornTailIsCutOffOnOpen() throws IOException {
+        final Path file = dir.resolve("torn.journal");
+        final BookOrder kept = new BookOrder("alice", "m1", Side.BUY, 0.40, 5);
+        try (EngineJournal journal = EngineJournal.open(file, false)) {
+            final MatchingEngine engine = MatchingEngine.journaled(journal);
+            engine.placeOrder(kept);
+            engine.placeOrder(new BookOrder("bob", "m1", Side.BUY, 0.45, 5));
+            engine.awaitJournal();
+        }
+        final long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // a crash halfway through writing the second record
+            channel.truncate(size - 10);
+        }
+
+        try (EngineJournal journal = EngineJournal.open(file, false);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(1,
+                        () -> MatchingEngine.journaled(journal))) {
+            registry.recover(journal);
+            final OrderBook book = registry.snapshotOrderBook("m1");
+            assertEquals(1, book.getBids().size());
+            assertEquals(0.40, book.getBids().get(0).getPrice(), 1e-9);
+            assertNotNull(registry.cancelOrder("m1", kept.getId()));
+        }
+        try (EngineJournal journal = EngineJournal.open(file, false);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(1, MatchingEngine::new)) {
+            registry.recover(journal);
+            assertTrue(registry.snapshotOrderBook("m1").getBids().isEmpty());
+        }
+    }
+
+    @Test
+    void testSnapshotTakenUnderLoadPlusJournalTailRecoversSameState() throws Exception {
+        final Path file = dir.resolve("engine.journal");
+        final Path snapshots = dir.resolve("snapshots");
+        final List<String> before;
+        try (EngineJournal journal = EngineJournal.open(file, false);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(3,
+                        () -> MatchingEngine.journaled(journal));
+                EngineSnapshotter snapshotter = new EngineSnapshotter(registry, journal, snapshots, 2)) {
+            final Thread flow = new Thread(() -> runRandomFlow(registry, new Random(11), 3000));
+            flow.start();
+            for (int i = 0; i < 5; i++) {
+                snapshotter.snapshotNow();
+            }
+            flow.join();
+            runRandomFlow(registry, new Random(12), 200);
+            before = describe(registry);
+        }
+
+        final EngineSnapshot latest = EngineSnapshot.latest(snapshots);
+        assertNotNull(latest);
+        assertTrue(latest.getJournalStart() > 0);
+        try (EngineJournal journal = EngineJournal.open(file, false, latest.getJournalStart());
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(2,
+                        () -> MatchingEngine.journaled(journal))) {
+            registry.recover(journal, latest);
+            assertEquals(before, describe(registry));
+        }
+    }
+
+    @Test
+    void testPeriodicSnapshotsAreASchedulerJob() throws Exception {
+        try (EngineJournal journal = EngineJournal.open(dir.resolve("engine.journal"), false);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(1,
+                        () -> MatchingEngine.journaled(journal));
+                Scheduler scheduler = new Scheduler("test-scheduler")) {
+            final EngineSnapshotter snapshotter = new EngineSnapshotter(registry, journal, dir.resolve("snapshots"), 1);
+            snapshotter.start(60, scheduler);
+
+            assertEquals(List.of("engine-snapshots"), scheduler.getJobs().stream().map(JobStats::getName).toList());
+            assertThrows(IllegalStateException.class, () -> snapshotter.start(60, scheduler));
+            snapshotter.close();
+            assertTrue(scheduler.jobs().isEmpty());
+        }
+    }
+
+    @Test
+    void testRecoveryFromSnapshotNeverReadsTheJournalBeforeIt() throws Exception {
+        final Path file = dir.resolve("engine.journal");
+        final Path snapshots = dir.resolve("snapshots");
+        final List<String> before;
+        try (EngineJournal journal = EngineJournal.open(file, true);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(2,
+                        () -> MatchingEngine.journaled(journal));
+                EngineSnapshotter snapshotter = new EngineSnapshotter(registry, journal, snapshots, 1)) {
+            runRandomFlow(registry, new Random(3), 1000);
+            snapshotter.snapshotNow();
+            runRandomFlow(registry, new Random(4), 100);
+            before = describe(registry);
+        }
+
+        final EngineSnapshot latest = EngineSnapshot.latest(snapshots);
+        // history the snapshot already holds is not needed any more
+        assertFalse(Files.exists(file));
+        try (EngineJournal journal = EngineJournal.open(file, true, latest.getJournalStart());
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(2,
+                        () -> MatchingEngine.journaled(journal))) {
+            registry.recover(journal, latest);
+            assertEquals(before, describe(registry));
+        }
+        assertEquals(1, Files.list(snapshots).count());
+    }
+
+    @Test
+    void testSnapshotsKeepTheJournalToTheSegmentsTheyDoNotCover() throws Exception {
+        final Path file = dir.resolve("engine.journal");
+        final Path snapshots = dir.resolve("snapshots");
+        final List<String> before;
+        try (EngineJournal journal = EngineJournal.open(file, false);
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(2,
+                        () -> MatchingEngine.journaled(journal));
+                EngineSnapshotter snapshotter = new EngineSnapshotter(registry, journal, snapshots, 2)) {
+            for (int i = 0; i < 10; i++) {
+                runRandomFlow(registry, new Random(20 + i), 300);
+                snapshotter.snapshotNow();
+                // the segment rolled to now, and the one covered by the older kept snapshot
+                assertTrue(segments(file).size() <= 2, "segments after snapshot " + i + ": " + segments(file));
+            }
+            runRandomFlow(registry, new Random(40), 100);
+            before = describe(registry);
+        }
+
+        final EngineSnapshot latest = EngineSnapshot.latest(snapshots);
+        try (EngineJournal journal = EngineJournal.open(file, false, latest.getJournalStart());
+                MatchingEngineRegistry registry = new MatchingEngineRegistry(3,
+                        () -> MatchingEngine.journaled(journal))) {
+            registry.recover(journal, latest);
+            assertEquals(before, describe(registry));
+        }
+        // a full replay needs history that has been deleted
+        assertThrows(IOException.class, () -> EngineJournal.open(file, false, 0));
+    }
+
+    private static List<Path> segments(final Path file) throws IOException {
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            return files.filter(p -> p.getFileName().toString().startsWith(file.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void runRandomFlow(final MatchingEngineRegistry registry, final Random rnd, final int steps) {
+        final List<BookOrder> placed = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            final String market = MARKETS[rnd.nextInt(MARKETS.length)];
+            final int action = rnd.nextInt(10);
+            if (action == 0 && !placed.isEmpty()) {
+                final BookOrder o = placed.get(rnd.nextInt(placed.size()));
+                registry.cancelOrder(o.getMarketId(), o.getId());
+            }
+            else if (action == 1 && !placed.isEmpty()) {
+                final BookOrder o = placed.get(rnd.nextInt(placed.size()));
+                if (o.getRemainingQty() > 1) {
+                    registry.amendOrder(o.getMarketId(), o.getId(), o.getRemainingQty() - 1);
+                }
+            }
+            else {
+                final Side side = rnd.nextBoolean() ? Side.BUY : Side.SELL;
+                final Double price = rnd.nextInt(10) == 0 ? null : 0.40 + rnd.nextInt(21) / 100.0;
+                final BookOrder o = new BookOrder("u" + rnd.nextInt(5), market, side, price, 1 + rnd.nextInt(10));
+                registry.placeOrder(o);
+                placed.add(o);
+            }
+        }
+    }
+
+    /**
+     * Every market's levels, the resting orders in queue order, and the trade tape.
+     */
+    private static List<String> describe(final MatchingEngineRegistry registry) {
+        final List<String> lines = new ArrayList<>();
+        for (final String market : MARKETS) {
+            final OrderBook book = registry.snapshotOrderBook(market);
+            for (final OrderBookEntry e : book.getBids()) {
+                lines.add(market + " bid " + e.getPriceTicks() + " x " + e.getQuantity());
+            }
+            for (final OrderBookEntry e : book.getAsks()) {
+                lines.add(market + " ask " + e.getPriceTicks() + " x " + e.getQuantity());
+            }
+            final MatchingEngine engine = registry.engineFor(market);
+            final List<BookOrder> resting = new ArrayList<>(engine.getBids());
+            resting.addAll(engine.getAsks());
+            for (final BookOrder o : resting) {
+                if (o.getMarketId().equals(market)) {
+                    lines.add(market + " order " + o.getId() + " " + o.getRemainingQty());
+                }
+            }
+        }
+        for (final Trade t : registry.getTrades()) {
+            lines.add("trade " + t.getId() + " " + t.getBuyOrderId() + " " + t.getSellOrderId() + " "
+                    + t.getPriceTicks() + " x " + t.getSize() + " " + t.getTimestamp());
+        }
+        return lines;
+    }
+}
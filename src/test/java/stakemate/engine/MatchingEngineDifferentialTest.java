@@ -0,0 +1,367 @@
+package stakemate.engine;
+
+import org.junit.jupiter.api.Test;
+import stakemate.data_access.supabase.PostgresOrderRepository;
+import stakemate.entity.PriceTicks;
+import stakemate.entity.Side;
+import stakemate.use_case.PlaceOrderUseCase.UnitOfWork;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the single-pass DB-backed matcher against the three-walk algorithm it
+ * replaced (kept below as {@link #referenceMatch}) on random books, balances and
+ * incoming orders.
+ * <p>
+ * The matcher since also holds funds for incoming fills its pre-check did not
+ * price (the walk went past a resting order cancelled for funds, or past one the
+ * pre-check stopped at). The reference never had that rule, so scenarios where
+ * it refused a fill are left out of the comparison; the rule has a test of its own.
+ */
+class MatchingEngineDifferentialTest {
+
+    private static final int SCENARIOS = 5000;
+    private static final String[] USERS = {"u1", "u2", "u3", "u4"};
+
+    @Test
+    void testSinglePassMatchesReference() {
+        int compared = 0;
+        for (long seed = 0; seed < SCENARIOS; seed++) {
+            Scenario expected = Scenario.random(seed);
+            Scenario actual = Scenario.random(seed);
+
+            List<Trade> expectedTrades = referenceMatch(expected.incoming, expected.opposite, expected.uow);
+            MatchingEngine engine = new MatchingEngine(new FixedBookRepository(actual.opposite), () -> actual.uow);
+            List<Trade> actualTrades = engine.placeOrder(actual.incoming);
+            if (incomingHoldRefused(actual.uow.events)) {
+                continue;
+            }
+            compared++;
+
+            String where = "seed " + seed;
+            assertEquals(describe(expectedTrades), describe(actualTrades), where);
+            assertEquals(expected.uow.writes, actual.uow.writes, where);
+            assertEquals(expected.incoming.getRemainingQty(), actual.incoming.getRemainingQty(), where);
+            for (int i = 0; i < expected.opposite.size(); i++) {
+                assertEquals(expected.opposite.get(i).getRemainingQty(),
+                        actual.opposite.get(i).getRemainingQty(), where);
+            }
+        }
+        assertTrue(compared > SCENARIOS * 9 / 10, "compared " + compared);
+    }
+
+    @Test
+    void testIncomingFillsBeyondThePreCheckNeedFundsAtHand() {
+        // the pre-check prices r0 only (0.50); r0's seller cannot pay, so the walk
+        // goes on to r1 at 0.55, which the buyer's 0.52 does not cover
+        List<BookOrder> opposite = new ArrayList<>();
+        opposite.add(new BookOrder("r0", "u2", "market1", Side.SELL, PriceTicks.toTicks(0.50), false, 1, 1,
+                Instant.EPOCH));
+        opposite.add(new BookOrder("r1", "u3", "market1", Side.SELL, PriceTicks.toTicks(0.55), false, 1, 1,
+                Instant.EPOCH));
+        BookOrder incoming = new BookOrder("in", "u1", "market1", Side.BUY, PriceTicks.toTicks(0.60), false, 1, 1,
+                Instant.EPOCH);
+        HoldingUnitOfWork uow = new HoldingUnitOfWork();
+        uow.balances.put("u1", 0.52);
+        uow.balances.put("u2", 0.0);
+        uow.balances.put("u3", 10.0);
+
+        MatchingEngine engine = new MatchingEngine(new FixedBookRepository(opposite), () -> uow);
+        List<Trade> trades = engine.placeOrder(incoming);
+
+        assertTrue(trades.isEmpty());
+        assertEquals(List.of("update r0 0.0"), uow.writes);
+        assertEquals(1.0, incoming.getRemainingQty(), 1e-9);
+        assertEquals(1.0, opposite.get(1).getRemainingQty(), 1e-9);
+        assertEquals(0.52, uow.getBalance("u1"), 1e-9);
+
+        // with the funds at hand the same walk fills against r1
+        HoldingUnitOfWork funded = new HoldingUnitOfWork();
+        funded.balances.put("u1", 0.60);
+        funded.balances.put("u2", 0.0);
+        funded.balances.put("u3", 10.0);
+        List<BookOrder> fresh = new ArrayList<>();
+        fresh.add(new BookOrder("r0", "u2", "market1", Side.SELL, PriceTicks.toTicks(0.50), false, 1, 1,
+                Instant.EPOCH));
+        fresh.add(new BookOrder("r1", "u3", "market1", Side.SELL, PriceTicks.toTicks(0.55), false, 1, 1,
+                Instant.EPOCH));
+        BookOrder again = new BookOrder("in", "u1", "market1", Side.BUY, PriceTicks.toTicks(0.60), false, 1, 1,
+                Instant.EPOCH);
+        List<Trade> filled = new MatchingEngine(new FixedBookRepository(fresh), () -> funded).placeOrder(again);
+        assertEquals(List.of("in/r1 " + PriceTicks.toTicks(0.55) + " x 1.0"), describe(filled));
+    }
+
+    /**
+     * True if the matcher refused to hold funds for an incoming fill. A refused
+     * pre-check or resting check is always followed by the cancel it causes; a
+     * refused incoming hold ends the walk instead.
+     */
+    private static boolean incomingHoldRefused(List<String> events) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).equals("hold refused")
+                    && (i + 1 == events.size() || !events.get(i + 1).startsWith("update "))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> describe(List<Trade> trades) {
+        List<String> result = new ArrayList<>();
+        for (Trade t : trades) {
+            result.add(t.getBuyOrderId() + "/" + t.getSellOrderId() + " " + t.getPriceTicks() + " x " + t.getSize());
+        }
+        return result;
+    }
+
+    // --- Scenarios ---
+
+    private static final class Scenario {
+        BookOrder incoming;
+        List<BookOrder> opposite = new ArrayList<>();
+        BalanceUnitOfWork uow = new BalanceUnitOfWork();
+
+        static Scenario random(long seed) {
+            Random rnd = new Random(seed);
+            Scenario s = new Scenario();
+            Side side = rnd.nextBoolean() ? Side.BUY : Side.SELL;
+            Side other = side == Side.BUY ? Side.SELL : Side.BUY;
+            int restingCount = rnd.nextInt(9);
+            for (int i = 0; i < restingCount; i++) {
+                double original = 1 + rnd.nextInt(10);
+                double remaining = rnd.nextInt(5) == 0 ? 0.0 : 1 + rnd.nextInt((int) original);
+                s.opposite.add(order("r" + i, USERS[rnd.nextInt(USERS.length)], other,
+                        rnd.nextInt(7) == 0, rnd, original, remaining));
+            }
+            double qty = 1 + rnd.nextInt(15);
+            s.incoming = order("in", USERS[rnd.nextInt(USERS.length)], side, rnd.nextInt(3) == 0, rnd, qty, qty);
+            for (String user : USERS) {
+                s.uow.balances.put(user, rnd.nextInt(4) == 0 ? 0.0 : rnd.nextDouble() * 20.0);
+            }
+            return s;
+        }
+
+        private static BookOrder order(String id, String user, Side side, boolean market, Random rnd,
+                double original, double remaining) {
+            long ticks = 1 + rnd.nextInt((int) PriceTicks.ONE - 1);
+            return new BookOrder(id, user, "market1", side, ticks, market, original, remaining, Instant.EPOCH);
+        }
+    }
+
+    static class FixedBookRepository extends PostgresOrderRepository {
+        private final List<BookOrder> opposite;
+
+        FixedBookRepository(List<BookOrder> opposite) {
+            super(null);
+            this.opposite = opposite;
+        }
+
+        @Override
+        public List<BookOrder> findOppositeSideOrders(String marketId, Side side) {
+            return new ArrayList<>(opposite);
+        }
+    }
+
+    /**
+     * Records every write with its values and moves balances on each trade, so the
+     * per-match resting funds check sees earlier fills of the same pass.
+     */
+    static class BalanceUnitOfWork implements UnitOfWork {
+        final Map<String, Double> balances = new HashMap<>();
+        final List<String> writes = new ArrayList<>();
+        // holds and cancels in call order
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public double getBalance(String userId) {
+            return balances.getOrDefault(userId, 0.0);
+        }
+
+        @Override
+        public boolean holdFunds(String userId, double amount) {
+            boolean held = UnitOfWork.super.holdFunds(userId, amount);
+            events.add(held ? "hold ok" : "hold refused");
+            return held;
+        }
+
+        @Override
+        public void updateRemainingQty(String orderId, double newRemainingQty) {
+            writes.add("update " + orderId + " " + newRemainingQty);
+            events.add("update " + orderId);
+        }
+
+        @Override
+        public void reduceRemainingQty(String orderId, double executedQty) {
+            writes.add("reduce " + orderId + " " + executedQty);
+        }
+
+        @Override
+        public void savePosition(BookOrder order, double executedAmount, double executedPrice) {
+            writes.add("position " + order.getId() + " " + executedAmount + " @ " + executedPrice);
+        }
+
+        @Override
+        public void applyTrade(BookOrder buy, BookOrder sell, Trade trade) {
+            double price = trade.getPrice();
+            balances.merge(buy.getUserId(), -trade.getSize() * price, Double::sum);
+            balances.merge(sell.getUserId(), -trade.getSize() * (1.0 - price), Double::sum);
+            writes.add("trade " + buy.getId() + "/" + sell.getId() + " " + trade.getSize());
+        }
+
+        @Override
+        public void commit() {
+        }
+    }
+
+    /**
+     * Holds funds for real: a hold succeeds only if the balance not yet held
+     * covers it.
+     */
+    static class HoldingUnitOfWork extends BalanceUnitOfWork {
+        final Map<String, Double> held = new HashMap<>();
+
+        @Override
+        public boolean holdFunds(String userId, double amount) {
+            double already = held.getOrDefault(userId, 0.0);
+            if (getBalance(userId) - already + 1e-9 < amount) {
+                events.add("hold refused");
+                return false;
+            }
+            held.put(userId, already + amount);
+            events.add("hold ok");
+            return true;
+        }
+
+        @Override
+        public void releaseHolds() {
+            held.clear();
+        }
+    }
+
+    // --- Reference: the previous DB-mode matcher, one walk per phase ---
+
+    private static List<Trade> referenceMatch(BookOrder incoming, List<BookOrder> opposite, UnitOfWork uow) {
+        List<Trade> executedTrades = new ArrayList<>();
+        double incomingRemaining = incoming.getRemainingQty();
+
+        if (incoming.isMarket()) {
+            double simulatedCost = 0;
+            double tempRemaining = incoming.getOriginalQty();
+            for (BookOrder resting : opposite) {
+                if (tempRemaining <= 0)
+                    break;
+                if (resting.getRemainingQty() <= 0)
+                    continue;
+                if (resting.isMarket())
+                    continue;
+                double matchSize = Math.min(tempRemaining, resting.getRemainingQty());
+                double matchPrice = PriceTicks.toPrice(resting.getPriceTicks());
+                double matchCost = incoming.getSide() == Side.BUY ? matchSize * matchPrice
+                        : matchSize * (1.0 - matchPrice);
+                simulatedCost += matchCost;
+                tempRemaining -= matchSize;
+            }
+            double balance = uow.getBalance(incoming.getUserId());
+            if (simulatedCost > 0 && balance < simulatedCost) {
+                uow.updateRemainingQty(incoming.getId(), 0.0);
+                incoming.reduce(incoming.getRemainingQty());
+                return executedTrades;
+            }
+        }
+
+        if (!incoming.isMarket()) {
+            double simulatedCost = 0;
+            double tempRemaining = incomingRemaining;
+            for (BookOrder resting : opposite) {
+                if (tempRemaining <= 0)
+                    break;
+                if (resting.getRemainingQty() <= 0)
+                    continue;
+                double execPrice = PriceTicks.toPrice(executionTicks(incoming, resting));
+                if (!resting.isMarket() && incoming.getPriceTicks() < resting.getPriceTicks())
+                    break;
+                double matchSize = Math.min(tempRemaining, resting.getRemainingQty());
+                double cost = incoming.getSide() == Side.BUY ? matchSize * execPrice : matchSize * (1.0 - execPrice);
+                simulatedCost += cost;
+                tempRemaining -= matchSize;
+            }
+            if (simulatedCost > 0) {
+                double balance = uow.getBalance(incoming.getUserId());
+                if (balance < simulatedCost) {
+                    uow.updateRemainingQty(incoming.getId(), 0.0);
+                    incoming.reduce(incoming.getRemainingQty());
+                    return executedTrades;
+                }
+            }
+        }
+
+        for (BookOrder resting : opposite) {
+            if (incomingRemaining <= 0)
+                break;
+            if (resting.getRemainingQty() <= 0)
+                continue;
+            if (incoming.isMarket() && resting.isMarket())
+                continue;
+            if (!crosses(incoming, resting))
+                continue;
+
+            long executionTicks = executionTicks(incoming, resting);
+            double executionPrice = PriceTicks.toPrice(executionTicks);
+            double potentialMatchSize = Math.min(incomingRemaining, resting.getRemainingQty());
+            double matchCost = potentialMatchSize * executionPrice;
+            double restingCost = resting.getSide() == Side.BUY ? matchCost
+                    : potentialMatchSize * (1.0 - executionPrice);
+
+            double restingBalance = uow.getBalance(resting.getUserId());
+            if (restingBalance < restingCost) {
+                uow.updateRemainingQty(resting.getId(), 0.0);
+                resting.reduce(resting.getRemainingQty());
+                continue;
+            }
+
+            double executedSize = Math.min(incomingRemaining, resting.getRemainingQty());
+            BookOrder buyOrder = (incoming.getSide() == Side.BUY) ? incoming : resting;
+            BookOrder sellOrder = (incoming.getSide() == Side.SELL) ? incoming : resting;
+            uow.savePosition(buyOrder, executedSize, executionPrice);
+            uow.savePosition(sellOrder, executedSize, PriceTicks.toPrice(PriceTicks.ONE - executionTicks));
+
+            incoming.reduce(executedSize);
+            resting.reduce(executedSize);
+            incomingRemaining -= executedSize;
+
+            uow.reduceRemainingQty(incoming.getId(), executedSize);
+            uow.reduceRemainingQty(resting.getId(), executedSize);
+
+            Trade trade = new Trade(incoming.getMarketId(), buyOrder.getId(), sellOrder.getId(),
+                    executionTicks, executedSize);
+            uow.applyTrade(buyOrder, sellOrder, trade);
+            executedTrades.add(trade);
+        }
+        return executedTrades;
+    }
+
+    private static boolean crosses(BookOrder incoming, BookOrder resting) {
+        if (incoming.isMarket() || resting.isMarket()) {
+            return true;
+        }
+        if (incoming.getSide() == Side.BUY) {
+            return incoming.getPriceTicks() >= resting.getPriceTicks();
+        } else {
+            return incoming.getPriceTicks() <= resting.getPriceTicks();
+        }
+    }
+
+    private static long executionTicks(BookOrder incoming, BookOrder resting) {
+        if (!resting.isMarket()) {
+            return resting.getPriceTicks();
+        }
+        return incoming.isMarket() ? PriceTicks.ONE : incoming.getPriceTicks();
+    }
+}
@@ -0,0 +1,167 @@
+package stakemate.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.Side;
+import stakemate.service.DbAccountService;
+
+class MatchingEngineRegistryTest {
+
+    private MatchingEngineRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    @Test
+    void testSameMarketAlwaysRoutesToSameShard() {
+        registry = new MatchingEngineRegistry(4, MatchingEngine::new);
+
+        assertEquals(4, registry.getShardCount());
+        assertSame(registry.engineFor("market1"), registry.engineFor("market1"));
+        assertEquals(registry.shardOf("market1"), registry.shardOf("market1"));
+    }
+
+    @Test
+    void testPlaceOrderMatchesWithinMarket() {
+        registry = new MatchingEngineRegistry(4, MatchingEngine::new);
+        registry.placeOrder(new BookOrder("user1", "market1", Side.SELL, 0.50, 5.0));
+
+        List<Trade> trades = registry.placeOrder(new BookOrder("user2", "market1", Side.BUY, 0.50, 2.0));
+
+        assertEquals(1, trades.size());
+        OrderBook book = registry.snapshotOrderBook("market1");
+        assertEquals(3.0, book.getAsks().get(0).getQuantity());
+        assertEquals(1, registry.getTrades().size());
+    }
+
+    @Test
+    void testPlaceOrdersBatchAcrossShardsKeepsRequestOrder() {
+        registry = new MatchingEngineRegistry(4, MatchingEngine::new);
+
+        List<List<Trade>> results = registry.placeOrders(List.of(
+                new BookOrder("user1", "market1", Side.SELL, 0.50, 5.0),
+                new BookOrder("user1", "market2", Side.SELL, 0.60, 5.0),
+                new BookOrder("user2", "market1", Side.BUY, 0.50, 2.0),
+                new BookOrder("user2", "market2", Side.BUY, 0.55, 2.0)));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isEmpty());
+        assertEquals(1, results.get(2).size());
+        assertTrue(results.get(3).isEmpty());
+    }
+
+    @Test
+    void testCancelAllRemovesOnlyThatUsersOrdersInMarket() {
+        registry = new MatchingEngineRegistry(2, MatchingEngine::new);
+        registry.placeOrder(new BookOrder("user1", "market1", Side.BUY, 0.40, 1.0));
+        registry.placeOrder(new BookOrder("user1", "market1", Side.SELL, 0.60, 1.0));
+        registry.placeOrder(new BookOrder("user2", "market1", Side.BUY, 0.40, 3.0));
+        registry.placeOrder(new BookOrder("user1", "market2", Side.BUY, 0.40, 1.0));
+
+        List<BookOrder> cancelled = registry.cancelAll("user1", "market1");
+
+        assertEquals(2, cancelled.size());
+        OrderBook book = registry.snapshotOrderBook("market1");
+        assertEquals(3.0, book.getBids().get(0).getQuantity());
+        assertTrue(book.getAsks().isEmpty());
+        assertEquals(1, registry.snapshotOrderBook("market2").getBids().size());
+    }
+
+    @Test
+    void testCommandsRunOnShardWriterThread() {
+        registry = new MatchingEngineRegistry(2, MatchingEngine::new);
+
+        String threadName = registry.execute("market1", engine -> Thread.currentThread().getName());
+        String nested = registry.execute("market1",
+                engine -> registry.execute("market1", inner -> Thread.currentThread().getName()));
+
+        assertEquals("matching-shard-" + registry.shardOf("market1"), threadName);
+        assertEquals(threadName, nested);
+        assertNotEquals(Thread.currentThread().getName(), threadName);
+    }
+
+    @Test
+    void testEngineExceptionsPropagateToCaller() {
+        registry = new MatchingEngineRegistry(1, MatchingEngine::new);
+
+        assertThrows(IllegalStateException.class, () -> registry.execute("market1", engine -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertTrue(registry.getTrades().isEmpty());
+    }
+
+    @Test
+    void testShardsSharingOneBalanceNeverSpendItTwice() {
+        final SharedBalances accounts = new SharedBalances();
+        accounts.table.put("buyer", 30.0);
+        accounts.table.put("seller", 1_000.0);
+        final List<String> markets = new ArrayList<>();
+        registry = new MatchingEngineRegistry(2, () -> {
+            final MatchingEngineTest.ResidentOrderRepository repo = new MatchingEngineTest.ResidentOrderRepository();
+            for (int m = 0; m < 100; m++) {
+                repo.addOrder(new BookOrder("seller", "market" + m, Side.SELL, 0.50, 2.0));
+            }
+            return MatchingEngine.memoryResident(repo, new MatchingEngineTest.StubPositionRepository(), accounts);
+        });
+        final List<BookOrder> buys = new ArrayList<>();
+        for (int m = 0; m < 100; m++) {
+            markets.add("market" + m);
+            buys.add(new BookOrder("buyer", "market" + m, Side.BUY, 0.50, 2.0));
+        }
+        assertNotEquals(registry.shardOf(markets.get(0)), registry.shardOf(markets.get(1)));
+
+        // both shards match their half of the batch at the same time, each fill costing 1.0
+        final List<List<Trade>> results = registry.placeOrders(buys);
+
+        int fills = 0;
+        for (final List<Trade> trades : results) {
+            fills += trades.size();
+        }
+        assertEquals(30, fills);
+        assertEquals(0.0, accounts.table.get("buyer"), 1e-9);
+        assertEquals(0.0, accounts.getBalance("buyer"), 1e-9);
+    }
+
+    /**
+     * One account service behind every shard, over an in-memory "profiles" table.
+     */
+    static class SharedBalances extends DbAccountService {
+        final Map<String, Double> table = new ConcurrentHashMap<>();
+
+        SharedBalances() {
+            super(null);
+        }
+
+        @Override
+        protected double loadBalance(final String userId) {
+            return table.getOrDefault(userId, 0.0);
+        }
+
+        @Override
+        public void adjustBalance(final String userId, final double delta) {
+            try {
+                writeThrough(Map.of(userId, delta), () -> table.merge(userId, delta, Double::sum));
+            }
+            catch (final java.sql.SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
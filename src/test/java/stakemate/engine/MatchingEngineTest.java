@@ -177,6 +177,402 @@ class MatchingEngineTest {
         assertEquals(0, trades.size());
     }
 
+    // --- In-Memory Mode ---
+
+    @Test
+    void testInMemory_PriceTimePriority() {
+        MatchingEngine mem = new MatchingEngine();
+        BookOrder worse = createOrder("user1", Side.SELL, 0.60, 5.0);
+        BookOrder first = createOrder("user2", Side.SELL, 0.55, 5.0);
+        BookOrder second = createOrder("user3", Side.SELL, 0.55, 5.0);
+        mem.placeOrder(worse);
+        mem.placeOrder(first);
+        mem.placeOrder(second);
+
+        BookOrder buy = createOrder("user4", Side.BUY, 0.60, 12.0);
+        List<Trade> trades = mem.placeOrder(buy);
+
+        assertEquals(3, trades.size());
+        assertEquals(first.getId(), trades.get(0).getSellOrderId());
+        assertEquals(second.getId(), trades.get(1).getSellOrderId());
+        assertEquals(worse.getId(), trades.get(2).getSellOrderId());
+        assertEquals(0.60, trades.get(2).getPrice());
+        assertEquals(2.0, trades.get(2).getSize());
+        assertEquals(3.0, worse.getRemainingQty());
+        assertEquals(1, mem.getAsks().size());
+        assertTrue(mem.getBids().isEmpty());
+    }
+
+    @Test
+    void testInMemory_LimitRestsWhenNotCrossing() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.SELL, 0.70, 5.0));
+
+        List<Trade> trades = mem.placeOrder(createOrder("user2", Side.BUY, 0.65, 5.0));
+
+        assertTrue(trades.isEmpty());
+        assertEquals(1, mem.getBids().size());
+        assertEquals(1, mem.getAsks().size());
+    }
+
+    @Test
+    void testInMemory_MarketRemainderCancels() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.BUY, 0.40, 3.0));
+
+        BookOrder sell = createOrder("user2", Side.SELL, null, 5.0);
+        List<Trade> trades = mem.placeOrder(sell);
+
+        assertEquals(1, trades.size());
+        assertEquals(0.40, trades.get(0).getPrice());
+        assertEquals(2.0, sell.getRemainingQty());
+        assertTrue(mem.getBids().isEmpty());
+        assertTrue(mem.getAsks().isEmpty());
+    }
+
+    @Test
+    void testInMemory_SnapshotAggregatesLevels() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.BUY, 0.40, 3.0));
+        mem.placeOrder(createOrder("user2", Side.BUY, 0.45, 1.0));
+        mem.placeOrder(createOrder("user3", Side.BUY, 0.40, 2.0));
+        mem.placeOrder(createOrder("user4", Side.SELL, 0.50, 4.0));
+
+        stakemate.entity.OrderBook book = mem.snapshotOrderBook("market1");
+
+        assertEquals(2, book.getBids().size());
+        assertEquals(0.45, book.getBids().get(0).getPrice());
+        assertEquals(0.40, book.getBids().get(1).getPrice());
+        assertEquals(5.0, book.getBids().get(1).getQuantity());
+        assertEquals(1, book.getAsks().size());
+        assertEquals(4.0, book.getAsks().get(0).getQuantity());
+    }
+
+    @Test
+    void testInMemory_MarketsDoNotCross() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(new BookOrder("user1", "marketA", Side.SELL, 0.50, 5.0));
+
+        List<Trade> trades = mem.placeOrder(new BookOrder("user2", "marketB", Side.BUY, 0.50, 5.0));
+
+        assertTrue(trades.isEmpty());
+        assertEquals(1, mem.snapshotOrderBook("marketA").getAsks().size());
+        assertTrue(mem.snapshotOrderBook("marketA").getBids().isEmpty());
+        assertEquals(1, mem.snapshotOrderBook("marketB").getBids().size());
+    }
+
+    @Test
+    void testInMemory_PricesSnapToTickGrid() {
+        MatchingEngine mem = new MatchingEngine();
+        // 0.1 + 0.2 != 0.3 in floating point, but both land on the 30-tick level
+        mem.placeOrder(createOrder("user1", Side.BUY, 0.1 + 0.2, 1.0));
+        mem.placeOrder(createOrder("user2", Side.BUY, 0.3, 1.0));
+
+        List<Trade> trades = mem.placeOrder(createOrder("user3", Side.SELL, 0.3, 2.0));
+
+        assertEquals(2, trades.size());
+        assertEquals(30L, trades.get(0).getPriceTicks());
+        assertEquals(0.3, trades.get(1).getPrice());
+        assertTrue(mem.getBids().isEmpty());
+    }
+
+    @Test
+    void testInMemory_SnapshotReusedUntilBookChanges() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.SELL, 0.50, 4.0));
+
+        stakemate.entity.OrderBook first = mem.snapshotOrderBook("market1");
+        assertSame(first, mem.snapshotOrderBook("market1"));
+
+        // a partial fill updates the level total without rebuilding from orders
+        mem.placeOrder(createOrder("user2", Side.BUY, 0.50, 1.5));
+        stakemate.entity.OrderBook second = mem.snapshotOrderBook("market1");
+
+        assertNotSame(first, second);
+        assertEquals(2.5, second.getAsks().get(0).getQuantity());
+        assertTrue(second.getBids().isEmpty());
+    }
+
+    @Test
+    void testInMemory_TopOfBookSnapshot() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.BUY, 0.40, 1.0));
+        mem.placeOrder(createOrder("user2", Side.BUY, 0.42, 1.0));
+        mem.placeOrder(createOrder("user3", Side.BUY, 0.44, 1.0));
+
+        stakemate.entity.OrderBook top = mem.snapshotOrderBook("market1", 2);
+
+        assertEquals(2, top.getBids().size());
+        assertEquals(0.44, top.getBids().get(0).getPrice());
+        assertEquals(0.42, top.getBids().get(1).getPrice());
+    }
+
+    @Test
+    void testInMemory_LastTradeIsPerMarket() {
+        MatchingEngine mem = new MatchingEngine();
+        mem.placeOrder(createOrder("user1", Side.SELL, 0.50, 4.0));
+        mem.placeOrder(createOrder("user2", Side.BUY, 0.50, 1.5));
+
+        Trade last = mem.lastTrade("market1");
+        assertEquals(1.5, last.getSize());
+        assertEquals(0.50, last.getPrice());
+        assertNull(mem.lastTrade("market2"));
+        assertEquals(List.of(last), mem.recentTrades("market1", 10));
+    }
+
+    @Test
+    void testInMemory_CancelOrderById() {
+        MatchingEngine mem = new MatchingEngine();
+        BookOrder first = createOrder("user1", Side.SELL, 0.55, 5.0);
+        BookOrder middle = createOrder("user2", Side.SELL, 0.55, 5.0);
+        BookOrder last = createOrder("user3", Side.SELL, 0.55, 5.0);
+        mem.placeOrder(first);
+        mem.placeOrder(middle);
+        mem.placeOrder(last);
+
+        assertSame(middle, mem.cancelOrder(middle.getId()));
+        assertNull(mem.cancelOrder(middle.getId()));
+
+        assertEquals(List.of(first, last), mem.getAsks());
+        assertEquals(10.0, mem.snapshotOrderBook("market1").getAsks().get(0).getQuantity());
+        List<Trade> trades = mem.placeOrder(createOrder("user4", Side.BUY, 0.55, 10.0));
+        assertEquals(first.getId(), trades.get(0).getSellOrderId());
+        assertEquals(last.getId(), trades.get(1).getSellOrderId());
+    }
+
+    @Test
+    void testInMemory_AmendDownKeepsPriority() {
+        MatchingEngine mem = new MatchingEngine();
+        BookOrder first = createOrder("user1", Side.BUY, 0.45, 5.0);
+        BookOrder second = createOrder("user2", Side.BUY, 0.45, 5.0);
+        mem.placeOrder(first);
+        mem.placeOrder(second);
+
+        mem.amendOrder(first.getId(), 2.0);
+
+        assertEquals(7.0, mem.snapshotOrderBook("market1").getBids().get(0).getQuantity());
+        assertThrows(IllegalArgumentException.class, () -> mem.amendOrder(first.getId(), 3.0));
+        List<Trade> trades = mem.placeOrder(createOrder("user3", Side.SELL, 0.45, 3.0));
+        assertEquals(first.getId(), trades.get(0).getBuyOrderId());
+        assertEquals(2.0, trades.get(0).getSize());
+        assertEquals(second.getId(), trades.get(1).getBuyOrderId());
+    }
+
+    @Test
+    void testInMemory_ReplaceLosesPriorityAndMatches() {
+        MatchingEngine mem = new MatchingEngine();
+        BookOrder bid = createOrder("user1", Side.BUY, 0.40, 5.0);
+        BookOrder other = createOrder("user2", Side.BUY, 0.40, 5.0);
+        mem.placeOrder(bid);
+        mem.placeOrder(other);
+        mem.placeOrder(createOrder("user3", Side.SELL, 0.50, 2.0));
+
+        BookOrder repriced = createOrder("user1", Side.BUY, 0.50, 5.0);
+        List<Trade> trades = mem.replaceOrder(bid.getId(), repriced);
+
+        assertEquals(1, trades.size());
+        assertEquals(repriced.getId(), trades.get(0).getBuyOrderId());
+        assertEquals(List.of(repriced, other), mem.getBids());
+        assertNull(mem.replaceOrder(bid.getId(), createOrder("user1", Side.BUY, 0.60, 1.0)));
+    }
+
+    @Test
+    void testTradeTape_KeepsNewestTradesPerMarket() {
+        TradeTape tape = new TradeTape(3);
+
+        List<Trade> recorded = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Trade t = new Trade(i % 2 == 0 ? "m1" : "m2", "b" + i, "s" + i, 50, 1.0);
+            recorded.add(t);
+            tape.record(t);
+        }
+        Trade extra = new Trade("m1", "b5", "s5", 50, 1.0);
+        tape.record(extra);
+
+        // m1 saw trades 0, 2, 4 and 5: only trade 0 fell off
+        assertEquals(List.of(recorded.get(2), recorded.get(4), extra), tape.lastN("m1", 10));
+        assertEquals(extra, tape.last("m1"));
+        assertEquals(List.of(recorded.get(4), extra), tape.lastN("m1", 2));
+        assertEquals(List.of(recorded.get(1), recorded.get(3)), tape.lastN("m2", 10));
+    }
+
+    // --- Ids ---
+
+    @Test
+    void testIdGenerator_MonotonicWithNodePrefix() {
+        IdGenerator ids = new IdGenerator(3, 41L);
+
+        long first = ids.next();
+        long second = ids.next();
+
+        assertTrue(second > first);
+        assertEquals(3L, first >>> 53);
+        assertEquals(41L, first & ((1L << 53) - 1));
+        String rendered = IdGenerator.format(second);
+        assertEquals(16, rendered.length());
+        assertTrue(IdGenerator.format(first).compareTo(rendered) < 0);
+        assertEquals(second, IdGenerator.parse(rendered));
+        assertEquals(-1L, IdGenerator.parse(UUID.randomUUID().toString()));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024));
+    }
+
+    @Test
+    void testIdGenerator_ComparesAcrossNodesBySequence() {
+        long earlierOnHighNode = new IdGenerator(5, 10L).next();
+        long laterOnLowNode = new IdGenerator(1, 20L).next();
+        long tieOnLowNode = new IdGenerator(1, 10L).next();
+
+        assertTrue(earlierOnHighNode > laterOnLowNode);
+        assertTrue(IdGenerator.compare(earlierOnHighNode, laterOnLowNode) < 0);
+        assertTrue(IdGenerator.compare(tieOnLowNode, earlierOnHighNode) < 0);
+        assertTrue(IdGenerator.compare(-1L, tieOnLowNode) < 0);
+        assertEquals(10L, IdGenerator.sequenceOf(earlierOnHighNode));
+        assertEquals(5, IdGenerator.nodeOf(earlierOnHighNode));
+    }
+
+    @Test
+    void testBookOrder_IdDoublesAsArrivalSequence() {
+        BookOrder first = createOrder("user1", Side.BUY, 0.40, 1.0);
+        BookOrder second = createOrder("user1", Side.BUY, 0.40, 1.0);
+
+        assertTrue(second.getSequence() > first.getSequence());
+        assertEquals(first.getSequence(), IdGenerator.parse(first.getId()));
+        BookOrder legacy = new BookOrder(UUID.randomUUID().toString(), "user1", "market1", Side.BUY,
+                40L, false, 1.0, 1.0, java.time.Instant.now());
+        assertEquals(-1L, legacy.getSequence());
+    }
+
+    // --- Memory-Resident Mode ---
+
+    @Test
+    void testMemoryResident_LoadsBookOnceAndMatchesFromMemory() {
+        ResidentOrderRepository repo = new ResidentOrderRepository();
+        BookOrder sell1 = createOrder("user1", Side.SELL, 0.50, 10.0);
+        BookOrder sell2 = createOrder("user2", Side.SELL, 0.50, 10.0);
+        repo.addOrder(sell1);
+        repo.addOrder(sell2);
+        accountService.setBalance("user1", 100.0);
+        accountService.setBalance("user2", 100.0);
+        accountService.setBalance("user3", 100.0);
+        MatchingEngine resident = MatchingEngine.memoryResident(repo, positionRepo, accountService);
+
+        List<Trade> first = resident.placeOrder(createOrder("user3", Side.BUY, 0.50, 15.0));
+        List<Trade> second = resident.placeOrder(createOrder("user3", Side.BUY, 0.50, 2.0));
+
+        assertEquals(2, first.size());
+        assertEquals(sell1.getId(), first.get(0).getSellOrderId());
+        assertEquals(1, second.size());
+        assertEquals(sell2.getId(), second.get(0).getSellOrderId());
+        assertEquals(3.0, sell2.getRemainingQty());
+        // one load per side, never a per-order query
+        assertEquals(2, repo.loads);
+        // fills are written as absolute remaining quantities
+        assertEquals(0.0, repo.remaining.get(sell1.getId()));
+        assertEquals(3.0, repo.remaining.get(sell2.getId()));
+    }
+
+    @Test
+    void testMemoryResident_FilledOrdersLeaveBookAndRemaindersRest() {
+        ResidentOrderRepository repo = new ResidentOrderRepository();
+        accountService.setBalance("user1", 100.0);
+        accountService.setBalance("user2", 100.0);
+        MatchingEngine resident = MatchingEngine.memoryResident(repo, positionRepo, accountService);
+
+        resident.placeOrder(createOrder("user1", Side.SELL, 0.60, 4.0));
+        BookOrder buy = createOrder("user2", Side.BUY, 0.60, 6.0);
+        List<Trade> trades = resident.placeOrder(buy);
+
+        assertEquals(1, trades.size());
+        stakemate.entity.OrderBook book = resident.snapshotOrderBook("market1");
+        assertTrue(book.getAsks().isEmpty());
+        assertEquals(1, book.getBids().size());
+        assertEquals(2.0, book.getBids().get(0).getQuantity());
+    }
+
+    @Test
+    void testMemoryResident_MarketOrderRestsAtMinusOne() {
+        ResidentOrderRepository repo = new ResidentOrderRepository();
+        MatchingEngine resident = MatchingEngine.memoryResident(repo, positionRepo, accountService);
+
+        List<Trade> trades = resident.placeOrder(createOrder("user1", Side.BUY, null, 5.0));
+
+        assertTrue(trades.isEmpty());
+        stakemate.entity.OrderBook book = resident.snapshotOrderBook("market1");
+        assertEquals(1, book.getBids().size());
+        assertEquals(-1.0, book.getBids().get(0).getPrice());
+        assertEquals(5.0, book.getBids().get(0).getQuantity());
+    }
+
+    @Test
+    void testMemoryResident_CancelIsPersisted() {
+        ResidentOrderRepository repo = new ResidentOrderRepository();
+        MatchingEngine resident = MatchingEngine.memoryResident(repo, positionRepo, accountService);
+        BookOrder sell = createOrder("user1", Side.SELL, 0.60, 4.0);
+        resident.placeOrder(sell);
+
+        assertSame(sell, resident.cancelOrder(sell.getId()));
+
+        assertEquals(0.0, repo.remaining.get(sell.getId()));
+        assertTrue(resident.snapshotOrderBook("market1").getAsks().isEmpty());
+    }
+
+    // --- Unit of Work ---
+
+    @Test
+    void testUnitOfWork_OneCommitPerMatchingPass() {
+        RecordingUnitOfWork uow = new RecordingUnitOfWork(accountService);
+        MatchingEngine batched = new MatchingEngine(orderRepo, () -> uow);
+        BookOrder sell1 = createOrder("user1", Side.SELL, 0.50, 10.0);
+        BookOrder sell2 = createOrder("user2", Side.SELL, 0.50, 10.0);
+        orderRepo.addOrder(sell1);
+        orderRepo.addOrder(sell2);
+        accountService.setBalance("user1", 100.0);
+        accountService.setBalance("user2", 100.0);
+        accountService.setBalance("user3", 100.0);
+
+        List<Trade> trades = batched.placeOrder(createOrder("user3", Side.BUY, 0.50, 15.0));
+
+        assertEquals(2, trades.size());
+        assertEquals(1, uow.commits);
+        // 2 fills x (2 positions + 2 remaining-qty updates + 1 trade charge)
+        assertEquals(10, uow.writes.size());
+        // nothing reached the account service directly
+        assertEquals(100.0, accountService.getBalance("user3"));
+    }
+
+    @Test
+    void testUnitOfWork_FailedCommitLeavesNoTradeAndReloadsBook() {
+        CopyingOrderRepository repo = new CopyingOrderRepository();
+        BookOrder sell = createOrder("user1", Side.SELL, 0.50, 10.0);
+        repo.addOrder(sell);
+        accountService.setBalance("user1", 100.0);
+        accountService.setBalance("user3", 100.0);
+        RecordingUnitOfWork uow = new RecordingUnitOfWork(accountService) {
+            @Override
+            public void commit() {
+                super.commit();
+                if (commits == 1) {
+                    throw new RuntimeException("Failed to commit matching pass");
+                }
+            }
+        };
+        MatchingEngine resident = MatchingEngine.memoryResident(repo, () -> uow);
+
+        assertThrows(RuntimeException.class,
+                () -> resident.placeOrder(createOrder("user3", Side.BUY, 0.50, 4.0)));
+
+        // the fill never reached the table, so neither the tape nor the book keeps it
+        assertNull(resident.lastTrade("market1"));
+        assertEquals(10.0, resident.snapshotOrderBook("market1").getAsks().get(0).getQuantity());
+        assertEquals(4, repo.loads);
+
+        List<Trade> trades = resident.placeOrder(createOrder("user3", Side.BUY, 0.50, 4.0));
+
+        assertEquals(1, trades.size());
+        assertEquals(trades.get(0), resident.lastTrade("market1"));
+        assertEquals(6.0, resident.snapshotOrderBook("market1").getAsks().get(0).getQuantity());
+    }
+
     // --- Helpers ---
 
     private BookOrder createOrder(String userId, Side side, Double price, double qty) {
@@ -233,6 +629,84 @@ class MatchingEngineTest {
         }
     }
 
+    static class ResidentOrderRepository extends StubOrderRepository {
+        int loads;
+        java.util.Map<String, Double> remaining = new java.util.HashMap<>();
+
+        @Override
+        public List<BookOrder> findOpenOrdersForMarket(String marketId, Side side) {
+            loads++;
+            List<BookOrder> result = new ArrayList<>();
+            for (BookOrder o : orders) {
+                if (o.getMarketId().equals(marketId) && o.getSide() == side && o.getRemainingQty() > 0) {
+                    result.add(o);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void updateRemainingQty(String orderId, double newRemainingQty) {
+            remaining.put(orderId, newRemainingQty);
+        }
+    }
+
+    /**
+     * Hands out fresh rows on each load, as the table would.
+     */
+    static class CopyingOrderRepository extends ResidentOrderRepository {
+        @Override
+        public List<BookOrder> findOpenOrdersForMarket(String marketId, Side side) {
+            List<BookOrder> result = new ArrayList<>();
+            for (BookOrder o : super.findOpenOrdersForMarket(marketId, side)) {
+                double stored = remaining.getOrDefault(o.getId(), o.getOriginalQty());
+                result.add(new BookOrder(o.getId(), o.getUserId(), o.getMarketId(), o.getSide(),
+                        o.getPriceTicks(), o.isMarket(), o.getOriginalQty(), stored, o.getTimestamp()));
+            }
+            return result;
+        }
+    }
+
+    static class RecordingUnitOfWork implements stakemate.use_case.PlaceOrderUseCase.UnitOfWork {
+        private final DbAccountService accountService;
+        List<String> writes = new ArrayList<>();
+        int commits;
+
+        RecordingUnitOfWork(DbAccountService accountService) {
+            this.accountService = accountService;
+        }
+
+        @Override
+        public double getBalance(String userId) {
+            return accountService.getBalance(userId);
+        }
+
+        @Override
+        public void updateRemainingQty(String orderId, double newRemainingQty) {
+            writes.add("update " + orderId);
+        }
+
+        @Override
+        public void reduceRemainingQty(String orderId, double executedQty) {
+            writes.add("reduce " + orderId);
+        }
+
+        @Override
+        public void savePosition(BookOrder order, double executedAmount, double executedPrice) {
+            writes.add("position " + order.getId());
+        }
+
+        @Override
+        public void applyTrade(BookOrder buy, BookOrder sell, Trade trade) {
+            writes.add("trade " + trade.getBuyOrderId());
+        }
+
+        @Override
+        public void commit() {
+            commits++;
+        }
+    }
+
     static class StubPositionRepository implements PositionRepository {
         @Override
         public void savePosition(BookOrder order, double size, double price) {
@@ -260,6 +734,12 @@ class MatchingEngineTest {
             balances.put(userId, getBalance(userId) + delta);
         }
 
+        @Override
+        public boolean holdFunds(String userId, double amount) {
+            // single-threaded tests: the stub balances are the whole truth
+            return getBalance(userId) >= amount;
+        }
+
         @Override
         public boolean hasSufficientFunds(String userId, String marketId, double qty, Double price) {
             // This is used for pre-check in PlaceOrderUseCase, but MatchingEngine calls
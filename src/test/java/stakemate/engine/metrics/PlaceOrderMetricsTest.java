@@ -0,0 +1,131 @@
+package stakemate.engine.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.engine.MatchingEngine;
+import stakemate.entity.Side;
+import stakemate.service.InMemoryAccountService;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderRequest;
+import stakemate.use_case.PlaceOrderUseCase.PlaceOrderUseCase;
+
+class PlaceOrderMetricsTest {
+
+    @Test
+    void testHistogramPercentilesWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.recordNanos(micros * 1_000);
+        }
+        final LatencyHistogram.Snapshot s = histogram.snapshot();
+
+        assertEquals(100_000, s.getCount());
+        assertEquals(100, s.valueAtPercentile(0.1));
+        assertWithinPrecision(50_000, s.valueAtPercentile(50));
+        assertWithinPrecision(99_000, s.valueAtPercentile(99));
+        assertEquals(100_000, s.getMaxMicros());
+        assertEquals(50_000.5, s.getMeanMicros(), 1e-9);
+    }
+
+    @Test
+    void testSnapshotDifferenceIsTheInterval() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000);
+        final LatencyHistogram.Snapshot before = histogram.snapshot();
+        histogram.recordNanos(10_000);
+        histogram.recordNanos(20_000);
+
+        final LatencyHistogram.Snapshot interval = histogram.snapshot().minus(before);
+        assertEquals(2, interval.getCount());
+        assertEquals(10, interval.valueAtPercentile(50));
+        assertEquals(20, interval.getMaxMicros());
+    }
+
+    @Test
+    void testUseCaseRecordsPhasesPerMarket() {
+        final PlaceOrderMetrics metrics = new PlaceOrderMetrics();
+        final MatchingEngine engine = new MatchingEngine();
+        engine.setMetrics(metrics);
+        final InMemoryAccountService accounts = new InMemoryAccountService();
+        accounts.deposit("alice", 100);
+        accounts.deposit("bob", 100);
+        final PlaceOrderUseCase useCase = new PlaceOrderUseCase(engine, accounts);
+        useCase.setMetrics(metrics);
+
+        useCase.place(new PlaceOrderRequest("alice", "m1", Side.SELL, 0.40, 5));
+        useCase.place(new PlaceOrderRequest("bob", "m1", Side.BUY, 0.50, 5));
+        useCase.place(new PlaceOrderRequest("bob", "m2", Side.BUY, 0.50, -1));
+
+        assertEquals(3, metrics.getOrders());
+        assertEquals(1, metrics.getRejected());
+        assertEquals(1, metrics.getFills());
+        final Map<String, LatencyStats> phases = metrics.getPhaseLatencies();
+        assertEquals(3, phases.get("validate").getCount());
+        assertEquals(2, phases.get("funds_check").getCount());
+        assertEquals(2, phases.get("match").getCount());
+        assertEquals(2, phases.get("match_logic").getCount());
+        assertEquals(3, phases.get("total").getCount());
+        // nothing in memory mode talks to a database
+        assertFalse(phases.containsKey("save"));
+        assertFalse(phases.containsKey("commit"));
+
+        final Map<String, LatencyStats> perMarket = metrics.getMarketPhaseLatencies();
+        assertEquals(2, perMarket.get("m1/total").getCount());
+        assertEquals(1, perMarket.get("m2/total").getCount());
+        assertFalse(perMarket.containsKey("m2/match"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getOrders());
+        assertTrue(metrics.getPhaseLatencies().isEmpty());
+    }
+
+    @Test
+    void testDisabledMetricsRecordNothing() {
+        final PlaceOrderMetrics metrics = new PlaceOrderMetrics();
+        metrics.setEnabled(false);
+        final PlaceOrderUseCase useCase = new PlaceOrderUseCase(new MatchingEngine(), new InMemoryAccountService());
+        useCase.setMetrics(metrics);
+
+        useCase.placeOrders(List.of(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 1)));
+
+        assertEquals(0, metrics.start());
+        assertTrue(metrics.getPhaseLatencies().isEmpty());
+    }
+
+    @Test
+    void testLatenciesReadableOverJmx() throws Exception {
+        final PlaceOrderMetrics metrics = PlaceOrderMetrics.shared();
+        metrics.reset();
+        metrics.countOrders(1);
+        metrics.recordNanos("m1", OrderPhase.TOTAL, 42_000);
+        metrics.registerMBean();
+        metrics.registerMBean();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(PlaceOrderMetrics.OBJECT_NAME);
+        assertEquals(1L, server.getAttribute(name, "Orders"));
+        final TabularData phases = (TabularData) server.getAttribute(name, "PhaseLatencies");
+        final CompositeData row = phases.get(new Object[] {"total"});
+        assertNotNull(row);
+        final CompositeData total = (CompositeData) row.get("value");
+        assertEquals(42L, total.get("p99"));
+        metrics.reset();
+    }
+
+    private static void assertWithinPrecision(final long expected, final long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 64,
+                "expected ~" + expected + " but was " + actual);
+    }
+}
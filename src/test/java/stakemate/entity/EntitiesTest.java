@@ -181,6 +181,63 @@ class EntitiesTest {
         assertEquals(bid, book.getBids().get(0));
     }
 
+    @Test
+    void testPriceTicks() {
+        assertEquals(55L, PriceTicks.toTicks(0.55));
+        assertEquals(30L, PriceTicks.toTicks(0.1 + 0.2));
+        assertEquals(0.55, PriceTicks.toPrice(55L));
+        assertEquals(PriceTicks.TICKS_PER_UNIT, PriceTicks.ONE);
+
+        OrderBookEntry entry = OrderBookEntry.ofTicks(Side.SELL, 45L, 3);
+        assertEquals(0.45, entry.getPrice());
+        assertEquals(45L, entry.getPriceTicks());
+        assertEquals(45L, new OrderBookEntry(Side.SELL, 0.45, 3).getPriceTicks());
+    }
+
+    @Test
+    void testOrderBookDelta() {
+        OrderBook before = new OrderBook("mkt_1",
+                List.of(new OrderBookEntry(Side.BUY, 0.50, 10), new OrderBookEntry(Side.BUY, 0.45, 5)),
+                List.of(new OrderBookEntry(Side.SELL, 0.60, 7)));
+        OrderBook after = new OrderBook("mkt_1",
+                List.of(new OrderBookEntry(Side.BUY, 0.50, 4)),
+                List.of(new OrderBookEntry(Side.SELL, 0.60, 7), new OrderBookEntry(Side.SELL, 0.65, 2)));
+
+        OrderBookDelta delta = OrderBookDelta.between(before, after, 8);
+        assertEquals(8, delta.getSequence());
+        assertEquals(3, delta.getChanges().size());
+        assertTrue(delta.getChanges().stream().anyMatch(c -> c.getPriceTicks() == 45 && c.getQuantity() == 0));
+        assertEquals(OrderBookDelta.checksum(after), delta.getChecksum());
+        assertNotEquals(OrderBookDelta.checksum(before), delta.getChecksum());
+
+        // level order does not matter, unchanged books give an empty delta
+        OrderBook reordered = new OrderBook("mkt_1", List.of(before.getBids().get(1), before.getBids().get(0)),
+                before.getAsks(), 3);
+        assertEquals(3, reordered.getSequence());
+        assertEquals(OrderBookDelta.checksum(before), OrderBookDelta.checksum(reordered));
+        assertTrue(OrderBookDelta.between(before, reordered, 9).isEmpty());
+    }
+
+    @Test
+    void testOrderBookDeltaAppliesToThePreviousBook() {
+        OrderBook before = new OrderBook("mkt_1",
+                List.of(new OrderBookEntry(Side.BUY, 0.50, 10), new OrderBookEntry(Side.BUY, 0.45, 5)),
+                List.of(new OrderBookEntry(Side.SELL, 0.60, 7)), 7);
+        OrderBook after = new OrderBook("mkt_1",
+                List.of(new OrderBookEntry(Side.BUY, 0.52, 1), new OrderBookEntry(Side.BUY, 0.50, 4)),
+                List.of(new OrderBookEntry(Side.SELL, 0.60, 7), new OrderBookEntry(Side.SELL, 0.65, 2)));
+
+        OrderBookDelta delta = OrderBookDelta.between(before, after, 8);
+        OrderBook applied = delta.applyTo(before);
+
+        assertEquals(8, applied.getSequence());
+        assertEquals(delta.getChecksum(), OrderBookDelta.checksum(applied));
+        // best level first on both sides
+        assertEquals(List.of(52L, 50L), applied.getBids().stream().map(OrderBookEntry::getPriceTicks).toList());
+        assertEquals(List.of(60L, 65L), applied.getAsks().stream().map(OrderBookEntry::getPriceTicks).toList());
+        assertEquals(4, applied.getBids().get(1).getQuantity(), 1e-9);
+    }
+
     // =========================================================================
     // 8. User Tests
     // =========================================================================
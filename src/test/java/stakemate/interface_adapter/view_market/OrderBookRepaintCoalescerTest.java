@@ -0,0 +1,116 @@
+package stakemate.interface_adapter.view_market;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
+import stakemate.use_case.view_market.OrderBookResponseModel;
+
+class OrderBookRepaintCoalescerTest {
+
+    private final List<OrderBookResponseModel> shown = new CopyOnWriteArrayList<>();
+    private final List<Long> shownAt = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testDeltasWithinOneFrameMergeIntoOneWithLatestLevels() throws Exception {
+        final OrderBookRepaintCoalescer coalescer = coalescer(20);
+        final OrderBook start = book(1, 0.50, 10);
+        // a whole burst lands before the EDT can flush
+        SwingUtilities.invokeAndWait(() -> {
+            OrderBook previous = start;
+            for (int i = 2; i <= 500; i++) {
+                final OrderBook next = book(i, 0.50 + (i % 5) / 100.0, i);
+                coalescer.submit(new OrderBookResponseModel(OrderBookDelta.between(previous, next, i), false, null));
+                previous = next;
+            }
+        });
+        awaitShown(1);
+
+        assertEquals(1, shown.size());
+        final OrderBookDelta merged = shown.get(0).getDelta();
+        assertNotNull(merged);
+        assertEquals(500, merged.getSequence());
+        // the merged delta takes the first book to the last one
+        final OrderBook result = merged.applyTo(start);
+        assertEquals(OrderBookDelta.checksum(book(500, 0.50, 500)), OrderBookDelta.checksum(result));
+        assertEquals(merged.getChecksum(), OrderBookDelta.checksum(result));
+    }
+
+    @Test
+    void testSnapshotReplacesPendingDeltasAndStatusGoesLast() throws Exception {
+        final OrderBookRepaintCoalescer coalescer = coalescer(20);
+        SwingUtilities.invokeAndWait(() -> {
+            coalescer.submit(new OrderBookResponseModel(
+                OrderBookDelta.between(book(1, 0.40, 1), book(2, 0.40, 2), 2), false, null));
+            coalescer.submit(new OrderBookResponseModel(book(7, 0.45, 3), false, false, null));
+            coalescer.submit(new OrderBookResponseModel(
+                OrderBookDelta.between(book(7, 0.45, 3), book(8, 0.45, 4), 8), false, null));
+            coalescer.submit(new OrderBookResponseModel(null, false, true, "Reconnecting..."));
+        });
+        awaitShown(2);
+
+        assertEquals(2, shown.size());
+        final OrderBook book = shown.get(0).getOrderBook();
+        assertNotNull(book);
+        assertNull(shown.get(0).getDelta());
+        assertEquals(8, book.getSequence());
+        assertEquals(4, book.getBids().get(0).getQuantity(), 1e-9);
+        assertTrue(shown.get(1).isReconnecting());
+    }
+
+    @Test
+    void testFlushesNoFasterThanTheFrameRate() throws Exception {
+        final OrderBookRepaintCoalescer coalescer = coalescer(10);
+        coalescer.submit(new OrderBookResponseModel(book(1, 0.40, 1), false, false, null));
+        waitFor(1);
+        for (int i = 2; i <= 50; i++) {
+            coalescer.submit(new OrderBookResponseModel(book(i, 0.40, i), false, false, null));
+        }
+        awaitShown(2);
+
+        final long gap = shownAt.get(1) - shownAt.get(0);
+        assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(90), "flushed after " + gap + " ns");
+        assertEquals(50, shown.get(1).getOrderBook().getSequence());
+    }
+
+    private OrderBookRepaintCoalescer coalescer(final int framesPerSecond) {
+        return new OrderBookRepaintCoalescer(model -> {
+            shown.add(model);
+            shownAt.add(System.nanoTime());
+        }, framesPerSecond);
+    }
+
+    private void awaitShown(final int count) throws Exception {
+        waitFor(count);
+        // let a flush that should not happen have its chance
+        Thread.sleep(150);
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    private void waitFor(final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shown.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static OrderBook book(final long sequence, final double bid, final double qty) {
+        final List<OrderBookEntry> bids = new ArrayList<>();
+        bids.add(new OrderBookEntry(Side.BUY, bid, qty));
+        return new OrderBook("m1", bids, List.of(new OrderBookEntry(Side.SELL, 0.60, 5)), sequence);
+    }
+}
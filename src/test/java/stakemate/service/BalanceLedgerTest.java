@@ -0,0 +1,75 @@
+package stakemate.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class BalanceLedgerTest {
+
+    private final Map<String, Double> table = new HashMap<>();
+    private int loads;
+
+    private BalanceLedger ledger(long refreshMillis) {
+        return new BalanceLedger(userId -> {
+            loads++;
+            return table.getOrDefault(userId, 0.0);
+        }, refreshMillis);
+    }
+
+    @Test
+    void testBalanceIsLoadedOnceAndServedFromMemory() {
+        table.put("u1", 100.0);
+        BalanceLedger ledger = ledger(60_000);
+
+        assertEquals(100.0, ledger.balance("u1"));
+        assertEquals(100.0, ledger.balance("u1"));
+        assertEquals(1, loads);
+    }
+
+    @Test
+    void testCommittedDeltaIsAppliedOnce() {
+        table.put("u1", 100.0);
+        BalanceLedger ledger = ledger(0);
+        ledger.balance("u1");
+
+        ledger.beginWrite("u1");
+        table.put("u1", 90.0);
+        // refresh is suppressed while the write is in flight
+        assertEquals(100.0, ledger.balance("u1"));
+        ledger.endWrite("u1", -10.0);
+
+        assertEquals(90.0, ledger.balance("u1"));
+    }
+
+    @Test
+    void testReservationsReleaseProportionallyAndOnCancel() {
+        BalanceLedger ledger = ledger(60_000);
+        ledger.reserve("u1", "o1", 6.0);
+        ledger.reserve("u1", "o2", 4.0);
+        assertEquals(10.0, ledger.reserved("u1"));
+
+        // a third of o1 filled
+        ledger.releaseFilled("o1", 1.0, 3.0);
+        assertEquals(8.0, ledger.reserved("u1"));
+
+        ledger.release("o2");
+        ledger.releaseFilled("o1", 2.0, 3.0);
+        assertEquals(0.0, ledger.reserved("u1"), 1e-9);
+    }
+
+    @Test
+    void testInvalidateForcesReload() {
+        table.put("u1", 100.0);
+        BalanceLedger ledger = ledger(60_000);
+        ledger.balance("u1");
+
+        table.put("u1", 150.0);
+        ledger.invalidate("u1");
+
+        assertEquals(150.0, ledger.balance("u1"));
+        assertEquals(2, loads);
+    }
+}
@@ -0,0 +1,129 @@
+package stakemate.service.scheduling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SchedulerTest {
+
+    @Test
+    void testSlowJobDoesNotHoldUpOthersAndRunsOnVirtualThreads() throws InterruptedException {
+        try (Scheduler scheduler = new Scheduler("test")) {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch slowStarted = new CountDownLatch(1);
+            final CountDownLatch fastRuns = new CountDownLatch(5);
+            final List<Thread> fastThreads = new ArrayList<>();
+            scheduler.schedule("slow", 0, 10, () -> {
+                slowStarted.countDown();
+                release.await();
+            });
+            try {
+                assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+                scheduler.schedule("fast", 0, 10, () -> {
+                    synchronized (fastThreads) {
+                        fastThreads.add(Thread.currentThread());
+                    }
+                    fastRuns.countDown();
+                });
+
+                assertTrue(fastRuns.await(5, TimeUnit.SECONDS));
+                synchronized (fastThreads) {
+                    assertTrue(fastThreads.get(0).isVirtual());
+                    assertEquals("test/fast", fastThreads.get(0).getName());
+                }
+                assertEquals("RUNNING", stats(scheduler, "slow").getState());
+                assertEquals(0, stats(scheduler, "slow").getRuns());
+            }
+            finally {
+                // closing waits for the slow run
+                release.countDown();
+            }
+        }
+    }
+
+    @Test
+    void testFailuresBackOffAndTheFirstSuccessRestoresThePeriod() throws InterruptedException {
+        try (Scheduler scheduler = new Scheduler("test")) {
+            final List<Long> starts = new ArrayList<>();
+            final CountDownLatch done = new CountDownLatch(5);
+            final ScheduledJob job = scheduler.schedule("flaky", 0, 20, 0, 1000, () -> {
+                final int run;
+                synchronized (starts) {
+                    starts.add(System.nanoTime());
+                    run = starts.size();
+                }
+                done.countDown();
+                if (run <= 3) {
+                    throw new IllegalStateException("down");
+                }
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            job.cancelAndAwait();
+            final long[] expectedGapsMs = {40, 80, 160, 20};
+            synchronized (starts) {
+                for (int i = 0; i < expectedGapsMs.length; i++) {
+                    final long gap = TimeUnit.NANOSECONDS.toMillis(starts.get(i + 1) - starts.get(i));
+                    assertTrue(gap >= expectedGapsMs[i] - 1, "gap " + i + " was " + gap + " ms");
+                }
+                // back to the normal period, not still backing off
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(starts.get(4) - starts.get(3)) < 160);
+            }
+            final JobStats stats = job.stats();
+            assertEquals(3, stats.getFailures());
+            assertEquals(0, stats.getConsecutiveFailures());
+            assertEquals("down", stats.getLastError());
+            assertTrue(stats.getRuns() >= 5);
+        }
+    }
+
+    @Test
+    void testPausedJobDoesNotRunAndResumeRunsItRightAway() throws InterruptedException {
+        try (Scheduler scheduler = new Scheduler("test")) {
+            final AtomicInteger runs = new AtomicInteger();
+            final ScheduledJob job = scheduler.schedule("hidden", 0, 60_000, runs::incrementAndGet);
+            awaitRuns(runs, 1);
+
+            job.pause();
+            assertEquals("PAUSED", job.stats().getState());
+            assertEquals(-1, job.stats().getNextRunInMillis());
+            job.resume();
+            awaitRuns(runs, 2);
+
+            job.pause();
+            Thread.sleep(100);
+            assertEquals(2, runs.get());
+
+            job.cancelAndAwait();
+            job.resume();
+            Thread.sleep(100);
+            assertEquals(2, runs.get());
+            assertTrue(scheduler.jobs().isEmpty());
+            assertEquals("CANCELLED", job.stats().getState());
+        }
+    }
+
+    private static JobStats stats(final Scheduler scheduler, final String name) {
+        for (final JobStats s : scheduler.getJobs()) {
+            if (s.getName().equals(name)) {
+                return s;
+            }
+        }
+        throw new AssertionError("no job " + name);
+    }
+
+    private static void awaitRuns(final AtomicInteger runs, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (runs.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, runs.get());
+    }
+}
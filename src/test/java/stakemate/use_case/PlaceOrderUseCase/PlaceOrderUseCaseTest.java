@@ -2,20 +2,29 @@ package stakemate.use_case.PlaceOrderUseCase;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import stakemate.engine.BookOrder;
 import stakemate.engine.MatchingEngine;
+import stakemate.engine.MatchingEngineRegistry;
 import stakemate.engine.Trade;
 import stakemate.entity.Side;
 import stakemate.service.AccountService;
+import stakemate.service.InMemoryAccountService;
 
 class PlaceOrderUseCaseTest {
 
@@ -51,11 +60,32 @@ class PlaceOrderUseCaseTest {
         assertEquals("Price must be > 0 for limit orders.", res.message);
     }
 
+    @Test
+    void testPriceAboveOne_ShouldFail() {
+        useCase = new PlaceOrderUseCase(engine, accountService);
+        PlaceOrderResponse res = useCase.place(new PlaceOrderRequest("user1", "market1", Side.BUY, 1.01, 10.0));
+        assertFalse(res.ok);
+        assertEquals("Price must be at most 1.00.", res.message);
+    }
+
+    @Test
+    void testOffGridPrice_ShouldFailInsteadOfRounding() {
+        useCase = new PlaceOrderUseCase(engine, accountService);
+        accountService.setHasFunds(true);
+        PlaceOrderResponse res = useCase.place(new PlaceOrderRequest("user1", "market1", Side.BUY, 0.555, 10.0));
+        assertFalse(res.ok);
+        assertEquals("Price must be a multiple of 0.01.", res.message);
+        assertTrue(engine.getBids().isEmpty());
+
+        // grid prices that are not exact in binary still pass
+        assertTrue(useCase.place(new PlaceOrderRequest("user1", "market1", Side.BUY, 0.29, 10.0)).ok);
+    }
+
     @Test
     void testInsufficientFunds_ShouldFail() {
         useCase = new PlaceOrderUseCase(engine, accountService);
         accountService.setHasFunds(false);
-        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 10.0, 5.0);
+        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 0.60, 5.0);
         PlaceOrderResponse res = useCase.place(req);
         assertFalse(res.ok);
         assertEquals("Insufficient funds", res.message);
@@ -65,7 +95,7 @@ class PlaceOrderUseCaseTest {
     void testInMemory_Success_NoTrade() {
         useCase = new PlaceOrderUseCase(engine, accountService);
         accountService.setHasFunds(true);
-        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 10.0, 5.0);
+        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 0.60, 5.0);
 
         PlaceOrderResponse res = useCase.place(req);
 
@@ -82,10 +112,10 @@ class PlaceOrderUseCaseTest {
         accountService.setHasFunds(true);
 
         // Place a sell order first
-        engine.placeOrder(new BookOrder("user2", "market1", Side.SELL, 10.0, 5.0));
+        engine.placeOrder(new BookOrder("user2", "market1", Side.SELL, 0.60, 5.0));
 
         // Place matching buy order
-        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 10.0, 5.0);
+        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 0.60, 5.0);
         PlaceOrderResponse res = useCase.place(req);
 
         assertTrue(res.ok);
@@ -99,7 +129,7 @@ class PlaceOrderUseCaseTest {
         useCase = new PlaceOrderUseCase(engine, accountService, orderRepository, positionRepository);
         accountService.setHasFunds(true);
 
-        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 10.0, 5.0);
+        PlaceOrderRequest req = new PlaceOrderRequest("user1", "market1", Side.BUY, 0.60, 5.0);
         PlaceOrderResponse res = useCase.place(req);
 
         assertTrue(res.ok);
@@ -109,6 +139,139 @@ class PlaceOrderUseCaseTest {
         assertEquals(0, accountService.capturedTrades.size());
     }
 
+    @Test
+    void testDBMode_TradesGoToTradeRepository() {
+        StubTradeRepository tradeRepository = new StubTradeRepository();
+        useCase = new PlaceOrderUseCase(MatchingEngineRegistry.single(engine), accountService,
+                orderRepository, positionRepository, tradeRepository);
+        accountService.setHasFunds(true);
+        engine.placeOrder(new BookOrder("user2", "market1", Side.SELL, 0.60, 5.0));
+
+        useCase.place(new PlaceOrderRequest("user1", "market1", Side.BUY, 0.60, 2.0));
+        useCase.place(new PlaceOrderRequest("user1", "market1", Side.BUY, 0.50, 1.0));
+
+        // one call per matching pass that traded
+        assertEquals(1, tradeRepository.saved.size());
+        assertEquals(2.0, tradeRepository.saved.get(0).get(0).getSize());
+    }
+
+    @Test
+    void testPlaceOrders_PerOrderResults() {
+        useCase = new PlaceOrderUseCase(engine, accountService, orderRepository, positionRepository);
+        accountService.setHasFunds(true);
+
+        List<PlaceOrderResponse> res = useCase.placeOrders(List.of(
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.40, 5.0),
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.41, 0.0),
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.42, 5.0)));
+
+        assertEquals(3, res.size());
+        assertTrue(res.get(0).ok);
+        assertFalse(res.get(1).ok);
+        assertEquals("Quantity must be > 0.", res.get(1).message);
+        assertTrue(res.get(2).ok);
+        assertEquals(2, orderRepository.savedOrders.size());
+        assertEquals(orderRepository.savedOrders.get(1).getId(), res.get(2).orderId);
+        assertEquals(2, engine.getBids().size());
+    }
+
+    @Test
+    void testPlaceOrders_FailingOrderDoesNotFailTheBatch() {
+        MatchingEngine failing = new MatchingEngine() {
+            @Override
+            public List<Trade> placeOrder(BookOrder incoming) {
+                if (incoming.getMarketId().equals("broken")) {
+                    throw new RuntimeException("Failed to commit matching pass");
+                }
+                return super.placeOrder(incoming);
+            }
+        };
+        useCase = new PlaceOrderUseCase(failing, accountService, orderRepository, positionRepository);
+
+        List<PlaceOrderResponse> res = useCase.placeOrders(List.of(
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.40, 5.0),
+                new PlaceOrderRequest("user1", "broken", Side.BUY, 0.41, 5.0),
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.42, 5.0)));
+
+        assertTrue(res.get(0).ok);
+        assertFalse(res.get(1).ok);
+        assertTrue(res.get(2).ok);
+        assertEquals(2, failing.getBids().size());
+        // the failed order gives back its reservation and its saved row is closed
+        String brokenId = orderRepository.savedOrders.get(1).getId();
+        assertEquals(List.of(brokenId), accountService.releasedOrders);
+        assertEquals(List.of(brokenId + "=0.0"), orderRepository.updates);
+    }
+
+    @Test
+    void testCancelAll_InMemory() {
+        useCase = new PlaceOrderUseCase(engine, accountService);
+        accountService.setHasFunds(true);
+        useCase.placeOrders(List.of(
+                new PlaceOrderRequest("user1", "market1", Side.BUY, 0.40, 5.0),
+                new PlaceOrderRequest("user1", "market1", Side.SELL, 0.60, 5.0),
+                new PlaceOrderRequest("user2", "market1", Side.BUY, 0.40, 5.0)));
+
+        List<BookOrder> cancelled = useCase.cancelAll("user1", "market1");
+
+        assertEquals(2, cancelled.size());
+        assertEquals(1, engine.getBids().size());
+        assertTrue(engine.getAsks().isEmpty());
+    }
+
+    @Test
+    void testAmendGivesBackTheReservationOfTheQuantityTakenOff() {
+        final InMemoryAccountService accounts = new InMemoryAccountService();
+        useCase = new PlaceOrderUseCase(engine, accounts);
+        final PlaceOrderResponse placed = useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 2000));
+        assertFalse(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 1)).ok);
+
+        final BookOrder amended = useCase.amendOrder("m1", placed.orderId, 1000);
+
+        assertEquals(1000.0, amended.getRemainingQty());
+        assertTrue(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 1000)).ok);
+        assertFalse(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 1)).ok);
+    }
+
+    @Test
+    void testReplaceNeedsFundsOnlyForTheDifference() {
+        final InMemoryAccountService accounts = new InMemoryAccountService();
+        useCase = new PlaceOrderUseCase(engine, accounts);
+        final PlaceOrderResponse placed = useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 2000));
+
+        // 1200 needed, 1000 available once the original's reservation is counted
+        final PlaceOrderResponse tooBig = useCase.replaceOrder(placed.orderId,
+                new PlaceOrderRequest("alice", "m1", Side.BUY, 0.60, 2000));
+        assertFalse(tooBig.ok);
+        assertEquals("Insufficient funds", tooBig.message);
+        assertEquals(2000.0, engine.getBids().get(0).getRemainingQty());
+
+        final PlaceOrderResponse repriced = useCase.replaceOrder(placed.orderId,
+                new PlaceOrderRequest("alice", "m1", Side.BUY, 0.60, 1000));
+        assertTrue(repriced.ok);
+        assertEquals(1, engine.getBids().size());
+        assertEquals(repriced.orderId, engine.getBids().get(0).getId());
+        // 600 of 1000 reserved now
+        assertTrue(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.40, 1000)).ok);
+        assertFalse(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.01, 1)).ok);
+    }
+
+    @Test
+    void testReplacingAnOrderThatIsGoneReservesNothing() {
+        final InMemoryAccountService accounts = new InMemoryAccountService();
+        useCase = new PlaceOrderUseCase(engine, accounts);
+        final PlaceOrderResponse placed = useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 1000));
+        useCase.cancelOrder("m1", placed.orderId);
+
+        final PlaceOrderResponse replaced = useCase.replaceOrder(placed.orderId,
+                new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 2000));
+
+        assertFalse(replaced.ok);
+        assertTrue(engine.getBids().isEmpty());
+        assertNull(useCase.amendOrder("m1", placed.orderId, 1));
+        assertTrue(useCase.place(new PlaceOrderRequest("alice", "m1", Side.BUY, 0.50, 2000)).ok);
+    }
+
     @Test
     void testMarketOrder_Resting() {
         useCase = new PlaceOrderUseCase(engine, accountService);
@@ -186,6 +349,54 @@ class PlaceOrderUseCaseTest {
         assertEquals(o, orders.get(0));
     }
 
+    @Test
+    void testPlaceAsync_ConcurrentSubmissionsOverlap() throws Exception {
+        // each save waits until the other order is being saved too
+        CountDownLatch bothSaving = new CountDownLatch(2);
+        StubOrderRepository slowRepository = new StubOrderRepository() {
+            @Override
+            public void saveAll(List<BookOrder> orders) {
+                bothSaving.countDown();
+                try {
+                    if (!bothSaving.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("saves did not overlap");
+                    }
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        useCase = new PlaceOrderUseCase(engine, accountService, slowRepository, positionRepository);
+
+        CompletableFuture<PlaceOrderResponse> first =
+                useCase.placeAsync(new PlaceOrderRequest("user1", "m1", Side.BUY, 0.40, 1.0));
+        CompletableFuture<PlaceOrderResponse> second =
+                useCase.placeAsync(new PlaceOrderRequest("user2", "m1", Side.BUY, 0.45, 1.0));
+
+        assertTrue(first.get(10, TimeUnit.SECONDS).ok);
+        assertTrue(second.get(10, TimeUnit.SECONDS).ok);
+        assertEquals(2, engine.getBids().size());
+    }
+
+    @Test
+    void testPlaceAsync_FailureCompletesExceptionally() {
+        RuntimeException down = new RuntimeException("database down");
+        StubOrderRepository failingRepository = new StubOrderRepository() {
+            @Override
+            public void save(BookOrder order) {
+                throw down;
+            }
+        };
+        useCase = new PlaceOrderUseCase(engine, accountService, failingRepository, positionRepository);
+        useCase.setExecutor(Runnable::run);
+
+        CompletableFuture<PlaceOrderResponse> future =
+                useCase.placeAsync(new PlaceOrderRequest("user1", "m1", Side.BUY, 0.40, 1.0));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+        assertSame(down, ex.getCause());
+    }
+
     @Test
     void testDataSourceFactory() {
         // Cover constructor
@@ -205,6 +416,7 @@ class PlaceOrderUseCaseTest {
     static class StubAccountService implements AccountService {
         private boolean hasFunds = true;
         List<Trade> capturedTrades = new ArrayList<>();
+        List<String> releasedOrders = new ArrayList<>();
 
         void setHasFunds(boolean hasFunds) {
             this.hasFunds = hasFunds;
@@ -224,11 +436,17 @@ class PlaceOrderUseCaseTest {
         public void capture(Trade trade) {
             capturedTrades.add(trade);
         }
+
+        @Override
+        public void releaseOrder(String orderId) {
+            releasedOrders.add(orderId);
+        }
     }
 
     static class StubOrderRepository implements OrderRepository {
         List<BookOrder> savedOrders = new ArrayList<>();
         List<BookOrder> openOrders = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
 
         @Override
         public void save(BookOrder order) {
@@ -252,6 +470,7 @@ class PlaceOrderUseCaseTest {
 
         @Override
         public void updateRemainingQty(String orderId, double newRemainingQty) {
+            updates.add(orderId + "=" + newRemainingQty);
         }
 
         @Override
@@ -270,6 +489,25 @@ class PlaceOrderUseCaseTest {
         }
     }
 
+    static class StubTradeRepository implements TradeRepository {
+        List<List<Trade>> saved = new ArrayList<>();
+
+        @Override
+        public void saveAll(List<Trade> trades) {
+            saved.add(trades);
+        }
+
+        @Override
+        public List<Trade> findRecentForMarket(String marketId, int limit) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public double volumeWeightedPrice(String marketId, java.time.Instant since) {
+            return Double.NaN;
+        }
+    }
+
     static class StubMatchingEngine extends MatchingEngine {
         private boolean cancelMarketOrder = false;
 
@@ -0,0 +1,140 @@
+package stakemate.use_case.view_market;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.engine.BookOrder;
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
+import stakemate.entity.Side;
+
+class OrderBookFeedTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void testUserIsSentOnlyTheirOwnOrdersAndOnlyOnChange() {
+        final OrderBookFeed feed = new OrderBookFeed();
+        final RecordingSubscriber alice = new RecordingSubscriber();
+        feed.subscribeOpenOrders("m1", "alice", alice,
+                List.of(order("00000000000000a1", "alice", 10, 10), order("00000000000000b1", "bob", 5, 5)));
+
+        assertEquals(1, alice.updates.size());
+        assertEquals(List.of("00000000000000a1 10.0"), describe(alice.updates.get(0)));
+
+        // bob's fill is not alice's business
+        feed.publishOpenOrders("m1",
+                List.of(order("00000000000000a1", "alice", 10, 10), order("00000000000000b1", "bob", 5, 2)));
+        assertEquals(1, alice.updates.size());
+
+        // alice is partly filled, then places another order
+        feed.publishOpenOrders("m1", List.of(order("00000000000000a1", "alice", 10, 4)));
+        feed.publishOpenOrders("m1",
+                List.of(order("00000000000000a1", "alice", 10, 4), order("00000000000000a2", "alice", 3, 3)));
+        assertEquals(3, alice.updates.size());
+        assertEquals(List.of("00000000000000a1 4.0"), describe(alice.updates.get(1)));
+        assertEquals(List.of("00000000000000a1 4.0", "00000000000000a2 3.0"), describe(alice.updates.get(2)));
+
+        // fully filled orders drop out
+        feed.publishOpenOrders("m1", new ArrayList<>());
+        assertEquals(4, alice.updates.size());
+        assertTrue(alice.updates.get(3).isEmpty());
+    }
+
+    @Test
+    void testSecondWindowOfTheSameUserStartsFromTheSharedList() {
+        final OrderBookFeed feed = new OrderBookFeed();
+        final RecordingSubscriber first = new RecordingSubscriber();
+        final RecordingSubscriber second = new RecordingSubscriber();
+        feed.subscribeOpenOrders("m1", "alice", first, List.of(order("00000000000000a1", "alice", 10, 10)));
+        feed.subscribeOpenOrders("m1", "alice", second, List.of(order("00000000000000a1", "alice", 10, 6)));
+
+        // the fresher read reaches the first window as a change, the second as its start
+        assertEquals(2, first.updates.size());
+        assertEquals(List.of("00000000000000a1 6.0"), describe(second.updates.get(0)));
+
+        feed.unsubscribeOpenOrders("m1", "alice", first);
+        feed.publishOpenOrders("m1", List.of(order("00000000000000a1", "alice", 10, 1)));
+        assertEquals(2, first.updates.size());
+        assertEquals(2, second.updates.size());
+    }
+
+    @Test
+    void testMarketsWatchedOnlyForOrdersAreStillRead() {
+        final OrderBookFeed feed = new OrderBookFeed();
+        final RecordingSubscriber alice = new RecordingSubscriber();
+        assertFalse(feed.isWatched("m1"));
+
+        // an unreadable start is sent with the first publish
+        feed.subscribeOpenOrders("m1", "alice", alice, null);
+        assertTrue(alice.updates.isEmpty());
+        assertTrue(feed.isWatched("m1"));
+        assertEquals(List.of("m1"), new ArrayList<>(feed.markets()));
+        feed.publishOpenOrders("m1", new ArrayList<>());
+        assertEquals(1, alice.updates.size());
+
+        feed.unsubscribeOpenOrders("m1", "alice", alice);
+        assertFalse(feed.isWatched("m1"));
+        assertTrue(feed.markets().isEmpty());
+    }
+
+    @Test
+    void testLatestIsOnlyServedWhileTheBookIsKeptCurrent() {
+        final OrderBookFeed feed = new OrderBookFeed();
+        final OrderBookSubscriber window = new OrderBookSubscriber() {
+            @Override
+            public void onOrderBookUpdated(final OrderBook orderBook) {
+            }
+
+            @Override
+            public void onOrderBookDelta(final OrderBookDelta delta) {
+            }
+
+            @Override
+            public void onConnectionError(final String message) {
+            }
+
+            @Override
+            public void onConnectionRestored() {
+            }
+        };
+        feed.subscribe("m1", window, new OrderBook("m1", new ArrayList<>(), new ArrayList<>()));
+        assertEquals(1, feed.latestIfWatched("m1").getSequence());
+
+        // nobody re-reads the market any more, so its last book may be stale
+        feed.unsubscribe("m1", window);
+        assertNull(feed.latestIfWatched("m1"));
+        assertNull(feed.latestIfWatched("m2"));
+    }
+
+    private static BookOrder order(final String id, final String userId, final double original,
+                                   final double remaining) {
+        return new BookOrder(id, userId, "m1", Side.BUY, 50L, false, original, remaining, T0);
+    }
+
+    private static List<String> describe(final List<BookOrder> orders) {
+        final List<String> lines = new ArrayList<>();
+        for (final BookOrder o : orders) {
+            lines.add(o.getId() + " " + o.getRemainingQty());
+        }
+        return lines;
+    }
+
+    private static final class RecordingSubscriber implements OpenOrdersSubscriber {
+        private final List<List<BookOrder>> updates = new ArrayList<>();
+
+        @Override
+        public void onOpenOrdersUpdated(final String marketId, final List<BookOrder> orders) {
+            assertEquals("m1", marketId);
+            updates.add(orders);
+        }
+    }
+}
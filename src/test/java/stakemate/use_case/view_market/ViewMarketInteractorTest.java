@@ -19,6 +19,7 @@ import stakemate.entity.MarketStatus;
 import stakemate.entity.Match;
 import stakemate.entity.MatchStatus;
 import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookDelta;
 import stakemate.entity.OrderBookEntry;
 import stakemate.entity.Side;
 import stakemate.use_case.view_market.facade.MarketDataFacade;
@@ -395,6 +396,79 @@ class ViewMarketInteractorTest {
         interactor.marketSelected("mk1");
     }
 
+    @Test
+    void testDeltaIsPresentedWithoutFullBook() {
+        final OrderBook book = new OrderBook("mk1",
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 10)), new ArrayList<>(), 4);
+        final List<OrderBookResponseModel> presented = new ArrayList<>();
+        interactor = new ViewMarketInteractor(stubFacade, recording(presented));
+        interactor.onOrderBookUpdated(book);
+
+        final OrderBook next = new OrderBook("mk1",
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 6)), new ArrayList<>());
+        interactor.onOrderBookDelta(OrderBookDelta.between(book, next, 5));
+
+        assertEquals(2, presented.size());
+        assertNull(presented.get(1).getOrderBook());
+        assertEquals(1, presented.get(1).getDelta().getChanges().size());
+        assertFalse(presented.get(1).isEmpty());
+
+        // a repeat of an applied delta is dropped
+        interactor.onOrderBookDelta(OrderBookDelta.between(book, next, 5));
+        assertEquals(2, presented.size());
+    }
+
+    @Test
+    void testSequenceGapResyncsFromSnapshot() {
+        final OrderBook book = new OrderBook("mk1",
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 10)), new ArrayList<>(), 4);
+        final OrderBook next = new OrderBook("mk1", new ArrayList<>(),
+            List.of(new OrderBookEntry(Side.SELL, 0.7, 3)), 6);
+        stubFacade.setSnapshotToReturn(next);
+        final List<OrderBookResponseModel> presented = new ArrayList<>();
+        interactor = new ViewMarketInteractor(stubFacade, recording(presented));
+        interactor.onOrderBookUpdated(book);
+
+        // sequence 5 never arrived
+        interactor.onOrderBookDelta(OrderBookDelta.between(book, next, 6));
+
+        assertEquals(2, presented.size());
+        assertEquals(next, presented.get(1).getOrderBook());
+    }
+
+    @Test
+    void testChecksumMismatchResyncsFromSnapshot() {
+        final OrderBook book = new OrderBook("mk1",
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 10)), new ArrayList<>(), 4);
+        final OrderBook next = new OrderBook("mk1",
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 6)), new ArrayList<>(), 5);
+        stubFacade.setSnapshotToReturn(next);
+        final List<OrderBookResponseModel> presented = new ArrayList<>();
+        interactor = new ViewMarketInteractor(stubFacade, recording(presented));
+        interactor.onOrderBookUpdated(book);
+
+        final OrderBookDelta corrupt = new OrderBookDelta("mk1", 5,
+            List.of(new OrderBookEntry(Side.BUY, 0.5, 6)), 42L);
+        interactor.onOrderBookDelta(corrupt);
+
+        assertEquals(2, presented.size());
+        assertEquals(next, presented.get(1).getOrderBook());
+
+        // stale deltas and deltas for another market are ignored
+        interactor.onOrderBookDelta(corrupt);
+        interactor.onOrderBookDelta(new OrderBookDelta("mk2", 6, List.of(), 0L));
+        assertEquals(2, presented.size());
+    }
+
+    private static ViewMarketOutputBoundary recording(final List<OrderBookResponseModel> presented) {
+        return new TestOutputBoundary() {
+            @Override
+            public void presentOrderBook(final OrderBookResponseModel responseModel) {
+                presented.add(responseModel);
+            }
+        };
+    }
+
     /**
      * Helper class to reduce anonymous inner class length in tests.
      */
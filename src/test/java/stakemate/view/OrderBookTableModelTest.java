@@ -0,0 +1,53 @@
+package stakemate.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.jupiter.api.Test;
+
+import stakemate.entity.OrderBook;
+import stakemate.entity.OrderBookEntry;
+import stakemate.entity.Side;
+
+class OrderBookTableModelTest {
+
+    @Test
+    void testSnapshotOfTheShownMarketRepaintsOnlyChangedRows() {
+        final OrderBookTableModel model = new OrderBookTableModel();
+        final List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.setOrderBook(book("m1", 10, 5, 7));
+        assertEquals(1, events.size());
+        events.clear();
+
+        // one quantity changes: one cell
+        model.setOrderBook(book("m1", 10, 6, 7));
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(1, events.get(0).getLastRow());
+        assertEquals("6.0", model.getValueAt(1, 0));
+        events.clear();
+
+        // the same book again: nothing
+        model.setOrderBook(book("m1", 10, 6, 7));
+        assertEquals(0, events.size());
+
+        // another market replaces the whole table
+        model.setOrderBook(book("m2", 1, 1, 1));
+        assertEquals(1, events.size());
+        assertEquals(Integer.MAX_VALUE, events.get(0).getLastRow());
+    }
+
+    private static OrderBook book(final String marketId, final double bestBidQty, final double secondBidQty,
+                                  final double askQty) {
+        return new OrderBook(marketId,
+            List.of(new OrderBookEntry(Side.BUY, 0.50, bestBidQty), new OrderBookEntry(Side.BUY, 0.45, secondBidQty)),
+            List.of(new OrderBookEntry(Side.SELL, 0.60, askQty)));
+    }
+}